@@ -0,0 +1,70 @@
+package com.wit.benchmarks;
+
+import com.wit.common.engine.ArithmeticEngine;
+import com.wit.common.protocol.Operation;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the arithmetic engine (long fast path with BigDecimal fallback) with plain BigDecimal arithmetic
+ * under the calculator's MathContext, per operation and operand size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ArithmeticEngineBenchmark {
+
+    private static final MathContext mc = new MathContext(10);
+
+    @Param({"SUM", "SUBTRACTION", "MULTIPLICATION", "DIVISION"})
+    public Operation operation;
+
+    /**
+     * integer: small integers; decimal: short fractional values; wide: results that need rounding (slow path).
+     */
+    @Param({"integer", "decimal", "wide"})
+    public String operands;
+
+    private final ArithmeticEngine engine = new ArithmeticEngine(mc);
+    private BigDecimal a;
+    private BigDecimal b;
+
+    @Setup
+    public void setup() {
+        switch (operands) {
+            case "integer" -> {
+                a = new BigDecimal("1234");
+                b = new BigDecimal("567");
+            }
+            case "decimal" -> {
+                a = new BigDecimal("12.75");
+                b = new BigDecimal("3.5");
+            }
+            default -> {
+                a = new BigDecimal("123456789.123456789");
+                b = new BigDecimal("987654321.987654321");
+            }
+        }
+    }
+
+    @Benchmark
+    public BigDecimal engine() {
+        return engine.evaluate(operation, a, b);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return switch (operation) {
+            case SUM -> a.add(b, mc);
+            case SUBTRACTION -> a.subtract(b, mc);
+            case MULTIPLICATION -> a.multiply(b, mc);
+            case DIVISION -> a.divide(b, mc);
+        };
+    }
+}
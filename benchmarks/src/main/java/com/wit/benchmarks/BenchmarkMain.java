@@ -0,0 +1,24 @@
+package com.wit.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of the benchmarks jar: runs JMH with its usual command line, writing results as JSON
+ * ({@code jmh-result.json}, or the file given with {@code -rff}) unless another result format is requested,
+ * so runs of different releases can be compared.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rf")) {
+            options.add(0, "-rf");
+            options.add(1, "json");
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
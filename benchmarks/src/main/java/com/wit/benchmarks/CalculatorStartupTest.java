@@ -0,0 +1,111 @@
+package com.wit.benchmarks;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.kafka.CalculationReplyDeserializer;
+import com.wit.common.protocol.kafka.CalculationRequestSerializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first processed record of a calculator started from scratch: the time from launching the given command
+ * until the reply to a request already waiting in the request topic arrives, through an embedded broker.
+ * Each run starts the calculator in a new consumer group, so it never waits for the members of a previous run.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar com.wit.benchmarks.CalculatorStartupTest <runs> <command...>},
+ * where {@code {bootstrap}} and {@code {group}} in the command are replaced by the broker address and the run's
+ * consumer group, e.g.
+ * {@code java -jar calculator/target/calculator-0.0.1-SNAPSHOT-exec.jar --spring.kafka.bootstrap-servers={bootstrap}
+ * --spring.kafka.consumer.bootstrap-servers={bootstrap} --spring.kafka.producer.bootstrap-servers={bootstrap}
+ * --spring.kafka.consumer.group-id={group}}. The calculator's output is discarded.
+ */
+public class CalculatorStartupTest {
+
+    private static final String REPLY_TOPIC = "calculator-responses-startup";
+    private static final Duration TIMEOUT = Duration.ofSeconds(120);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: CalculatorStartupTest <runs> <command...>");
+            System.exit(1);
+        }
+        int runs = Integer.parseInt(args[0]);
+        List<String> command = List.of(args).subList(1, args.length);
+
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaKraftBroker(1, 6, "calculator-requests", "calculator-batch-requests", REPLY_TOPIC);
+        broker.afterPropertiesSet();
+        Map<String, Object> producerProps = Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        Map<String, Object> consumerProps = Map.of(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, REPLY_TOPIC);
+        long[] millis = new long[runs];
+        try (KafkaProducer<String, CalculationRequest> producer =
+                     new KafkaProducer<>(producerProps, new StringSerializer(), new CalculationRequestSerializer());
+             KafkaConsumer<String, CalculationReply> replies =
+                     new KafkaConsumer<>(consumerProps, new StringDeserializer(), new CalculationReplyDeserializer())) {
+            replies.assign(replies.partitionsFor(REPLY_TOPIC).stream()
+                    .map(partition -> new TopicPartition(REPLY_TOPIC, partition.partition()))
+                    .toList());
+            replies.seekToEnd(replies.assignment());
+            for (int run = 0; run < runs; run++) {
+                String requestId = "startup-" + run;
+                ProducerRecord<String, CalculationRequest> request = new ProducerRecord<>("calculator-requests", requestId,
+                        CalculationRequest.single(requestId, Operation.SUM, BigDecimal.valueOf(run), BigDecimal.ONE));
+                request.headers().add(KafkaHeaders.REPLY_TOPIC, REPLY_TOPIC.getBytes(StandardCharsets.UTF_8));
+                producer.send(request).get();
+
+                List<String> runCommand = new ArrayList<>();
+                for (String arg : command) {
+                    runCommand.add(arg.replace("{bootstrap}", broker.getBrokersAsString()).replace("{group}", requestId));
+                }
+                long start = System.nanoTime();
+                Process calculator = new ProcessBuilder(runCommand)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.DISCARD)
+                        .start();
+                try {
+                    millis[run] = awaitReply(replies, requestId, start);
+                } finally {
+                    calculator.destroy();
+                    calculator.waitFor(30, TimeUnit.SECONDS);
+                }
+                System.out.printf("Run %d: first record answered after %d ms%n", run + 1, millis[run]);
+            }
+        } finally {
+            broker.destroy();
+        }
+        Arrays.sort(millis);
+        System.out.printf("Time to first processed record over %d runs: min %d ms, median %d ms, max %d ms%n",
+                runs, millis[0], millis[runs / 2], millis[runs - 1]);
+    }
+
+    private static long awaitReply(KafkaConsumer<String, CalculationReply> replies, String requestId, long start) {
+        while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+            for (ConsumerRecord<String, CalculationReply> reply : replies.poll(Duration.ofMillis(10))) {
+                if (requestId.equals(reply.key())) {
+                    return (System.nanoTime() - start) / 1_000_000;
+                }
+            }
+        }
+        throw new IllegalStateException("No reply to " + requestId + " within " + TIMEOUT);
+    }
+}
@@ -0,0 +1,74 @@
+package com.wit.benchmarks;
+
+import com.wit.common.engine.PreciseArithmetic;
+import com.wit.common.protocol.Operation;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of high-precision operations against digit count: {@link PreciseArithmetic} (parallel multiplication,
+ * division through the reciprocal, divide-and-conquer parsing) vs plain BigDecimal. Both operands have
+ * {@code digits} digits; divisions are rounded to the same number of digits. The parallel paths need a common pool
+ * of several workers to pay off; on a single core, multiplication falls back to BigDecimal.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class HighPrecisionBenchmark {
+
+    @Param({"MULTIPLICATION", "DIVISION"})
+    public Operation operation;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int digits;
+
+    private String text;
+    private BigDecimal a;
+    private BigDecimal b;
+    private MathContext mathContext;
+
+    @Setup
+    public void setup() {
+        text = randomDigits(new SplittableRandom(digits), digits);
+        a = new BigDecimal(text);
+        b = new BigDecimal(randomDigits(new SplittableRandom(-digits), digits));
+        mathContext = operation == Operation.DIVISION ? new MathContext(digits, RoundingMode.HALF_EVEN) : MathContext.UNLIMITED;
+    }
+
+    private static String randomDigits(SplittableRandom random, int digits) {
+        StringBuilder text = new StringBuilder(digits + 1);
+        text.append((char) ('1' + random.nextInt(9)));
+        for (int i = 1; i < digits; i++) {
+            text.append((char) ('0' + random.nextInt(10)));
+        }
+        return text.insert(digits / 2, '.').toString();
+    }
+
+    @Benchmark
+    public BigDecimal precise() {
+        return PreciseArithmetic.evaluate(operation, a, b, mathContext);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal() {
+        return operation == Operation.DIVISION ? a.divide(b, mathContext) : a.multiply(b, mathContext);
+    }
+
+    @Benchmark
+    public BigDecimal parsePrecise() {
+        return PreciseArithmetic.parse(text);
+    }
+
+    @Benchmark
+    public BigDecimal parseBigDecimal() {
+        return new BigDecimal(text);
+    }
+}
@@ -0,0 +1,148 @@
+package com.wit.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop HTTP load test against a running REST service: a fixed number of concurrent connections
+ * each send a request, wait for the response and send the next one, for a fixed duration.
+ * Prints throughput, latency percentiles and the live/peak thread counts reported by the service's Actuator.
+ * <p>
+ * Usage: {@code java -cp benchmarks/target/benchmarks.jar com.wit.benchmarks.HttpLoadTest <url> [connections] [seconds]},
+ * where every {@code {n}} in the URL is replaced by a counter so that requests are not served from the result cache, e.g.
+ * {@code http://localhost:8080/api/sync/sum?a={n}&b=1}.
+ */
+public class HttpLoadTest {
+
+    private static final Pattern METRIC_VALUE = Pattern.compile("\"value\"\\s*:\\s*([0-9.E]+)");
+
+    private final String url;
+    private final HttpClient client;
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private long[] latencies = new long[1 << 16];
+    private int recorded;
+
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+
+    private HttpLoadTest(String url) {
+        this.url = url;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(Executors.newFixedThreadPool(4, runnable -> {
+                    Thread thread = new Thread(runnable, "load-client");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: HttpLoadTest <url> [connections] [seconds]");
+            System.exit(1);
+        }
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        new HttpLoadTest(args[0]).run(connections, seconds);
+    }
+
+    private void run(int connections, int seconds) throws InterruptedException {
+        CountDownLatch stopped = new CountDownLatch(connections);
+        for (int i = 0; i < connections; i++) {
+            next(stopped);
+        }
+        TimeUnit.SECONDS.sleep(Math.max(1, seconds / 5)); // Warm-up, also lets every connection open
+        measuring = true;
+        long start = System.nanoTime();
+        TimeUnit.SECONDS.sleep(seconds);
+        measuring = false;
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        String threads = serverThreads();
+        running = false;
+        stopped.await(60, TimeUnit.SECONDS);
+
+        long[] sorted;
+        synchronized (this) {
+            sorted = Arrays.copyOf(latencies, recorded);
+        }
+        Arrays.sort(sorted);
+        System.out.printf("connections=%d requests=%d errors=%d throughput=%.0f req/s%n",
+                connections, sorted.length, errors.get(), sorted.length / elapsed);
+        System.out.printf("latency ms: p50=%.1f p90=%.1f p99=%.1f max=%.1f%n",
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.out.println(threads);
+    }
+
+    /**
+     * Sends the next request of one connection, chaining the following one on its completion.
+     */
+    private void next(CountDownLatch stopped) {
+        if (!running) {
+            stopped.countDown();
+            return;
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url.replace("{n}", Long.toString(counter.incrementAndGet()))))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+        long sent = System.nanoTime();
+        client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, ex) -> {
+                    if (measuring) {
+                        if (ex != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else {
+                            record(System.nanoTime() - sent);
+                        }
+                    }
+                    next(stopped);
+                });
+    }
+
+    private synchronized void record(long nanos) {
+        if (recorded == latencies.length) {
+            latencies = Arrays.copyOf(latencies, recorded * 2);
+        }
+        latencies[recorded++] = nanos;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Reads the service's live and peak thread counts from Actuator, while the load is still running.
+     */
+    private String serverThreads() {
+        URI base = URI.create(url.replace("{n}", "0")).resolve("/actuator/metrics/");
+        return "server threads: live=" + metric(base.resolve("jvm.threads.live")) + " peak=" + metric(base.resolve("jvm.threads.peak"));
+    }
+
+    private String metric(URI uri) {
+        try {
+            String body = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString()).body();
+            Matcher matcher = METRIC_VALUE.matcher(body);
+            return matcher.find() ? String.valueOf((long) Double.parseDouble(matcher.group(1))) : "?";
+        } catch (Exception e) {
+            return "?";
+        }
+    }
+}
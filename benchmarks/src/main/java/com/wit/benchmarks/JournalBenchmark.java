@@ -0,0 +1,102 @@
+package com.wit.benchmarks;
+
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sustained journaling rate of processed requests from 4 listener threads, to a temporary directory with 64MB
+ * segments. The ring fills up within the warm-up, so the rate measured is the rate the writer appends and commits
+ * at; each thread journals its own requests, as the listener containers do. With {@code -prof gc}, what is
+ * allocated per request is the writer's: {@link java.math.BigDecimal#unscaledValue()} of the operands and results
+ * outside the small values cached by BigInteger. Listener threads only fill a preallocated slot.
+ * <ul>
+ *     <li>{@code single}: one calculation per request, as sent by the operation endpoints</li>
+ *     <li>{@code batch}: 100 calculations per request, a chunk of a batch</li>
+ * </ul>
+ * The entries appended and dropped are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    @Param({"single", "batch"})
+    public String request;
+
+    private Path directory;
+    private SimpleMeterRegistry meterRegistry;
+    private CalculationJournal journal;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        meterRegistry = new SimpleMeterRegistry();
+        journal = new CalculationJournal(true, directory.toString(), DataSize.ofMegabytes(64), 4, 16384,
+                Duration.ofMillis(5), meterRegistry);
+        journal.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.stop();
+        System.out.printf("%nentries: %.0f, dropped: %.0f%n",
+                meterRegistry.get("calculator.journal.entries").counter().count(),
+                meterRegistry.get("calculator.journal.dropped").counter().count());
+        FileSystemUtils.deleteRecursively(directory);
+    }
+
+    /**
+     * Requests and replies of one listener thread, built once: the journal only keeps references to them.
+     */
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private final CalculationRequest[] requests = new CalculationRequest[1024];
+        private final CalculationReply[] replies = new CalculationReply[1024];
+        private int next;
+
+        @Setup
+        public void setup(JournalBenchmark benchmark) {
+            int size = benchmark.request.equals("batch") ? 100 : 1;
+            String prefix = Long.toHexString(Thread.currentThread().getId() << 48);
+            for (int i = 0; i < requests.length; i++) {
+                List<Calculation> calculations = new ArrayList<>(size);
+                List<CalculationResult> results = new ArrayList<>(size);
+                for (int j = 0; j < size; j++) {
+                    BigDecimal a = BigDecimal.valueOf(i * 1000L + j, 2);
+                    calculations.add(new Calculation(Operation.SUM, a, BigDecimal.TEN));
+                    results.add(CalculationResult.ok(a.add(BigDecimal.TEN)));
+                }
+                requests[i] = new CalculationRequest(prefix + Integer.toHexString(i), calculations);
+                replies[i] = new CalculationReply(results);
+            }
+        }
+    }
+
+    @Benchmark
+    public void record(Requests requests) {
+        int i = requests.next++ & (requests.requests.length - 1);
+        journal.record(requests.requests[i], requests.replies[i], System.currentTimeMillis() - 2, 1500);
+    }
+}
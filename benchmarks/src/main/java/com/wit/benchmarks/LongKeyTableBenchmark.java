@@ -0,0 +1,73 @@
+package com.wit.benchmarks;
+
+import com.wit.rest.pending.LongKeyTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The pending-request table alone: every operation adds a key and removes it, from many threads at once, with
+ * {@code inFlight} other keys already present, as the pending requests awaiting their reply.
+ * <ul>
+ *     <li>{@code table}: the {@link LongKeyTable} of the registry, with its 64 segments</li>
+ *     <li>{@code map}: a {@code ConcurrentHashMap<Long, Object>}, boxing the key and allocating an entry per mapping</li>
+ * </ul>
+ * Keys are sequential per thread, like request ids. Run with {@code -t} to change the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class LongKeyTableBenchmark {
+
+    private static final Object VALUE = new Object();
+
+    @Param({"10000"})
+    public int inFlight;
+
+    private final LongKeyTable<Object> table = new LongKeyTable<>(64);
+    private final ConcurrentHashMap<Long, Object> map = new ConcurrentHashMap<>();
+    private final AtomicLong threads = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        // Keys below 2^40, never drawn by the benchmark threads
+        for (long key = 0; key < inFlight; key++) {
+            table.putIfAbsent(key, VALUE);
+            map.put(key, VALUE);
+        }
+    }
+
+    /**
+     * Keys of one thread: its own 2^40 range.
+     */
+    @State(Scope.Thread)
+    public static class Keys {
+
+        private long next;
+
+        @Setup
+        public void setup(LongKeyTableBenchmark benchmark) {
+            next = benchmark.threads.incrementAndGet() << 40;
+        }
+    }
+
+    @Benchmark
+    public Object table(Keys keys) {
+        long key = keys.next++;
+        table.putIfAbsent(key, VALUE);
+        return table.remove(key);
+    }
+
+    @Benchmark
+    public Object map(Keys keys) {
+        Long key = keys.next++;
+        map.put(key, VALUE);
+        return map.remove(key);
+    }
+}
@@ -0,0 +1,104 @@
+package com.wit.benchmarks;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.rest.pending.PendingRequestRegistry;
+import com.wit.rest.pending.RequestIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues request ids and registers and completes pending requests from many threads at once, as the REST request
+ * threads and the reply listener do.
+ * <ul>
+ *     <li>{@code registry}: a {@link RequestIdGenerator} id registered in and completed from the long-keyed registry</li>
+ *     <li>{@code registryOnly}: the same without issuing the id, from a sequence of each thread</li>
+ *     <li>{@code mapBaseline}: the former path, a random UUID string put in and removed from the {@code responseFutures}
+ *     map, without deadlines or the in-flight cap</li>
+ *     <li>{@code idGenerator} and {@code uuid}: issuing the id and its string alone</li>
+ * </ul>
+ * Compare {@code registry} with {@code mapBaseline} of the same run; {@link LongKeyTableBenchmark} measures the table
+ * alone. Run with {@code -t} to change the number of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class PendingRequestRegistryBenchmark {
+
+    private static final CalculationReply REPLY = CalculationReply.single(CalculationResult.ok(BigDecimal.ONE));
+
+    private final RequestIdGenerator requestIds = new RequestIdGenerator(0);
+    private PendingRequestRegistry registry;
+    private final ConcurrentHashMap<String, CompletableFuture<CalculationReply>> responseFutures = new ConcurrentHashMap<>();
+    private final AtomicLong threads = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        // The default deadline: completed requests are cancelled on the timer wheel, so its length costs nothing
+        registry = new PendingRequestRegistry(Integer.MAX_VALUE, Duration.ofSeconds(5), Duration.ofMillis(10),
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.destroy();
+    }
+
+    @Benchmark
+    public boolean registry() {
+        long requestId = requestIds.nextId();
+        registry.register(requestId);
+        return registry.complete(requestId, REPLY);
+    }
+
+    /**
+     * Ids of one thread: its own 2^40 range.
+     */
+    @State(Scope.Thread)
+    public static class ThreadIds {
+
+        private long next;
+
+        @Setup
+        public void setup(PendingRequestRegistryBenchmark benchmark) {
+            next = benchmark.threads.incrementAndGet() << 40;
+        }
+    }
+
+    @Benchmark
+    public boolean registryOnly(ThreadIds ids) {
+        long requestId = ids.next++;
+        registry.register(requestId);
+        return registry.complete(requestId, REPLY);
+    }
+
+    @Benchmark
+    public boolean mapBaseline() {
+        String requestId = UUID.randomUUID().toString();
+        responseFutures.put(requestId, new CompletableFuture<>());
+        CompletableFuture<CalculationReply> future = responseFutures.remove(requestId);
+        return future != null && future.complete(REPLY);
+    }
+
+    @Benchmark
+    public String idGenerator() {
+        return requestIds.next();
+    }
+
+    @Benchmark
+    public String uuid() {
+        return UUID.randomUUID().toString();
+    }
+}
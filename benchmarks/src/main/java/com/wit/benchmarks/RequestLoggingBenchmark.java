@@ -0,0 +1,126 @@
+package com.wit.benchmarks;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.wit.common.logging.RequestLog;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging cost per request, writing to a file with the services' log pattern.
+ * <ul>
+ *     <li>{@code sync}: the former per-request lines (received, sent, response) through a synchronous appender</li>
+ *     <li>{@code async}: the same lines through the asynchronous appender, dropping INFO events when the queue is nearly full</li>
+ *     <li>{@code summary}: one {@link RequestLog} summary line per request through the asynchronous appender</li>
+ *     <li>{@code summary-sampled}: the summary line for one request in 100</li>
+ * </ul>
+ * The size of the file written is printed at the end of each trial: asynchronous modes drop events under sustained
+ * overload, so compare it with the sync run to see how much was actually logged.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RequestLoggingBenchmark {
+
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} [%thread] %-5level %logger{36} [%X{requestId}] - %msg%n";
+
+    @Param({"sync", "async", "summary", "summary-sampled"})
+    public String mode;
+
+    private File file;
+    private ch.qos.logback.classic.Logger logger;
+    private Appender<ILoggingEvent> appender;
+    private RequestLog requestLog;
+
+    private final BigDecimal a = new BigDecimal("12345.678");
+    private final BigDecimal b = new BigDecimal("42");
+
+    @Setup
+    public void setup() throws IOException {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        file = Files.createTempFile("request-logging", ".log").toFile();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.getPath());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        if (mode.equals("sync")) {
+            appender = fileAppender;
+        } else {
+            AsyncAppender async = new AsyncAppender(); // Defaults of logback-spring.xml
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.addAppender(fileAppender);
+            async.start();
+            appender = async;
+        }
+
+        logger = context.getLogger("bench." + mode);
+        logger.setAdditive(false);
+        logger.setLevel(Level.INFO);
+        logger.addAppender(appender);
+        requestLog = new RequestLog(logger, mode.equals("summary-sampled") ? 100 : 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (appender instanceof AsyncAppender async) {
+            int queued = async.getNumberOfElementsInQueue();
+            async.stop();
+            System.out.println("\nqueued at end of trial: " + queued);
+        }
+        appender.stop();
+        System.out.println("\nlog file size: " + file.length() / 1024 + " KiB");
+        logger.detachAppender(appender);
+        file.delete();
+    }
+
+    @State(Scope.Thread)
+    public static class RequestIds {
+        private long sequence;
+
+        String next() {
+            return "request-" + Thread.currentThread().getId() + "-" + sequence++;
+        }
+    }
+
+    @Benchmark
+    public void request(RequestIds ids) {
+        String requestId = ids.next();
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) {
+            if (mode.startsWith("summary")) {
+                if (requestLog.isSampled(true)) {
+                    requestLog.log(true, "requestId={} operation={} a={} b={} status={} result={} micros={}",
+                            requestId, "sum", a, b, 200, "12387.678", 850);
+                }
+            } else {
+                logger.info("Received operation: requestId={}, operation='{}', a={}, b={}", requestId, "sum", a, b);
+                logger.info("Sent message: requestId={}, operation='{}', a={}, b={}", requestId, "sum", a, b);
+                logger.info("Received response: requestId={}, results={}", requestId, 1);
+            }
+        }
+    }
+}
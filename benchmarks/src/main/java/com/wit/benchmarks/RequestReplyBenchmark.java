@@ -0,0 +1,179 @@
+package com.wit.benchmarks;
+
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.calculator.services.CalculatorMetrics;
+import com.wit.calculator.services.CalculatorService;
+import com.wit.calculator.services.ExpressionCache;
+import com.wit.calculator.services.KeyOrderedExecutor;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.kafka.CalculationReplyDeserializer;
+import com.wit.common.protocol.kafka.CalculationReplySerializer;
+import com.wit.common.protocol.kafka.CalculationRequestDeserializer;
+import com.wit.common.protocol.kafka.CalculationRequestSerializer;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import com.wit.rest.kafka.ReplyTopic;
+import com.wit.rest.kafka.RequestCoalescer;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.PendingRequestRegistry;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.transport.CalculationTransport;
+import com.wit.rest.transport.InProcessTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.listener.MessageListener;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request/reply round trip of the REST {@link KafkaService} for each transport.
+ * With {@code kafka}, a request goes through an embedded broker: the {@link KafkaTransport} publishes it,
+ * the {@link CalculatorService} batch listener computes it and the reply listener completes the pending future;
+ * both sides are wired by hand with the module's serializers, without booting either application.
+ * With {@code in-process}, the {@link InProcessTransport} workers compute it inside the caller's process.
+ * With {@code coalesce=on}, concurrent single operations are gathered into multi-item requests by the
+ * {@link RequestCoalescer} (64 items, 1 ms window at most).
+ * Sampled latencies give the percentile distribution; run with {@code -t} to add concurrent callers. With
+ * {@code -t N} the throughput is N divided by the mean latency, so runs at increasing N trace the
+ * throughput-vs-latency curve.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RequestReplyBenchmark {
+
+    private static final String REPLY_TOPIC = "calculator-responses-bench";
+
+    @Param({"kafka", "in-process"})
+    public String transport;
+
+    @Param({"off", "on"})
+    public String coalesce;
+
+    private final RequestIdGenerator requestIds = new RequestIdGenerator(0);
+
+    private EmbeddedKafkaBroker broker;
+    private PendingRequestRegistry registry;
+    private KeyOrderedExecutor executor;
+    private InProcessTransport inProcessTransport;
+    private KafkaService kafkaService;
+    private RequestCoalescer coalescer;
+    private KafkaMessageListenerContainer<String, CalculationRequest> calculatorContainer;
+    private KafkaMessageListenerContainer<String, CalculationReply> replyContainer;
+
+    @Setup
+    public void setup() throws Exception {
+        if (transport.equals("in-process")) {
+            inProcessTransport = new InProcessTransport(0, 1024, 1000, new SimpleMeterRegistry());
+            kafkaService = new KafkaService(inProcessTransport, coalescer(inProcessTransport), limiter());
+            return;
+        }
+        broker = new EmbeddedKafkaKraftBroker(1, 1, "calculator-requests", "calculator-batch-requests", REPLY_TOPIC);
+        broker.afterPropertiesSet();
+
+        // Calculator side: batch listener on the request topics, replies through its own template
+        KafkaTemplate<String, CalculationReply> replyTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<>(producerProps(), new StringSerializer(), new CalculationReplySerializer()));
+        executor = new KeyOrderedExecutor(1);
+        CalculatorService calculatorService = new CalculatorService(replyTemplate, executor,
+                new CalculatorMetrics(new SimpleMeterRegistry()), new RequestLog(1),
+                new CalculationJournal(false, "journal", DataSize.ofMegabytes(64), 1, 1, Duration.ZERO,
+                        new SimpleMeterRegistry()),
+                new ExpressionCache(1000, new SimpleMeterRegistry()));
+        ContainerProperties calculatorProps = new ContainerProperties("calculator-requests", "calculator-batch-requests");
+        calculatorProps.setMessageListener((BatchMessageListener<String, CalculationRequest>) calculatorService::processCalculationRequests);
+        calculatorContainer = new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(
+                consumerProps("calculator-group"), new StringDeserializer(), new CalculationRequestDeserializer()), calculatorProps);
+
+        // REST side: request publisher and the reply listener of this instance
+        registry = new PendingRequestRegistry(Integer.MAX_VALUE, Duration.ofSeconds(5), Duration.ofMillis(10),
+                new SimpleMeterRegistry());
+        KafkaTemplate<String, CalculationRequest> requestTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<>(producerProps(), new StringSerializer(), new CalculationRequestSerializer()));
+        KafkaTransport kafkaTransport = new KafkaTransport(requestTemplate, registry,
+                new ReplyTopic("calculator-responses", "bench"), new RequestMetrics(new SimpleMeterRegistry()), false);
+        kafkaService = new KafkaService(kafkaTransport, coalescer(kafkaTransport), limiter());
+        ContainerProperties replyProps = new ContainerProperties(REPLY_TOPIC);
+        replyProps.setMessageListener((MessageListener<String, CalculationReply>) record ->
+                kafkaTransport.handleResponse(record.value(), record.key()));
+        replyContainer = new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(
+                consumerProps(REPLY_TOPIC), new StringDeserializer(), new CalculationReplyDeserializer()), replyProps);
+
+        calculatorContainer.start();
+        replyContainer.start();
+        ContainerTestUtils.waitForAssignment(calculatorContainer, 2);
+        ContainerTestUtils.waitForAssignment(replyContainer, 1);
+    }
+
+    private RequestCoalescer coalescer(CalculationTransport calculationTransport) {
+        coalescer = new RequestCoalescer(calculationTransport, requestIds, new RequestLog(1), coalesce.equals("on"), 64,
+                Duration.ofMillis(1), new SimpleMeterRegistry());
+        return coalescer;
+    }
+
+    // Disabled: measures the round trip, not the shedding of the excess
+    private static ConcurrencyLimiter limiter() {
+        return new ConcurrencyLimiter(false, 100, 10, 10000, Duration.ofMillis(200), 0.9, "none", Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        coalescer.destroy();
+        if (inProcessTransport != null) {
+            inProcessTransport.destroy();
+            return;
+        }
+        replyContainer.stop();
+        calculatorContainer.stop();
+        registry.destroy();
+        executor.destroy();
+        broker.destroy();
+    }
+
+    @Benchmark
+    public String roundTrip() throws Exception {
+        long n = requestIds.nextId();
+        return kafkaService.sendMessage(RequestIdGenerator.format(n), "sum", BigDecimal.valueOf(n), BigDecimal.ONE, null)
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private Map<String, Object> producerProps() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+        return props;
+    }
+
+    private Map<String, Object> consumerProps(String groupId) {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        return props;
+    }
+}
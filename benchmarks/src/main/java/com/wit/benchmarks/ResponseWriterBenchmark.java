@@ -0,0 +1,87 @@
+package com.wit.benchmarks;
+
+import com.wit.rest.response.OperationResponse;
+import com.wit.rest.response.OperationResponseConverter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.StringHttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the body of an operation response, through the message converter the endpoints use, to a
+ * stream that discards it.
+ * <ul>
+ *     <li>{@code headers}: baseline, only the Content-Type and Content-Length headers every converter sets</li>
+ *     <li>{@code legacy}: the former String body, concatenated and encoded by {@link StringHttpMessageConverter}</li>
+ *     <li>{@code json}: {@link OperationResponseConverter} writing JSON</li>
+ *     <li>{@code cbor}: {@link OperationResponseConverter} writing CBOR</li>
+ * </ul>
+ * Run with {@code -prof gc} to compare the bytes allocated per response ({@code gc.alloc.rate.norm}); subtract the
+ * {@code headers} baseline to get what writing the body itself allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseWriterBenchmark {
+
+    @Param({"headers", "legacy", "json", "cbor"})
+    public String mode;
+
+    @Param({"result", "error"})
+    public String outcome;
+
+    private final StringHttpMessageConverter stringConverter = new StringHttpMessageConverter();
+    private final OperationResponseConverter responseConverter = new OperationResponseConverter();
+    private final OutputStream discard = OutputStream.nullOutputStream();
+
+    private String value;
+    private String error;
+
+    @Setup
+    public void setup() {
+        value = "-12345.6789012345";
+        error = "Invalid expression: unexpected token ')' at position 17";
+    }
+
+    @Benchmark
+    public HttpHeaders write() throws IOException {
+        HttpOutputMessage message = new DiscardingMessage(new HttpHeaders(), discard);
+        boolean failed = outcome.equals("error");
+        switch (mode) {
+            case "headers" -> {
+                message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+                message.getHeaders().setContentLength(value.length());
+            }
+            case "legacy" -> stringConverter.write(failed
+                            ? "{\"error\": \"" + error + "\"}"
+                            : "{\"result\": " + value + "}",
+                    MediaType.APPLICATION_JSON, message);
+            case "json" -> responseConverter.write(failed ? OperationResponse.ofError(error) : OperationResponse.ofResult(value),
+                    MediaType.APPLICATION_JSON, message);
+            default -> responseConverter.write(failed ? OperationResponse.ofError(error) : OperationResponse.ofResult(value),
+                    MediaType.APPLICATION_CBOR, message);
+        }
+        return message.getHeaders();
+    }
+
+    private record DiscardingMessage(HttpHeaders headers, OutputStream body) implements HttpOutputMessage {
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+    }
+}
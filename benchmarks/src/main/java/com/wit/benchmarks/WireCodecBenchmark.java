@@ -0,0 +1,70 @@
+package com.wit.benchmarks;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.WireCodec;
+import com.wit.common.protocol.WireFormat;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the legacy CSV codec with the binary codec on the messages of a single API call:
+ * encoding and decoding of one request and one reply, as done by the Kafka serializers of both services.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireCodecBenchmark {
+
+    @Param({"CSV", "BINARY"})
+    public WireFormat format;
+
+    @Param({"small", "large"})
+    public String operands;
+
+    private WireCodec codec;
+    private CalculationRequest request;
+    private CalculationReply reply;
+    private byte[] encodedRequest;
+    private byte[] encodedReply;
+
+    @Setup
+    public void setup() {
+        codec = format.codec();
+        BigDecimal a = operands.equals("small") ? new BigDecimal("42") : new BigDecimal("1234567890.0987654321");
+        BigDecimal b = operands.equals("small") ? new BigDecimal("7") : new BigDecimal("-98765.4321");
+        request = CalculationRequest.single(UUID.randomUUID().toString(), Operation.MULTIPLICATION, a, b);
+        reply = CalculationReply.single(CalculationResult.ok(a.multiply(b)));
+        encodedRequest = codec.encodeRequest(request);
+        encodedReply = codec.encodeReply(reply);
+    }
+
+    @Benchmark
+    public byte[] encodeRequest() {
+        return codec.encodeRequest(request);
+    }
+
+    @Benchmark
+    public CalculationRequest decodeRequest() {
+        return codec.decodeRequest(ByteBuffer.wrap(encodedRequest));
+    }
+
+    @Benchmark
+    public byte[] encodeReply() {
+        return codec.encodeReply(reply);
+    }
+
+    @Benchmark
+    public CalculationReply decodeReply() {
+        return codec.decodeReply(ByteBuffer.wrap(encodedReply));
+    }
+}
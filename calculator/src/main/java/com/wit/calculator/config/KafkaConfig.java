@@ -0,0 +1,43 @@
+package com.wit.calculator.config;
+
+import com.wit.calculator.services.CalculatorService;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Kafka listener configuration for the calculator.
+ */
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Error handler picked up by the auto-configured listener container factory.
+     * Records that fail to decode or evaluate are already answered one by one inside the batch listener;
+     * this handler only sees failures of the poll as a whole (e.g. a failed flush). Those are not retried:
+     * retrying would only delay the replies, so each record of the poll is handed once to
+     * {@link CalculatorService#handleInvalidRecord}.
+     */
+    @Bean
+    public DefaultErrorHandler errorHandler(CalculatorService calculatorService) {
+        return new DefaultErrorHandler(calculatorService::handleInvalidRecord, new FixedBackOff(0L, 0L));
+    }
+
+    /**
+     * Request topics, created with (or grown to) the configured number of partitions on startup.
+     * The partition count bounds the useful listener concurrency.
+     */
+    @Bean
+    public NewTopic requestTopic(@Value("${calculator.requests.partitions}") int partitions) {
+        return TopicBuilder.name("calculator-requests").partitions(partitions).build();
+    }
+
+    @Bean
+    public NewTopic batchRequestTopic(@Value("${calculator.requests.partitions}") int partitions) {
+        return TopicBuilder.name("calculator-batch-requests").partitions(partitions).build();
+    }
+}
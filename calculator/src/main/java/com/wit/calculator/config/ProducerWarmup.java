@@ -0,0 +1,66 @@
+package com.wit.calculator.config;
+
+import com.wit.common.protocol.CalculationReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the reply producer and loads the cluster metadata while the listener containers join the consumer group,
+ * instead of when the first reply is sent, so a freshly started instance answers its first records sooner.
+ * Started just before the listener containers, in the background: a broker that is not reachable yet does not
+ * hold up startup, and not at all when the context is only refreshed (AOT processing, CDS training run).
+ */
+@Component
+public class ProducerWarmup implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(ProducerWarmup.class);
+
+    // Topic whose metadata is requested; created on startup (see KafkaConfig), so it is never auto-created here
+    private static final String WARMUP_TOPIC = "calculator-requests";
+
+    private final KafkaTemplate<String, CalculationReply> kafkaTemplate;
+
+    private volatile boolean running;
+
+    public ProducerWarmup(KafkaTemplate<String, CalculationReply> kafkaTemplate) {
+        this.kafkaTemplate = kafkaTemplate;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        Thread thread = new Thread(this::warmUp, "producer-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        try {
+            // The template's shared producer stays open, so the first reply reuses it and its connections
+            int partitions = kafkaTemplate.partitionsFor(WARMUP_TOPIC).size();
+            log.info("Reply producer ready: partitions={}, millis={}", partitions, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            log.warn("Reply producer warm-up failed, the first reply will create it: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 1;
+    }
+}
@@ -0,0 +1,432 @@
+package com.wit.calculator.journal;
+
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.listener.AbstractMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Append-only record of every processed request: requestId, operations, operands, results, queue and processing time
+ * (enabled with {@code calculator.journal.enabled}). The journal is a directory of fixed-size segment files
+ * ({@code calculator.journal.segment-size}), mapped in memory and written in a compact binary form (see
+ * {@link JournalCodec}); the oldest are deleted beyond {@code calculator.journal.max-segments}.
+ * <p>
+ * Listener threads only copy what gets journaled into a preallocated slot of a ring
+ * ({@code calculator.journal.queue-size}), with one compare-and-set and no allocation. A single writer thread drains
+ * the ring, appends every waiting entry and commits them as one group: one force of the written range to disk, after
+ * which they are visible to queries. While a group is forced the next one builds up, so the commit rate adapts to the
+ * load; an idle writer looks for entries every {@code calculator.journal.commit-interval}. Listeners only wait when
+ * the ring is full, and an entry is only lost if the writer has stopped or failed ({@code calculator.journal.dropped}).
+ * <p>
+ * Each segment carries a sparse index of its entries, by time and by requestId (see {@link JournalSegment}), so
+ * lookups read a small part of the journal. The index lives in the mapped files, like the entries: heap use does not
+ * grow with the journal. Segments of previous runs are opened read-only on startup and a new one is started.
+ */
+@Component
+public class CalculationJournal implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(CalculationJournal.class);
+
+    // Time a listener waits for room when the ring is full, before looking again
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final long commitIntervalNanos;
+
+    // Ring of slots: the sequence of a slot tells whether it is free for the producer of a position or holds the
+    // entry for the writer, as in a bounded multi-producer queue; only the writer reads, so its cursor is plain
+    private final PendingEntry[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    // Oldest first; the last one is written to
+    private final List<JournalSegment> segments = new CopyOnWriteArrayList<>();
+    private JournalSegment current;
+
+    private final Counter entries;
+    private final Counter dropped;
+    private final Timer commits;
+
+    private volatile Thread writer;
+    private volatile boolean running;
+
+    public CalculationJournal(@Value("${calculator.journal.enabled:false}") boolean enabled,
+                              @Value("${calculator.journal.directory:journal}") String directory,
+                              @Value("${calculator.journal.segment-size:64MB}") DataSize segmentSize,
+                              @Value("${calculator.journal.max-segments:32}") int maxSegments,
+                              @Value("${calculator.journal.queue-size:16384}") int queueSize,
+                              @Value("${calculator.journal.commit-interval:5ms}") Duration commitInterval,
+                              MeterRegistry meterRegistry) {
+        if (segmentSize.toBytes() < DataSize.ofMegabytes(1).toBytes() || segmentSize.toBytes() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("calculator.journal.segment-size must be between 1MB and 2GB");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("calculator.journal.max-segments must be at least 1");
+        }
+        if (queueSize < 1 || queueSize > 1 << 30) {
+            throw new IllegalArgumentException("calculator.journal.queue-size must be between 1 and 2^30");
+        }
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.segmentSize = (int) segmentSize.toBytes();
+        this.maxSegments = maxSegments;
+        this.commitIntervalNanos = Math.max(1, commitInterval.toNanos());
+
+        int size = enabled ? Integer.highestOneBit(Math.max(1, queueSize - 1)) << 1 : 1;
+        this.slots = new PendingEntry[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new PendingEntry();
+            sequences.set(i, i); // Slot i is free for position i
+        }
+        this.mask = size - 1;
+
+        this.entries = Counter.builder("calculator.journal.entries")
+                .description("Processed requests appended to the calculation journal")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("calculator.journal.dropped")
+                .description("Processed requests missing from the calculation journal: stopped writer or entry too large")
+                .register(meterRegistry);
+        this.commits = Timer.builder("calculator.journal.commit")
+                .description("Time to force one group of journal entries to disk")
+                .register(meterRegistry);
+        Gauge.builder("calculator.journal.backlog", this, journal -> journal.tail.get() - journal.head)
+                .description("Processed requests waiting to be appended to the calculation journal")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues a processed request for the journal. Called by the listener threads once the reply is sent.
+     *
+     * @param request         the request
+     * @param reply           the reply sent for it
+     * @param sentAtMillis    the record timestamp set by the producer, or a negative value when unknown
+     * @param processingNanos time taken to evaluate the request
+     */
+    public void record(CalculationRequest request, CalculationReply reply, long sentAtMillis, long processingNanos) {
+        if (!enabled) {
+            return;
+        }
+        long position = running ? claim() : -1;
+        if (position < 0) {
+            dropped.increment();
+            return;
+        }
+        PendingEntry entry = slots[(int) position & mask];
+        try {
+            fill(entry, request, reply, sentAtMillis, processingNanos);
+        } catch (RuntimeException e) {
+            entry.kind = null; // Skipped by the writer: the claimed position must still be published
+            log.warn("Request not journaled: requestId={}, reason={}", request.requestId(), e.toString());
+        } finally {
+            sequences.set((int) position & mask, position + 1); // Publishes the entry to the writer
+        }
+    }
+
+    private static void fill(PendingEntry entry, CalculationRequest request, CalculationReply reply,
+                             long sentAtMillis, long processingNanos) {
+        entry.requestId = request.requestId() == null ? "" : request.requestId();
+        entry.time = System.currentTimeMillis();
+        entry.sentAtMillis = sentAtMillis;
+        entry.processingNanos = processingNanos;
+        if (request.expression() != null) {
+            entry.kind = JournalEntry.Kind.EXPRESSION;
+            entry.expression = request.expression().text();
+            entry.count = request.expression().variables().size();
+            entry.result = reply.results().get(0);
+        } else if (request.aggregation() != null) {
+            entry.kind = JournalEntry.Kind.AGGREGATE;
+            entry.opcode = request.aggregation().operation().opcode();
+            entry.count = request.aggregation().values().size();
+            entry.result = reply.results().get(0);
+        } else if (request.mathContext() != null) {
+            // Digit counts only: operands and result may be a megabyte each
+            Calculation calculation = request.calculations().get(0);
+            CalculationResult result = reply.results().get(0);
+            entry.kind = JournalEntry.Kind.PRECISE;
+            entry.opcode = calculation.operation().opcode();
+            entry.digitsA = calculation.a().precision();
+            entry.digitsB = calculation.b().precision();
+            entry.precision = request.mathContext().getPrecision();
+            entry.rounding = (byte) request.mathContext().getRoundingMode().ordinal();
+            entry.status = result.status().code();
+            entry.resultDigits = result.isOk() ? result.value().precision() : 0;
+        } else {
+            // One result per calculation, none for an empty request; checked here so the writer never fails on it
+            if (request.calculations().size() != reply.results().size()) {
+                throw new IllegalArgumentException(request.calculations().size() + " calculations but "
+                        + reply.results().size() + " results");
+            }
+            entry.kind = JournalEntry.Kind.CALCULATION;
+            entry.calculations = request.calculations();
+            entry.results = reply.results();
+        }
+    }
+
+    /**
+     * Takes the next free position of the ring, waiting for the writer while the ring is full.
+     *
+     * @return the position, or -1 if the writer is not running
+     */
+    private long claim() {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long available = sequences.get(slot) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                if (!running) {
+                    return -1;
+                }
+                LockSupport.parkNanos(FULL_WAIT_NANOS); // The slot still holds the entry of the previous lap
+                position = tail.get();
+            } else {
+                position = tail.get(); // Another listener took this position
+            }
+        }
+    }
+
+    /**
+     * Writer loop: appends and commits groups of entries until stopped, then what is left.
+     */
+    private void write() {
+        try {
+            while (running || head != tail.get()) {
+                if (append() == 0) {
+                    LockSupport.parkNanos(commitIntervalNanos);
+                    continue;
+                }
+                long start = System.nanoTime();
+                current.commit();
+                commits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            current.seal();
+        } catch (IOException | RuntimeException e) {
+            log.error("Calculation journal stopped, processed requests are no longer journaled", e);
+            running = false;
+            while (head != tail.get()) { // Frees the listeners waiting for room
+                if (!discard()) {
+                    LockSupport.parkNanos(FULL_WAIT_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the entries published so far, up to one lap of the ring.
+     *
+     * @return the number of entries taken from the ring
+     */
+    private int append() throws IOException {
+        int taken = 0;
+        while (taken < slots.length && take()) {
+            taken++;
+        }
+        return taken;
+    }
+
+    /**
+     * Appends the entry at the head of the ring to the current segment, rolling over to a new one when it is full,
+     * and frees its slot.
+     *
+     * @return false if the entry at the head is not published yet
+     */
+    private boolean take() throws IOException {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return false;
+        }
+        PendingEntry entry = slots[slot];
+        try {
+            if (entry.kind == null) {
+                dropped.increment(); // Could not be filled by its listener
+            } else if (current.append(entry) || roll().append(entry)) {
+                entries.increment();
+            } else {
+                dropped.increment();
+                log.warn("Request too large for a journal segment, not journaled: requestId={}", entry.requestId);
+            }
+        } catch (IOException | RuntimeException e) {
+            dropped.increment();
+            throw e;
+        } finally {
+            free(slot, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the entry at the head of the ring, once the writer has failed.
+     *
+     * @return false if the entry at the head is not published yet
+     */
+    private boolean discard() {
+        int slot = (int) head & mask;
+        if (sequences.get(slot) != head + 1) {
+            return false;
+        }
+        dropped.increment();
+        free(slot, slots[slot]);
+        return true;
+    }
+
+    private void free(int slot, PendingEntry entry) {
+        entry.clear();
+        sequences.set(slot, head + mask + 1); // Frees the slot for the producer of the next lap
+        head++;
+    }
+
+    /**
+     * Seals the current segment and starts the next one, deleting the oldest beyond max-segments.
+     */
+    private JournalSegment roll() throws IOException {
+        current.seal();
+        current = JournalSegment.create(directory, current.number() + 1, segmentSize);
+        segments.add(current);
+        while (segments.size() > maxSegments) {
+            JournalSegment oldest = segments.remove(0);
+            oldest.delete();
+            log.info("Deleted journal segment {}", oldest.path());
+        }
+        return current;
+    }
+
+    /**
+     * Entries whose time is within the range, oldest first.
+     *
+     * @param limit maximum number of entries returned
+     */
+    public List<JournalEntry> scan(Instant from, Instant to, int limit) {
+        List<JournalEntry> found = new ArrayList<>();
+        for (JournalSegment segment : segments) {
+            if (found.size() >= limit) {
+                break;
+            }
+            segment.scan(from.toEpochMilli(), to.toEpochMilli(), limit, found);
+        }
+        return found;
+    }
+
+    /**
+     * Entries of the request, oldest first. A batch or aggregate split into chunks has one entry per chunk,
+     * each with the requestId of its chunk.
+     *
+     * @param limit maximum number of entries returned
+     */
+    public List<JournalEntry> find(String requestId, int limit) {
+        List<JournalEntry> found = new ArrayList<>();
+        for (JournalSegment segment : segments) {
+            if (found.size() >= limit) {
+                break;
+            }
+            segment.find(requestId, limit, found);
+        }
+        return found;
+    }
+
+    /**
+     * Opens the segments of previous runs and starts a new one, before the listener containers start.
+     * A directory that cannot be written leaves the journal stopped: requests are still processed, and counted
+     * as dropped.
+     */
+    @Override
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            long last = 0;
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path path : files.filter(p -> p.getFileName().toString().endsWith(JournalSegment.SUFFIX))
+                        .sorted().toList()) {
+                    try {
+                        JournalSegment segment = JournalSegment.open(path);
+                        segments.add(segment);
+                        last = segment.number();
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Skipping unreadable journal segment {}: {}", path, e.getMessage());
+                    }
+                }
+            }
+            current = JournalSegment.create(directory, last + 1, segmentSize);
+            segments.add(current);
+        } catch (IOException e) {
+            log.error("Cannot open the calculation journal in {}, processed requests are not journaled", directory, e);
+            return;
+        }
+        log.info("Calculation journal opened: directory={}, segments={}, segmentSize={}", directory.toAbsolutePath(),
+                segments.size(), DataSize.ofBytes(segmentSize));
+        running = true;
+        Thread thread = new Thread(this::write, "calculation-journal");
+        thread.setDaemon(true);
+        writer = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops after the listener containers: the entries still in the ring are appended and committed first.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = writer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null;
+    }
+
+    @Override
+    public int getPhase() {
+        return AbstractMessageListenerContainer.DEFAULT_PHASE - 2;
+    }
+}
@@ -0,0 +1,277 @@
+package com.wit.calculator.journal;
+
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary layout of a journal entry, the same building blocks as the binary wire format:
+ * <pre>
+ * entry:       int32(length) int32(crc32c) int64(time) varint(queueMillis + 1) varlong(processingNanos) kind
+ *              varint(idLength) id body
+ * calculation: varint(count) { opcode decimal(a) decimal(b) status [decimal(result)] }*
+ * expression:  varint(length) utf8-expression varint(variables) status [decimal(result)]
+ * aggregate:   opcode varint(values) status [decimal(result)]
+ * precise:     opcode varint(digitsA) varint(digitsB) varint(precision) rounding-mode status [varint(resultDigits)]
+ * decimal:     zigzag-varint(scale) varint(length) unscaled-two's-complement-bytes
+ * </pre>
+ * The length covers the whole entry and the checksum every byte after it; a queue time of 0 means unknown.
+ * Results are only present when the status is OK.
+ */
+final class JournalCodec {
+
+    // Offsets within an entry
+    static final int LENGTH = 0;
+    static final int CRC = 4;
+    static final int TIME = 8;
+    static final int BODY = 16;
+
+    // Smallest possible entry: fixed fields, one byte each for queue time, processing time, kind, id length and count
+    static final int MIN_ENTRY_SIZE = BODY + 5;
+
+    private static final JournalEntry.Kind[] KINDS = JournalEntry.Kind.values();
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    private JournalCodec() {
+    }
+
+    /**
+     * Writes the entry at the buffer position, leaving the checksum to the caller.
+     *
+     * @return the length of the entry
+     * @throws java.nio.BufferOverflowException if the entry does not fit in the remaining bytes
+     */
+    static int encode(ByteBuffer buffer, PendingEntry entry) {
+        int start = buffer.position();
+        buffer.putInt(0).putInt(0).putLong(entry.time);
+        long queueMillis = entry.sentAtMillis < 0 ? -1 : entry.time - entry.sentAtMillis;
+        putVarint(buffer, queueMillis < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE - 1, queueMillis) + 1);
+        putVarlong(buffer, Math.max(0, entry.processingNanos));
+        buffer.put((byte) entry.kind.ordinal());
+        putString(buffer, entry.requestId);
+        switch (entry.kind) {
+            case CALCULATION -> {
+                List<Calculation> calculations = entry.calculations;
+                putVarint(buffer, calculations.size());
+                for (int i = 0; i < calculations.size(); i++) {
+                    Calculation calculation = calculations.get(i);
+                    buffer.put(calculation.operation().opcode());
+                    putDecimal(buffer, calculation.a());
+                    putDecimal(buffer, calculation.b());
+                    putResult(buffer, entry.results.get(i));
+                }
+            }
+            case EXPRESSION -> {
+                putString(buffer, entry.expression);
+                putVarint(buffer, entry.count);
+                putResult(buffer, entry.result);
+            }
+            case AGGREGATE -> {
+                buffer.put(entry.opcode);
+                putVarint(buffer, entry.count);
+                putResult(buffer, entry.result);
+            }
+            case PRECISE -> {
+                buffer.put(entry.opcode);
+                putVarint(buffer, entry.digitsA);
+                putVarint(buffer, entry.digitsB);
+                putVarint(buffer, entry.precision);
+                buffer.put(entry.rounding);
+                buffer.put(entry.status);
+                if (entry.status == ReplyStatus.OK.code()) {
+                    putVarint(buffer, entry.resultDigits);
+                }
+            }
+        }
+        int length = buffer.position() - start;
+        buffer.putInt(start + LENGTH, length);
+        return length;
+    }
+
+    /**
+     * Reads the entry at the buffer position, leaving the position after it.
+     */
+    static JournalEntry decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        int length = buffer.getInt();
+        buffer.position(start + TIME);
+        Instant time = Instant.ofEpochMilli(buffer.getLong());
+        int queue = readVarint(buffer);
+        long processingNanos = readVarlong(buffer);
+        JournalEntry.Kind kind = KINDS[buffer.get()];
+        String requestId = readString(buffer);
+        Long queueMillis = queue == 0 ? null : (long) queue - 1;
+        JournalEntry entry = switch (kind) {
+            case CALCULATION -> {
+                int count = readVarint(buffer);
+                List<JournalEntry.Item> items = new ArrayList<>(Math.min(count, buffer.remaining()));
+                for (int i = 0; i < count; i++) {
+                    String operation = Operation.fromOpcode(buffer.get()).operationName();
+                    BigDecimal a = readDecimal(buffer);
+                    BigDecimal b = readDecimal(buffer);
+                    ReplyStatus status = ReplyStatus.fromCode(buffer.get());
+                    items.add(new JournalEntry.Item(operation, a, b, status,
+                            status == ReplyStatus.OK ? readDecimal(buffer) : null));
+                }
+                yield new JournalEntry(time, requestId, kind, queueMillis, processingNanos, items,
+                        null, null, null, null, null, null, null, null, null);
+            }
+            case EXPRESSION -> {
+                String expression = readString(buffer);
+                int variables = readVarint(buffer);
+                ReplyStatus status = ReplyStatus.fromCode(buffer.get());
+                yield new JournalEntry(time, requestId, kind, queueMillis, processingNanos, null, null,
+                        expression, variables, null, null, null, status,
+                        status == ReplyStatus.OK ? readDecimal(buffer) : null, null);
+            }
+            case AGGREGATE -> {
+                String operation = AggregateOperation.fromOpcode(buffer.get()).operationName();
+                int values = readVarint(buffer);
+                ReplyStatus status = ReplyStatus.fromCode(buffer.get());
+                yield new JournalEntry(time, requestId, kind, queueMillis, processingNanos, null, operation,
+                        null, values, null, null, null, status,
+                        status == ReplyStatus.OK ? readDecimal(buffer) : null, null);
+            }
+            case PRECISE -> {
+                String operation = Operation.fromOpcode(buffer.get()).operationName();
+                int[] digits = {readVarint(buffer), readVarint(buffer)};
+                int precision = readVarint(buffer);
+                RoundingMode rounding = ROUNDING_MODES[buffer.get()];
+                ReplyStatus status = ReplyStatus.fromCode(buffer.get());
+                yield new JournalEntry(time, requestId, kind, queueMillis, processingNanos, null, operation,
+                        null, null, digits, precision, rounding, status, null,
+                        status == ReplyStatus.OK ? readVarint(buffer) : null);
+            }
+        };
+        buffer.position(start + length);
+        return entry;
+    }
+
+    /**
+     * Reads only the requestId of the entry at the given offset.
+     */
+    static String requestId(ByteBuffer buffer, int offset) {
+        buffer.position(offset + BODY);
+        readVarint(buffer);
+        readVarlong(buffer);
+        buffer.get();
+        return readString(buffer);
+    }
+
+    private static void putResult(ByteBuffer buffer, CalculationResult result) {
+        buffer.put(result.status().code());
+        if (result.isOk()) {
+            putDecimal(buffer, result.value());
+        }
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) >= 0x80) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                putVarint(buffer, bytes.length);
+                buffer.put(bytes);
+                return;
+            }
+        }
+        // ASCII, the usual case: written char by char without encoding to an intermediate array
+        putVarint(buffer, length);
+        for (int i = 0; i < length; i++) {
+            buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void putDecimal(ByteBuffer buffer, BigDecimal value) {
+        int scale = value.scale();
+        putVarint(buffer, (scale << 1) ^ (scale >> 31));
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() >= 64) {
+            byte[] bytes = unscaled.toByteArray();
+            putVarint(buffer, bytes.length);
+            buffer.put(bytes);
+            return;
+        }
+        // Minimal big-endian two's complement of a long, without the intermediate byte array
+        long bits = unscaled.longValue();
+        int length = (64 - Long.numberOfLeadingZeros(bits < 0 ? ~bits : bits)) / 8 + 1;
+        putVarint(buffer, length);
+        for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+            buffer.put((byte) (bits >> shift));
+        }
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static void putVarlong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        return (int) readVarlong(buffer);
+    }
+
+    private static long readVarlong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in journal entry");
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int zigzag = readVarint(buffer);
+        int scale = (zigzag >>> 1) ^ -(zigzag & 1);
+        int length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length <= 8) {
+            // Sign-extend the big-endian two's complement bytes into a long
+            long unscaled = length == 0 ? 0 : buffer.get();
+            for (int i = 1; i < length; i++) {
+                unscaled = (unscaled << 8) | (buffer.get() & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+}
@@ -0,0 +1,69 @@
+package com.wit.calculator.journal;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Read access to the calculation journal, served on server.port when the calculator runs with its web server
+ * (health profile).
+ */
+@RestController
+@RequestMapping("/journal")
+public class JournalController {
+
+    private static final int MAX_LIMIT = 10_000;
+
+    private final CalculationJournal journal;
+
+    public JournalController(CalculationJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the journaled entries of a request.
+     *
+     * @param requestId the requestId, as sent to the calculator (one per chunk for split batches and aggregates)
+     * @return the entries, oldest first
+     */
+    @GetMapping("/{requestId}")
+    public List<JournalEntry> find(@PathVariable String requestId,
+                                   @RequestParam(defaultValue = "100") int limit) {
+        List<JournalEntry> entries = journal.find(requestId, limit(limit));
+        if (entries.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No journal entry for requestId " + requestId);
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the entries journaled within a time range, both ends included.
+     *
+     * @param from  start of the range, as an ISO-8601 instant
+     * @param to    end of the range, now by default
+     * @param limit maximum number of entries returned
+     * @return the entries, oldest first
+     */
+    @GetMapping
+    public List<JournalEntry> scan(@RequestParam Instant from, @RequestParam(required = false) Instant to,
+                                   @RequestParam(defaultValue = "100") int limit) {
+        return journal.scan(from, to == null ? Instant.now() : to, limit(limit));
+    }
+
+    private int limit(int limit) {
+        if (!journal.isEnabled()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "The calculation journal is disabled");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+}
@@ -0,0 +1,48 @@
+package com.wit.calculator.journal;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.wit.common.protocol.ReplyStatus;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One processed request as read back from the {@link CalculationJournal}. Only the fields of its kind are set.
+ *
+ * @param time            when the calculator answered the request
+ * @param requestId       the identifier of the request
+ * @param kind            what the request asked for
+ * @param queueMillis     time the request spent in Kafka before being consumed, or null when unknown
+ * @param processingNanos time to evaluate the request
+ * @param items           the calculations and their results, in request order (calculation)
+ * @param operation       the operation name (aggregate, precise)
+ * @param expression      the expression text (expression)
+ * @param count           the number of variables (expression) or values (aggregate)
+ * @param digits          the digit counts of the two operands (precise)
+ * @param precision       the requested precision, 0 for exact (precise)
+ * @param rounding        the requested rounding (precise)
+ * @param status          the outcome (expression, aggregate, precise)
+ * @param result          the result, when status is OK (expression, aggregate)
+ * @param resultDigits    the digit count of the result, when status is OK (precise)
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record JournalEntry(Instant time, String requestId, Kind kind, Long queueMillis, long processingNanos,
+                           List<Item> items, String operation, String expression, Integer count, int[] digits,
+                           Integer precision, RoundingMode rounding, ReplyStatus status, BigDecimal result,
+                           Integer resultDigits) {
+
+    public enum Kind {
+        CALCULATION, EXPRESSION, AGGREGATE, PRECISE
+    }
+
+    /**
+     * One calculation of a single or batch request.
+     *
+     * @param result the result, or null when status is not OK
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(String operation, BigDecimal a, BigDecimal b, ReplyStatus status, BigDecimal result) {
+    }
+}
@@ -0,0 +1,361 @@
+package com.wit.calculator.journal;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * One fixed-size file of the journal, mapped in memory. It starts with a header and a sparse index, followed by the
+ * entries appended one after the other:
+ * <pre>
+ * header: int32(magic) int32(version) int64(createdMillis) int32(indexCapacity) int32(blocks) int64(reserved)
+ * index:  indexCapacity * { int32(start) int32(end) int64(minTime) int64(maxTime) bloom[BLOOM_WORDS] }
+ * </pre>
+ * The index has one block per {@value #BLOCK_ENTRIES} consecutive entries, written once the block is full, with the
+ * range of their times and a Bloom filter of their requestIds. Time ranges and requestIds are looked up by reading
+ * only the blocks that may hold them; the few entries after the last block are read one by one. The index is
+ * sized for a segment full of the smallest entries, so it never runs out before the data does.
+ * <p>
+ * A single writer thread appends; entries and blocks become visible to readers, from any thread, once committed.
+ * The mapping is never unmapped explicitly: it is released when the segment is no longer referenced.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x43414C4A; // "CALJ"
+    static final int VERSION = 1;
+    static final String SUFFIX = ".journal";
+
+    static final int BLOCK_ENTRIES = 128;
+    // 1024 bits, 8 per entry: with 3 hash functions about 3% of the blocks match a requestId they do not hold
+    static final int BLOOM_WORDS = 16;
+    private static final int BLOOM_MASK = BLOOM_WORDS * 64 - 1;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int HEADER_CREATED = 8;
+    private static final int HEADER_INDEX_CAPACITY = 16;
+    private static final int HEADER_BLOCKS = 20;
+    private static final int BLOCK_SIZE = 4 + 4 + 8 + 8 + BLOOM_WORDS * 8;
+
+    private final long number;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int indexCapacity;
+    private final int dataStart;
+
+    // Writer state: next entry offset, complete blocks and the block being filled
+    private ByteBuffer writer;
+    private CRC32C crc;
+    private int position;
+    private int blocks;
+    private int blockStart;
+    private int blockEntries;
+    private long blockMinTime;
+    private long blockMaxTime;
+    private long[] bloom;
+
+    // Committed entries and blocks, published to readers: blocks is written last and read first
+    private volatile int committedEnd;
+    private volatile int committedBlocks;
+
+    private JournalSegment(long number, Path path, MappedByteBuffer buffer) {
+        this.number = number;
+        this.path = path;
+        this.buffer = buffer;
+        this.indexCapacity = buffer.getInt(HEADER_INDEX_CAPACITY);
+        this.dataStart = dataStart(indexCapacity);
+    }
+
+    /**
+     * Creates and maps a new segment file for appending.
+     */
+    static JournalSegment create(Path directory, long number, int size) throws IOException {
+        Path path = directory.resolve(fileName(number));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        int indexCapacity = (size - HEADER_SIZE) / (BLOCK_SIZE + BLOCK_ENTRIES * JournalCodec.MIN_ENTRY_SIZE) + 1;
+        if (dataStart(indexCapacity) >= size) {
+            throw new IllegalArgumentException("Journal segment size too small: " + size);
+        }
+        buffer.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putLong(HEADER_CREATED, System.currentTimeMillis())
+                .putInt(HEADER_INDEX_CAPACITY, indexCapacity)
+                .putInt(HEADER_BLOCKS, 0);
+        JournalSegment segment = new JournalSegment(number, path, buffer);
+        segment.writer = buffer.duplicate();
+        segment.crc = new CRC32C();
+        segment.bloom = new long[BLOOM_WORDS];
+        segment.position = segment.dataStart;
+        segment.committedEnd = segment.dataStart;
+        buffer.force();
+        return segment;
+    }
+
+    /**
+     * Maps an existing segment read-only, keeping the entries up to the first one that is incomplete or corrupt
+     * (the tail of a segment that was being written when the process died).
+     */
+    static JournalSegment open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || dataStart(buffer.getInt(HEADER_INDEX_CAPACITY)) >= buffer.capacity()) {
+            throw new IOException("Not a journal segment: " + path);
+        }
+        JournalSegment segment = new JournalSegment(number(path), path, buffer);
+        CRC32C crc = new CRC32C();
+        ByteBuffer view = buffer.duplicate();
+        int blocks = Math.min(buffer.getInt(HEADER_BLOCKS), segment.indexCapacity);
+        // Entries of the last block are checked again: it may have been written before its entries reached the disk
+        while (true) {
+            int start = blocks == 0 ? segment.dataStart : segment.blockStart(blocks - 1);
+            int end = segment.validEnd(view, crc, start);
+            if (blocks == 0 || end >= segment.blockEnd(blocks - 1)) {
+                segment.committedEnd = end;
+                segment.committedBlocks = blocks;
+                return segment;
+            }
+            blocks--;
+        }
+    }
+
+    static String fileName(long number) {
+        return String.format("%020d%s", number, SUFFIX);
+    }
+
+    static long number(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static int dataStart(int indexCapacity) {
+        long end = HEADER_SIZE + (long) indexCapacity * BLOCK_SIZE;
+        return (int) Math.min(Integer.MAX_VALUE, (end + 7) & ~7L);
+    }
+
+    long number() {
+        return number;
+    }
+
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Bytes of entries committed so far.
+     */
+    long size() {
+        return committedEnd - dataStart;
+    }
+
+    /**
+     * Appends an entry and indexes it, without committing it (writer thread only).
+     *
+     * @return false if the segment is full, leaving it unchanged
+     */
+    boolean append(PendingEntry entry) {
+        if (blockEntries == 0 && blocks == indexCapacity) {
+            return false;
+        }
+        int length;
+        writer.clear().position(position);
+        try {
+            length = JournalCodec.encode(writer, entry);
+        } catch (BufferOverflowException e) {
+            return false; // The partial entry starts with a zero length, and is past the committed end anyway
+        }
+        writer.putInt(position + JournalCodec.CRC, checksum(writer, crc, position, length));
+
+        if (blockEntries == 0) {
+            blockStart = position;
+            blockMinTime = entry.time;
+            blockMaxTime = entry.time;
+        } else {
+            blockMinTime = Math.min(blockMinTime, entry.time);
+            blockMaxTime = Math.max(blockMaxTime, entry.time);
+        }
+        long hash = hash(entry.requestId);
+        for (int i = 0; i < 3; i++) {
+            int bit = (int) (hash >>> (i * 20)) & BLOOM_MASK;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+        position += length;
+        if (++blockEntries == BLOCK_ENTRIES) {
+            writeBlock();
+        }
+        return true;
+    }
+
+    /**
+     * Forces the entries and blocks appended since the last commit to disk, then publishes them to readers
+     * (writer thread only).
+     *
+     * @return false if there was nothing to commit
+     */
+    boolean commit() {
+        int end = committedEnd;
+        int committed = committedBlocks;
+        if (position == end && blocks == committed) {
+            return false;
+        }
+        buffer.force(end, position - end);
+        if (blocks != committed) {
+            int from = HEADER_SIZE + committed * BLOCK_SIZE;
+            buffer.force(from, HEADER_SIZE + blocks * BLOCK_SIZE - from);
+            buffer.force(0, HEADER_SIZE);
+        }
+        committedEnd = position;
+        committedBlocks = blocks;
+        return true;
+    }
+
+    /**
+     * Indexes the entries of the block being filled and commits: nothing is appended to a sealed segment.
+     */
+    void seal() {
+        if (blockEntries > 0) {
+            writeBlock();
+        }
+        commit();
+    }
+
+    private void writeBlock() {
+        int offset = HEADER_SIZE + blocks * BLOCK_SIZE;
+        buffer.putInt(offset, blockStart)
+                .putInt(offset + 4, position)
+                .putLong(offset + 8, blockMinTime)
+                .putLong(offset + 16, blockMaxTime);
+        for (int i = 0; i < BLOOM_WORDS; i++) {
+            buffer.putLong(offset + 24 + i * 8, bloom[i]);
+        }
+        buffer.putInt(HEADER_BLOCKS, ++blocks);
+        Arrays.fill(bloom, 0);
+        blockEntries = 0;
+    }
+
+    /**
+     * Adds the committed entries whose time is within [from, to] to the list, in order, until it holds limit entries.
+     */
+    void scan(long from, long to, int limit, List<JournalEntry> out) {
+        ByteBuffer view = buffer.duplicate();
+        int blocks = committedBlocks;
+        int end = committedEnd;
+        for (int block = 0; block < blocks && out.size() < limit; block++) {
+            int offset = HEADER_SIZE + block * BLOCK_SIZE;
+            if (buffer.getLong(offset + 8) <= to && buffer.getLong(offset + 16) >= from) {
+                scanEntries(view, blockStart(block), blockEnd(block), from, to, limit, out);
+            }
+        }
+        scanEntries(view, blocks == 0 ? dataStart : blockEnd(blocks - 1), end, from, to, limit, out);
+    }
+
+    /**
+     * Adds the committed entries of the requestId to the list, in order, until it holds limit entries.
+     */
+    void find(String requestId, int limit, List<JournalEntry> out) {
+        ByteBuffer view = buffer.duplicate();
+        int blocks = committedBlocks;
+        int end = committedEnd;
+        long hash = hash(requestId);
+        for (int block = 0; block < blocks && out.size() < limit; block++) {
+            if (mayContain(HEADER_SIZE + block * BLOCK_SIZE, hash)) {
+                findEntries(view, blockStart(block), blockEnd(block), requestId, limit, out);
+            }
+        }
+        findEntries(view, blocks == 0 ? dataStart : blockEnd(blocks - 1), end, requestId, limit, out);
+    }
+
+    private boolean mayContain(int offset, long hash) {
+        for (int i = 0; i < 3; i++) {
+            int bit = (int) (hash >>> (i * 20)) & BLOOM_MASK;
+            if ((buffer.getLong(offset + 24 + (bit >>> 6) * 8) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void scanEntries(ByteBuffer view, int start, int end, long from, long to, int limit,
+                                    List<JournalEntry> out) {
+        for (int offset = start; offset < end && out.size() < limit; offset += view.getInt(offset)) {
+            long time = view.getLong(offset + JournalCodec.TIME);
+            if (time >= from && time <= to) {
+                out.add(JournalCodec.decode(view.position(offset)));
+            }
+        }
+    }
+
+    private static void findEntries(ByteBuffer view, int start, int end, String requestId, int limit,
+                                    List<JournalEntry> out) {
+        for (int offset = start; offset < end && out.size() < limit; offset += view.getInt(offset)) {
+            if (requestId.equals(JournalCodec.requestId(view, offset))) {
+                out.add(JournalCodec.decode(view.position(offset)));
+            }
+        }
+    }
+
+    private int blockStart(int block) {
+        return buffer.getInt(HEADER_SIZE + block * BLOCK_SIZE);
+    }
+
+    private int blockEnd(int block) {
+        return buffer.getInt(HEADER_SIZE + block * BLOCK_SIZE + 4);
+    }
+
+    /**
+     * Walks the entries from start while their length and checksum are valid.
+     *
+     * @return the offset after the last valid entry
+     */
+    private int validEnd(ByteBuffer view, CRC32C crc, int start) {
+        int offset = start;
+        int capacity = view.capacity();
+        while (offset >= dataStart && offset <= capacity - JournalCodec.MIN_ENTRY_SIZE) {
+            int length = view.getInt(offset);
+            if (length < JournalCodec.MIN_ENTRY_SIZE || length > capacity - offset
+                    || view.getInt(offset + JournalCodec.CRC) != checksum(view, crc, offset, length)) {
+                break;
+            }
+            offset += length;
+        }
+        return offset;
+    }
+
+    private static int checksum(ByteBuffer view, CRC32C crc, int offset, int length) {
+        crc.reset();
+        view.clear().position(offset + JournalCodec.TIME).limit(offset + length);
+        crc.update(view);
+        view.clear();
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Finalizer of MurmurHash3 over the String hash, cached by the String: three 20-bit slices pick the filter bits.
+     */
+    private static long hash(String requestId) {
+        long key = requestId.hashCode();
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(path);
+    }
+}
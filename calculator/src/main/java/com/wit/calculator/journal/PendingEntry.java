@@ -0,0 +1,51 @@
+package com.wit.calculator.journal;
+
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationResult;
+
+import java.util.List;
+
+/**
+ * Slot of the journal's ring, filled by a listener thread and encoded by the writer thread. Slots are allocated once
+ * and reused, and only hold what gets journaled: the values of an aggregate and the operands of a high-precision
+ * calculation are reduced to counts before they are queued, so a full ring holds no more than small requests.
+ */
+final class PendingEntry {
+
+    JournalEntry.Kind kind; // Null when the listener could not fill the slot: skipped by the writer
+    String requestId;
+    long time;
+    long sentAtMillis;
+    long processingNanos;
+
+    // Calculation: the calculations of the request and the results of the reply
+    List<Calculation> calculations;
+    List<CalculationResult> results;
+
+    // Expression: its text and variable count; aggregate: its operation and value count
+    String expression;
+    byte opcode;
+    int count;
+
+    // Expression and aggregate
+    CalculationResult result;
+
+    // Precise: digit counts, precision and rounding, status and digit count of the result
+    int digitsA;
+    int digitsB;
+    int precision;
+    byte rounding;
+    byte status;
+    int resultDigits;
+
+    /**
+     * Drops the references to the request, so an empty slot retains nothing.
+     */
+    void clear() {
+        requestId = null;
+        calculations = null;
+        results = null;
+        expression = null;
+        result = null;
+    }
+}
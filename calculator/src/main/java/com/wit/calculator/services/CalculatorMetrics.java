@@ -0,0 +1,138 @@
+package com.wit.calculator.services;
+
+import com.wit.common.engine.RequestEvaluator;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the calculator hot path: processing time per operation, expression or aggregate chunk, time requests spent in Kafka before being
+ * consumed, and error counts per error class. Every meter is registered up front and looked up by ordinal,
+ * so recording allocates nothing and can stay enabled in production.
+ */
+@Component
+public class CalculatorMetrics implements RequestEvaluator.Observer {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    // Indexed by Operation ordinal
+    private final Timer[] processing;
+
+    private final Timer expressions;
+
+    private final Timer aggregates;
+
+    private final Timer queueTime;
+
+    // Indexed by ReplyStatus ordinal; null for OK
+    private final Counter[] errors;
+
+    private final Counter malformed;
+
+    public CalculatorMetrics(MeterRegistry meterRegistry) {
+        Operation[] operations = Operation.values();
+        this.processing = new Timer[operations.length];
+        for (Operation operation : operations) {
+            processing[operation.ordinal()] = processingTimer(meterRegistry, operation.operationName());
+        }
+        this.expressions = processingTimer(meterRegistry, "expression");
+        this.aggregates = processingTimer(meterRegistry, "aggregate");
+
+        this.queueTime = Timer.builder("calculator.queue.time")
+                .description("Time between a request being sent and its consumption by the calculator")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+
+        ReplyStatus[] statuses = ReplyStatus.values();
+        this.errors = new Counter[statuses.length];
+        for (ReplyStatus status : statuses) {
+            if (status != ReplyStatus.OK) {
+                errors[status.ordinal()] = errorCounter(meterRegistry, status.name().toLowerCase(Locale.ROOT));
+            }
+        }
+        this.malformed = errorCounter(meterRegistry, "malformed_message");
+    }
+
+    private static Timer processingTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("calculator.processing")
+                .description("Time to evaluate one calculation")
+                .tag("operation", operation)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofMillis(100))
+                .register(meterRegistry);
+    }
+
+    private static Counter errorCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("calculator.errors")
+                .description("Calculations and records that could not be processed, by error class")
+                .tag("type", type)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the evaluation time of one calculation.
+     */
+    @Override
+    public void recordProcessing(Operation operation, long nanos) {
+        processing[operation.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the evaluation time of one expression, compilation included when it was not cached.
+     */
+    @Override
+    public void recordExpression(long nanos) {
+        expressions.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the reduction time of one chunk of an aggregate.
+     */
+    @Override
+    public void recordAggregate(long nanos) {
+        aggregates.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time since the request was sent, from the record timestamp set by the producer.
+     * Records without a timestamp are ignored; skew between hosts shows up as negative values, which are dropped.
+     */
+    public void recordQueueTime(long sentAtMillis) {
+        if (sentAtMillis >= 0) {
+            long millis = System.currentTimeMillis() - sentAtMillis;
+            if (millis >= 0) {
+                queueTime.record(millis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Counts a calculation or request answered with an error status.
+     */
+    @Override
+    public void error(ReplyStatus status) {
+        Counter counter = errors[status.ordinal()];
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Counts a record dropped because it could not be decoded at all.
+     */
+    public void malformed() {
+        malformed.increment();
+    }
+}
@@ -1,14 +1,34 @@
 package com.wit.calculator.services;
 
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.common.engine.RequestEvaluator;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Aggregation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.MalformedMessageException;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Service responsible for processing arithmetic operations received from a Kafka topic.
@@ -24,118 +44,242 @@ public class CalculatorService {
 
     // Kafka topic names
     private static final String REQUEST_TOPIC = "calculator-requests";
+    private static final String BATCH_REQUEST_TOPIC = "calculator-batch-requests";
+    // Default reply topic, used when the request does not carry a reply topic header
     private static final String RESPONSE_TOPIC = "calculator-responses";
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    // Used to read deserialization failures carried in record headers
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(CalculatorService.class);
+
+    private final KafkaTemplate<String, CalculationReply> kafkaTemplate;
+
+    // Spreads the records of a poll over worker threads, keeping per-key order
+    private final KeyOrderedExecutor executor;
+
+    // Processing time, queue time and error meters
+    private final CalculatorMetrics metrics;
+
+    // Sampled one-line summary of each processed request
+    private final RequestLog requestLog;
+
+    // Record of every processed request, appended off the listener threads
+    private final CalculationJournal journal;
+
+    // Evaluates calculations, expressions and aggregate chunks under mc, compiling expressions through the
+    // expression cache and recording timings and errors in the meters
+    private final RequestEvaluator evaluator;
 
     /**
-     * Constructor-based dependency injection for KafkaTemplate.
-     * Promotes immutability and simplifies testing.
+     * Constructor-based dependency injection for KafkaTemplate, the record executor, the meters, the request log,
+     * the journal and the expression cache. Promotes immutability and simplifies testing.
      */
-    public CalculatorService(KafkaTemplate<String, String> kafkaTemplate) {
+    public CalculatorService(KafkaTemplate<String, CalculationReply> kafkaTemplate, KeyOrderedExecutor executor,
+                             CalculatorMetrics metrics, RequestLog requestLog, CalculationJournal journal,
+                             ExpressionCache expressions) {
         this.kafkaTemplate = kafkaTemplate;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.requestLog = requestLog;
+        this.journal = journal;
+        this.evaluator = new RequestEvaluator(mc, expressions::get, metrics);
     }
 
     /**
-     * Kafka listener method that handles incoming calculation requests.
-     * The expected message format is: "requestId,a,b,operation".
+     * Kafka batch listener that handles every record returned by one poll of the request topics.
+     * Records are evaluated on the listener thread, or spread over the {@link KeyOrderedExecutor} lanes when a
+     * parallelism above 1 is configured, keeping the order of records with the same key. Replies are sent
+     * asynchronously and flushed once at the end of the poll, so they are on the wire before the offsets are committed.
+     * Each listener container consumes its own share of the topic partitions ({@code calculator.listener.concurrency}).
      *
-     * @param message the message received from the Kafka topic
+     * @param records the records of one poll; values that failed to decode are null
      */
-    @KafkaListener(topics = REQUEST_TOPIC)
-    public void processCalculationRequest(String message) {
-        String requestId = null;
+    @KafkaListener(topics = {REQUEST_TOPIC, BATCH_REQUEST_TOPIC}, batch = "true",
+            concurrency = "${calculator.listener.concurrency:1}")
+    public void processCalculationRequests(List<ConsumerRecord<String, CalculationRequest>> records) {
+        executor.execute(records, ConsumerRecord::key, this::processRecord);
+        kafkaTemplate.flush();
+    }
 
+    /**
+     * Processes one record of a poll. Records that could not be decoded, or whose processing fails,
+     * are handed to {@link #handleInvalidRecord} so that one bad record does not fail the whole poll.
+     */
+    private void processRecord(ConsumerRecord<String, CalculationRequest> record) {
+        metrics.recordQueueTime(record.timestamp());
         try {
-            String[] parts = message.split(",");
-            if (parts.length != 4) {
-                log.error("Invalid message format: expected 4 parts but got {}", parts.length);
+            if (record.value() == null) {
+                DeserializationException exception = SerializationUtils.getExceptionFromHeader(record,
+                        SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+                handleInvalidRecord(record, exception != null ? exception : new MalformedMessageException("Empty message"));
                 return;
             }
+            var replyTopic = record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC);
+            processCalculationRequest(record.value(), replyTopic == null ? null : replyTopic.value(), record.timestamp());
+        } catch (Exception e) {
+            handleInvalidRecord(record, e);
+        }
+    }
 
-            requestId = parts[0].trim();
-            if (requestId.isEmpty()) {
-                log.error("Missing requestId in request");
+    /**
+     * Handles one decoded calculation request, single, batched, high-precision, expression or aggregate chunk.
+     * Every calculation of the request is evaluated in one pass and answered with a single reply,
+     * with one result per calculation in the same order; an expression is answered with one result, and an aggregate
+     * chunk with its partial result (see {@link Aggregator#reduce}). A high-precision request carries one calculation,
+     * evaluated under its own MathContext instead of mc. The reply goes to the topic named in the
+     * {@code kafka_replyTopic} header, so each REST instance receives its own replies.
+     * The request is summarized in one line of the {@link RequestLog}, sampled unless some calculation failed,
+     * and recorded in the {@link CalculationJournal} with its reply and timings.
+     *
+     * @param request      the decoded request received from the Kafka topic
+     * @param replyTopic   the reply topic of the requesting instance, or null to use the default response topic
+     * @param sentAtMillis the record timestamp set by the producer, or a negative value when unknown
+     */
+    // Package-private for unit testing purposes (CalculatorServiceTest)
+    void processCalculationRequest(CalculationRequest request, byte[] replyTopic, long sentAtMillis) {
+        long start = System.nanoTime();
+        String requestId = request.requestId();
+        String destination = replyTopic(replyTopic);
+        MDC.put("requestId", requestId); // Add requestId to logging context for traceability
+        try {
+            if (request.expression() != null) {
+                CalculationResult result = evaluator.evaluate(request.expression());
+                reply(destination, request, CalculationReply.single(result), sentAtMillis, start);
+                if (requestLog.isSampled(result.isOk())) {
+                    requestLog.log(result.isOk(), "requestId={} expression='{}' variables={} result={}", requestId,
+                            request.expression().text(), request.expression().variables().size(),
+                            result.isOk() ? result.value() : result.message());
+                }
+                return;
+            }
+            if (request.aggregation() != null) {
+                Aggregation aggregation = request.aggregation();
+                CalculationResult result = evaluator.aggregate(aggregation);
+                reply(destination, request, CalculationReply.single(result), sentAtMillis, start);
+                if (requestLog.isSampled(result.isOk())) {
+                    requestLog.log(result.isOk(), "requestId={} aggregate={} values={} result={}", requestId,
+                            aggregation.operation().operationName(), aggregation.values().size(),
+                            result.isOk() ? result.value() : result.message());
+                }
+                return;
+            }
+            if (request.mathContext() != null) {
+                Calculation calculation = request.calculations().get(0);
+                CalculationResult result = evaluator.evaluate(calculation, request.mathContext());
+                reply(destination, request, CalculationReply.single(result), sentAtMillis, start);
+                if (requestLog.isSampled(result.isOk())) { // Digit counts only: operands may be a megabyte each
+                    requestLog.log(result.isOk(), "requestId={} operation={} digits={}/{} precision={} rounding={} status={}",
+                            requestId, calculation.operation().operationName(), calculation.a().precision(),
+                            calculation.b().precision(), request.mathContext().getPrecision(),
+                            request.mathContext().getRoundingMode(), result.status());
+                }
+                return;
+            }
+            List<Calculation> calculations = request.calculations();
+            if (calculations.size() == 1) {
+                Calculation calculation = calculations.get(0);
+                CalculationResult result = evaluator.evaluate(calculation);
+                reply(destination, request, CalculationReply.single(result), sentAtMillis, start);
+                if (requestLog.isSampled(result.isOk())) {
+                    requestLog.log(result.isOk(), "requestId={} operation={} a={} b={} result={}", requestId,
+                            calculation.operation().operationName(), calculation.a(), calculation.b(),
+                            result.isOk() ? result.value() : result.status());
+                }
                 return;
             }
-            MDC.put("requestId", requestId); // Add requestId to logging context for traceability
-
-            BigDecimal a = parseDecimal(parts[1]);
-            BigDecimal b = parseDecimal(parts[2]);
-            String operation = parts[3].trim().toLowerCase();
-
-            log.info("Processing message: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
-
-            BigDecimal result = performOperation(a, b, operation);
-
-            // Send the result to the response topic
-            kafkaTemplate.send(RESPONSE_TOPIC, requestId, result.toString());
-            log.info("Operation '{}' completed successfully: requestId={}, result={}", operation, requestId, result);
-
-        } catch (ArithmeticException e) {
-            log.warn("Arithmetic error: {}", e.getMessage());
-            sendErrorResponse(requestId, "Division by zero is not allowed");
-
-        } catch (NumberFormatException e) {
-            log.warn("Invalid number format: {}", e.getMessage());
-            sendErrorResponse(requestId, "Invalid number format");
-
-        } catch (IllegalArgumentException e) {
-            log.warn("Unsupported operation: {}", e.getMessage());
-            sendErrorResponse(requestId, e.getMessage());
 
-        } catch (Exception e) {
-            log.error("Unexpected error", e);
-            sendErrorResponse(requestId, "Error in processing request");
+            List<CalculationResult> results = new ArrayList<>(calculations.size());
+            int failures = 0;
+            for (Calculation calculation : calculations) {
+                CalculationResult result = evaluator.evaluate(calculation);
+                if (!result.isOk()) {
+                    failures++;
+                }
+                results.add(result);
+            }
+            reply(destination, request, new CalculationReply(results), sentAtMillis, start);
+            if (requestLog.isSampled(failures == 0)) {
+                requestLog.log(failures == 0, "requestId={} items={} failures={}", requestId, results.size(), failures);
+            }
         } finally {
             MDC.clear(); // Clean up MDC context to avoid leaking values across threads
         }
     }
 
     /**
-     * Parses a string into a BigDecimal, trimming any whitespace.
+     * Recovers records that could not be decoded or processed, invoked by the container error handler.
+     * Requests with an invalid operand or operation are answered with an error reply keyed by the record key;
+     * malformed messages are logged and dropped since there is nobody to answer.
      *
-     * @param value the string to parse
-     * @return the parsed BigDecimal
+     * @param record    the failed record; its value is null when deserialization failed
+     * @param exception the failure reported by the listener container
      */
-    private BigDecimal parseDecimal(String value) {
-        return new BigDecimal(value.trim());
+    public void handleInvalidRecord(ConsumerRecord<?, ?> record, Exception exception) {
+        String requestId = record.key() == null ? null : record.key().toString();
+        var replyTopic = record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC);
+        String destination = replyTopic(replyTopic == null ? null : replyTopic.value());
+        Throwable cause = exception;
+        while (cause != null && !(cause instanceof DeserializationException)) {
+            cause = cause.getCause();
+        }
+        cause = cause != null && cause.getCause() != null ? cause.getCause() : exception;
+
+        if (cause instanceof InvalidRequestException invalid) {
+            log.warn("Invalid request: requestId={}, reason={}", requestId, invalid.getMessage());
+            metrics.error(invalid.getStatus());
+            sendErrorResponse(destination, requestId, CalculationResult.error(invalid.getStatus(), invalid.getMessage()));
+        } else if (cause instanceof MalformedMessageException) {
+            log.error("Dropping malformed message: requestId={}, reason={}", requestId, cause.getMessage());
+            metrics.malformed();
+        } else {
+            log.error("Unexpected error: requestId={}", requestId, exception);
+            metrics.error(ReplyStatus.INTERNAL_ERROR);
+            sendErrorResponse(destination, requestId, CalculationResult.error(ReplyStatus.INTERNAL_ERROR));
+        }
     }
 
     /**
      * Executes the specified arithmetic operation on two numbers.
+     * Operands whose unscaled values fit in a long are computed with exact long arithmetic when the result
+     * needs no rounding; everything else uses BigDecimal with the same MathContext, so results are identical.
      *
      * @param a         the first operand
      * @param b         the second operand
      * @param operation the operation to perform (sum, subtraction, multiplication, division)
      * @return the result of the operation
-     * @throws IllegalArgumentException if the operation is not supported
+     * @throws ArithmeticException if dividing by zero
      */
     // Package-private for unit testing purposes (CalculatorServiceTest)
-    BigDecimal performOperation(BigDecimal a, BigDecimal b, String operation) {
-        return switch (operation) {
-            case "sum" -> a.add(b, mc);
-            case "subtraction" -> a.subtract(b, mc);
-            case "multiplication" -> a.multiply(b, mc);
-            case "division" -> {
-                if (b.compareTo(BigDecimal.ZERO) == 0) {
-                    throw new ArithmeticException("Division by zero is not allowed");
-                }
-                yield a.divide(b, mc); // Performs division with defined precision; throws ArithmeticException if divisor is zero
-            }
-            default -> throw new IllegalArgumentException("Operation not supported: " + operation);
-        };
+    BigDecimal performOperation(BigDecimal a, BigDecimal b, Operation operation) {
+        return evaluator.performOperation(operation, a, b);
+    }
+
+    /**
+     * Sends the reply of a processed request and queues the request for the journal, timed from startNanos.
+     */
+    private void reply(String destination, CalculationRequest request, CalculationReply reply, long sentAtMillis,
+                       long startNanos) {
+        long processingNanos = System.nanoTime() - startNanos;
+        kafkaTemplate.send(destination, request.requestId(), reply);
+        journal.record(request, reply, sentAtMillis, processingNanos);
+    }
+
+    /**
+     * Resolves the reply topic from the raw header value, falling back to the default response topic.
+     */
+    private static String replyTopic(byte[] header) {
+        return header == null || header.length == 0 ? RESPONSE_TOPIC : new String(header, StandardCharsets.UTF_8);
     }
 
     /**
-     * Sends an error message to the Kafka response topic if the requestId is valid.
+     * Sends an error reply to the given topic if the requestId is valid.
      *
-     * @param requestId the request identifier
-     * @param message   the error message to send
+     * @param destination the reply topic
+     * @param requestId   the request identifier
+     * @param result      the error result to send
      */
-    private void sendErrorResponse(String requestId, String message) {
+    private void sendErrorResponse(String destination, String requestId, CalculationResult result) {
         if (requestId != null && !requestId.isBlank()) {
-            kafkaTemplate.send(RESPONSE_TOPIC, requestId, message);
+            kafkaTemplate.send(destination, requestId, CalculationReply.single(result));
         }
     }
 }
@@ -0,0 +1,37 @@
+package com.wit.calculator.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.wit.common.engine.CompiledExpression;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of compiled expressions keyed by expression text, so that evaluating a known expression with
+ * new variable bindings skips parsing. Least recently and least frequently used expressions are evicted first.
+ * Expressions that fail to compile are not cached.
+ */
+@Component
+public class ExpressionCache {
+
+    private final Cache<String, CompiledExpression> cache;
+
+    /**
+     * @param maxSize maximum number of compiled expressions kept
+     */
+    public ExpressionCache(@Value("${calculator.expression.cache-size:10000}") long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder().maximumSize(maxSize).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "expressions");
+    }
+
+    /**
+     * Returns the compiled form of the expression, compiling it on first use.
+     *
+     * @throws com.wit.common.protocol.InvalidRequestException if the expression is invalid
+     */
+    public CompiledExpression get(String text) {
+        return cache.get(text, CompiledExpression::compile);
+    }
+}
@@ -0,0 +1,120 @@
+package com.wit.calculator.services;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spreads the records of one poll across worker threads while keeping the order of records with the same key.
+ * Records are split into lanes by key hash; each lane runs sequentially, one of them on the calling thread,
+ * and {@link #execute} returns once every lane is done, so the next poll never overtakes the current one.
+ * With a parallelism of 1 everything runs on the calling thread.
+ */
+@Component
+public class KeyOrderedExecutor implements DisposableBean {
+
+    private final int parallelism;
+
+    // Worker pool shared by all listener threads; null when records are processed on the listener thread
+    private final ExecutorService workers;
+
+    /**
+     * @param parallelism number of lanes a poll is split into (1 disables the worker pool)
+     */
+    public KeyOrderedExecutor(@Value("${calculator.listener.parallelism:1}") int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("calculator.listener.parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        if (parallelism == 1) {
+            this.workers = null;
+        } else {
+            AtomicInteger threads = new AtomicInteger();
+            this.workers = Executors.newFixedThreadPool(parallelism - 1, runnable -> {
+                Thread thread = new Thread(runnable, "calculator-worker-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Runs the task on every item, in order for items sharing a key, and waits for all of them.
+     * Items without a key have no ordering constraint and are spread evenly.
+     *
+     * @param items the items to process
+     * @param keyOf extracts the ordering key of an item (may return null)
+     * @param task  the processing applied to each item
+     */
+    public <T> void execute(List<T> items, Function<T, ?> keyOf, Consumer<T> task) {
+        int lanes = Math.min(parallelism, items.size());
+        if (lanes <= 1) {
+            items.forEach(task);
+            return;
+        }
+
+        List<List<T>> byLane = new ArrayList<>(lanes);
+        for (int i = 0; i < lanes; i++) {
+            byLane.add(new ArrayList<>(items.size() / lanes + 1));
+        }
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            Object key = keyOf.apply(item);
+            byLane.get(key == null ? i % lanes : Math.floorMod(key.hashCode(), lanes)).add(item);
+        }
+
+        List<Future<?>> pending = new ArrayList<>(lanes - 1);
+        for (int i = 1; i < lanes; i++) {
+            List<T> lane = byLane.get(i);
+            if (!lane.isEmpty()) {
+                pending.add(workers.submit(() -> lane.forEach(task)));
+            }
+        }
+        byLane.get(0).forEach(task); // The listener thread takes a lane too instead of idling
+        await(pending);
+    }
+
+    private static void await(List<Future<?>> pending) {
+        boolean interrupted = false;
+        RuntimeException failure = null;
+        for (Future<?> future : pending) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true; // Lanes must finish before the poll is acknowledged
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException runtime ? runtime : new CompletionException(e.getCause());
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+}
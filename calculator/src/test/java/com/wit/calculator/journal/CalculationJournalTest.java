@@ -0,0 +1,202 @@
+package com.wit.calculator.journal;
+
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.MathContexts;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculationJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CalculationJournal start(int maxSegments) {
+        CalculationJournal journal = new CalculationJournal(true, directory.toString(), DataSize.ofMegabytes(1),
+                maxSegments, 64, Duration.ofMillis(1), meterRegistry);
+        journal.start();
+        return journal;
+    }
+
+    private static void sum(CalculationJournal journal, String requestId, long a, long b) {
+        CalculationRequest request = CalculationRequest.single(requestId, Operation.SUM, BigDecimal.valueOf(a),
+                BigDecimal.valueOf(b));
+        journal.record(request, CalculationReply.single(CalculationResult.ok(BigDecimal.valueOf(a + b))), -1, 100);
+    }
+
+    @Test
+    @DisplayName("Should read back each kind of request by requestId and by time")
+    void shouldReadBackEveryKind() {
+        CalculationJournal journal = start(4);
+        Instant before = Instant.now();
+        long sentAt = System.currentTimeMillis() - 20;
+
+        journal.record(new CalculationRequest("batch", List.of(
+                        new Calculation(Operation.SUM, new BigDecimal("2.5"), new BigDecimal("3")),
+                        new Calculation(Operation.DIVISION, BigDecimal.ONE, BigDecimal.ZERO))),
+                new CalculationReply(List.of(CalculationResult.ok(new BigDecimal("5.5")),
+                        CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO))), sentAt, 1_500);
+        journal.record(CalculationRequest.expression("expr", "a * b", Map.of("a", BigDecimal.ONE, "b", BigDecimal.TEN)),
+                CalculationReply.single(CalculationResult.ok(BigDecimal.TEN)), -1, 2_000);
+        journal.record(CalculationRequest.aggregation("agg", AggregateOperation.MEAN,
+                        List.of(BigDecimal.ONE, new BigDecimal("2"), BigDecimal.TEN)),
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("12345678901234567890.123"))), -1, 3_000);
+        journal.record(CalculationRequest.precise("prec", Operation.DIVISION, BigDecimal.ONE, new BigDecimal("3"),
+                        MathContexts.of(40, RoundingMode.UP)),
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("0." + "3".repeat(39) + "4"))), -1, 4_000);
+        journal.stop(); // Appends and commits what is left
+
+        JournalEntry batch = journal.find("batch", 10).get(0);
+        assertEquals(JournalEntry.Kind.CALCULATION, batch.kind());
+        assertEquals(1_500, batch.processingNanos());
+        assertTrue(batch.queueMillis() >= 20);
+        assertEquals(List.of(
+                new JournalEntry.Item("sum", new BigDecimal("2.5"), new BigDecimal("3"), ReplyStatus.OK, new BigDecimal("5.5")),
+                new JournalEntry.Item("division", BigDecimal.ONE, BigDecimal.ZERO, ReplyStatus.DIVISION_BY_ZERO, null)),
+                batch.items());
+
+        JournalEntry expression = journal.find("expr", 10).get(0);
+        assertEquals("a * b", expression.expression());
+        assertEquals(2, expression.count());
+        assertEquals(BigDecimal.TEN, expression.result());
+        assertNull(expression.queueMillis());
+
+        JournalEntry aggregate = journal.find("agg", 10).get(0);
+        assertEquals("mean", aggregate.operation());
+        assertEquals(3, aggregate.count());
+        assertEquals(new BigDecimal("12345678901234567890.123"), aggregate.result());
+
+        JournalEntry precise = journal.find("prec", 10).get(0);
+        assertArrayEquals(new int[]{1, 1}, precise.digits());
+        assertEquals(40, precise.precision());
+        assertEquals(RoundingMode.UP, precise.rounding());
+        assertEquals(40, precise.resultDigits());
+        assertNull(precise.result());
+
+        List<JournalEntry> all = journal.scan(before, Instant.now(), 10);
+        assertEquals(List.of("batch", "expr", "agg", "prec"), all.stream().map(JournalEntry::requestId).toList());
+        assertEquals(2, journal.scan(before, Instant.now(), 2).size());
+        assertTrue(journal.scan(before.minusSeconds(60), before.minusSeconds(30), 10).isEmpty());
+        assertTrue(journal.find("missing", 10).isEmpty());
+        assertEquals(4, meterRegistry.get("calculator.journal.entries").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should journal an empty request, and skip a request it cannot record without blocking the ring")
+    void shouldNotBlockOnUnrecordableRequests() {
+        CalculationJournal journal = new CalculationJournal(true, directory.toString(), DataSize.ofMegabytes(1), 1,
+                4, Duration.ofMillis(1), meterRegistry);
+        journal.start();
+        journal.record(new CalculationRequest("empty", List.of()), new CalculationReply(List.of()), -1, 100);
+        journal.record(CalculationRequest.precise("no-result", Operation.SUM, BigDecimal.ONE, BigDecimal.ONE,
+                MathContexts.of(10, RoundingMode.HALF_UP)), new CalculationReply(List.of()), -1, 100);
+        for (int i = 0; i < 20; i++) { // Several laps of the 4-slot ring
+            sum(journal, "after-" + i, i, 1);
+        }
+        journal.stop();
+
+        JournalEntry empty = journal.find("empty", 10).get(0);
+        assertEquals(JournalEntry.Kind.CALCULATION, empty.kind());
+        assertEquals(List.of(), empty.items());
+        assertTrue(journal.find("no-result", 10).isEmpty());
+        assertEquals(1, journal.find("after-19", 10).size());
+        assertEquals(21, meterRegistry.get("calculator.journal.entries").counter().count());
+        assertEquals(1, meterRegistry.get("calculator.journal.dropped").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should find requests through the index of full blocks, in every segment, deleting the oldest segments")
+    void shouldRollOverSegments() throws IOException {
+        CalculationJournal journal = start(3);
+        // About 100 bytes per entry: roughly 10,000 entries per 1MB segment
+        String padding = "x".repeat(60);
+        for (int i = 0; i < 40_000; i++) {
+            sum(journal, "request-" + i + padding, i, 1);
+        }
+        journal.stop();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(3, files.count());
+        }
+        assertTrue(journal.find("request-0" + padding, 10).isEmpty()); // In a deleted segment
+        for (int i = 39_990; i < 40_000; i++) {
+            List<JournalEntry> found = journal.find("request-" + i + padding, 10);
+            assertEquals(1, found.size());
+            assertEquals(BigDecimal.valueOf(i + 1), found.get(0).items().get(0).result());
+        }
+        List<JournalEntry> scanned = journal.scan(Instant.EPOCH, Instant.now(), 50_000);
+        assertTrue(scanned.size() > 15_000 && scanned.size() < 40_000);
+        assertEquals("request-39999" + padding, scanned.get(scanned.size() - 1).requestId());
+        assertEquals(0, meterRegistry.get("calculator.journal.dropped").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should reopen the segments of a previous run up to their first corrupt entry")
+    void shouldReopenPreviousSegments() throws IOException {
+        CalculationJournal first = start(4);
+        for (int i = 0; i < 300; i++) { // Two full index blocks and a partial one
+            sum(first, "first-" + i, i, 0);
+        }
+        sum(first, "corrupt", 1, 2);
+        first.stop();
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(segment);
+        int offset = indexOf(bytes, "corrupt".getBytes(StandardCharsets.US_ASCII));
+        bytes[offset] = 'C'; // Breaks the checksum, as a write torn by a crash would
+        Files.write(segment, bytes);
+
+        CalculationJournal second = start(4);
+        sum(second, "second", 1, 1);
+        second.stop();
+
+        List<JournalEntry> all = second.scan(Instant.EPOCH, Instant.now(), 1_000);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            expected.add("first-" + i);
+        }
+        expected.add("second");
+        assertEquals(expected, all.stream().map(JournalEntry::requestId).toList());
+        assertEquals(1, second.find("first-150", 10).size());
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= bytes.length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        throw new AssertionError("pattern not found");
+    }
+}
@@ -0,0 +1,74 @@
+package com.wit.calculator.journal;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class JournalControllerTest {
+
+    @TempDir
+    Path directory;
+
+    private MockMvc mockMvc;
+    private Instant before;
+
+    @BeforeEach
+    void setUp() {
+        CalculationJournal journal = new CalculationJournal(true, directory.toString(), DataSize.ofMegabytes(1), 1,
+                64, Duration.ofMillis(1), new SimpleMeterRegistry());
+        journal.start();
+        before = Instant.now();
+        journal.record(CalculationRequest.single("0347172100005001", Operation.SUM, new BigDecimal("2"), new BigDecimal("3")),
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("5"))), -1, 1_000);
+        journal.stop();
+        mockMvc = MockMvcBuilders.standaloneSetup(new JournalController(journal)).build();
+    }
+
+    @Test
+    @DisplayName("Should return the entries of a requestId, and 404 when there are none")
+    void shouldFindByRequestId() throws Exception {
+        mockMvc.perform(get("/journal/0347172100005001"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].requestId").value("0347172100005001"))
+                .andExpect(jsonPath("$[0].kind").value("CALCULATION"))
+                .andExpect(jsonPath("$[0].items[0].operation").value("sum"))
+                .andExpect(jsonPath("$[0].items[0].result").value(5))
+                .andExpect(jsonPath("$[0].expression").doesNotExist());
+
+        mockMvc.perform(get("/journal/0347172100005002"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should return the entries of a time range, within the limit")
+    void shouldScanTimeRange() throws Exception {
+        mockMvc.perform(get("/journal").param("from", before.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+
+        mockMvc.perform(get("/journal").param("from", before.minusSeconds(60).toString())
+                        .param("to", before.minusSeconds(30).toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+
+        mockMvc.perform(get("/journal").param("from", before.toString()).param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,136 @@
+package com.wit.calculator.services;
+
+import com.wit.CalculatorApp;
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.kafka.CalculationReplyDeserializer;
+import com.wit.common.protocol.kafka.CalculationRequestSerializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the calculator against an embedded broker with a backlog of requests already waiting on a partitioned
+ * request topic, and checks that every request is answered and that replies keep the order of their key.
+ * Every request must also be found in the journal. The consumption rate is logged; raise
+ * {@code -Dcalculator.throughput.records} to use it as a throughput measurement.
+ */
+class CalculatorServiceIntegrationTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CalculatorServiceIntegrationTest.class);
+
+    private static final int RECORDS = Integer.getInteger("calculator.throughput.records", 5_000);
+    private static final int KEYS = 64;
+    private static final int PARTITIONS = 3;
+    private static final String REPLY_TOPIC = "calculator-responses-test";
+
+    private static EmbeddedKafkaBroker broker;
+    private static ConfigurableApplicationContext calculator;
+    private static Instant started;
+
+    @BeforeAll
+    static void start() {
+        broker = new EmbeddedKafkaKraftBroker(1, PARTITIONS, "calculator-requests", REPLY_TOPIC);
+        broker.afterPropertiesSet();
+        Map<String, Object> producerProps = Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        try (KafkaProducer<String, CalculationRequest> producer =
+                     new KafkaProducer<>(producerProps, new StringSerializer(), new CalculationRequestSerializer())) {
+            for (int i = 0; i < RECORDS; i++) {
+                String key = "key-" + (i % KEYS);
+                ProducerRecord<String, CalculationRequest> record = new ProducerRecord<>("calculator-requests", key,
+                        CalculationRequest.single(key, Operation.SUM, BigDecimal.valueOf(i), BigDecimal.ZERO));
+                record.headers().add(KafkaHeaders.REPLY_TOPIC, REPLY_TOPIC.getBytes(StandardCharsets.UTF_8));
+                producer.send(record);
+            }
+        }
+        started = Instant.now();
+        calculator = new SpringApplicationBuilder(CalculatorApp.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.kafka.producer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--spring.kafka.consumer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--calculator.requests.partitions=" + PARTITIONS,
+                        "--logging.file.name=target/calculator-integration-test.log",
+                        "--calculator.journal.directory=target/journal-integration-test");
+    }
+
+    @AfterAll
+    static void stop() {
+        calculator.close();
+        broker.destroy();
+    }
+
+    @Test
+    @DisplayName("Should answer every request and keep replies of the same key in order")
+    void shouldAnswerEveryRequestInKeyOrder() {
+        Map<String, Object> consumerProps = Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "test-replies",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Map<String, Long> lastValueByKey = new HashMap<>();
+        int received = 0;
+        long first = 0;
+        long last = 0;
+        try (KafkaConsumer<String, CalculationReply> consumer =
+                     new KafkaConsumer<>(consumerProps, new StringDeserializer(), new CalculationReplyDeserializer())) {
+            consumer.subscribe(List.of(REPLY_TOPIC));
+            long deadline = System.nanoTime() + Duration.ofSeconds(120).toNanos();
+            while (received < RECORDS && System.nanoTime() < deadline) {
+                for (ConsumerRecord<String, CalculationReply> record : consumer.poll(Duration.ofMillis(100))) {
+                    last = System.nanoTime();
+                    if (received++ == 0) {
+                        first = last;
+                    }
+                    CalculationResult result = record.value().results().get(0);
+                    long value = result.value().longValueExact();
+                    Long previous = lastValueByKey.put(record.key(), value);
+                    assertTrue(previous == null || previous < value,
+                            "Reply " + value + " of " + record.key() + " arrived after " + previous);
+                }
+            }
+        }
+
+        assertEquals(RECORDS, received);
+        log.info("Consumed {} records at {} records/s", RECORDS,
+                (long) ((RECORDS - 1) / ((last - first) / 1e9)));
+
+        // Journaled off the listener threads: the last group may still be committing
+        CalculationJournal journal = calculator.getBean(CalculationJournal.class);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        int journaled;
+        do {
+            journaled = journal.scan(started, Instant.now(), RECORDS + 1).size();
+        } while (journaled < RECORDS && System.nanoTime() < deadline);
+        assertEquals(RECORDS, journaled);
+    }
+}
@@ -1,5 +1,21 @@
 package com.wit.calculator.services;
 
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.MathContexts;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.common.protocol.kafka.CalculationRequestDeserializer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -7,23 +23,71 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CalculatorServiceTest {
 
     @Mock
-    private KafkaTemplate<String, String> kafkaTemplate;
+    private KafkaTemplate<String, CalculationReply> kafkaTemplate;
+
+    @Spy
+    private KeyOrderedExecutor executor = new KeyOrderedExecutor(1);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private CalculatorMetrics metrics = new CalculatorMetrics(meterRegistry);
+
+    @Spy
+    private RequestLog requestLog = new RequestLog(1);
+
+    @Mock
+    private CalculationJournal journal;
+
+    @Spy
+    private ExpressionCache expressions = new ExpressionCache(100, meterRegistry);
 
     @InjectMocks
     private CalculatorService calculatorService;
 
+    private final ErrorHandlingDeserializer<CalculationRequest> deserializer =
+            new ErrorHandlingDeserializer<>(new CalculationRequestDeserializer());
+
     @BeforeEach
     void setup() {
         Mockito.reset(kafkaTemplate);
     }
 
+    /**
+     * Mimics the listener container: decodes the message with the same error handling deserializer
+     * and delivers the resulting record to the batch listener.
+     */
+    private void receive(String key, String message) {
+        calculatorService.processCalculationRequests(List.of(record(key, message)));
+    }
+
+    private ConsumerRecord<String, CalculationRequest> record(String key, String message) {
+        RecordHeaders headers = new RecordHeaders();
+        CalculationRequest value = deserializer.deserialize("calculator-requests", headers,
+                message.getBytes(StandardCharsets.UTF_8));
+        return new ConsumerRecord<>("calculator-requests", 0, 0L, 0L, TimestampType.CREATE_TIME,
+                key.length(), message.length(), key, value, headers, Optional.empty());
+    }
+
     @Test
     @DisplayName("Should process valid sum operation and return result")
     void testProcessCalculationRequest_validSum() {
@@ -32,10 +96,13 @@ class CalculatorServiceTest {
         String message = requestId + ",2,3,sum";
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive(requestId, message);
 
         // then
-        verify(kafkaTemplate).send("calculator-responses", requestId, "5");
+        CalculationReply reply = CalculationReply.single(CalculationResult.ok(new BigDecimal("5")));
+        verify(kafkaTemplate).send("calculator-responses", requestId, reply);
+        // Journaled with the record timestamp, for the queue time
+        verify(journal).record(argThat(request -> request.requestId().equals(requestId)), eq(reply), eq(0L), anyLong());
     }
 
     @Test
@@ -46,10 +113,14 @@ class CalculatorServiceTest {
         String message = requestId + ",10,0,division";
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive(requestId, message);
 
         // then
-        verify(kafkaTemplate).send("calculator-responses", requestId, "Division by zero is not allowed");
+        verify(kafkaTemplate).send("calculator-responses", requestId,
+                CalculationReply.single(CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO, "Division by zero is not allowed")));
+        assertEquals(1, meterRegistry.get("calculator.errors").tag("type", "division_by_zero").counter().count());
+        assertEquals(1, meterRegistry.get("calculator.processing").tag("operation", "division").timer().count());
+        verify(requestLog).isSampled(false);
     }
 
     @Test
@@ -60,10 +131,12 @@ class CalculatorServiceTest {
         String message = requestId + ",abc,2,sum";
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive(requestId, message);
 
         // then
-        verify(kafkaTemplate).send("calculator-responses", requestId, "Invalid number format");
+        verify(kafkaTemplate).send("calculator-responses", requestId,
+                CalculationReply.single(CalculationResult.error(ReplyStatus.INVALID_NUMBER, "Invalid number format")));
+        assertEquals(1, meterRegistry.get("calculator.errors").tag("type", "invalid_number").counter().count());
     }
 
     @Test
@@ -74,10 +147,11 @@ class CalculatorServiceTest {
         String message = requestId + ",10,2,mod";
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive(requestId, message);
 
         // then
-        verify(kafkaTemplate).send(eq("calculator-responses"), eq(requestId), contains("Operation not supported"));
+        verify(kafkaTemplate).send("calculator-responses", requestId,
+                CalculationReply.single(CalculationResult.error(ReplyStatus.UNSUPPORTED_OPERATION, "Operation not supported: mod")));
     }
 
     @Test
@@ -87,10 +161,11 @@ class CalculatorServiceTest {
         String message = " ,10,2,sum"; // empty ID
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive("orphan", message);
 
         // then
-        verifyNoInteractions(kafkaTemplate);
+        verify(kafkaTemplate).flush();
+        verifyNoMoreInteractions(kafkaTemplate);
     }
 
     @Test
@@ -100,9 +175,156 @@ class CalculatorServiceTest {
         String message = "only,three,parts";
 
         // when
-        calculatorService.processCalculationRequest(message);
+        receive("orphan", message);
+
+        // then
+        verify(kafkaTemplate).flush();
+        verifyNoMoreInteractions(kafkaTemplate);
+        verify(metrics).malformed();
+    }
+
+    @Test
+    @DisplayName("Should evaluate every calculation of a batch and reply with one result per calculation")
+    void testProcessCalculationRequest_batch() {
+        // given
+        String requestId = "batch-0";
+        CalculationRequest request = new CalculationRequest(requestId, List.of(
+                new Calculation(Operation.SUM, new BigDecimal("2"), new BigDecimal("3")),
+                new Calculation(Operation.DIVISION, new BigDecimal("10"), BigDecimal.ZERO),
+                new Calculation(Operation.MULTIPLICATION, new BigDecimal("1.5"), new BigDecimal("2"))));
+
+        // when
+        calculatorService.processCalculationRequest(request, null, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses", requestId, new CalculationReply(List.of(
+                CalculationResult.ok(new BigDecimal("5")),
+                CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO),
+                CalculationResult.ok(new BigDecimal("3.0")))));
+    }
+
+    @Test
+    @DisplayName("Should evaluate an expression in one reply, compiling it only once")
+    void testProcessCalculationRequest_expression() {
+        // when
+        calculatorService.processCalculationRequest(CalculationRequest.expression("expr-1", "(a + b) * c / d",
+                Map.of("a", new BigDecimal("1"), "b", new BigDecimal("2"), "c", new BigDecimal("3"), "d", new BigDecimal("4"))), null, -1);
+        calculatorService.processCalculationRequest(CalculationRequest.expression("expr-2", "(a + b) * c / d",
+                Map.of("a", new BigDecimal("1"), "b", new BigDecimal("1"), "c", new BigDecimal("1"), "d", new BigDecimal("3"))), null, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses", "expr-1",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("2.25"))));
+        verify(kafkaTemplate).send("calculator-responses", "expr-2",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("0.6666666667"))));
+        assertEquals(1, meterRegistry.get("cache.gets").tags("cache", "expressions", "result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should answer invalid expressions and unbound variables with an invalid expression error")
+    void testProcessCalculationRequest_invalidExpression() {
+        // when
+        calculatorService.processCalculationRequest(CalculationRequest.expression("bad-1", "(a +", Map.of()), null, -1);
+        calculatorService.processCalculationRequest(CalculationRequest.expression("bad-2", "a + b", Map.of("a", BigDecimal.ONE)), null, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses", "bad-1", CalculationReply.single(
+                CalculationResult.error(ReplyStatus.INVALID_EXPRESSION, "Invalid expression: unexpected end of expression")));
+        verify(kafkaTemplate).send("calculator-responses", "bad-2", CalculationReply.single(
+                CalculationResult.error(ReplyStatus.INVALID_EXPRESSION, "Invalid expression: unbound variable 'b'")));
+        assertEquals(2, meterRegistry.get("calculator.errors").tag("type", "invalid_expression").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should answer an aggregate chunk with its exact partial sum")
+    void testProcessCalculationRequest_aggregation() {
+        // when
+        calculatorService.processCalculationRequest(CalculationRequest.aggregation("agg-0", AggregateOperation.SUM,
+                List.of(new BigDecimal("12345678901"), new BigDecimal("0.5"), new BigDecimal("-1"))), null, -1);
+        calculatorService.processCalculationRequest(CalculationRequest.aggregation("agg-1", AggregateOperation.SUM,
+                List.of(BigDecimal.ONE, new BigDecimal("1E-5000"))), null, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses", "agg-0",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("12345678900.5"))));
+        verify(kafkaTemplate).send("calculator-responses", "agg-1", CalculationReply.single(CalculationResult.error(
+                ReplyStatus.INVALID_NUMBER, "Invalid number format: more than 1000 digits or scale out of range")));
+        assertEquals(2, meterRegistry.get("calculator.processing").tag("operation", "aggregate").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should evaluate a high-precision request under its own MathContext instead of 10 digits")
+    void testProcessCalculationRequest_precise() {
+        // when
+        calculatorService.processCalculationRequest(CalculationRequest.precise("prec-0", Operation.DIVISION,
+                BigDecimal.ONE, new BigDecimal("3"), MathContexts.of(40, RoundingMode.UP)), null, -1);
+        calculatorService.processCalculationRequest(CalculationRequest.precise("prec-1", Operation.MULTIPLICATION,
+                new BigDecimal("123456789012345678901234567890"), new BigDecimal("3"), MathContext.UNLIMITED), null, -1);
+        calculatorService.processCalculationRequest(CalculationRequest.precise("prec-2", Operation.DIVISION,
+                BigDecimal.ONE, new BigDecimal("3"), MathContext.UNLIMITED), null, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses", "prec-0",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("0." + "3".repeat(39) + "4"))));
+        verify(kafkaTemplate).send("calculator-responses", "prec-1",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("370370367037037036703703703670"))));
+        verify(kafkaTemplate).send("calculator-responses", "prec-2", CalculationReply.single(CalculationResult.error(
+                ReplyStatus.INVALID_NUMBER, "Non-terminating decimal expansion; no exact representable decimal result.")));
+    }
+
+    @Test
+    @DisplayName("Should send the reply to the topic named in the reply topic header")
+    void testProcessCalculationRequest_replyTopicHeader() {
+        // given
+        String requestId = "routed";
+        CalculationRequest request = CalculationRequest.single(requestId, Operation.SUM, new BigDecimal("2"), new BigDecimal("3"));
+        byte[] replyTopic = "calculator-responses-node-1".getBytes(StandardCharsets.UTF_8);
+
+        // when
+        calculatorService.processCalculationRequest(request, replyTopic, -1);
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses-node-1", requestId,
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("5"))));
+    }
+
+    @Test
+    @DisplayName("Should answer an invalid record on the topic named in its reply topic header")
+    void testHandleInvalidRecord_replyTopicHeader() {
+        // given
+        String requestId = "badop";
+        byte[] data = (requestId + ",10,2,mod").getBytes(StandardCharsets.UTF_8);
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("calculator-requests", 0, 0L, requestId, null);
+        record.headers().add(KafkaHeaders.REPLY_TOPIC, "calculator-responses-node-2".getBytes(StandardCharsets.UTF_8));
+        InvalidRequestException cause = new InvalidRequestException(ReplyStatus.UNSUPPORTED_OPERATION, "Operation not supported: mod");
+
+        // when
+        calculatorService.handleInvalidRecord(record, new DeserializationException("failed", data, false, cause));
+
+        // then
+        verify(kafkaTemplate).send("calculator-responses-node-2", requestId,
+                CalculationReply.single(CalculationResult.error(ReplyStatus.UNSUPPORTED_OPERATION, "Operation not supported: mod")));
+    }
+
+    @Test
+    @DisplayName("Should answer every record of a poll, including invalid ones, and flush once")
+    void testProcessCalculationRequests_poll() {
+        // when
+        calculatorService.processCalculationRequests(List.of(
+                record("first", "first,2,3,sum"),
+                record("badop", "badop,10,2,mod"),
+                record("orphan", "only,three,parts"),
+                record("second", "second,6,3,division")));
 
         // then
-        verifyNoInteractions(kafkaTemplate);
+        InOrder inOrder = inOrder(kafkaTemplate);
+        inOrder.verify(kafkaTemplate).send("calculator-responses", "first",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("5"))));
+        inOrder.verify(kafkaTemplate).send("calculator-responses", "badop",
+                CalculationReply.single(CalculationResult.error(ReplyStatus.UNSUPPORTED_OPERATION, "Operation not supported: mod")));
+        inOrder.verify(kafkaTemplate).send("calculator-responses", "second",
+                CalculationReply.single(CalculationResult.ok(new BigDecimal("2"))));
+        inOrder.verify(kafkaTemplate).flush();
+        verifyNoMoreInteractions(kafkaTemplate);
     }
 }
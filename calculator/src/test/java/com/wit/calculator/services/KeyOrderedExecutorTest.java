@@ -0,0 +1,80 @@
+package com.wit.calculator.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyOrderedExecutorTest {
+
+    private KeyOrderedExecutor executor;
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    @DisplayName("Should run every item on the calling thread when parallelism is 1")
+    void shouldRunInlineWithoutParallelism() {
+        executor = new KeyOrderedExecutor(1);
+        List<Integer> processed = new ArrayList<>();
+        Thread caller = Thread.currentThread();
+
+        executor.execute(List.of(1, 2, 3), i -> "key", i -> {
+            assertSame(caller, Thread.currentThread());
+            processed.add(i);
+        });
+
+        assertEquals(List.of(1, 2, 3), processed);
+    }
+
+    @Test
+    @DisplayName("Should process every item across worker threads and keep the order of each key")
+    void shouldKeepPerKeyOrder() {
+        executor = new KeyOrderedExecutor(4);
+        List<int[]> items = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            items.add(new int[]{i % 37, i}); // key, sequence
+        }
+        Map<Integer, List<Integer>> sequencesByKey = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        executor.execute(items, item -> item[0], item -> {
+            threads.add(Thread.currentThread().getName());
+            sequencesByKey.computeIfAbsent(item[0], k -> new CopyOnWriteArrayList<>()).add(item[1]);
+        });
+
+        assertEquals(37, sequencesByKey.size());
+        assertEquals(10_000, sequencesByKey.values().stream().mapToInt(List::size).sum());
+        sequencesByKey.values().forEach(sequences -> {
+            for (int i = 1; i < sequences.size(); i++) {
+                assertTrue(sequences.get(i - 1) < sequences.get(i));
+            }
+        });
+        assertTrue(threads.size() > 1);
+    }
+
+    @Test
+    @DisplayName("Should rethrow a failure of a worker lane once the other lanes have finished")
+    void shouldPropagateFailures() {
+        executor = new KeyOrderedExecutor(2);
+        Set<Integer> processed = ConcurrentHashMap.newKeySet();
+
+        assertThrows(IllegalStateException.class, () -> executor.execute(List.of(0, 1, 2, 3), i -> i, i -> {
+            if (i == 1) {
+                throw new IllegalStateException("boom");
+            }
+            processed.add(i);
+        }));
+        assertEquals(Set.of(0, 2), processed); // Lane of odd keys stops at its failing item
+    }
+}
@@ -0,0 +1,12 @@
+#!/bin/sh
+# Starts the calculator with the bean definitions generated at build time (Spring AOT) unless the configuration asks
+# for something they were not generated with: the AOT context has no web server and platform threads, so the health
+# profile and virtual threads start without AOT. AOT=false turns it off for any other runtime configuration change.
+case ",$SPRING_PROFILES_ACTIVE," in
+    *,health,*) AOT=false ;;
+esac
+if [ "$SPRING_THREADS_VIRTUAL_ENABLED" = "true" ]; then
+    AOT=false
+fi
+
+exec java $JAVA_OPTS -Dspring.aot.enabled="${AOT:-true}" -jar calculator-0.0.1-SNAPSHOT-exec.jar "$@"
@@ -0,0 +1,151 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.ReplyStatus;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reduces lists of values with an {@link AggregateOperation}, in three steps so that large inputs can be split into
+ * chunks reduced independently: {@link #reduce} turns a chunk into a partial result, {@link #combine} merges the
+ * partials of consecutive chunks and {@link #finish} turns the final partial into the result.
+ * <p>
+ * Sums, and the sums behind means, are accumulated exactly and rounded once to the {@code MathContext} in
+ * {@link #finish}, so the result does not depend on how the input was chunked or on the number of threads: it is the
+ * sequential exact {@code BigDecimal} sum rounded to the context. Products are rounded at every step, grouped as the
+ * reduction tree below and then chunk by chunk: they do not depend on the number of threads, but their last digit may
+ * differ from a sequential fold of {@code multiply(value, mathContext)} calls, and with the chunk sizes. Minimum and
+ * maximum are exact until {@link #finish} rounds them.
+ * <p>
+ * A chunk is reduced as a binary tree split at the middle, with leaves of {@value #LEAF_SIZE} values folded
+ * sequentially. Chunks larger than {@value #PARALLEL_THRESHOLD} values are reduced on the common fork-join pool;
+ * smaller ones walk the same tree on the calling thread, so the grouping, and the rounding of products, is the same
+ * either way. Values are limited to {@value #MAX_DIGITS} digits and a scale within &plusmn;{@value #MAX_DIGITS}, which
+ * bounds the size of an exact sum regardless of the number of values.
+ */
+public final class Aggregator {
+
+    /** Largest accepted precision and absolute scale of a value. */
+    public static final int MAX_DIGITS = 1000;
+
+    // Values folded sequentially at the leaves of the reduction tree
+    static final int LEAF_SIZE = 1024;
+
+    // Chunks above this size are reduced in parallel
+    static final int PARALLEL_THRESHOLD = 4 * LEAF_SIZE;
+
+    private final MathContext mathContext;
+
+    public Aggregator(MathContext mathContext) {
+        this.mathContext = mathContext;
+    }
+
+    /**
+     * Checks that a value can be aggregated.
+     *
+     * @throws InvalidRequestException with status {@link ReplyStatus#INVALID_NUMBER} if it has too many digits or too large a scale
+     */
+    public static void validate(BigDecimal value) {
+        if (value.precision() > MAX_DIGITS || Math.abs((long) value.scale()) > MAX_DIGITS) {
+            throw new InvalidRequestException(ReplyStatus.INVALID_NUMBER,
+                    "Invalid number format: more than " + MAX_DIGITS + " digits or scale out of range");
+        }
+    }
+
+    /**
+     * Reduces a chunk of values into a partial result.
+     *
+     * @param operation the aggregate
+     * @param values    the values of the chunk, not empty
+     * @return the exact sum for {@code sum} and {@code mean}, the rounded product, or the exact minimum or maximum
+     * @throws InvalidRequestException if the chunk is empty or a value fails {@link #validate}
+     */
+    public BigDecimal reduce(AggregateOperation operation, List<BigDecimal> values) {
+        if (values.isEmpty()) {
+            throw new InvalidRequestException(ReplyStatus.INVALID_NUMBER, "Invalid number format: no values to aggregate");
+        }
+        if (values.size() > PARALLEL_THRESHOLD) {
+            return ForkJoinPool.commonPool().invoke(new ReduceTask(operation, values, 0, values.size()));
+        }
+        return reduce(operation, values, 0, values.size());
+    }
+
+    private BigDecimal reduce(AggregateOperation operation, List<BigDecimal> values, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            return fold(operation, values, from, to);
+        }
+        int middle = (from + to) >>> 1;
+        return combine(operation, reduce(operation, values, from, middle), reduce(operation, values, middle, to));
+    }
+
+    private BigDecimal fold(AggregateOperation operation, List<BigDecimal> values, int from, int to) {
+        BigDecimal accumulator = values.get(from);
+        validate(accumulator);
+        for (int i = from + 1; i < to; i++) {
+            BigDecimal value = values.get(i);
+            validate(value);
+            accumulator = combine(operation, accumulator, value);
+        }
+        return accumulator;
+    }
+
+    /**
+     * Merges the partial results of two consecutive chunks, left one first.
+     */
+    public BigDecimal combine(AggregateOperation operation, BigDecimal left, BigDecimal right) {
+        return switch (operation) {
+            case SUM, MEAN -> left.add(right);
+            case PRODUCT -> left.multiply(right, mathContext);
+            case MIN -> left.min(right);
+            case MAX -> left.max(right);
+        };
+    }
+
+    /**
+     * Turns the partial result of the whole input into the aggregate, rounded to the {@code MathContext}.
+     *
+     * @param partial the partial result of all values
+     * @param count   the number of values
+     */
+    public BigDecimal finish(AggregateOperation operation, BigDecimal partial, long count) {
+        if (operation == AggregateOperation.MEAN) {
+            return partial.divide(BigDecimal.valueOf(count), mathContext);
+        }
+        return partial.round(mathContext);
+    }
+
+    /**
+     * Parallel walk of the reduction tree: the right half is forked, the left half computed on the current thread.
+     */
+    private final class ReduceTask extends RecursiveTask<BigDecimal> {
+
+        private final AggregateOperation operation;
+        private final List<BigDecimal> values;
+        private final int from;
+        private final int to;
+
+        ReduceTask(AggregateOperation operation, List<BigDecimal> values, int from, int to) {
+            this.operation = operation;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BigDecimal compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                return reduce(operation, values, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            ReduceTask right = new ReduceTask(operation, values, middle, to);
+            right.fork();
+            BigDecimal left = new ReduceTask(operation, values, from, middle).compute();
+            return combine(operation, left, right.join());
+        }
+    }
+}
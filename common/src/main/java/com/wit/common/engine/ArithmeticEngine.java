@@ -0,0 +1,148 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.Operation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * Evaluates arithmetic operations with the rounding rules of a fixed {@link MathContext}.
+ * <p>
+ * Sum, subtraction and integer multiplication first try a fast path on the unscaled {@code long} values of the operands:
+ * the exact result is computed with overflow-checked long arithmetic and returned directly when it needs no
+ * rounding (it has at most {@code precision} digits). Since rounding an exact result that already fits the
+ * precision is a no-op, the outcome, scale included, is identical to the {@code BigDecimal} methods taking
+ * the same {@code MathContext}. Any overflow, scale outside the int range or result that would need rounding
+ * falls back to those methods. Division always uses {@code BigDecimal}.
+ */
+public final class ArithmeticEngine {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Sentinel for operands whose unscaled value does not fit in a long
+    private static final long NOT_COMPACT = Long.MIN_VALUE;
+
+    private final MathContext mathContext;
+
+    // Exclusive bound on the absolute unscaled result accepted by the fast path; 0 disables it
+    private final long fastPathLimit;
+
+    public ArithmeticEngine(MathContext mathContext) {
+        this.mathContext = mathContext;
+        int precision = mathContext.getPrecision();
+        this.fastPathLimit = precision > 0 && precision < POWERS_OF_TEN.length ? POWERS_OF_TEN[precision] : 0;
+    }
+
+    public MathContext mathContext() {
+        return mathContext;
+    }
+
+    /**
+     * Executes the specified arithmetic operation on two numbers.
+     *
+     * @param operation the operation to perform
+     * @param a         the first operand
+     * @param b         the second operand
+     * @return the result, rounded according to the engine's MathContext
+     * @throws ArithmeticException if dividing by zero
+     */
+    public BigDecimal evaluate(Operation operation, BigDecimal a, BigDecimal b) {
+        return switch (operation) {
+            case SUM -> add(a, b, false);
+            case SUBTRACTION -> add(a, b, true);
+            case MULTIPLICATION -> multiply(a, b);
+            case DIVISION -> {
+                if (b.signum() == 0) {
+                    throw new ArithmeticException("Division by zero is not allowed");
+                }
+                yield a.divide(b, mathContext);
+            }
+        };
+    }
+
+    private BigDecimal add(BigDecimal a, BigDecimal b, boolean negateB) {
+        if (fastPathLimit != 0) {
+            long x = unscaledLong(a);
+            long y = unscaledLong(b);
+            if (x != NOT_COMPACT && y != NOT_COMPACT) {
+                int scale = Math.max(a.scale(), b.scale());
+                // Align both unscaled values on the larger scale
+                x = rescale(x, scale - (long) a.scale());
+                y = rescale(y, scale - (long) b.scale());
+                if (x != NOT_COMPACT && y != NOT_COMPACT) {
+                    long result = negateB ? x - y : x + y;
+                    boolean overflow = negateB
+                            ? ((x ^ y) & (x ^ result)) < 0
+                            : ((x ^ result) & (y ^ result)) < 0;
+                    if (!overflow && fitsPrecision(result)) {
+                        return BigDecimal.valueOf(result, scale);
+                    }
+                }
+            }
+        }
+        return negateB ? a.subtract(b, mathContext) : a.add(b, mathContext);
+    }
+
+    /**
+     * Only integer operands take the fast path: for scaled compact operands BigDecimal.multiply already works on
+     * longs internally, and extracting their unscaled values would cost more than it saves.
+     */
+    private BigDecimal multiply(BigDecimal a, BigDecimal b) {
+        if (fastPathLimit != 0 && a.scale() == 0 && b.scale() == 0) {
+            long x = unscaledLong(a);
+            long y = unscaledLong(b);
+            if (x != NOT_COMPACT && y != NOT_COMPACT) {
+                long high = Math.multiplyHigh(x, y);
+                long result = x * y;
+                // No overflow when the high word is just the sign extension of the low word
+                if (high == (result >> 63) && fitsPrecision(result)) {
+                    return BigDecimal.valueOf(result);
+                }
+            }
+        }
+        return a.multiply(b, mathContext);
+    }
+
+    private boolean fitsPrecision(long value) {
+        return value > -fastPathLimit && value < fastPathLimit;
+    }
+
+    /**
+     * Multiplies an unscaled value by 10^digits, or returns {@link #NOT_COMPACT} on overflow.
+     */
+    private static long rescale(long value, long digits) {
+        if (digits == 0 || value == 0) {
+            return value;
+        }
+        if (digits >= POWERS_OF_TEN.length) {
+            return NOT_COMPACT;
+        }
+        long power = POWERS_OF_TEN[(int) digits];
+        long high = Math.multiplyHigh(value, power);
+        long result = value * power;
+        return high == (result >> 63) && result != NOT_COMPACT ? result : NOT_COMPACT;
+    }
+
+    /**
+     * Returns the unscaled value of a decimal as a long, or {@link #NOT_COMPACT} if it does not fit.
+     * Integers use {@link BigDecimal#longValueExact()}, which reads the compact value without allocating.
+     */
+    private static long unscaledLong(BigDecimal value) {
+        if (value.precision() > 18) {
+            return NOT_COMPACT;
+        }
+        if (value.scale() == 0) {
+            return value.longValueExact();
+        }
+        BigInteger unscaled = value.unscaledValue();
+        return unscaled.longValue();
+    }
+}
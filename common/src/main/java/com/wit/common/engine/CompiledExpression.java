@@ -0,0 +1,309 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An arithmetic expression compiled once into postfix code for a small stack machine, then evaluated any number
+ * of times with different variable bindings, without parsing again. Instances are immutable and thread-safe.
+ * <p>
+ * Grammar: {@code + -} and {@code * /} with the usual precedence and left associativity, unary {@code + -},
+ * parentheses, decimal literals ({@code 12}, {@code 1.5}, {@code 2E-3}) and variable names (letters, digits and
+ * underscores, not starting with a digit).
+ * Every binary operation is evaluated by {@link ArithmeticEngine#evaluate}, so {@code (a+b)*c} gives exactly the
+ * result of chaining the sum and multiplication endpoints: each intermediate result is rounded to the engine's
+ * {@code MathContext}. Literals, variables and negation are exact.
+ */
+public final class CompiledExpression {
+
+    /** Longest accepted expression, in characters. */
+    public static final int MAX_LENGTH = 4096;
+
+    // Deepest accepted nesting of parentheses and unary signs, keeping the recursive descent parser off the stack limit
+    private static final int MAX_NESTING = 128;
+
+    // Instruction layout: opcode in the low 3 bits, constant or variable index above
+    private static final int PUSH_CONSTANT = 0;
+    private static final int LOAD_VARIABLE = 1;
+    private static final int NEGATE = 2;
+    private static final int SUM = 3;
+    private static final int SUBTRACTION = 4;
+    private static final int MULTIPLICATION = 5;
+    private static final int DIVISION = 6;
+    private static final int OPCODE_BITS = 3;
+    private static final int OPCODE_MASK = (1 << OPCODE_BITS) - 1;
+
+    private final String text;
+    private final int[] code;
+    private final BigDecimal[] constants;
+    private final String[] variables;
+    private final int maxStack;
+
+    private CompiledExpression(String text, int[] code, BigDecimal[] constants, String[] variables, int maxStack) {
+        this.text = text;
+        this.code = code;
+        this.constants = constants;
+        this.variables = variables;
+        this.maxStack = maxStack;
+    }
+
+    /**
+     * Parses and compiles an expression.
+     *
+     * @throws InvalidRequestException with status {@link ReplyStatus#INVALID_EXPRESSION} if the text is not a valid expression
+     */
+    public static CompiledExpression compile(String text) {
+        if (text == null || text.isBlank()) {
+            throw invalid("empty expression");
+        }
+        if (text.length() > MAX_LENGTH) {
+            throw invalid("longer than " + MAX_LENGTH + " characters");
+        }
+        return new Parser(text).parse();
+    }
+
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Names of the variables of the expression, in order of first appearance.
+     */
+    public List<String> variables() {
+        return List.of(variables);
+    }
+
+    /**
+     * Evaluates the expression. Bindings of names the expression does not use are ignored.
+     *
+     * @param engine   evaluates the binary operations
+     * @param bindings value of every variable of the expression
+     * @return the result
+     * @throws InvalidRequestException with status {@link ReplyStatus#INVALID_EXPRESSION} if a variable is not bound
+     * @throws ArithmeticException     if dividing by zero
+     */
+    public BigDecimal evaluate(ArithmeticEngine engine, Map<String, BigDecimal> bindings) {
+        BigDecimal[] values = new BigDecimal[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            values[i] = bindings.get(variables[i]);
+            if (values[i] == null) {
+                throw invalid("unbound variable '" + variables[i] + "'");
+            }
+        }
+
+        BigDecimal[] stack = new BigDecimal[maxStack];
+        int top = -1;
+        for (int instruction : code) {
+            int opcode = instruction & OPCODE_MASK;
+            switch (opcode) {
+                case PUSH_CONSTANT -> stack[++top] = constants[instruction >>> OPCODE_BITS];
+                case LOAD_VARIABLE -> stack[++top] = values[instruction >>> OPCODE_BITS];
+                case NEGATE -> stack[top] = stack[top].negate();
+                default -> {
+                    BigDecimal b = stack[top--];
+                    stack[top] = engine.evaluate(operation(opcode), stack[top], b);
+                }
+            }
+        }
+        return stack[0];
+    }
+
+    private static Operation operation(int opcode) {
+        return switch (opcode) {
+            case SUM -> Operation.SUM;
+            case SUBTRACTION -> Operation.SUBTRACTION;
+            case MULTIPLICATION -> Operation.MULTIPLICATION;
+            default -> Operation.DIVISION;
+        };
+    }
+
+    private static InvalidRequestException invalid(String reason) {
+        return new InvalidRequestException(ReplyStatus.INVALID_EXPRESSION,
+                ReplyStatus.INVALID_EXPRESSION.defaultMessage() + ": " + reason);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Recursive descent parser emitting postfix code as it goes.
+     */
+    private static final class Parser {
+
+        private final String text;
+        private int position;
+        private int nesting;
+
+        private int[] code = new int[16];
+        private int size;
+        private final List<BigDecimal> constants = new ArrayList<>();
+        private final Map<String, Integer> variables = new LinkedHashMap<>();
+        private int stack;
+        private int maxStack;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        CompiledExpression parse() {
+            expression();
+            skipWhitespace();
+            if (position < text.length()) {
+                throw unexpected();
+            }
+            return new CompiledExpression(text, Arrays.copyOf(code, size), constants.toArray(new BigDecimal[0]),
+                    variables.keySet().toArray(new String[0]), maxStack);
+        }
+
+        private void expression() {
+            term();
+            while (true) {
+                char c = peek();
+                if (c == '+' || c == '-') {
+                    position++;
+                    term();
+                    emitBinary(c == '+' ? SUM : SUBTRACTION);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void term() {
+            unary();
+            while (true) {
+                char c = peek();
+                if (c == '*' || c == '/') {
+                    position++;
+                    unary();
+                    emitBinary(c == '*' ? MULTIPLICATION : DIVISION);
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private void unary() {
+            char c = peek();
+            if (c == '-' || c == '+') {
+                position++;
+                enter();
+                unary();
+                nesting--;
+                if (c == '-') {
+                    emit(NEGATE);
+                }
+                return;
+            }
+            primary();
+        }
+
+        private void primary() {
+            char c = peek();
+            if (c == '(') {
+                position++;
+                enter();
+                expression();
+                nesting--;
+                if (peek() != ')') {
+                    throw position < text.length() ? unexpected() : invalid("missing ')'");
+                }
+                position++;
+            } else if (isDigit(c) || c == '.') {
+                number();
+            } else if (Character.isLetter(c) || c == '_') {
+                variable();
+            } else {
+                throw position < text.length() ? unexpected() : invalid("unexpected end of expression");
+            }
+        }
+
+        private void number() {
+            int start = position;
+            while (position < text.length() && (isDigit(text.charAt(position)) || text.charAt(position) == '.')) {
+                position++;
+            }
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                    position++;
+                }
+                while (position < text.length() && isDigit(text.charAt(position))) {
+                    position++;
+                }
+            }
+            String literal = text.substring(start, position);
+            try {
+                constants.add(new BigDecimal(literal));
+            } catch (NumberFormatException e) {
+                throw invalid("invalid number '" + literal + "' at position " + start);
+            }
+            push(PUSH_CONSTANT | (constants.size() - 1) << OPCODE_BITS);
+        }
+
+        private void variable() {
+            int start = position;
+            while (position < text.length()
+                    && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            Integer index = variables.computeIfAbsent(text.substring(start, position), name -> variables.size());
+            push(LOAD_VARIABLE | index << OPCODE_BITS);
+        }
+
+        private void enter() {
+            if (++nesting > MAX_NESTING) {
+                throw invalid("nested deeper than " + MAX_NESTING + " levels");
+            }
+        }
+
+        private void push(int instruction) {
+            emit(instruction);
+            maxStack = Math.max(maxStack, ++stack);
+        }
+
+        private void emitBinary(int opcode) {
+            emit(opcode);
+            stack--;
+        }
+
+        private void emit(int instruction) {
+            if (size == code.length) {
+                code = Arrays.copyOf(code, size * 2);
+            }
+            code[size++] = instruction;
+        }
+
+        /**
+         * Skips whitespace and returns the next character, or 0 at the end of the text.
+         */
+        private char peek() {
+            skipWhitespace();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private void skipWhitespace() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private static boolean isDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+
+        private InvalidRequestException unexpected() {
+            return invalid("unexpected '" + text.charAt(position) + "' at position " + position);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.Operation;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Arithmetic on very large operands (tens of thousands to millions of digits) with a per-request {@link MathContext},
+ * precision 0 meaning exact. Results are identical, scale included, to the {@code BigDecimal} methods taking the same
+ * context; what differs is how large operands are computed:
+ * <ul>
+ * <li>Multiplication splits both operands in halves (Karatsuba) and multiplies the three half-size products on the
+ * common fork-join pool, recursively, down to operands of {@value #PARALLEL_THRESHOLD_BITS} bits. Single-core hosts
+ * keep {@link BigInteger#multiply}.</li>
+ * <li>Division multiplies the dividend by a reciprocal of the divisor computed with Newton's method, so it runs on
+ * the same parallel multiplication instead of a sequential long division. Only the leading digits of both operands
+ * are used, enough for the precision plus {@value #GUARD_DIGITS} guard digits; the result is rounded directly when the
+ * guard digits prove the rounding, and recomputed with {@link BigDecimal#divide(BigDecimal, MathContext)} in the rare
+ * cases too close to a rounding boundary.</li>
+ * <li>{@link #parse} converts long digit strings by splitting them in halves, instead of the quadratic
+ * {@code BigDecimal(String)} constructor.</li>
+ * </ul>
+ * Addition and subtraction are linear and use {@code BigDecimal} directly.
+ */
+public final class PreciseArithmetic {
+
+    // Operands below this size are multiplied with BigInteger.multiply (about 10,000 digits)
+    static final int PARALLEL_THRESHOLD_BITS = 1 << 15;
+
+    // Digits computed beyond the precision of a quotient, and its maximum error in units of its last digit
+    static final int GUARD_DIGITS = 12;
+    private static final long ERROR_UNITS = 100;
+
+    // Reciprocals of at most this many bits are computed by long division
+    private static final int RECIPROCAL_LEAF_BITS = 2048;
+
+    // Digit strings up to this length are converted by the BigInteger constructor
+    static final int PARSE_LEAF_DIGITS = 2048;
+
+    // 10^(PARSE_LEAF_DIGITS * 2^i), computed on first use
+    private static final AtomicReferenceArray<BigInteger> PARSE_POWERS = new AtomicReferenceArray<>(32);
+
+    private static final double LOG2_10 = Math.log(10) / Math.log(2);
+    private static final double LOG10_2 = Math.log10(2);
+
+    private PreciseArithmetic() {
+    }
+
+    /**
+     * Executes the specified arithmetic operation on two numbers.
+     *
+     * @param mathContext the precision (0 for exact) and rounding of the result
+     * @return the result, rounded according to the MathContext
+     * @throws ArithmeticException if dividing by zero, if an exact quotient has no finite decimal expansion,
+     *                             or if the result needs rounding with {@link RoundingMode#UNNECESSARY}
+     */
+    public static BigDecimal evaluate(Operation operation, BigDecimal a, BigDecimal b, MathContext mathContext) {
+        return switch (operation) {
+            case SUM -> a.add(b, mathContext);
+            case SUBTRACTION -> a.subtract(b, mathContext);
+            case MULTIPLICATION -> multiply(a, b, mathContext);
+            case DIVISION -> divide(a, b, mathContext);
+        };
+    }
+
+    /**
+     * Same as {@link BigDecimal#multiply(BigDecimal, MathContext)}, with the parallel multiplication.
+     */
+    public static BigDecimal multiply(BigDecimal a, BigDecimal b, MathContext mathContext) {
+        BigInteger x = a.unscaledValue();
+        BigInteger y = b.unscaledValue();
+        if (x.bitLength() < PARALLEL_THRESHOLD_BITS || y.bitLength() < PARALLEL_THRESHOLD_BITS) {
+            return a.multiply(b, mathContext);
+        }
+        long scale = (long) a.scale() + b.scale();
+        if (scale != (int) scale) {
+            throw new ArithmeticException(scale > 0 ? "Underflow" : "Overflow");
+        }
+        BigDecimal product = new BigDecimal(multiply(x, y), (int) scale);
+        return mathContext.getPrecision() == 0 ? product : product.round(mathContext);
+    }
+
+    /**
+     * Exact product of two integers, computed on the common fork-join pool when both have at least
+     * {@value #PARALLEL_THRESHOLD_BITS} bits and the pool has several workers: on a single core, the JDK's
+     * sequential Toom-Cook multiplication is faster than the Karatsuba split.
+     */
+    public static BigInteger multiply(BigInteger x, BigInteger y) {
+        if (ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return x.multiply(y);
+        }
+        return multiplyInParallel(x, y);
+    }
+
+    // Package-private for unit testing purposes (PreciseArithmeticTest), to cover single-core hosts
+    static BigInteger multiplyInParallel(BigInteger x, BigInteger y) {
+        if (x.bitLength() < PARALLEL_THRESHOLD_BITS || y.bitLength() < PARALLEL_THRESHOLD_BITS) {
+            return x.multiply(y);
+        }
+        BigInteger product = ForkJoinPool.commonPool().invoke(new MultiplyTask(x.abs(), y.abs()));
+        return x.signum() == y.signum() ? product : product.negate();
+    }
+
+    /**
+     * Same as {@link BigDecimal#divide(BigDecimal, MathContext)}; large operands or precisions go through the
+     * reciprocal of the divisor.
+     */
+    public static BigDecimal divide(BigDecimal a, BigDecimal b, MathContext mathContext) {
+        if (b.signum() == 0) {
+            throw new ArithmeticException("Division by zero is not allowed");
+        }
+        if (mathContext.getPrecision() == 0 || mathContext.getRoundingMode() == RoundingMode.UNNECESSARY || a.signum() == 0) {
+            return a.divide(b, mathContext);
+        }
+        int bits = workingBits(mathContext.getPrecision());
+        if (Math.max(bits, Math.max(a.unscaledValue().bitLength(), b.unscaledValue().bitLength())) < PARALLEL_THRESHOLD_BITS) {
+            return a.divide(b, mathContext);
+        }
+        return divideByReciprocal(a, b, mathContext);
+    }
+
+    /**
+     * Bits of the truncated operands and reciprocal for a quotient of the given precision: the guard digits,
+     * two more digits of headroom and 32 bits of slack for the truncation errors.
+     */
+    private static int workingBits(int precision) {
+        return (int) Math.ceil((precision + GUARD_DIGITS + 2L) * LOG2_10) + 32;
+    }
+
+    // Package-private for unit testing purposes (PreciseArithmeticTest), to cover small operands
+    static BigDecimal divideByReciprocal(BigDecimal a, BigDecimal b, MathContext mathContext) {
+        int workingDigits = mathContext.getPrecision() + GUARD_DIGITS;
+        int bits = workingBits(mathContext.getPrecision());
+        BigInteger dividend = a.unscaledValue().abs();
+        BigInteger divisor = b.unscaledValue().abs();
+
+        // Scale the quotient by 10^k so that its integer part has about workingDigits + 2 digits
+        long magnitude = (long) Math.floor((dividend.bitLength() - divisor.bitLength()) * LOG10_2);
+        long k = workingDigits + 2L - magnitude;
+        long scale = (long) a.scale() - b.scale() + k;
+        if (scale != (int) scale) {
+            return a.divide(b, mathContext);
+        }
+        Binary numerator = Binary.of(dividend).truncate(bits + 32);
+        Binary denominator = Binary.of(divisor).truncate(bits + 32);
+        Binary powerOfTen = Binary.powerOfTen(Math.abs(k), bits + 32);
+        if (k >= 0) {
+            numerator = numerator.times(powerOfTen).truncate(bits + 32);
+        } else {
+            denominator = denominator.times(powerOfTen).truncate(bits + 32);
+        }
+        denominator = denominator.normalize(bits);
+
+        // numerator / denominator = numerator.mantissa * reciprocal * 2^(numerator.exponent - denominator.exponent - 2 bits)
+        BigInteger reciprocal = reciprocal(denominator.mantissa, bits);
+        BigInteger product = multiply(numerator.mantissa, reciprocal);
+        long shift = numerator.exponent - denominator.exponent - 2L * bits;
+        BigInteger approximation = shift >= 0 ? product.shiftLeft((int) shift) : product.shiftRight((int) -shift);
+
+        // The exact quotient lies within ERROR_UNITS of the approximation: round it to the precision when all the
+        // values in that interval round alike. This also leaves exact quotients, whose dropped digits are all zeros,
+        // to BigDecimal, which gives them its preferred scale.
+        int precision = mathContext.getPrecision();
+        long drop = digitCount(approximation) - precision;
+        if (drop < GUARD_DIGITS / 2 || scale - drop != (int) (scale - drop)) {
+            return a.divide(b, mathContext);
+        }
+        BigInteger unit = BigInteger.TEN.pow((int) drop);
+        BigInteger[] division = approximation.divideAndRemainder(unit);
+        BigInteger remainder = division[1];
+        BigInteger error = BigInteger.valueOf(ERROR_UNITS);
+        BigInteger half = unit.shiftRight(1); // Exact: unit is even
+        if (remainder.compareTo(error) <= 0 || remainder.add(error).compareTo(unit) >= 0
+                || remainder.subtract(half).abs().compareTo(error) <= 0) {
+            return a.divide(b, mathContext); // Too close to a rounding boundary to decide from the guard digits
+        }
+        boolean negative = a.signum() != b.signum();
+        boolean awayFromZero = switch (mathContext.getRoundingMode()) {
+            case UP -> true;
+            case CEILING -> !negative;
+            case FLOOR -> negative;
+            case HALF_UP, HALF_DOWN, HALF_EVEN -> remainder.compareTo(half) > 0; // Never a tie here
+            default -> false;
+        };
+        BigInteger quotient = awayFromZero ? division[0].add(BigInteger.ONE) : division[0];
+        long quotientScale = scale - drop;
+        if (awayFromZero && digitCount(quotient) > precision) { // 99...9 rounded up to 10^precision
+            quotient = quotient.divide(BigInteger.TEN);
+            quotientScale--;
+            if (quotientScale != (int) quotientScale) {
+                return a.divide(b, mathContext);
+            }
+        }
+        return new BigDecimal(negative ? quotient.negate() : quotient, (int) quotientScale);
+    }
+
+    /**
+     * Number of decimal digits of a positive integer. Unlike {@link BigDecimal#precision()}, it does not compute a
+     * power of ten as large as the integer, except when the integer is within 2^-64 of one.
+     */
+    static long digitCount(BigInteger n) {
+        long digits = (long) ((n.bitLength() - 1) * LOG10_2) + 1; // Exact or one short, up to rounding of the product
+        while (compareWithPowerOfTen(n, digits) >= 0) {
+            digits++;
+        }
+        while (digits > 1 && compareWithPowerOfTen(n, digits - 1) < 0) {
+            digits--;
+        }
+        return digits;
+    }
+
+    /**
+     * Compares a positive integer with 10^e, first against a 128-bit approximation of 10^e.
+     */
+    private static int compareWithPowerOfTen(BigInteger n, long e) {
+        Binary power = Binary.powerOfTen(e, 128);
+        long powerLength = power.mantissa.bitLength() + power.exponent;
+        if (n.bitLength() > powerLength + 1) {
+            return 1;
+        }
+        if (n.bitLength() < powerLength - 1) {
+            return -1;
+        }
+        // Both within a factor of 4: compare their leading 128 bits, aligned to the same exponent
+        long exponent = n.bitLength() - 128L;
+        BigInteger leading = exponent > 0 ? n.shiftRight((int) exponent) : n.shiftLeft((int) -exponent);
+        long powerShift = power.exponent - exponent;
+        BigInteger powerLeading = powerShift >= 0 ? power.mantissa.shiftLeft((int) powerShift) : power.mantissa.shiftRight((int) -powerShift);
+        BigInteger difference = leading.subtract(powerLeading);
+        if (difference.bitLength() > 64) {
+            return difference.signum();
+        }
+        return e > Integer.MAX_VALUE ? -1 : n.compareTo(BigInteger.TEN.pow((int) e));
+    }
+
+    /**
+     * Newton's method for the reciprocal of a {@code bits}-bit integer: returns about {@code 2^(2 bits) / d},
+     * within a few units. The reciprocal {@code y} of the leading half of {@code d} is computed recursively, then
+     * refined with one Newton step, {@code y + y * (2^(2 bits) - d * y) / 2^(2 bits)}, which doubles its number of
+     * correct bits. Only the leading bits of the residual matter, so the step costs about one and a half
+     * half-size multiplications.
+     */
+    private static BigInteger reciprocal(BigInteger d, int bits) {
+        if (bits <= RECIPROCAL_LEAF_BITS) {
+            return BigInteger.ONE.shiftLeft(2 * bits).divide(d);
+        }
+        int half = bits / 2 + 16;
+        BigInteger y = reciprocal(d.shiftRight(bits - half), half);
+        BigInteger residual = BigInteger.ONE.shiftLeft(2 * bits).subtract(multiply(d, y).shiftLeft(bits - half));
+        BigInteger correction = multiply(y, residual.shiftRight(bits - 16)).shiftRight(half + 16);
+        return y.shiftLeft(bits - half).add(correction);
+    }
+
+    /**
+     * Same as {@link BigDecimal#BigDecimal(String)}: an optional sign, digits with an optional decimal point
+     * and an optional exponent. Long digit strings are converted in halves, on the common fork-join pool.
+     *
+     * @throws NumberFormatException if the text is not a valid decimal number or its scale is out of range
+     */
+    public static BigDecimal parse(String text) {
+        if (text.length() <= PARSE_LEAF_DIGITS) {
+            return new BigDecimal(text);
+        }
+        int length = text.length();
+        int index = 0;
+        boolean negative = false;
+        if (text.charAt(0) == '-' || text.charAt(0) == '+') {
+            negative = text.charAt(0) == '-';
+            index++;
+        }
+        StringBuilder digits = new StringBuilder(length);
+        long fractionDigits = 0;
+        boolean point = false;
+        long exponent = 0;
+        for (; index < length; index++) {
+            char c = text.charAt(index);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+                if (point) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !point) {
+                point = true;
+            } else if ((c == 'e' || c == 'E') && !digits.isEmpty()) {
+                exponent = Long.parseLong(text.substring(index + 1)); // Also accepts a sign
+                break;
+            } else {
+                throw new NumberFormatException("Invalid character '" + c + "' at position " + index);
+            }
+        }
+        if (digits.isEmpty()) {
+            throw new NumberFormatException("No digits");
+        }
+        long scale = fractionDigits - exponent;
+        if (scale != (int) scale) {
+            throw new NumberFormatException("Scale out of range");
+        }
+        String digitString = digits.toString();
+        BigInteger unscaled = digitString.length() <= PARSE_LEAF_DIGITS
+                ? new BigInteger(digitString)
+                : ForkJoinPool.commonPool().invoke(new ParseTask(digitString, 0, digitString.length()));
+        return new BigDecimal(negative ? unscaled.negate() : unscaled, (int) scale);
+    }
+
+    /**
+     * 10^(PARSE_LEAF_DIGITS * 2^level), the weight of the high half of a digit string split at that level.
+     */
+    private static BigInteger parsePower(int level) {
+        BigInteger power = PARSE_POWERS.get(level);
+        if (power == null) {
+            power = level == 0 ? BigInteger.TEN.pow(PARSE_LEAF_DIGITS) : multiply(parsePower(level - 1), parsePower(level - 1));
+            PARSE_POWERS.compareAndSet(level, null, power);
+        }
+        return power;
+    }
+
+    /**
+     * Karatsuba step on non-negative operands: the three half-size products are computed in parallel.
+     * An operand smaller than half of the other is not split; the larger one is, into two products.
+     */
+    private static final class MultiplyTask extends RecursiveTask<BigInteger> {
+
+        private final BigInteger x;
+        private final BigInteger y;
+
+        MultiplyTask(BigInteger x, BigInteger y) {
+            this.x = x;
+            this.y = y;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            if (x.bitLength() < PARALLEL_THRESHOLD_BITS || y.bitLength() < PARALLEL_THRESHOLD_BITS) {
+                return x.multiply(y);
+            }
+            BigInteger large = x.bitLength() >= y.bitLength() ? x : y;
+            BigInteger small = large == x ? y : x;
+            int half = ((large.bitLength() >>> 1) + 31) & ~31;
+            BigInteger large1 = large.shiftRight(half);
+            BigInteger large0 = large.subtract(large1.shiftLeft(half));
+            if (small.bitLength() <= half) {
+                MultiplyTask high = new MultiplyTask(large1, small);
+                high.fork();
+                BigInteger low = new MultiplyTask(large0, small).compute();
+                return high.join().shiftLeft(half).add(low);
+            }
+            BigInteger small1 = small.shiftRight(half);
+            BigInteger small0 = small.subtract(small1.shiftLeft(half));
+            MultiplyTask high = new MultiplyTask(large1, small1);
+            MultiplyTask low = new MultiplyTask(large0, small0);
+            high.fork();
+            low.fork();
+            BigInteger middle = new MultiplyTask(large0.add(large1), small0.add(small1)).compute();
+            BigInteger z0 = low.join();
+            BigInteger z2 = high.join();
+            return z2.shiftLeft(2 * half).add(middle.subtract(z2).subtract(z0).shiftLeft(half)).add(z0);
+        }
+    }
+
+    /**
+     * Converts digits[from, to): the high part times a power of ten plus the low part, converted in parallel.
+     * The low part is always {@code PARSE_LEAF_DIGITS * 2^level} digits long, so only a few powers are ever needed.
+     */
+    private static final class ParseTask extends RecursiveTask<BigInteger> {
+
+        private final String digits;
+        private final int from;
+        private final int to;
+
+        ParseTask(String digits, int from, int to) {
+            this.digits = digits;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected BigInteger compute() {
+            int length = to - from;
+            if (length <= PARSE_LEAF_DIGITS) {
+                return new BigInteger(digits.substring(from, to));
+            }
+            int level = 0;
+            while ((long) PARSE_LEAF_DIGITS << (level + 1) < length) {
+                level++;
+            }
+            int split = to - (PARSE_LEAF_DIGITS << level);
+            ParseTask high = new ParseTask(digits, from, split);
+            high.fork();
+            BigInteger low = new ParseTask(digits, split, to).compute();
+            return multiply(high.join(), parsePower(level)).add(low);
+        }
+    }
+
+    /**
+     * Non-negative binary floating-point value {@code mantissa * 2^exponent}, for the truncated operands of a division.
+     */
+    private record Binary(BigInteger mantissa, long exponent) {
+
+        static Binary of(BigInteger value) {
+            return new Binary(value, 0);
+        }
+
+        /**
+         * 10^n = 5^n * 2^n, with 5^n kept to about {@code bits} bits.
+         */
+        static Binary powerOfTen(long n, int bits) {
+            Binary result = of(BigInteger.ONE);
+            Binary base = of(BigInteger.valueOf(5));
+            for (long e = n; e > 0; e >>>= 1) {
+                if ((e & 1) != 0) {
+                    result = result.times(base).truncate(bits);
+                }
+                if (e > 1) {
+                    base = base.times(base).truncate(bits);
+                }
+            }
+            return new Binary(result.mantissa, result.exponent + n);
+        }
+
+        Binary times(Binary other) {
+            return new Binary(multiply(mantissa, other.mantissa), exponent + other.exponent);
+        }
+
+        /**
+         * Drops the low bits beyond {@code bits} significant bits.
+         */
+        Binary truncate(int bits) {
+            int excess = mantissa.bitLength() - bits;
+            return excess <= 0 ? this : new Binary(mantissa.shiftRight(excess), exponent + excess);
+        }
+
+        /**
+         * Same value with exactly {@code bits} significant bits, truncated or padded with zeros.
+         */
+        Binary normalize(int bits) {
+            int excess = mantissa.bitLength() - bits;
+            return excess >= 0 ? truncate(bits) : new Binary(mantissa.shiftLeft(-excess), exponent + excess);
+        }
+    }
+}
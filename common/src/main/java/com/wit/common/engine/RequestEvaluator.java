@@ -0,0 +1,194 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.Aggregation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Expression;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Evaluates decoded requests into replies: the calculation logic shared by the calculator service and by the REST
+ * service when it runs the calculator in-process. Arithmetic failures and invalid expressions or values become error
+ * results; nothing is thrown for a well-formed request. Instances are thread-safe.
+ */
+public final class RequestEvaluator {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestEvaluator.class);
+
+    /**
+     * Receives the evaluation time of every calculation, expression and aggregate chunk, and every error result.
+     * All methods default to doing nothing.
+     */
+    public interface Observer {
+
+        Observer NONE = new Observer() {
+        };
+
+        default void recordProcessing(Operation operation, long nanos) {
+        }
+
+        default void recordExpression(long nanos) {
+        }
+
+        default void recordAggregate(long nanos) {
+        }
+
+        default void error(ReplyStatus status) {
+        }
+    }
+
+    private final ArithmeticEngine engine;
+    private final Aggregator aggregator;
+    private final Function<String, CompiledExpression> expressions;
+    private final Observer observer;
+
+    /**
+     * @param mathContext the rounding rules of every operation
+     * @param expressions compiles expressions, typically through a cache; throws {@link InvalidRequestException} for invalid ones
+     * @param observer    receives timings and errors
+     */
+    public RequestEvaluator(MathContext mathContext, Function<String, CompiledExpression> expressions, Observer observer) {
+        this.engine = new ArithmeticEngine(mathContext);
+        this.aggregator = new Aggregator(mathContext);
+        this.expressions = expressions;
+        this.observer = observer;
+    }
+
+    /**
+     * Evaluates a whole request: one result per calculation in the same order, or the single result of its
+     * expression or aggregate chunk. Calculations carrying their own MathContext are evaluated under it.
+     */
+    public CalculationReply evaluate(CalculationRequest request) {
+        if (request.mathContext() != null) {
+            List<CalculationResult> results = new ArrayList<>(request.calculations().size());
+            for (Calculation calculation : request.calculations()) {
+                results.add(evaluate(calculation, request.mathContext()));
+            }
+            return new CalculationReply(results);
+        }
+        if (request.expression() != null) {
+            return CalculationReply.single(evaluate(request.expression()));
+        }
+        if (request.aggregation() != null) {
+            return CalculationReply.single(aggregate(request.aggregation()));
+        }
+        List<Calculation> calculations = request.calculations();
+        if (calculations.size() == 1) {
+            return CalculationReply.single(evaluate(calculations.get(0)));
+        }
+        List<CalculationResult> results = new ArrayList<>(calculations.size());
+        for (Calculation calculation : calculations) {
+            results.add(evaluate(calculation));
+        }
+        return new CalculationReply(results);
+    }
+
+    /**
+     * Evaluates a single calculation, turning arithmetic failures into error results.
+     * The evaluation time is recorded per operation, failures included.
+     */
+    public CalculationResult evaluate(Calculation calculation) {
+        long start = System.nanoTime();
+        try {
+            return CalculationResult.ok(engine.evaluate(calculation.operation(), calculation.a(), calculation.b()));
+        } catch (ArithmeticException e) {
+            log.debug("Arithmetic error: {}", e.getMessage());
+            observer.error(ReplyStatus.DIVISION_BY_ZERO);
+            return CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO);
+        } catch (Exception e) {
+            log.error("Unexpected error", e);
+            observer.error(ReplyStatus.INTERNAL_ERROR);
+            return CalculationResult.error(ReplyStatus.INTERNAL_ERROR);
+        } finally {
+            observer.recordProcessing(calculation.operation(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Evaluates a high-precision calculation under its own precision and rounding with {@link PreciseArithmetic},
+     * turning arithmetic failures into error results: division by zero, or a result that cannot be represented
+     * under the MathContext (a non-terminating exact quotient, or rounding with {@code UNNECESSARY}).
+     */
+    public CalculationResult evaluate(Calculation calculation, MathContext mathContext) {
+        long start = System.nanoTime();
+        try {
+            return CalculationResult.ok(PreciseArithmetic.evaluate(calculation.operation(), calculation.a(), calculation.b(), mathContext));
+        } catch (ArithmeticException e) {
+            log.debug("Arithmetic error: {}", e.getMessage());
+            ReplyStatus status = calculation.operation() == Operation.DIVISION && calculation.b().signum() == 0
+                    ? ReplyStatus.DIVISION_BY_ZERO : ReplyStatus.INVALID_NUMBER;
+            observer.error(status);
+            return status == ReplyStatus.DIVISION_BY_ZERO ? CalculationResult.error(status) : CalculationResult.error(status, e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error", e);
+            observer.error(ReplyStatus.INTERNAL_ERROR);
+            return CalculationResult.error(ReplyStatus.INTERNAL_ERROR);
+        } finally {
+            observer.recordProcessing(calculation.operation(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Evaluates an expression, turning invalid expressions and arithmetic failures into error results.
+     * Every step has the semantics of {@link ArithmeticEngine#evaluate}.
+     */
+    public CalculationResult evaluate(Expression expression) {
+        long start = System.nanoTime();
+        try {
+            return CalculationResult.ok(expressions.apply(expression.text()).evaluate(engine, expression.variables()));
+        } catch (InvalidRequestException e) {
+            observer.error(e.getStatus());
+            return CalculationResult.error(e.getStatus(), e.getMessage());
+        } catch (ArithmeticException e) {
+            log.debug("Arithmetic error: {}", e.getMessage());
+            observer.error(ReplyStatus.DIVISION_BY_ZERO);
+            return CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO);
+        } catch (Exception e) {
+            log.error("Unexpected error", e);
+            observer.error(ReplyStatus.INTERNAL_ERROR);
+            return CalculationResult.error(ReplyStatus.INTERNAL_ERROR);
+        } finally {
+            observer.recordExpression(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reduces a chunk of an aggregate into its partial result, turning invalid values into error results.
+     */
+    public CalculationResult aggregate(Aggregation aggregation) {
+        long start = System.nanoTime();
+        try {
+            return CalculationResult.ok(aggregator.reduce(aggregation.operation(), aggregation.values()));
+        } catch (InvalidRequestException e) {
+            observer.error(e.getStatus());
+            return CalculationResult.error(e.getStatus(), e.getMessage());
+        } catch (Exception e) {
+            log.error("Unexpected error", e);
+            observer.error(ReplyStatus.INTERNAL_ERROR);
+            return CalculationResult.error(ReplyStatus.INTERNAL_ERROR);
+        } finally {
+            observer.recordAggregate(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Evaluates a single operation under the evaluator's rounding rules.
+     *
+     * @throws ArithmeticException if dividing by zero
+     */
+    public BigDecimal performOperation(Operation operation, BigDecimal a, BigDecimal b) {
+        return engine.evaluate(operation, a, b);
+    }
+}
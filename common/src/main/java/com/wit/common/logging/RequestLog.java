@@ -0,0 +1,69 @@
+package com.wit.common.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Per-request summary log: one compact {@code key=value} line per request, written to the {@code requests} logger
+ * once the request is complete, instead of several free-text lines along the way.
+ * Successful requests are sampled, one in {@code logging.requests.sample-rate} on average; failed requests are
+ * always logged, at WARN. Callers check {@link #isSampled} first, so unsampled requests format and allocate nothing.
+ */
+@Component
+public class RequestLog {
+
+    // Name of the summary logger, so that it can be routed or leveled separately from the application logs
+    public static final String LOGGER_NAME = "requests";
+
+    private final Logger logger;
+
+    // 1 logs every success, N one in N on average, 0 none
+    private final int sampleRate;
+
+    @Autowired
+    public RequestLog(@Value("${logging.requests.sample-rate:1}") int sampleRate) {
+        this(LoggerFactory.getLogger(LOGGER_NAME), sampleRate);
+    }
+
+    public RequestLog(Logger logger, int sampleRate) {
+        if (sampleRate < 0) {
+            throw new IllegalArgumentException("logging.requests.sample-rate must not be negative");
+        }
+        this.logger = logger;
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Decides whether the summary of a request is logged: always for failures, one in N for successes.
+     *
+     * @param ok whether the request succeeded
+     */
+    public boolean isSampled(boolean ok) {
+        if (!ok) {
+            return logger.isWarnEnabled();
+        }
+        return sampleRate > 0 && logger.isInfoEnabled()
+                && (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0);
+    }
+
+    /**
+     * Writes the summary line of a request, at INFO for successes and WARN for failures.
+     * Call only when {@link #isSampled} returned true.
+     *
+     * @param ok        whether the request succeeded
+     * @param format    SLF4J message pattern of the {@code key=value} pairs
+     * @param arguments pattern arguments
+     */
+    public void log(boolean ok, String format, Object... arguments) {
+        if (ok) {
+            logger.info(format, arguments);
+        } else {
+            logger.warn(format, arguments);
+        }
+    }
+}
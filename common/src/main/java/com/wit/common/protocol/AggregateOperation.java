@@ -0,0 +1,66 @@
+package com.wit.common.protocol;
+
+/**
+ * Aggregates computed over a list of values, with the opcode used on the binary wire format
+ * and the name used by the REST API.
+ */
+public enum AggregateOperation {
+
+    SUM((byte) 1, "sum"),
+    PRODUCT((byte) 2, "product"),
+    MEAN((byte) 3, "mean"),
+    MIN((byte) 4, "min"),
+    MAX((byte) 5, "max");
+
+    private static final AggregateOperation[] BY_OPCODE = new AggregateOperation[6];
+
+    static {
+        for (AggregateOperation operation : values()) {
+            BY_OPCODE[operation.opcode] = operation;
+        }
+    }
+
+    private final byte opcode;
+    private final String operationName;
+
+    AggregateOperation(byte opcode, String operationName) {
+        this.opcode = opcode;
+        this.operationName = operationName;
+    }
+
+    public byte opcode() {
+        return opcode;
+    }
+
+    public String operationName() {
+        return operationName;
+    }
+
+    /**
+     * Resolves an aggregate by name, ignoring case and surrounding whitespace.
+     *
+     * @throws IllegalArgumentException if the aggregate is not supported
+     */
+    public static AggregateOperation fromName(String name) {
+        String trimmed = name.strip();
+        for (AggregateOperation operation : values()) {
+            if (operation.operationName.equalsIgnoreCase(trimmed)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Aggregate not supported: " + trimmed);
+    }
+
+    /**
+     * Resolves an aggregate by its binary opcode.
+     *
+     * @throws IllegalArgumentException if the opcode is unknown
+     */
+    public static AggregateOperation fromOpcode(byte opcode) {
+        AggregateOperation operation = opcode > 0 && opcode < BY_OPCODE.length ? BY_OPCODE[opcode] : null;
+        if (operation == null) {
+            throw new IllegalArgumentException("Aggregate not supported: opcode " + opcode);
+        }
+        return operation;
+    }
+}
@@ -0,0 +1,14 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A chunk of values to reduce with an aggregate. Large inputs are split into chunks by the REST service,
+ * reduced separately by the calculator and the partial results combined with {@code Aggregator#combine}.
+ *
+ * @param operation the aggregate to compute
+ * @param values    the values of the chunk, in input order
+ */
+public record Aggregation(AggregateOperation operation, List<BigDecimal> values) {
+}
@@ -0,0 +1,366 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary codec. Every frame starts with a version byte and a message type byte.
+ * <pre>
+ * request: VERSION TYPE_REQUEST varint(idLength) id varint(count) { opcode decimal(a) decimal(b) }*
+ * expression request: VERSION TYPE_EXPRESSION varint(idLength) id varint(length) utf8-expression
+ *                     varint(count) { varint(length) utf8-name decimal(value) }*
+ * aggregate request: VERSION TYPE_AGGREGATE varint(idLength) id opcode varint(count) decimal*
+ * precise request: VERSION TYPE_PRECISE varint(idLength) id varint(precision) rounding-mode
+ *                  varint(count) { opcode decimal(a) decimal(b) }*
+ * reply:   VERSION TYPE_REPLY varint(count) { status (decimal | varint(length) utf8-message) }*
+ * decimal: zigzag-varint(scale) varint(length) unscaled-two's-complement-bytes
+ * </pre>
+ * Unscaled values of up to 8 bytes are decoded without allocating a BigInteger.
+ */
+public final class BinaryWireCodec implements WireCodec {
+
+    public static final byte VERSION = 1;
+
+    private static final byte TYPE_REQUEST = 1;
+    private static final byte TYPE_REPLY = 2;
+    private static final byte TYPE_EXPRESSION = 3;
+    private static final byte TYPE_AGGREGATE = 4;
+    private static final byte TYPE_PRECISE = 5;
+
+    private static final RoundingMode[] ROUNDING_MODES = RoundingMode.values();
+
+    BinaryWireCodec() {
+    }
+
+    /**
+     * Upper bound of the encoded length of a decimal, computed from its precision without its unscaled value, so that
+     * frames can be kept under a size limit while they are assembled.
+     */
+    public static int maxDecimalLength(BigDecimal value) {
+        // Fewer than 54/128 bytes per digit (log2(10)/8), plus the sign byte, both varints and the rounding
+        return (int) ((value.precision() * 54L) >> 7) + 16;
+    }
+
+    @Override
+    public byte[] encodeRequest(CalculationRequest request) {
+        if (request.expression() != null) {
+            return encodeExpression(request.requestId(), request.expression());
+        }
+        if (request.aggregation() != null) {
+            return encodeAggregation(request.requestId(), request.aggregation());
+        }
+        byte[] id = request.requestId().getBytes(StandardCharsets.UTF_8);
+        List<Calculation> calculations = request.calculations();
+        MathContext mathContext = request.mathContext();
+        Writer writer = new Writer(14 + id.length + calculations.size() * 24);
+        writer.put(VERSION);
+        writer.put(mathContext == null ? TYPE_REQUEST : TYPE_PRECISE);
+        writer.putBytes(id);
+        if (mathContext != null) {
+            writer.putVarint(mathContext.getPrecision());
+            writer.put((byte) mathContext.getRoundingMode().ordinal());
+        }
+        writer.putVarint(calculations.size());
+        for (Calculation calculation : calculations) {
+            writer.put(calculation.operation().opcode());
+            writer.putDecimal(calculation.a());
+            writer.putDecimal(calculation.b());
+        }
+        return writer.toByteArray();
+    }
+
+    private static byte[] encodeExpression(String requestId, Expression expression) {
+        byte[] id = requestId.getBytes(StandardCharsets.UTF_8);
+        byte[] text = expression.text().getBytes(StandardCharsets.UTF_8);
+        Writer writer = new Writer(12 + id.length + text.length + expression.variables().size() * 16);
+        writer.put(VERSION);
+        writer.put(TYPE_EXPRESSION);
+        writer.putBytes(id);
+        writer.putBytes(text);
+        writer.putVarint(expression.variables().size());
+        for (Map.Entry<String, BigDecimal> variable : expression.variables().entrySet()) {
+            writer.putBytes(variable.getKey().getBytes(StandardCharsets.UTF_8));
+            writer.putDecimal(variable.getValue());
+        }
+        return writer.toByteArray();
+    }
+
+    private static byte[] encodeAggregation(String requestId, Aggregation aggregation) {
+        byte[] id = requestId.getBytes(StandardCharsets.UTF_8);
+        List<BigDecimal> values = aggregation.values();
+        Writer writer = new Writer(9 + id.length + values.size() * 10);
+        writer.put(VERSION);
+        writer.put(TYPE_AGGREGATE);
+        writer.putBytes(id);
+        writer.put(aggregation.operation().opcode());
+        writer.putVarint(values.size());
+        for (BigDecimal value : values) {
+            writer.putDecimal(value);
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public CalculationRequest decodeRequest(ByteBuffer buffer) {
+        try {
+            byte type = readHeader(buffer);
+            if (type != TYPE_REQUEST && type != TYPE_EXPRESSION && type != TYPE_AGGREGATE && type != TYPE_PRECISE) {
+                throw new MalformedMessageException("Unexpected message type " + type);
+            }
+            String requestId = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            if (requestId.isBlank()) {
+                throw new MalformedMessageException("Missing requestId in request");
+            }
+            if (type == TYPE_EXPRESSION) {
+                return decodeExpression(requestId, buffer);
+            }
+            if (type == TYPE_AGGREGATE) {
+                return decodeAggregation(requestId, buffer);
+            }
+            MathContext mathContext = type == TYPE_PRECISE ? readMathContext(buffer) : null;
+            int count = readVarint(buffer);
+            // Every calculation takes at least 7 bytes; never trust the count for the initial capacity
+            List<Calculation> calculations = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                byte opcode = buffer.get();
+                BigDecimal a = readDecimal(buffer);
+                BigDecimal b = readDecimal(buffer);
+                calculations.add(new Calculation(operation(opcode), a, b));
+            }
+            return new CalculationRequest(requestId, calculations, null, null, mathContext);
+        } catch (BufferUnderflowException e) {
+            throw new MalformedMessageException("Truncated request frame", e);
+        }
+    }
+
+    private static MathContext readMathContext(ByteBuffer buffer) {
+        int precision = readVarint(buffer);
+        byte rounding = buffer.get();
+        if (precision < 0) {
+            throw new MalformedMessageException("Invalid precision " + precision);
+        }
+        if (rounding < 0 || rounding >= ROUNDING_MODES.length) {
+            throw new MalformedMessageException("Unknown rounding mode " + rounding);
+        }
+        return MathContexts.of(precision, ROUNDING_MODES[rounding]);
+    }
+
+    private static CalculationRequest decodeExpression(String requestId, ByteBuffer buffer) {
+        String text = new String(readBytes(buffer), StandardCharsets.UTF_8);
+        int count = readVarint(buffer);
+        // Every variable takes at least 3 bytes; never trust the count for the initial capacity
+        Map<String, BigDecimal> variables = new HashMap<>(Math.min(count, buffer.remaining()) * 4 / 3 + 1);
+        for (int i = 0; i < count; i++) {
+            String name = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            variables.put(name, readDecimal(buffer));
+        }
+        return CalculationRequest.expression(requestId, text, variables);
+    }
+
+    private static CalculationRequest decodeAggregation(String requestId, ByteBuffer buffer) {
+        AggregateOperation operation = aggregateOperation(buffer.get());
+        int count = readVarint(buffer);
+        // Every value takes at least 2 bytes; never trust the count for the initial capacity
+        List<BigDecimal> values = new ArrayList<>(Math.min(count, buffer.remaining()));
+        for (int i = 0; i < count; i++) {
+            values.add(readDecimal(buffer));
+        }
+        return CalculationRequest.aggregation(requestId, operation, values);
+    }
+
+    @Override
+    public byte[] encodeReply(CalculationReply reply) {
+        List<CalculationResult> results = reply.results();
+        Writer writer = new Writer(8 + results.size() * 12);
+        writer.put(VERSION);
+        writer.put(TYPE_REPLY);
+        writer.putVarint(results.size());
+        for (CalculationResult result : results) {
+            writer.put(result.status().code());
+            if (result.isOk()) {
+                writer.putDecimal(result.value());
+            } else {
+                writer.putBytes(result.message().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    @Override
+    public CalculationReply decodeReply(ByteBuffer buffer) {
+        try {
+            if (readHeader(buffer) != TYPE_REPLY) {
+                throw new MalformedMessageException("Unexpected message type, expected a reply");
+            }
+            int count = readVarint(buffer);
+            List<CalculationResult> results = new ArrayList<>(Math.min(count, buffer.remaining()));
+            for (int i = 0; i < count; i++) {
+                ReplyStatus status = ReplyStatus.fromCode(buffer.get());
+                if (status == ReplyStatus.OK) {
+                    results.add(CalculationResult.ok(readDecimal(buffer)));
+                } else {
+                    results.add(CalculationResult.error(status, new String(readBytes(buffer), StandardCharsets.UTF_8)));
+                }
+            }
+            return new CalculationReply(results);
+        } catch (BufferUnderflowException e) {
+            throw new MalformedMessageException("Truncated reply frame", e);
+        }
+    }
+
+    private static Operation operation(byte opcode) {
+        try {
+            return Operation.fromOpcode(opcode);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(ReplyStatus.UNSUPPORTED_OPERATION, e.getMessage());
+        }
+    }
+
+    private static AggregateOperation aggregateOperation(byte opcode) {
+        try {
+            return AggregateOperation.fromOpcode(opcode);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidRequestException(ReplyStatus.UNSUPPORTED_OPERATION, e.getMessage());
+        }
+    }
+
+    /**
+     * Checks the version byte and returns the message type.
+     */
+    private static byte readHeader(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new MalformedMessageException("Unsupported wire format version " + version);
+        }
+        return buffer.get();
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                if (value < 0) {
+                    throw new MalformedMessageException("Negative length in frame");
+                }
+                return value;
+            }
+        }
+        throw new MalformedMessageException("Malformed varint");
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int zigzag = readVarintUnchecked(buffer);
+        int scale = (zigzag >>> 1) ^ -(zigzag & 1);
+        int length = readVarint(buffer);
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (length <= 8) {
+            // Sign-extend the big-endian two's complement bytes into a long
+            long unscaled = length == 0 ? 0 : buffer.get();
+            for (int i = 1; i < length; i++) {
+                unscaled = (unscaled << 8) | (buffer.get() & 0xFF);
+            }
+            return BigDecimal.valueOf(unscaled, scale);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new BigDecimal(new BigInteger(bytes), scale);
+    }
+
+    private static int readVarintUnchecked(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new MalformedMessageException("Malformed varint");
+    }
+
+    /**
+     * Growable byte buffer specialised for the frame layout.
+     */
+    private static final class Writer {
+
+        private byte[] bytes;
+        private int size;
+
+        Writer(int initialCapacity) {
+            this.bytes = new byte[initialCapacity];
+        }
+
+        void put(byte b) {
+            ensureCapacity(1);
+            bytes[size++] = b;
+        }
+
+        void putVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void putBytes(byte[] value) {
+            putVarint(value.length);
+            ensureCapacity(value.length);
+            System.arraycopy(value, 0, bytes, size, value.length);
+            size += value.length;
+        }
+
+        void putDecimal(BigDecimal value) {
+            int scale = value.scale();
+            putVarint((scale << 1) ^ (scale >> 31));
+            BigInteger unscaled = value.unscaledValue();
+            if (unscaled.bitLength() >= 64) {
+                putBytes(unscaled.toByteArray());
+                return;
+            }
+            // Minimal big-endian two's complement of a long, without the intermediate byte array
+            long bits = unscaled.longValue();
+            int length = (64 - Long.numberOfLeadingZeros(bits < 0 ? ~bits : bits)) / 8 + 1;
+            putVarint(length);
+            ensureCapacity(length);
+            for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (bits >> shift);
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return size == bytes.length ? bytes : Arrays.copyOf(bytes, size);
+        }
+    }
+}
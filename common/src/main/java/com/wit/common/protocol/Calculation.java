@@ -0,0 +1,13 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+
+/**
+ * A single arithmetic operation on two operands.
+ *
+ * @param operation the operation to perform
+ * @param a         the first operand
+ * @param b         the second operand
+ */
+public record Calculation(Operation operation, BigDecimal a, BigDecimal b) {
+}
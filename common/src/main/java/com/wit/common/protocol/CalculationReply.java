@@ -0,0 +1,15 @@
+package com.wit.common.protocol;
+
+import java.util.List;
+
+/**
+ * Message sent from the calculator back to the REST service, keyed by the requestId of the request.
+ *
+ * @param results one result per calculation of the request, in the same order
+ */
+public record CalculationReply(List<CalculationResult> results) {
+
+    public static CalculationReply single(CalculationResult result) {
+        return new CalculationReply(List.of(result));
+    }
+}
@@ -0,0 +1,47 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Message sent from the REST service to the calculator: one or more calculations sharing a requestId,
+ * a single expression or a chunk of values to aggregate. Single API calls carry one calculation; batch chunks
+ * carry many. Expression and aggregation requests carry no calculations and are answered with one result.
+ * High-precision calculations carry their own precision and rounding instead of the calculator's 10 digits.
+ *
+ * @param requestId    the identifier used to correlate the reply
+ * @param calculations the calculations to perform, answered in the same order
+ * @param expression   the expression to evaluate, or null
+ * @param aggregation  the values to aggregate, or null
+ * @param mathContext  the precision (0 for exact) and rounding of the calculations, or null for the calculator's default
+ */
+public record CalculationRequest(String requestId, List<Calculation> calculations, Expression expression,
+                                 Aggregation aggregation, MathContext mathContext) {
+
+    public CalculationRequest(String requestId, List<Calculation> calculations, Expression expression, Aggregation aggregation) {
+        this(requestId, calculations, expression, aggregation, null);
+    }
+
+    public CalculationRequest(String requestId, List<Calculation> calculations) {
+        this(requestId, calculations, null, null);
+    }
+
+    public static CalculationRequest single(String requestId, Operation operation, BigDecimal a, BigDecimal b) {
+        return new CalculationRequest(requestId, List.of(new Calculation(operation, a, b)));
+    }
+
+    public static CalculationRequest expression(String requestId, String text, Map<String, BigDecimal> variables) {
+        return new CalculationRequest(requestId, List.of(), new Expression(text, variables), null);
+    }
+
+    public static CalculationRequest aggregation(String requestId, AggregateOperation operation, List<BigDecimal> values) {
+        return new CalculationRequest(requestId, List.of(), null, new Aggregation(operation, values));
+    }
+
+    public static CalculationRequest precise(String requestId, Operation operation, BigDecimal a, BigDecimal b,
+                                             MathContext mathContext) {
+        return new CalculationRequest(requestId, List.of(new Calculation(operation, a, b)), null, null, mathContext);
+    }
+}
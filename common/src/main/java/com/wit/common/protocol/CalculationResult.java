@@ -0,0 +1,29 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of a single calculation: a value when the status is {@link ReplyStatus#OK}, an error message otherwise.
+ *
+ * @param status  the outcome of the calculation
+ * @param value   the computed value, or null on error
+ * @param message the error message, or null on success
+ */
+public record CalculationResult(ReplyStatus status, BigDecimal value, String message) {
+
+    public static CalculationResult ok(BigDecimal value) {
+        return new CalculationResult(ReplyStatus.OK, value, null);
+    }
+
+    public static CalculationResult error(ReplyStatus status, String message) {
+        return new CalculationResult(status, null, message);
+    }
+
+    public static CalculationResult error(ReplyStatus status) {
+        return new CalculationResult(status, null, status.defaultMessage());
+    }
+
+    public boolean isOk() {
+        return status == ReplyStatus.OK;
+    }
+}
@@ -0,0 +1,155 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Legacy text codec, kept for rolling upgrades from nodes that only understand it.
+ * A request is one "requestId,a,b,operation" line per calculation. A single-result reply is the bare
+ * result or error message; multi-result replies use one "OK,result" or "ERR,message" line per result.
+ * Expression and aggregate requests have no CSV layout and are always sent in the binary format.
+ */
+public final class CsvWireCodec implements WireCodec {
+
+    private static final String OK_PREFIX = "OK,";
+    private static final String ERROR_PREFIX = "ERR,";
+
+    CsvWireCodec() {
+    }
+
+    @Override
+    public byte[] encodeRequest(CalculationRequest request) {
+        if (request.expression() != null) {
+            throw new IllegalArgumentException("Expression requests require the binary wire format");
+        }
+        if (request.aggregation() != null) {
+            throw new IllegalArgumentException("Aggregate requests require the binary wire format");
+        }
+        if (request.mathContext() != null) {
+            throw new IllegalArgumentException("High-precision requests require the binary wire format");
+        }
+        StringBuilder message = new StringBuilder(request.calculations().size() * 48);
+        for (Calculation calculation : request.calculations()) {
+            if (!message.isEmpty()) {
+                message.append('\n');
+            }
+            message.append(request.requestId()).append(',')
+                    .append(calculation.a()).append(',')
+                    .append(calculation.b()).append(',')
+                    .append(calculation.operation().operationName());
+        }
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CalculationRequest decodeRequest(ByteBuffer buffer) {
+        String message = StandardCharsets.UTF_8.decode(buffer).toString();
+        String requestId = null;
+        List<Calculation> calculations = new ArrayList<>(1);
+        int start = 0;
+        while (start < message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            int first = message.indexOf(',', start);
+            int second = first < 0 ? -1 : message.indexOf(',', first + 1);
+            int third = second < 0 ? -1 : message.indexOf(',', second + 1);
+            int extra = third < 0 ? -1 : message.indexOf(',', third + 1);
+            if (third < 0 || third >= end || (extra >= 0 && extra < end)) {
+                throw new MalformedMessageException("Invalid message format: expected 4 parts");
+            }
+            String lineId = message.substring(start, first).strip();
+            if (lineId.isEmpty()) {
+                throw new MalformedMessageException("Missing requestId in request");
+            }
+            if (requestId == null) {
+                requestId = lineId;
+            }
+            BigDecimal a = parseDecimal(message.substring(first + 1, second));
+            BigDecimal b = parseDecimal(message.substring(second + 1, third));
+            Operation operation;
+            try {
+                operation = Operation.fromName(message.substring(third + 1, end));
+            } catch (IllegalArgumentException e) {
+                throw new InvalidRequestException(ReplyStatus.UNSUPPORTED_OPERATION, e.getMessage());
+            }
+            calculations.add(new Calculation(operation, a, b));
+            start = end + 1;
+        }
+        if (requestId == null) {
+            throw new MalformedMessageException("Empty message");
+        }
+        return new CalculationRequest(requestId, calculations);
+    }
+
+    private static BigDecimal parseDecimal(String value) {
+        try {
+            return new BigDecimal(value.strip());
+        } catch (NumberFormatException e) {
+            throw new InvalidRequestException(ReplyStatus.INVALID_NUMBER, ReplyStatus.INVALID_NUMBER.defaultMessage());
+        }
+    }
+
+    @Override
+    public byte[] encodeReply(CalculationReply reply) {
+        List<CalculationResult> results = reply.results();
+        if (results.size() == 1) {
+            CalculationResult result = results.get(0);
+            String text = result.isOk() ? result.value().toString() : result.message();
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        StringBuilder message = new StringBuilder(results.size() * 16);
+        for (CalculationResult result : results) {
+            if (!message.isEmpty()) {
+                message.append('\n');
+            }
+            if (result.isOk()) {
+                message.append(OK_PREFIX).append(result.value());
+            } else {
+                message.append(ERROR_PREFIX).append(result.message());
+            }
+        }
+        return message.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public CalculationReply decodeReply(ByteBuffer buffer) {
+        String message = StandardCharsets.UTF_8.decode(buffer).toString();
+        if (!message.startsWith(OK_PREFIX) && !message.startsWith(ERROR_PREFIX)) {
+            return CalculationReply.single(parseResult(message));
+        }
+        List<CalculationResult> results = new ArrayList<>();
+        int start = 0;
+        while (start <= message.length()) {
+            int end = message.indexOf('\n', start);
+            if (end < 0) {
+                end = message.length();
+            }
+            if (message.startsWith(OK_PREFIX, start)) {
+                results.add(parseResult(message.substring(start + OK_PREFIX.length(), end)));
+            } else if (message.startsWith(ERROR_PREFIX, start)) {
+                String error = message.substring(start + ERROR_PREFIX.length(), end);
+                results.add(CalculationResult.error(ReplyStatus.fromMessage(error), error));
+            } else {
+                throw new MalformedMessageException("Malformed reply line: " + message.substring(start, end));
+            }
+            start = end + 1;
+        }
+        return new CalculationReply(results);
+    }
+
+    /**
+     * A bare CSV result is either a number or an error message; the status of an error is inferred from its text.
+     */
+    private static CalculationResult parseResult(String text) {
+        try {
+            return CalculationResult.ok(new BigDecimal(text));
+        } catch (NumberFormatException e) {
+            return CalculationResult.error(ReplyStatus.fromMessage(text), text);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.wit.common.protocol;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * An arithmetic expression over named variables, evaluated by the calculator in one request,
+ * e.g. {@code (a + b) * c / d} with {@code a=1, b=2, c=3, d=4}.
+ *
+ * @param text      the expression, made of decimal literals, variable names, {@code + - * /} and parentheses
+ * @param variables the value bound to every variable of the expression
+ */
+public record Expression(String text, Map<String, BigDecimal> variables) {
+}
@@ -0,0 +1,19 @@
+package com.wit.common.protocol;
+
+/**
+ * Thrown when a request is well-formed but carries an invalid operand or operation.
+ * Unlike {@link MalformedMessageException}, the request can be answered with an error reply.
+ */
+public class InvalidRequestException extends RuntimeException {
+
+    private final ReplyStatus status;
+
+    public InvalidRequestException(ReplyStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public ReplyStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,16 @@
+package com.wit.common.protocol;
+
+/**
+ * Thrown when a message cannot be decoded at all (wrong layout, missing requestId, truncated frame).
+ * Such messages cannot be answered and are dropped.
+ */
+public class MalformedMessageException extends RuntimeException {
+
+    public MalformedMessageException(String message) {
+        super(message);
+    }
+
+    public MalformedMessageException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,42 @@
+package com.wit.common.protocol;
+
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Shared {@link MathContext} instances by precision and rounding mode, so that high-precision requests do not
+ * allocate one each. Contexts up to {@value #TABLE_PRECISION} digits are kept in a table; larger ones are created on
+ * demand, their allocation being negligible next to the arithmetic they are used for.
+ */
+public final class MathContexts {
+
+    private static final int TABLE_PRECISION = 1024;
+
+    private static final MathContext[][] TABLE = new MathContext[RoundingMode.values().length][TABLE_PRECISION + 1];
+
+    private MathContexts() {
+    }
+
+    /**
+     * Returns the context for a precision and rounding mode.
+     *
+     * @param precision number of significant digits, 0 for exact results
+     * @throws IllegalArgumentException if the precision is negative
+     */
+    public static MathContext of(int precision, RoundingMode roundingMode) {
+        if (precision < 0) {
+            throw new IllegalArgumentException("Precision must not be negative");
+        }
+        if (precision > TABLE_PRECISION) {
+            return new MathContext(precision, roundingMode);
+        }
+        MathContext[] contexts = TABLE[roundingMode.ordinal()];
+        MathContext context = contexts[precision];
+        if (context == null) {
+            // Racing threads may each create an equal instance; either one is fine to keep
+            context = new MathContext(precision, roundingMode);
+            contexts[precision] = context;
+        }
+        return context;
+    }
+}
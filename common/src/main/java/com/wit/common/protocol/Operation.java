@@ -0,0 +1,65 @@
+package com.wit.common.protocol;
+
+/**
+ * Arithmetic operations supported by the calculator, with the opcode used on the binary wire format
+ * and the name used by the REST API and the CSV wire format.
+ */
+public enum Operation {
+
+    SUM((byte) 1, "sum"),
+    SUBTRACTION((byte) 2, "subtraction"),
+    MULTIPLICATION((byte) 3, "multiplication"),
+    DIVISION((byte) 4, "division");
+
+    private static final Operation[] BY_OPCODE = new Operation[5];
+
+    static {
+        for (Operation operation : values()) {
+            BY_OPCODE[operation.opcode] = operation;
+        }
+    }
+
+    private final byte opcode;
+    private final String operationName;
+
+    Operation(byte opcode, String operationName) {
+        this.opcode = opcode;
+        this.operationName = operationName;
+    }
+
+    public byte opcode() {
+        return opcode;
+    }
+
+    public String operationName() {
+        return operationName;
+    }
+
+    /**
+     * Resolves an operation by name, ignoring case and surrounding whitespace.
+     *
+     * @throws IllegalArgumentException if the operation is not supported
+     */
+    public static Operation fromName(String name) {
+        String trimmed = name.strip();
+        for (Operation operation : values()) {
+            if (operation.operationName.equalsIgnoreCase(trimmed)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Operation not supported: " + trimmed);
+    }
+
+    /**
+     * Resolves an operation by its binary opcode.
+     *
+     * @throws IllegalArgumentException if the opcode is unknown
+     */
+    public static Operation fromOpcode(byte opcode) {
+        Operation operation = opcode > 0 && opcode < BY_OPCODE.length ? BY_OPCODE[opcode] : null;
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation not supported: opcode " + opcode);
+        }
+        return operation;
+    }
+}
@@ -0,0 +1,58 @@
+package com.wit.common.protocol;
+
+/**
+ * Outcome of a single calculation, with the code used on the binary wire format
+ * and the default message sent back to clients.
+ */
+public enum ReplyStatus {
+
+    OK((byte) 0, null),
+    DIVISION_BY_ZERO((byte) 1, "Division by zero is not allowed"),
+    INVALID_NUMBER((byte) 2, "Invalid number format"),
+    UNSUPPORTED_OPERATION((byte) 3, "Operation not supported"),
+    INTERNAL_ERROR((byte) 4, "Error in processing request"),
+    INVALID_EXPRESSION((byte) 5, "Invalid expression");
+
+    private static final ReplyStatus[] BY_CODE = values();
+
+    private final byte code;
+    private final String defaultMessage;
+
+    ReplyStatus(byte code, String defaultMessage) {
+        this.code = code;
+        this.defaultMessage = defaultMessage;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public String defaultMessage() {
+        return defaultMessage;
+    }
+
+    /**
+     * Resolves a status by its binary code; unknown codes (from newer peers) map to {@link #INTERNAL_ERROR}.
+     */
+    public static ReplyStatus fromCode(byte code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : INTERNAL_ERROR;
+    }
+
+    /**
+     * Infers the status of an error message received in the CSV format, which carries no status code.
+     */
+    public static ReplyStatus fromMessage(String message) {
+        if (message.startsWith(UNSUPPORTED_OPERATION.defaultMessage)) {
+            return UNSUPPORTED_OPERATION;
+        }
+        if (message.startsWith(INVALID_EXPRESSION.defaultMessage)) {
+            return INVALID_EXPRESSION;
+        }
+        for (ReplyStatus status : BY_CODE) {
+            if (message.equals(status.defaultMessage)) {
+                return status;
+            }
+        }
+        return INTERNAL_ERROR;
+    }
+}
@@ -0,0 +1,25 @@
+package com.wit.common.protocol;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes the messages exchanged between the REST service and the calculator.
+ * Implementations are stateless and thread-safe.
+ */
+public interface WireCodec {
+
+    byte[] encodeRequest(CalculationRequest request);
+
+    /**
+     * @throws MalformedMessageException if the message cannot be decoded
+     * @throws InvalidRequestException   if the message is well-formed but carries an invalid operand or operation
+     */
+    CalculationRequest decodeRequest(ByteBuffer buffer);
+
+    byte[] encodeReply(CalculationReply reply);
+
+    /**
+     * @throws MalformedMessageException if the message cannot be decoded
+     */
+    CalculationReply decodeReply(ByteBuffer buffer);
+}
@@ -0,0 +1,48 @@
+package com.wit.common.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Available wire formats. The configured format only selects how messages are <em>encoded</em>;
+ * decoding detects the format of every message, so nodes using different formats can coexist
+ * during a rolling upgrade.
+ */
+public enum WireFormat {
+
+    /** Legacy text format: "requestId,a,b,operation". */
+    CSV(new CsvWireCodec()),
+
+    /** Compact versioned binary format with opcodes and unscaled decimal bytes. */
+    BINARY(new BinaryWireCodec());
+
+    /** Configuration key read by the Kafka serializers. */
+    public static final String CONFIG = "calculator.wire.format";
+
+    private final WireCodec codec;
+
+    WireFormat(WireCodec codec) {
+        this.codec = codec;
+    }
+
+    public WireCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Resolves the format from a configuration value; a missing value selects {@link #BINARY}.
+     */
+    public static WireFormat fromConfig(Object value) {
+        return value == null ? BINARY : valueOf(value.toString().strip().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns the codec able to decode the given message, based on its first byte.
+     * Binary frames start with a version byte below any printable character; CSV messages never do.
+     */
+    public static WireCodec detect(ByteBuffer buffer) {
+        return buffer.hasRemaining() && buffer.get(buffer.position()) == BinaryWireCodec.VERSION
+                ? BINARY.codec
+                : CSV.codec;
+    }
+}
@@ -0,0 +1,26 @@
+package com.wit.common.protocol.kafka;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.WireFormat;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Kafka deserializer for {@link CalculationReply}. Accepts every wire format, detected per message.
+ * Decoding failures are thrown as-is; wrap this deserializer in an ErrorHandlingDeserializer
+ * so they reach the container error handler instead of blocking the partition.
+ */
+public class CalculationReplyDeserializer implements Deserializer<CalculationReply> {
+
+    @Override
+    public CalculationReply deserialize(String topic, byte[] data) {
+        return data == null ? null : deserialize(topic, null, ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public CalculationReply deserialize(String topic, Headers headers, ByteBuffer data) {
+        return data == null ? null : WireFormat.detect(data).decodeReply(data);
+    }
+}
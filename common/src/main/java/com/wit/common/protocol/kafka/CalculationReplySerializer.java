@@ -0,0 +1,27 @@
+package com.wit.common.protocol.kafka;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.WireCodec;
+import com.wit.common.protocol.WireFormat;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * Kafka serializer for {@link CalculationReply}. The wire format is read from the
+ * {@value WireFormat#CONFIG} client property and defaults to {@link WireFormat#BINARY}.
+ */
+public class CalculationReplySerializer implements Serializer<CalculationReply> {
+
+    private WireCodec codec = WireFormat.BINARY.codec();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        codec = WireFormat.fromConfig(configs.get(WireFormat.CONFIG)).codec();
+    }
+
+    @Override
+    public byte[] serialize(String topic, CalculationReply reply) {
+        return reply == null ? null : codec.encodeReply(reply);
+    }
+}
@@ -0,0 +1,32 @@
+package com.wit.common.protocol.kafka;
+
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.WireCodec;
+import com.wit.common.protocol.WireFormat;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.util.Map;
+
+/**
+ * Kafka serializer for {@link CalculationRequest}. The wire format is read from the
+ * {@value WireFormat#CONFIG} client property and defaults to {@link WireFormat#BINARY}.
+ * Expression, aggregate and high-precision requests, which the legacy CSV format cannot carry, are always encoded in binary.
+ */
+public class CalculationRequestSerializer implements Serializer<CalculationRequest> {
+
+    private WireCodec codec = WireFormat.BINARY.codec();
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        codec = WireFormat.fromConfig(configs.get(WireFormat.CONFIG)).codec();
+    }
+
+    @Override
+    public byte[] serialize(String topic, CalculationRequest request) {
+        if (request == null) {
+            return null;
+        }
+        boolean binaryOnly = request.expression() != null || request.aggregation() != null || request.mathContext() != null;
+        return (binaryOnly ? WireFormat.BINARY.codec() : codec).encodeRequest(request);
+    }
+}
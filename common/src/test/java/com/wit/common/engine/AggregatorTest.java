@@ -0,0 +1,100 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.ReplyStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AggregatorTest {
+
+    private static final MathContext mc = new MathContext(10);
+
+    private final Aggregator aggregator = new Aggregator(mc);
+
+    private static List<BigDecimal> randomValues(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<BigDecimal> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(BigDecimal.valueOf(random.nextLong(-10_000_000_000_000L, 10_000_000_000_000L), random.nextInt(0, 8)));
+        }
+        return values;
+    }
+
+    /**
+     * Reduces the values in chunks, as the REST service does, and finishes the combined partial.
+     */
+    private BigDecimal chunked(AggregateOperation operation, List<BigDecimal> values, int chunkSize) {
+        BigDecimal partial = null;
+        for (int from = 0; from < values.size(); from += chunkSize) {
+            BigDecimal chunk = aggregator.reduce(operation, values.subList(from, Math.min(values.size(), from + chunkSize)));
+            partial = partial == null ? chunk : aggregator.combine(operation, partial, chunk);
+        }
+        return aggregator.finish(operation, partial, values.size());
+    }
+
+    @Test
+    @DisplayName("Should match the sequential exact BigDecimal sum rounded to the MathContext, for any chunking")
+    void shouldMatchSequentialSum() {
+        List<BigDecimal> values = randomValues(50_000, 42);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (BigDecimal value : values) {
+            sum = sum.add(value);
+        }
+
+        assertEquals(sum.round(mc), chunked(AggregateOperation.SUM, values, values.size())); // Parallel, one chunk
+        assertEquals(sum.round(mc), chunked(AggregateOperation.SUM, values, 1000)); // Sequential chunks
+        assertEquals(sum.round(mc), chunked(AggregateOperation.SUM, values, 7));
+        assertEquals(sum.divide(BigDecimal.valueOf(values.size()), mc), chunked(AggregateOperation.MEAN, values, 3000));
+    }
+
+    @Test
+    @DisplayName("Should give the same product and extremes in parallel and sequentially")
+    void shouldReduceInParallelLikeSequentially() {
+        List<BigDecimal> values = new ArrayList<>();
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < 20_000; i++) {
+            values.add(BigDecimal.valueOf(random.nextLong(900_000, 1_100_000), 6)); // Around 1, keeps the product in range
+        }
+
+        for (AggregateOperation operation : List.of(AggregateOperation.PRODUCT, AggregateOperation.MIN, AggregateOperation.MAX)) {
+            BigDecimal parallel = aggregator.reduce(operation, values);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(parallel, aggregator.reduce(operation, values), "Reduction must not depend on scheduling");
+            }
+        }
+        assertEquals(values.stream().min(BigDecimal::compareTo).orElseThrow(),
+                aggregator.finish(AggregateOperation.MIN, aggregator.reduce(AggregateOperation.MIN, values), values.size()));
+        assertEquals(values.stream().max(BigDecimal::compareTo).orElseThrow(),
+                aggregator.finish(AggregateOperation.MAX, aggregator.reduce(AggregateOperation.MAX, values), values.size()));
+    }
+
+    @Test
+    @DisplayName("Should round each product step like chained multiplications on small inputs")
+    void shouldRoundProductsLikeChainedMultiplications() {
+        List<BigDecimal> values = List.of(new BigDecimal("1.234567891"), new BigDecimal("9.876543219"), new BigDecimal("3"));
+        BigDecimal expected = values.get(0).multiply(values.get(1), mc).multiply(values.get(2), mc);
+
+        assertEquals(expected, aggregator.finish(AggregateOperation.PRODUCT, aggregator.reduce(AggregateOperation.PRODUCT, values), 3));
+    }
+
+    @Test
+    @DisplayName("Should reject empty chunks and values with an unbounded exact sum")
+    void shouldRejectInvalidValues() {
+        InvalidRequestException empty = assertThrows(InvalidRequestException.class,
+                () -> aggregator.reduce(AggregateOperation.SUM, List.of()));
+        InvalidRequestException scale = assertThrows(InvalidRequestException.class,
+                () -> aggregator.reduce(AggregateOperation.SUM, List.of(BigDecimal.ONE, new BigDecimal("1E+100000"))));
+
+        assertEquals(ReplyStatus.INVALID_NUMBER, empty.getStatus());
+        assertEquals(ReplyStatus.INVALID_NUMBER, scale.getStatus());
+    }
+}
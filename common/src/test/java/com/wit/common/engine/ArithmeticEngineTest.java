@@ -0,0 +1,97 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.Operation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArithmeticEngineTest {
+
+    private static final MathContext mc = new MathContext(10);
+
+    private final ArithmeticEngine engine = new ArithmeticEngine(mc);
+
+    /**
+     * The original BigDecimal-only implementation, used as the reference for the differential test.
+     */
+    private static BigDecimal reference(BigDecimal a, BigDecimal b, Operation operation) {
+        return switch (operation) {
+            case SUM -> a.add(b, mc);
+            case SUBTRACTION -> a.subtract(b, mc);
+            case MULTIPLICATION -> a.multiply(b, mc);
+            case DIVISION -> a.divide(b, mc);
+        };
+    }
+
+    /**
+     * Random operand biased towards the edges of the fast path: small integers, values around the
+     * 10-digit precision limit, long-sized and larger unscaled values, zeros, and positive or negative scales.
+     */
+    private static BigDecimal randomOperand(SplittableRandom random) {
+        BigInteger unscaled = switch (random.nextInt(6)) {
+            case 0 -> BigInteger.valueOf(random.nextLong(-1000, 1000));
+            case 1 -> BigInteger.valueOf(random.nextLong(-10_000_000_000L, 10_000_000_000L));
+            case 2 -> BigInteger.valueOf(random.nextLong());
+            case 3 -> BigInteger.ZERO;
+            case 4 -> BigInteger.valueOf(random.nextLong(-100_000, 100_000)).multiply(BigInteger.TEN.pow(random.nextInt(20)));
+            default -> new BigInteger(random.nextInt(60, 130), new Random(random.nextLong()))
+                    .multiply(BigInteger.valueOf(random.nextBoolean() ? 1 : -1));
+        };
+        int scale = random.nextInt(4) == 0 ? random.nextInt(-25, 25) : random.nextInt(0, 6);
+        return new BigDecimal(unscaled, scale);
+    }
+
+    @Test
+    @DisplayName("Should match the BigDecimal implementation bit for bit, including scale, on random operands")
+    void shouldMatchReferenceImplementation() {
+        SplittableRandom random = new SplittableRandom(20240601L);
+        for (int i = 0; i < 500_000; i++) {
+            BigDecimal a = randomOperand(random);
+            BigDecimal b = randomOperand(random);
+            for (Operation operation : Operation.values()) {
+                if (operation == Operation.DIVISION && b.signum() == 0) {
+                    continue;
+                }
+                BigDecimal expected = reference(a, b, operation);
+                BigDecimal actual = engine.evaluate(operation, a, b);
+                // BigDecimal.equals compares unscaled value and scale
+                assertEquals(expected, actual, () -> operation + "(" + a + ", " + b + ")");
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should match the reference at the overflow and precision boundaries")
+    void shouldMatchReferenceAtBoundaries() {
+        BigDecimal[] edges = {
+                new BigDecimal("9999999999"), new BigDecimal("-9999999999"), new BigDecimal("10000000000"),
+                new BigDecimal("0.000000000"), new BigDecimal("0E+5"), new BigDecimal("5.00"),
+                BigDecimal.valueOf(Long.MAX_VALUE), BigDecimal.valueOf(Long.MIN_VALUE),
+                new BigDecimal("999999999999999999"), new BigDecimal("-999999999999999999"),
+                new BigDecimal("3037000499.97605"), new BigDecimal("1E-30"), new BigDecimal("1E+30")
+        };
+        for (BigDecimal a : edges) {
+            for (BigDecimal b : edges) {
+                for (Operation operation : new Operation[]{Operation.SUM, Operation.SUBTRACTION, Operation.MULTIPLICATION}) {
+                    assertEquals(reference(a, b, operation), engine.evaluate(operation, a, b),
+                            () -> operation + "(" + a + ", " + b + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject division by zero")
+    void shouldRejectDivisionByZero() {
+        ArithmeticException ex = assertThrows(ArithmeticException.class,
+                () -> engine.evaluate(Operation.DIVISION, BigDecimal.TEN, new BigDecimal("0.00")));
+        assertEquals("Division by zero is not allowed", ex.getMessage());
+    }
+}
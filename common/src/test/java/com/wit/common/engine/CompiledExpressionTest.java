@@ -0,0 +1,90 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledExpressionTest {
+
+    private final ArithmeticEngine engine = new ArithmeticEngine(new MathContext(10));
+
+    private BigDecimal evaluate(String text, Map<String, BigDecimal> bindings) {
+        return CompiledExpression.compile(text).evaluate(engine, bindings);
+    }
+
+    @Test
+    @DisplayName("Should apply precedence, left associativity, parentheses and unary signs")
+    void shouldFollowPrecedence() {
+        Map<String, BigDecimal> vars = Map.of("a", new BigDecimal("1"), "b", new BigDecimal("2"),
+                "c", new BigDecimal("3"), "d", new BigDecimal("4"));
+
+        assertEquals(new BigDecimal("2.25"), evaluate("(a+b)*c/d", vars));
+        assertEquals(new BigDecimal("7"), evaluate("a + b * c", vars));
+        assertEquals(new BigDecimal("3"), evaluate("10 - 4 - 3", Map.of()));
+        assertEquals(new BigDecimal("1"), evaluate("24 / 4 / 6", Map.of()));
+        assertEquals(new BigDecimal("1"), evaluate("-a + +b", vars));
+        assertEquals(new BigDecimal("-0.00300"), evaluate("-(1.5E-3 * 2.0)", Map.of()));
+    }
+
+    @Test
+    @DisplayName("Should give the same result as chaining the single operations, rounding every step")
+    void shouldMatchChainedOperations() {
+        BigDecimal a = new BigDecimal("1234567.891");
+        BigDecimal b = new BigDecimal("0.000123456789");
+        BigDecimal c = new BigDecimal("3");
+        BigDecimal d = new BigDecimal("7");
+
+        BigDecimal chained = engine.evaluate(Operation.DIVISION,
+                engine.evaluate(Operation.MULTIPLICATION, engine.evaluate(Operation.SUM, a, b), c), d);
+
+        assertEquals(chained, evaluate("(a + b) * c / d", Map.of("a", a, "b", b, "c", c, "d", d)));
+    }
+
+    @Test
+    @DisplayName("Should reuse a compiled expression with new bindings and list its variables in order")
+    void shouldReuseCompiledExpression() {
+        CompiledExpression expression = CompiledExpression.compile("x * x + y - x");
+
+        assertEquals(List.of("x", "y"), expression.variables());
+        assertEquals(new BigDecimal("3"), expression.evaluate(engine, Map.of("x", BigDecimal.ONE, "y", new BigDecimal("3"))));
+        assertEquals(new BigDecimal("8"), expression.evaluate(engine, Map.of("x", new BigDecimal("2"), "y", new BigDecimal("6"), "z", BigDecimal.TEN)));
+    }
+
+    @Test
+    @DisplayName("Should report division by zero as an arithmetic error")
+    void shouldFailOnDivisionByZero() {
+        assertThrows(ArithmeticException.class, () -> evaluate("a / (b - b)", Map.of("a", BigDecimal.ONE, "b", BigDecimal.TEN)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "  ", "1 +", "(1 + 2", "1 + 2)", "a b", "1..2", "2 % 3", "*3", "1e"})
+    @DisplayName("Should reject malformed expressions as invalid")
+    void shouldRejectMalformedExpressions(String text) {
+        InvalidRequestException e = assertThrows(InvalidRequestException.class, () -> CompiledExpression.compile(text));
+        assertEquals(ReplyStatus.INVALID_EXPRESSION, e.getStatus());
+        assertTrue(e.getMessage().startsWith("Invalid expression: "), e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Should reject unbound variables, deep nesting and overlong expressions")
+    void shouldRejectUnboundAndOversizedExpressions() {
+        InvalidRequestException unbound = assertThrows(InvalidRequestException.class,
+                () -> evaluate("a + b", Map.of("a", BigDecimal.ONE)));
+        assertEquals("Invalid expression: unbound variable 'b'", unbound.getMessage());
+
+        assertThrows(InvalidRequestException.class, () -> CompiledExpression.compile("(".repeat(200) + "1" + ")".repeat(200)));
+        assertThrows(InvalidRequestException.class, () -> CompiledExpression.compile("-".repeat(200) + "1"));
+        assertThrows(InvalidRequestException.class, () -> CompiledExpression.compile("1" + "+1".repeat(CompiledExpression.MAX_LENGTH)));
+    }
+}
@@ -0,0 +1,146 @@
+package com.wit.common.engine;
+
+import com.wit.common.protocol.Operation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreciseArithmeticTest {
+
+    private static BigInteger randomInteger(SplittableRandom random, int digits) {
+        StringBuilder text = new StringBuilder(digits + 1);
+        if (random.nextBoolean()) {
+            text.append('-');
+        }
+        text.append((char) ('1' + random.nextInt(9)));
+        for (int i = 1; i < digits; i++) {
+            text.append((char) ('0' + random.nextInt(10)));
+        }
+        return new BigInteger(text.toString());
+    }
+
+    private static BigDecimal randomDecimal(SplittableRandom random, int digits) {
+        return new BigDecimal(randomInteger(random, digits), random.nextInt(-20, digits + 20));
+    }
+
+    @Test
+    @DisplayName("Should multiply large integers exactly, balanced or not, whatever their signs")
+    void shouldMultiplyLargeIntegers() {
+        SplittableRandom random = new SplittableRandom(42);
+        int[][] sizes = {{20_000, 20_000}, {60_000, 45_000}, {100_000, 12_000}, {5, 80_000}};
+        for (int[] size : sizes) {
+            BigInteger x = randomInteger(random, size[0]);
+            BigInteger y = randomInteger(random, size[1]);
+            assertEquals(x.multiply(y), PreciseArithmetic.multiplyInParallel(x, y));
+        }
+    }
+
+    @Test
+    @DisplayName("Should multiply large decimals like BigDecimal, rounded or exact")
+    void shouldMultiplyLargeDecimals() {
+        SplittableRandom random = new SplittableRandom(7);
+        BigDecimal a = randomDecimal(random, 30_000);
+        BigDecimal b = randomDecimal(random, 25_000);
+        for (MathContext mc : new MathContext[]{MathContext.UNLIMITED, new MathContext(50, RoundingMode.DOWN),
+                new MathContext(40_000, RoundingMode.HALF_EVEN)}) {
+            assertEquals(a.multiply(b, mc), PreciseArithmetic.evaluate(Operation.MULTIPLICATION, a, b, mc));
+        }
+    }
+
+    @Test
+    @DisplayName("Should divide through the reciprocal like BigDecimal, scale included, in every rounding mode")
+    void shouldDivideLikeBigDecimal() {
+        SplittableRandom random = new SplittableRandom(11);
+        RoundingMode[] modes = {RoundingMode.UP, RoundingMode.DOWN, RoundingMode.CEILING, RoundingMode.FLOOR,
+                RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN};
+        for (int i = 0; i < 700; i++) {
+            BigDecimal a = randomDecimal(random, random.nextInt(1, 400));
+            BigDecimal b = randomDecimal(random, random.nextInt(1, 400));
+            MathContext mc = new MathContext(random.nextInt(1, 300), modes[i % modes.length]);
+            assertEquals(a.divide(b, mc), PreciseArithmetic.divideByReciprocal(a, b, mc), () -> a + " / " + b + " " + mc);
+        }
+    }
+
+    @Test
+    @DisplayName("Should divide exact and tie quotients like BigDecimal")
+    void shouldDivideExactQuotientsAndTies() {
+        SplittableRandom random = new SplittableRandom(13);
+        for (int i = 0; i < 200; i++) {
+            BigDecimal b = randomDecimal(random, random.nextInt(1, 200));
+            BigDecimal quotient = randomDecimal(random, random.nextInt(1, 50));
+            BigDecimal a = b.multiply(quotient);
+            MathContext mc = new MathContext(random.nextInt(1, 80), RoundingMode.values()[i % 7]);
+            assertEquals(a.divide(b, mc), PreciseArithmetic.divideByReciprocal(a, b, mc), () -> a + " / " + b + " " + mc);
+        }
+        BigDecimal one = BigDecimal.ONE;
+        BigDecimal eight = new BigDecimal("8.00");
+        for (RoundingMode mode : new RoundingMode[]{RoundingMode.HALF_UP, RoundingMode.HALF_DOWN, RoundingMode.HALF_EVEN}) {
+            MathContext mc = new MathContext(2, mode); // 0.125 is a tie at 2 digits
+            assertEquals(one.divide(eight, mc), PreciseArithmetic.divideByReciprocal(one, eight, mc));
+            assertEquals(one.negate().divide(eight, mc), PreciseArithmetic.divideByReciprocal(one.negate(), eight, mc));
+        }
+    }
+
+    @Test
+    @DisplayName("Should divide large operands at high precision like BigDecimal")
+    void shouldDivideLargeOperands() {
+        SplittableRandom random = new SplittableRandom(17);
+        BigDecimal a = randomDecimal(random, 40_000);
+        BigDecimal b = randomDecimal(random, 30_000);
+        for (MathContext mc : new MathContext[]{new MathContext(25_000, RoundingMode.HALF_UP), new MathContext(30, RoundingMode.FLOOR)}) {
+            assertEquals(a.divide(b, mc), PreciseArithmetic.evaluate(Operation.DIVISION, a, b, mc));
+        }
+        BigDecimal c = randomDecimal(random, 15_000);
+        MathContext mc = new MathContext(50_000, RoundingMode.HALF_EVEN);
+        assertEquals(b.multiply(c).divide(b, mc), PreciseArithmetic.divide(b.multiply(c), b, mc), "Exact quotient");
+    }
+
+    @Test
+    @DisplayName("Should count the digits of integers next to powers of ten")
+    void shouldCountDigits() {
+        for (int e : new int[]{1, 2, 17, 18, 19, 300, 4_000}) {
+            BigInteger power = BigInteger.TEN.pow(e);
+            assertEquals(e, PreciseArithmetic.digitCount(power.subtract(BigInteger.ONE)));
+            assertEquals(e + 1, PreciseArithmetic.digitCount(power));
+            assertEquals(e + 1, PreciseArithmetic.digitCount(power.add(BigInteger.ONE)));
+        }
+        assertEquals(1, PreciseArithmetic.digitCount(BigInteger.ONE));
+    }
+
+    @Test
+    @DisplayName("Should fail division by zero and non-terminating exact quotients")
+    void shouldFailInvalidDivisions() {
+        MathContext mc = new MathContext(20, RoundingMode.HALF_UP);
+        ArithmeticException e = assertThrows(ArithmeticException.class,
+                () -> PreciseArithmetic.divide(BigDecimal.ONE, BigDecimal.ZERO, mc));
+        assertEquals("Division by zero is not allowed", e.getMessage());
+        assertThrows(ArithmeticException.class,
+                () -> PreciseArithmetic.divide(BigDecimal.ONE, BigDecimal.valueOf(3), MathContext.UNLIMITED));
+        assertThrows(ArithmeticException.class,
+                () -> PreciseArithmetic.divide(BigDecimal.ONE, BigDecimal.valueOf(3), new MathContext(5, RoundingMode.UNNECESSARY)));
+    }
+
+    @Test
+    @DisplayName("Should parse long numbers like the BigDecimal constructor")
+    void shouldParseLikeBigDecimal() {
+        SplittableRandom random = new SplittableRandom(23);
+        for (int digits : new int[]{10, 3_000, 50_000}) {
+            String integer = randomInteger(random, digits).toString();
+            String fraction = integer.substring(0, integer.length() / 3) + "." + integer.substring(integer.length() / 3);
+            for (String text : new String[]{integer, fraction, "+" + integer.replace("-", ""), fraction + "E-12", fraction + "e+7"}) {
+                assertEquals(new BigDecimal(text), PreciseArithmetic.parse(text));
+            }
+        }
+        String digits = "7".repeat(5_000);
+        for (String invalid : new String[]{digits + "x", digits + "..", "-." + "e".repeat(5_000), digits + "E", digits + "E99999999999"}) {
+            assertThrows(NumberFormatException.class, () -> PreciseArithmetic.parse(invalid));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.wit.common.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestLogTest {
+
+    private static final int REQUESTS = 100_000;
+
+    private final Logger logger = (Logger) LoggerFactory.getLogger("requests-test");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+    }
+
+    @AfterEach
+    void detach() {
+        logger.detachAppender(appender);
+    }
+
+    private int sampled(RequestLog requestLog, boolean ok) {
+        int sampled = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (requestLog.isSampled(ok)) {
+                sampled++;
+            }
+        }
+        return sampled;
+    }
+
+    @Test
+    @DisplayName("Should log every request with a sample rate of 1")
+    void shouldLogEveryRequest() {
+        RequestLog requestLog = new RequestLog(logger, 1);
+
+        assertEquals(REQUESTS, sampled(requestLog, true));
+        assertEquals(REQUESTS, sampled(requestLog, false));
+    }
+
+    @Test
+    @DisplayName("Should log about one in N successes and every failure")
+    void shouldSampleSuccessesOnly() {
+        RequestLog requestLog = new RequestLog(logger, 10);
+
+        int successes = sampled(requestLog, true);
+        assertTrue(successes > REQUESTS / 10 * 0.9 && successes < REQUESTS / 10 * 1.1, "sampled " + successes);
+        assertEquals(REQUESTS, sampled(requestLog, false));
+    }
+
+    @Test
+    @DisplayName("Should log no success with a sample rate of 0, or when the logger is off")
+    void shouldSkipSuccesses() {
+        assertEquals(0, sampled(new RequestLog(logger, 0), true));
+
+        logger.setLevel(Level.OFF);
+        assertEquals(0, sampled(new RequestLog(logger, 1), true));
+        assertEquals(0, sampled(new RequestLog(logger, 1), false));
+    }
+
+    @Test
+    @DisplayName("Should write successes at INFO and failures at WARN")
+    void shouldLogSummaryLine() {
+        RequestLog requestLog = new RequestLog(logger, 1);
+
+        requestLog.log(true, "requestId={} status={}", "r1", 200);
+        requestLog.log(false, "requestId={} status={}", "r2", 504);
+
+        assertEquals(2, appender.list.size());
+        assertEquals(Level.INFO, appender.list.get(0).getLevel());
+        assertEquals("requestId=r1 status=200", appender.list.get(0).getFormattedMessage());
+        assertEquals(Level.WARN, appender.list.get(1).getLevel());
+    }
+}
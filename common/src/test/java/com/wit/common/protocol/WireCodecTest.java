@@ -0,0 +1,137 @@
+package com.wit.common.protocol;
+
+import com.wit.common.protocol.kafka.CalculationRequestSerializer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireCodecTest {
+
+    private static final CalculationRequest BATCH = new CalculationRequest("req-1", List.of(
+            new Calculation(Operation.SUM, new BigDecimal("2"), new BigDecimal("3")),
+            new Calculation(Operation.DIVISION, new BigDecimal("-1.50"), new BigDecimal("1E+3")),
+            new Calculation(Operation.MULTIPLICATION, new BigDecimal("123456789012345678901234567890.123"), BigDecimal.ZERO)));
+
+    private static final CalculationReply REPLY = new CalculationReply(List.of(
+            CalculationResult.ok(new BigDecimal("5")),
+            CalculationResult.ok(new BigDecimal("-0.0015")),
+            CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO)));
+
+    @ParameterizedTest
+    @EnumSource(WireFormat.class)
+    @DisplayName("Should round-trip requests and replies, keeping operand scale, in every format")
+    void shouldRoundTrip(WireFormat format) {
+        WireCodec codec = format.codec();
+
+        byte[] request = codec.encodeRequest(BATCH);
+        byte[] reply = codec.encodeReply(REPLY);
+
+        // Decoding goes through format detection, as the Kafka deserializers do
+        assertEquals(BATCH, WireFormat.detect(ByteBuffer.wrap(request)).decodeRequest(ByteBuffer.wrap(request)));
+        assertEquals(REPLY, WireFormat.detect(ByteBuffer.wrap(reply)).decodeReply(ByteBuffer.wrap(reply)));
+    }
+
+    @Test
+    @DisplayName("Should keep the legacy CSV layout for single requests and replies")
+    void shouldEncodeLegacyCsv() {
+        WireCodec csv = WireFormat.CSV.codec();
+
+        byte[] request = csv.encodeRequest(CalculationRequest.single("abc", Operation.SUM, new BigDecimal("1.5"), new BigDecimal("2")));
+        byte[] reply = csv.encodeReply(CalculationReply.single(CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO)));
+
+        assertEquals("abc,1.5,2,sum", new String(request, StandardCharsets.UTF_8));
+        assertEquals("Division by zero is not allowed", new String(reply, StandardCharsets.UTF_8));
+        assertEquals(CalculationReply.single(CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO)),
+                csv.decodeReply(ByteBuffer.wrap(reply)));
+    }
+
+    @Test
+    @DisplayName("Should reject unknown binary opcodes as invalid requests and truncated frames as malformed")
+    void shouldRejectInvalidBinaryFrames() {
+        WireCodec binary = WireFormat.BINARY.codec();
+        byte[] frame = binary.encodeRequest(CalculationRequest.single("id", Operation.SUM, BigDecimal.ONE, BigDecimal.ONE));
+
+        byte[] unknownOpcode = frame.clone();
+        unknownOpcode[6] = 42; // version, type, id length, 'i', 'd', count, opcode
+        InvalidRequestException invalid = assertThrows(InvalidRequestException.class,
+                () -> binary.decodeRequest(ByteBuffer.wrap(unknownOpcode)));
+        assertEquals(ReplyStatus.UNSUPPORTED_OPERATION, invalid.getStatus());
+
+        assertThrows(MalformedMessageException.class,
+                () -> binary.decodeRequest(ByteBuffer.wrap(frame, 0, frame.length - 1)));
+    }
+
+    @Test
+    @DisplayName("Should round-trip expression requests in binary, also when the serializer is configured for CSV")
+    void shouldRoundTripExpressions() {
+        CalculationRequest request = CalculationRequest.expression("expr-1", "(a + b) * c",
+                Map.of("a", new BigDecimal("1.50"), "b", new BigDecimal("-2E+5"), "c", new BigDecimal("123456789012345678901")));
+        CalculationRequestSerializer serializer = new CalculationRequestSerializer();
+        serializer.configure(Map.of(WireFormat.CONFIG, "csv"), false);
+
+        byte[] frame = serializer.serialize("calculator-requests", request);
+
+        assertEquals(request, WireFormat.detect(ByteBuffer.wrap(frame)).decodeRequest(ByteBuffer.wrap(frame)));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.CSV.codec().encodeRequest(request));
+    }
+
+    @Test
+    @DisplayName("Should round-trip aggregate requests in binary and reject unknown aggregates")
+    void shouldRoundTripAggregations() {
+        CalculationRequest request = CalculationRequest.aggregation("agg-1-0", AggregateOperation.MEAN,
+                List.of(new BigDecimal("1.50"), new BigDecimal("-2E+5"), new BigDecimal("123456789012345678901"), BigDecimal.ZERO));
+        CalculationRequestSerializer serializer = new CalculationRequestSerializer();
+        serializer.configure(Map.of(WireFormat.CONFIG, "csv"), false);
+
+        byte[] frame = serializer.serialize("calculator-batch-requests", request);
+        byte[] unknown = frame.clone();
+        unknown[2 + 1 + "agg-1-0".length()] = 9; // Aggregate opcode after version, type and id
+
+        assertEquals(request, WireFormat.detect(ByteBuffer.wrap(frame)).decodeRequest(ByteBuffer.wrap(frame)));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.CSV.codec().encodeRequest(request));
+        InvalidRequestException invalid = assertThrows(InvalidRequestException.class,
+                () -> WireFormat.BINARY.codec().decodeRequest(ByteBuffer.wrap(unknown)));
+        assertEquals(ReplyStatus.UNSUPPORTED_OPERATION, invalid.getStatus());
+    }
+
+    @Test
+    @DisplayName("Should bound the encoded length of decimals from their precision")
+    void shouldBoundDecimalLength() {
+        for (String value : List.of("0", "-1", "9", "999", "-128", "1E-1000", "18446744073709551616",
+                "9".repeat(170) + "E+1000", "-" + "9".repeat(1000))) {
+            BigDecimal decimal = new BigDecimal(value);
+            int empty = WireFormat.BINARY.codec().encodeRequest(
+                    CalculationRequest.aggregation("agg", AggregateOperation.SUM, List.of())).length;
+            int length = WireFormat.BINARY.codec().encodeRequest(
+                    CalculationRequest.aggregation("agg", AggregateOperation.SUM, List.of(decimal))).length - empty;
+            assertTrue(length <= BinaryWireCodec.maxDecimalLength(decimal), value);
+        }
+    }
+
+    @Test
+    @DisplayName("Should round-trip high-precision requests with their MathContext in binary and reject unknown rounding modes")
+    void shouldRoundTripPreciseRequests() {
+        CalculationRequest request = CalculationRequest.precise("prec-1", Operation.DIVISION,
+                new BigDecimal("1" + "0".repeat(5_000) + ".25"), new BigDecimal("-3E-7"), MathContexts.of(2_000, RoundingMode.HALF_EVEN));
+        CalculationRequestSerializer serializer = new CalculationRequestSerializer();
+        serializer.configure(Map.of(WireFormat.CONFIG, "csv"), false);
+
+        byte[] frame = serializer.serialize("calculator-batch-requests", request);
+        byte[] unknown = frame.clone();
+        unknown[2 + 1 + "prec-1".length() + 2] = 42; // Rounding mode after version, type, id and the 2-byte precision
+
+        assertEquals(request, WireFormat.detect(ByteBuffer.wrap(frame)).decodeRequest(ByteBuffer.wrap(frame)));
+        assertThrows(IllegalArgumentException.class, () -> WireFormat.CSV.codec().encodeRequest(request));
+        assertThrows(MalformedMessageException.class, () -> WireFormat.BINARY.codec().decodeRequest(ByteBuffer.wrap(unknown)));
+    }
+}
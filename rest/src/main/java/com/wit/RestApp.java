@@ -3,7 +3,8 @@ package com.wit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@SpringBootApplication
+// Only this module and the shared components: the calculator's, on the test class path, are not part of the service
+@SpringBootApplication(scanBasePackages = {"com.wit.rest", "com.wit.common"})
 public class RestApp {
 
     public static void main(String[] args) {
@@ -0,0 +1,145 @@
+package com.wit.rest.aggregate;
+
+import com.wit.common.engine.Aggregator;
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.BinaryWireCodec;
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.pending.RequestIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Service that aggregates a stream of values of any length with bounded memory.
+ * Values are read one at a time and sent to the calculator in chunks of {@code calculator.aggregate.chunk-size} values,
+ * one Kafka round trip per chunk. A chunk is also sent early once its encoded values would exceed
+ * {@code calculator.aggregate.max-chunk-size}, which keeps records of large values under the producer's
+ * {@code max.request.size}. At most {@code calculator.aggregate.max-in-flight-chunks} chunks await their partial
+ * result; when the limit is reached the reading thread waits for the oldest one and folds it into the running partial,
+ * so memory stays at {@code chunk-size * max-in-flight-chunks} values whatever the input size. Partials are combined
+ * in input order and finished with the calculator's {@code MathContext}.
+ * <p>
+ * That wait is the back-pressure on the reader: the request thread is held while the body is read and while chunks
+ * are awaited, like the body reads themselves. The endpoint is meant to run on virtual threads
+ * ({@code spring.threads.virtual.enabled}); on platform threads every aggregate in progress holds a Tomcat worker.
+ */
+@Service
+public class AggregateService {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregateService.class);
+
+    // Combines and finishes partial results with the MathContext of the calculator (10 digits)
+    private static final Aggregator aggregator = new Aggregator(new MathContext(10));
+
+    private final KafkaService kafkaService;
+    private final RequestIdGenerator requestIds;
+    private final int chunkSize;
+    private final long maxChunkBytes;
+    private final int maxInFlightChunks;
+
+    public AggregateService(KafkaService kafkaService, RequestIdGenerator requestIds,
+                            @Value("${calculator.aggregate.chunk-size:10000}") int chunkSize,
+                            @Value("${calculator.aggregate.max-chunk-size:512KB}") DataSize maxChunkSize,
+                            @Value("${calculator.aggregate.max-in-flight-chunks:8}") int maxInFlightChunks) {
+        if (chunkSize < 1 || maxInFlightChunks < 1) {
+            throw new IllegalArgumentException("calculator.aggregate.chunk-size and max-in-flight-chunks must be at least 1");
+        }
+        if (maxChunkSize.toBytes() < DataSize.ofKilobytes(1).toBytes()) {
+            throw new IllegalArgumentException("calculator.aggregate.max-chunk-size must be at least 1KB");
+        }
+        this.kafkaService = kafkaService;
+        this.requestIds = requestIds;
+        this.chunkSize = chunkSize;
+        this.maxChunkBytes = maxChunkSize.toBytes();
+        this.maxInFlightChunks = maxInFlightChunks;
+    }
+
+    /**
+     * Aggregates every value of the iterator, which is consumed on the calling thread. The calling thread also waits
+     * whenever {@code max-in-flight-chunks} chunks await their partial result.
+     * Invalid values (missing, more than {@value Aggregator#MAX_DIGITS} digits or scale out of range) and empty inputs
+     * fail with an {@link InvalidRequestException} and stop the reading; a chunk that cannot be answered
+     * (timeout, overload, Kafka failure) fails the aggregate. Exceptions thrown by the iterator itself propagate.
+     *
+     * @param requestId unique identifier of the aggregate, used in logs; every chunk is sent under a requestId of its own
+     * @param operation the aggregate to compute
+     * @param values    the values, read once
+     * @param client    the client of the aggregate for the limiter's fair sharing, or null
+     * @return a future with the aggregate, rounded to 10 digits
+     */
+    public CompletableFuture<BigDecimal> execute(String requestId, AggregateOperation operation, Iterator<BigDecimal> values,
+                                                 String client) {
+        Deque<CompletableFuture<BigDecimal>> inFlight = new ArrayDeque<>(maxInFlightChunks);
+        BigDecimal partial = null;
+        long count = 0;
+        int chunks = 0;
+        List<BigDecimal> chunk = new ArrayList<>(chunkSize);
+        long chunkBytes = 0;
+        try {
+            while (values.hasNext()) {
+                BigDecimal value = values.next();
+                if (value == null) {
+                    throw new InvalidRequestException(ReplyStatus.INVALID_NUMBER, "Missing value at position " + (count + 1));
+                }
+                Aggregator.validate(value); // Rejected locally, never sent to Kafka
+                int length = BinaryWireCodec.maxDecimalLength(value);
+                // The chunk is sent when full, or when this value would take its record over max-chunk-size
+                if (chunk.size() == chunkSize || (!chunk.isEmpty() && chunkBytes + length > maxChunkBytes)) {
+                    if (inFlight.size() == maxInFlightChunks) {
+                        partial = fold(operation, partial, inFlight.poll().join()); // Back-pressure on the reader
+                    }
+                    inFlight.add(sendChunk(requestId, chunks++, operation, chunk, client));
+                    chunk = new ArrayList<>(chunkSize);
+                    chunkBytes = 0;
+                }
+                chunk.add(value);
+                chunkBytes += length;
+                count++;
+            }
+        } catch (CompletionException e) {
+            return CompletableFuture.failedFuture(e.getCause() != null ? e.getCause() : e);
+        } catch (InvalidRequestException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (count == 0) {
+            return CompletableFuture.failedFuture(new InvalidRequestException(ReplyStatus.INVALID_NUMBER, "No values to aggregate"));
+        }
+        if (!chunk.isEmpty()) {
+            inFlight.add(sendChunk(requestId, chunks++, operation, chunk, client));
+        }
+
+        log.debug("Dispatched aggregate: requestId={}, operation={}, values={}, chunks={}", requestId,
+                operation.operationName(), count, chunks);
+        CompletableFuture<BigDecimal> result = CompletableFuture.completedFuture(partial);
+        for (CompletableFuture<BigDecimal> pending : inFlight) {
+            result = result.thenCombine(pending, (left, right) -> fold(operation, left, right));
+        }
+        long total = count;
+        return result.thenApply(all -> aggregator.finish(operation, all, total));
+    }
+
+    private CompletableFuture<BigDecimal> sendChunk(String requestId, int index, AggregateOperation operation,
+                                                    List<BigDecimal> chunk, String client) {
+        String chunkId = requestIds.next();
+        log.debug("Sending aggregate chunk: requestId={}, chunk={}, chunkRequestId={}", requestId, index, chunkId);
+        return kafkaService.sendAggregate(chunkId, operation, chunk, client);
+    }
+
+    private static BigDecimal fold(AggregateOperation operation, BigDecimal partial, BigDecimal chunk) {
+        return partial == null ? chunk : aggregator.combine(operation, partial, chunk);
+    }
+}
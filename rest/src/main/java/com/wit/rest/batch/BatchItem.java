@@ -0,0 +1,13 @@
+package com.wit.rest.batch;
+
+import java.math.BigDecimal;
+
+/**
+ * A single operation inside a batch request, e.g. {@code {"op": "sum", "a": 1, "b": 2}}.
+ *
+ * @param op the operation to perform (sum, subtraction, multiplication, division)
+ * @param a  the first operand
+ * @param b  the second operand
+ */
+public record BatchItem(String op, BigDecimal a, BigDecimal b) {
+}
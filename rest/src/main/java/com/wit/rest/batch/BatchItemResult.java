@@ -0,0 +1,23 @@
+package com.wit.rest.batch;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+
+/**
+ * Outcome of a single batch item: either a result or an error message, never both.
+ *
+ * @param result the computed value, or null if the item failed
+ * @param error  the error message, or null if the item succeeded
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(BigDecimal result, String error) {
+
+    public static BatchItemResult success(BigDecimal result) {
+        return new BatchItemResult(result, null);
+    }
+
+    public static BatchItemResult failure(String error) {
+        return new BatchItemResult(null, error);
+    }
+}
@@ -0,0 +1,11 @@
+package com.wit.rest.batch;
+
+import java.util.List;
+
+/**
+ * Response of a batch request. Results are in the same order as the submitted items.
+ *
+ * @param results one entry per submitted item
+ */
+public record BatchResponse(List<BatchItemResult> results) {
+}
@@ -0,0 +1,113 @@
+package com.wit.rest.batch;
+
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.pending.RequestIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service that executes batches of operations with one Kafka round trip per chunk instead of one per item.
+ * Items are validated locally (unknown operations never reach Kafka), split into chunks of at most {@code calculator.batch.chunk-size} items,
+ * sent concurrently and reassembled in the original order.
+ */
+@Service
+public class BatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchService.class);
+
+    private final KafkaService kafkaService;
+    private final RequestIdGenerator requestIds;
+    private final int maxBatchSize;
+    private final int chunkSize;
+
+    public BatchService(KafkaService kafkaService, RequestIdGenerator requestIds,
+                        @Value("${calculator.batch.max-size:10000}") int maxBatchSize,
+                        @Value("${calculator.batch.chunk-size:1000}") int chunkSize) {
+        this.kafkaService = kafkaService;
+        this.requestIds = requestIds;
+        this.maxBatchSize = maxBatchSize;
+        this.chunkSize = chunkSize;
+    }
+
+    public int maxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Executes all items of a batch.
+     * The returned future fails if the batch is too large or if any chunk could not be answered
+     * (timeout, overload, Kafka failure); arithmetic errors are reported per item instead.
+     *
+     * @param batchId unique identifier of the batch, used in logs; every chunk is sent under a requestId of its own
+     * @param items   the operations to perform
+     * @param client  the client of the batch for the limiter's fair sharing, or null
+     * @return a future with one result per item, in submission order
+     */
+    public CompletableFuture<List<BatchItemResult>> execute(String batchId, List<BatchItem> items, String client) {
+        if (items.size() > maxBatchSize) {
+            return CompletableFuture.failedFuture(new BatchTooLargeException(maxBatchSize));
+        }
+
+        BatchItemResult[] results = new BatchItemResult[items.size()];
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        List<Calculation> chunk = new ArrayList<>(Math.min(chunkSize, items.size()));
+        int[] positions = new int[chunkSize];
+
+        for (int i = 0; i < items.size(); i++) {
+            BatchItem item = items.get(i);
+            if (item == null || item.op() == null || item.a() == null || item.b() == null) {
+                results[i] = BatchItemResult.failure("Missing operation or operand");
+                continue;
+            }
+            Operation operation;
+            try {
+                operation = Operation.fromName(item.op());
+            } catch (IllegalArgumentException e) {
+                results[i] = BatchItemResult.failure(e.getMessage()); // Rejected locally, never sent to Kafka
+                continue;
+            }
+            positions[chunk.size()] = i;
+            chunk.add(new Calculation(operation, item.a(), item.b()));
+            if (chunk.size() == chunkSize) {
+                chunks.add(sendChunk(batchId, chunks.size(), chunk, positions, results, client));
+                chunk = new ArrayList<>(chunkSize);
+                positions = new int[chunkSize];
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(sendChunk(batchId, chunks.size(), chunk, positions, results, client));
+        }
+
+        log.info("Dispatched batch: requestId={}, items={}, chunks={}", batchId, items.size(), chunks.size());
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new))
+                .thenApply(v -> Arrays.asList(results));
+    }
+
+    /**
+     * Sends one chunk and copies its results to their original positions once the reply arrives.
+     */
+    private CompletableFuture<Void> sendChunk(String batchId, int index, List<Calculation> chunk, int[] positions,
+                                              BatchItemResult[] results, String client) {
+        String chunkId = requestIds.next();
+        log.debug("Sending batch chunk: requestId={}, chunk={}, chunkRequestId={}", batchId, index, chunkId);
+        return kafkaService.sendBatch(chunkId, chunk, client)
+                .thenAccept(chunkResults -> {
+                    for (int j = 0; j < chunkResults.size(); j++) {
+                        CalculationResult result = chunkResults.get(j);
+                        results[positions[j]] = result.isOk()
+                                ? BatchItemResult.success(result.value())
+                                : BatchItemResult.failure(result.message());
+                    }
+                });
+    }
+}
@@ -0,0 +1,12 @@
+package com.wit.rest.batch;
+
+/**
+ * Thrown when a batch contains more items than the configured maximum.
+ * Mapped to HTTP 413 Payload Too Large by the controller.
+ */
+public class BatchTooLargeException extends RuntimeException {
+
+    public BatchTooLargeException(int maxBatchSize) {
+        super("Batch exceeds the maximum of " + maxBatchSize + " items");
+    }
+}
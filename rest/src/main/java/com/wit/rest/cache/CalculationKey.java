@@ -0,0 +1,37 @@
+package com.wit.rest.cache;
+
+import com.wit.common.protocol.Operation;
+
+import java.math.BigDecimal;
+
+/**
+ * Identity of a calculation, used as the result cache key.
+ * Operands keep their representation, scale included, since results keep it too ({@code sum(2.0, 3)} is
+ * {@code 5.0}, {@code sum(2, 3)} is {@code 5}); for commutative operations they are ordered, so
+ * {@code sum(2.0, 3)} and {@code sum(3, 2.0)} share the same key. Building a key never rescales an operand.
+ *
+ * @param operation the operation to perform
+ * @param a         the first operand
+ * @param b         the second operand
+ */
+public record CalculationKey(Operation operation, BigDecimal a, BigDecimal b) {
+
+    /**
+     * Builds the key of a calculation, ordering the operands of sum and multiplication.
+     */
+    public static CalculationKey of(Operation operation, BigDecimal a, BigDecimal b) {
+        boolean commutative = operation == Operation.SUM || operation == Operation.MULTIPLICATION;
+        if (commutative && compare(a, b) > 0) {
+            return new CalculationKey(operation, b, a);
+        }
+        return new CalculationKey(operation, a, b);
+    }
+
+    /**
+     * Total order of representations: by value, then by scale for equal values ({@code 2} before {@code 2.0}).
+     */
+    private static int compare(BigDecimal a, BigDecimal b) {
+        int byValue = a.compareTo(b);
+        return byValue != 0 ? byValue : Integer.compare(a.scale(), b.scale());
+    }
+}
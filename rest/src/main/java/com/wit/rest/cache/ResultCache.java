@@ -0,0 +1,96 @@
+package com.wit.rest.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Cache of calculation results in front of Kafka, keyed on the normalized calculation.
+ * The number of entries is bounded and every entry expires a fixed time after it was computed.
+ * Identical requests are coalesced: while a calculation is in flight, every identical request shares
+ * its future, so only one Kafka message is sent. Failed calculations are not cached.
+ */
+@Component
+public class ResultCache {
+
+    // Null when the cache is disabled
+    private final AsyncCache<CalculationKey, String> cache;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter coalesced;
+
+    @Autowired
+    public ResultCache(@Value("${calculator.cache.enabled:true}") boolean enabled,
+                       @Value("${calculator.cache.max-size:100000}") long maxSize,
+                       @Value("${calculator.cache.ttl:10m}") Duration ttl,
+                       MeterRegistry meterRegistry) {
+        this(enabled, maxSize, ttl, Ticker.systemTicker(), meterRegistry);
+    }
+
+    // Package-private for unit testing purposes (ResultCacheTest), with a controllable clock
+    ResultCache(boolean enabled, long maxSize, Duration ttl, Ticker ticker, MeterRegistry meterRegistry) {
+        this.cache = enabled
+                ? Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).ticker(ticker).buildAsync()
+                : null;
+
+        this.hits = Counter.builder("calculator.cache.hits")
+                .description("Requests answered from a cached result")
+                .register(meterRegistry);
+        this.misses = Counter.builder("calculator.cache.misses")
+                .description("Requests sent to the calculator because no result was cached")
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("calculator.cache.coalesced")
+                .description("Requests that joined an identical request already in flight")
+                .register(meterRegistry);
+        if (cache != null) {
+            Gauge.builder("calculator.cache.size", cache, c -> c.synchronous().estimatedSize())
+                    .description("Cached and in-flight results")
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the cached or in-flight result of the calculation, or computes it with the loader.
+     *
+     * @param key    the normalized calculation
+     * @param loader sends the calculation; called only when no identical request is cached or in flight
+     * @return the result, shared by every identical request until it expires
+     */
+    public CompletableFuture<String> get(CalculationKey key, Supplier<CompletableFuture<String>> loader) {
+        if (cache == null) {
+            return loader.get();
+        }
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = cache.asMap().putIfAbsent(key, created);
+        if (existing != null) {
+            (existing.isDone() ? hits : coalesced).increment();
+            return existing;
+        }
+
+        misses.increment();
+        try {
+            // A failed result completes the entry exceptionally, which removes it from the cache
+            loader.get().whenComplete((result, ex) -> {
+                if (ex != null) {
+                    created.completeExceptionally(ex);
+                } else {
+                    created.complete(result);
+                }
+            });
+        } catch (RuntimeException e) {
+            created.completeExceptionally(e);
+        }
+        return created;
+    }
+}
@@ -0,0 +1,26 @@
+package com.wit.rest.config;
+
+import com.wit.rest.kafka.KafkaTransport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Kafka listener configuration for the REST service.
+ */
+@Configuration
+public class KafkaConfig {
+
+    /**
+     * Error handler picked up by the auto-configured listener container factory.
+     * Replies that cannot be decoded are not retried; the matching pending request is failed instead.
+     * Only needed when requests go through Kafka.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "calculator.transport", havingValue = "kafka", matchIfMissing = true)
+    public DefaultErrorHandler errorHandler(KafkaTransport kafkaTransport) {
+        return new DefaultErrorHandler(kafkaTransport::handleInvalidResponse, new FixedBackOff(0L, 0L));
+    }
+}
@@ -0,0 +1,59 @@
+package com.wit.rest.config;
+
+import com.wit.rest.controllers.CalculationStreamEndpoint;
+import jakarta.servlet.ServletContext;
+import jakarta.websocket.DeploymentException;
+import jakarta.websocket.server.ServerContainer;
+import jakarta.websocket.server.ServerEndpointConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.ServletContextAware;
+
+/**
+ * Registers the {@link CalculationStreamEndpoint} with the servlet container's standard WebSocket support
+ * (installed by Spring Boot for embedded Tomcat), using the Spring-managed endpoint instance for every session.
+ * Nothing is registered without a WebSocket container, e.g. in mock MVC tests or non-web runs.
+ */
+@Configuration
+public class WebSocketConfig implements ServletContextAware, SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(WebSocketConfig.class);
+
+    private final CalculationStreamEndpoint endpoint;
+
+    private ServletContext servletContext;
+
+    public WebSocketConfig(CalculationStreamEndpoint endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        ServerContainer container = servletContext == null ? null
+                : (ServerContainer) servletContext.getAttribute(ServerContainer.class.getName());
+        if (container == null) {
+            log.info("No WebSocket container available, {} is disabled", CalculationStreamEndpoint.PATH);
+            return;
+        }
+        ServerEndpointConfig config = ServerEndpointConfig.Builder.create(CalculationStreamEndpoint.class, CalculationStreamEndpoint.PATH)
+                .configurator(new ServerEndpointConfig.Configurator() {
+                    @Override
+                    public <T> T getEndpointInstance(Class<T> endpointClass) {
+                        return endpointClass.cast(endpoint);
+                    }
+                })
+                .build();
+        try {
+            container.addEndpoint(config);
+        } catch (DeploymentException e) {
+            throw new IllegalStateException("Cannot register the WebSocket endpoint " + CalculationStreamEndpoint.PATH, e);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.wit.rest.controllers;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.rest.aggregate.AggregateService;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.response.OperationResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST controller that aggregates (sum, product, mean, minimum or maximum) a streamed list of values.
+ * The body is parsed incrementally while it is received and sent to the calculator in chunks, so inputs of any
+ * size are aggregated without being buffered.
+ */
+@RestController
+@RequestMapping("/api")
+public class AggregateController {
+
+    private static final Logger log = LoggerFactory.getLogger(AggregateController.class);
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final AggregateService aggregateService;
+    private final ObjectReader valueReader;
+    private final RequestMetrics metrics;
+    private final RequestLog requestLog;
+    private final RequestIdGenerator requestIds;
+
+    // Identifies clients for the fair sharing of the concurrency limit
+    private final ConcurrencyLimiter limiter;
+
+    public AggregateController(AggregateService aggregateService, ObjectMapper objectMapper, RequestMetrics metrics,
+                               RequestLog requestLog, RequestIdGenerator requestIds, ConcurrencyLimiter limiter) {
+        this.aggregateService = aggregateService;
+        this.valueReader = objectMapper.readerFor(BigDecimal.class);
+        this.metrics = metrics;
+        this.requestLog = requestLog;
+        this.requestIds = requestIds;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Aggregates the values of the request body: one number per line, either as plain text or as NDJSON
+     * (where values may also be JSON strings). The request thread reads the body and waits whenever too many chunks
+     * are awaiting the calculator, so the endpoint is meant for virtual threads (see {@link AggregateService}); the
+     * response is completed once the last chunk is answered.
+     * Unparseable, missing or out-of-range values and empty bodies are rejected with 400 Bad Request.
+     *
+     * @param operation the aggregate to compute
+     * @param body      the streamed request body
+     * @return a CompletableFuture containing the HTTP response with the result or error
+     */
+    @PostMapping(value = "/aggregate/{operation:sum|product|mean|min|max}",
+            consumes = {MediaType.TEXT_PLAIN_VALUE, APPLICATION_NDJSON_VALUE}, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> aggregate(@PathVariable String operation, InputStream body,
+                                                          HttpServletRequest request) throws IOException {
+        String requestId = requestIds.next(); // Unique requestId for logging and tracking
+        AggregateOperation op = AggregateOperation.fromName(operation);
+        long start = System.nanoTime();
+        CompletableFuture<BigDecimal> result;
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId); // Tag this thread's logs
+             MappingIterator<BigDecimal> values = valueReader.readValues(body)) {
+            log.debug("Received aggregate: requestId={}, operation={}", requestId, operation);
+            result = aggregateService.execute(requestId, op, values, limiter.clientOf(request));
+        } catch (RuntimeException e) {
+            // The iterator wraps parse and read failures in unchecked exceptions
+            if (e.getCause() instanceof JsonProcessingException invalid) {
+                JsonLocation location = invalid.getLocation();
+                result = CompletableFuture.failedFuture(new IllegalArgumentException(
+                        location == null ? "Invalid value" : "Invalid value at line " + location.getLineNr()));
+            } else if (e.getCause() instanceof IOException) {
+                result = CompletableFuture.failedFuture(new IllegalArgumentException("Could not read the request body"));
+            } else {
+                throw e;
+            }
+        }
+        return result.<ResponseEntity<?>>handle((value, ex) -> {
+            Throwable cause = ex == null ? null : ErrorResponses.unwrap(ex);
+            ResponseEntity<OperationResponse> response = cause != null
+                    ? buildResponse(requestId, OperationResponse.ofError(cause.getMessage()), statusOf(cause))
+                    : buildResponse(requestId, OperationResponse.ofValue(value), HttpStatus.OK);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordAggregate(response.getStatusCode(), elapsed);
+            if (requestLog.isSampled(cause == null)) {
+                requestLog.log(cause == null, "requestId={} aggregate={} status={} result={} micros={}",
+                        requestId, operation, response.getStatusCode().value(),
+                        cause == null ? value : cause.getMessage(), elapsed / 1000);
+            }
+            return response;
+        });
+    }
+
+    private static HttpStatus statusOf(Throwable cause) {
+        return cause instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : ErrorResponses.statusOf(cause);
+    }
+
+    private ResponseEntity<OperationResponse> buildResponse(String requestId, OperationResponse body, HttpStatus status) {
+        return ResponseEntity.status(status)
+                .header("X-Request-ID", requestId)
+                .body(body);
+    }
+}
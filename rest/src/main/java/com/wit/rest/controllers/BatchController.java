@@ -0,0 +1,137 @@
+package com.wit.rest.controllers;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.wit.rest.batch.BatchItem;
+import com.wit.rest.batch.BatchResponse;
+import com.wit.rest.batch.BatchService;
+import com.wit.rest.batch.BatchTooLargeException;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.response.OperationResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST controller that executes many operations in a single call.
+ * Accepts either a JSON array or an NDJSON stream of {@code {"op", "a", "b"}} items
+ * and answers with one result or error per item, in submission order. Both are read item by item from the body,
+ * and reading stops with 413 Payload Too Large as soon as the maximum batch size is exceeded.
+ */
+@RestController
+@RequestMapping("/api")
+public class BatchController {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchController.class);
+
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    private final BatchService batchService;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader itemReader;
+    private final RequestIdGenerator requestIds;
+
+    // Identifies clients for the fair sharing of the concurrency limit
+    private final ConcurrencyLimiter limiter;
+
+    public BatchController(BatchService batchService, ObjectMapper objectMapper, RequestIdGenerator requestIds,
+                           ConcurrencyLimiter limiter) {
+        this.batchService = batchService;
+        this.objectMapper = objectMapper;
+        this.itemReader = objectMapper.readerFor(BatchItem.class);
+        this.requestIds = requestIds;
+        this.limiter = limiter;
+    }
+
+    /**
+     * JSON array variant: the array is streamed, so a body above the maximum batch size is never held in memory.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> batch(InputStream body, HttpServletRequest request) throws IOException {
+        List<BatchItem> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return CompletableFuture.completedFuture(errorResponse(null, "Expected a JSON array of items", HttpStatus.BAD_REQUEST));
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (items.size() == batchService.maxBatchSize()) {
+                    return CompletableFuture.completedFuture(tooLarge());
+                }
+                items.add(itemReader.readValue(parser));
+            }
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.completedFuture(errorResponse(null, "Invalid JSON item", HttpStatus.BAD_REQUEST));
+        }
+        return handleBatch(items, limiter.clientOf(request));
+    }
+
+    /**
+     * NDJSON variant: items are read one by one, like the elements of the JSON array.
+     */
+    @PostMapping(value = "/batch", consumes = APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> batchNdjson(InputStream body, HttpServletRequest request) throws IOException {
+        List<BatchItem> items = new ArrayList<>();
+        try (MappingIterator<BatchItem> it = itemReader.readValues(body)) {
+            while (it.hasNextValue()) {
+                if (items.size() == batchService.maxBatchSize()) {
+                    return CompletableFuture.completedFuture(tooLarge());
+                }
+                items.add(it.nextValue());
+            }
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.completedFuture(errorResponse(null, "Invalid NDJSON item", HttpStatus.BAD_REQUEST));
+        }
+        return handleBatch(items, limiter.clientOf(request));
+    }
+
+    /**
+     * Executes the batch under a new requestId and builds the HTTP response once every chunk has been answered.
+     */
+    private CompletableFuture<ResponseEntity<?>> handleBatch(List<BatchItem> items, String client) {
+        String requestId = requestIds.next(); // Generate a unique requestId for logging and tracking
+        // Scoped to the request thread: the response is completed on a Kafka listener thread
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) {
+            log.info("Received batch: requestId={}, items={}", requestId, items.size());
+            return batchService.execute(requestId, items, client)
+                    .handle((results, ex) -> {
+                        if (ex != null) {
+                            Throwable cause = ErrorResponses.unwrap(ex);
+                            return errorResponse(requestId, cause.getMessage(), ErrorResponses.statusOf(cause));
+                        }
+                        return ResponseEntity.ok()
+                                .header("X-Request-ID", requestId)
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .body(new BatchResponse(results));
+                    });
+        }
+    }
+
+    private ResponseEntity<?> tooLarge() {
+        BatchTooLargeException ex = new BatchTooLargeException(batchService.maxBatchSize());
+        return errorResponse(null, ex.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+    }
+
+    private ResponseEntity<?> errorResponse(String requestId, String message, HttpStatus status) {
+        var builder = ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (requestId != null) {
+            builder.header("X-Request-ID", requestId);
+        }
+        return builder.body(OperationResponse.ofError(message));
+    }
+}
@@ -0,0 +1,249 @@
+package com.wit.rest.controllers;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.cache.CalculationKey;
+import com.wit.rest.cache.ResultCache;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.stream.StreamMessage;
+import com.wit.rest.stream.StreamReply;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * WebSocket endpoint ({@value #PATH}) for long-lived clients that pipeline many operations over one connection,
+ * without the per-request cost of HTTP parsing and servlet async dispatch.
+ * Clients send one {@code {"id", "op", "a", "b"}} text message per operation and receive one {@code {"id", "result"}}
+ * or {@code {"id", "error"}} message per operation, in completion order, correlated by their own id.
+ * Operations go through the same result cache, concurrency limit and Kafka request/reply path as the operation
+ * endpoints; with fair sharing enabled, each session is a client of its own.
+ * <p>
+ * Flow control: the first message of a session announces its credits ({@code {"credits": n}}), the number of operations
+ * the client may have awaiting an answer. Each operation takes a credit and its answer gives it back, so one session
+ * never holds more than {@code calculator.stream.credits} pending requests or queued answers, however slowly the
+ * client reads. A client exceeding its credits is disconnected with close code 1008 (policy violation).
+ */
+@Component
+public class CalculationStreamEndpoint extends Endpoint {
+
+    public static final String PATH = "/api/stream";
+
+    private static final Logger log = LoggerFactory.getLogger(CalculationStreamEndpoint.class);
+
+    private final KafkaService kafkaService;
+    private final ResultCache resultCache;
+    private final RequestMetrics metrics;
+    private final RequestLog requestLog;
+    private final RequestIdGenerator requestIds;
+    private final ObjectReader messageReader;
+    private final ObjectWriter replyWriter;
+
+    // Operations a session may have awaiting an answer
+    private final int credits;
+
+    // First message of every session
+    private final String greeting;
+
+    public CalculationStreamEndpoint(KafkaService kafkaService, ResultCache resultCache, RequestMetrics metrics,
+                                     RequestLog requestLog, RequestIdGenerator requestIds, ObjectMapper objectMapper,
+                                     @Value("${calculator.stream.credits:256}") int credits) throws JsonProcessingException {
+        if (credits < 1) {
+            throw new IllegalArgumentException("calculator.stream.credits must be at least 1");
+        }
+        this.kafkaService = kafkaService;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+        this.requestLog = requestLog;
+        this.requestIds = requestIds;
+        this.messageReader = objectMapper.readerFor(StreamMessage.class);
+        this.replyWriter = objectMapper.writerFor(StreamReply.class);
+        this.credits = credits;
+        this.greeting = objectMapper.writeValueAsString(Map.of("credits", credits));
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        StreamSession stream = new StreamSession(session);
+        session.addMessageHandler(String.class, (MessageHandler.Whole<String>) message -> onMessage(stream, message));
+        stream.send(greeting);
+        log.debug("Opened stream: session={}", session.getId());
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        log.debug("Closed stream: session={}, reason={}", session.getId(), closeReason);
+    }
+
+    @Override
+    public void onError(Session session, Throwable error) {
+        log.debug("Stream error: session={}", session.getId(), error);
+    }
+
+    /**
+     * Handles one message of a session, on the container thread reading that session.
+     * Messages that cannot be sent are answered right away; the others are answered when their result arrives.
+     */
+    private void onMessage(StreamSession stream, String text) {
+        if (!stream.acquireCredit()) {
+            stream.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Credit limit exceeded"));
+            return;
+        }
+        StreamMessage message;
+        try {
+            message = messageReader.readValue(text);
+        } catch (IOException e) {
+            stream.answer(StreamReply.failure(null, "Invalid message"));
+            return;
+        }
+        if (message.op() == null || message.a() == null || message.b() == null) {
+            stream.answer(StreamReply.failure(message.id(), "Missing operation or operand"));
+            return;
+        }
+        Operation op;
+        try {
+            op = Operation.fromName(message.op());
+        } catch (IllegalArgumentException e) {
+            stream.answer(StreamReply.failure(message.id(), e.getMessage()));
+            return;
+        }
+
+        String requestId = requestIds.next(); // Client ids are only unique within their session
+        long start = System.nanoTime();
+        CompletableFuture<String> result;
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) { // Tag this thread's logs
+            log.debug("Received stream operation: requestId={}, id={}, operation='{}', a={}, b={}",
+                    requestId, message.id(), message.op(), message.a(), message.b());
+            result = resultCache.get(CalculationKey.of(op, message.a(), message.b()),
+                    () -> kafkaService.sendMessage(requestId, op.operationName(), message.a(), message.b(), stream.client));
+        }
+        result.whenComplete((value, ex) -> {
+            Throwable cause = ex == null ? null : ErrorResponses.unwrap(ex);
+            HttpStatus status = cause == null ? HttpStatus.OK : ErrorResponses.statusOf(cause);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordRequest(op, status, elapsed);
+            if (requestLog.isSampled(cause == null)) {
+                requestLog.log(cause == null, "requestId={} stream={} operation={} a={} b={} status={} result={} micros={}",
+                        requestId, stream.session.getId(), op.operationName(), message.a(), message.b(), status.value(),
+                        cause == null ? value : cause.getMessage(), elapsed / 1000);
+            }
+            stream.answer(cause == null ? StreamReply.success(message.id(), value) : StreamReply.failure(message.id(), cause.getMessage()));
+        });
+    }
+
+    /**
+     * Per-session state: the credits left and the queue of outgoing messages.
+     * Messages are written one at a time with the asynchronous remote endpoint, so completing threads never block
+     * on a slow client; the queue is bounded by the credits.
+     */
+    private final class StreamSession implements SendHandler {
+
+        private final Session session;
+
+        // Each session is a client of its own for the fair sharing of the concurrency limit
+        private final String client;
+        private final AtomicInteger available = new AtomicInteger(credits);
+        private final Queue<String> outbox = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        StreamSession(Session session) {
+            this.session = session;
+            this.client = "stream:" + session.getId();
+        }
+
+        boolean acquireCredit() {
+            return available.getAndDecrement() > 0;
+        }
+
+        /**
+         * Gives back the credit of an operation and queues its answer.
+         */
+        void answer(StreamReply reply) {
+            String text;
+            try {
+                text = replyWriter.writeValueAsString(reply);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Cannot serialize stream reply", e);
+            }
+            available.incrementAndGet();
+            send(text);
+        }
+
+        /**
+         * Queues a message. A client that keeps sending while not reading its answers would grow the queue past its
+         * credits (answers already returned their credit); such a session is closed instead.
+         */
+        void send(String text) {
+            if (!session.isOpen()) {
+                return;
+            }
+            if (queued.incrementAndGet() > credits + 1) {
+                close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY, "Credit limit exceeded"));
+                return;
+            }
+            outbox.add(text);
+            drain();
+        }
+
+        /**
+         * Starts writing the next queued message unless a write is already in progress.
+         */
+        private void drain() {
+            while (!outbox.isEmpty() && sending.compareAndSet(false, true)) {
+                String text = outbox.poll();
+                if (text != null) {
+                    queued.decrementAndGet();
+                    session.getAsyncRemote().sendText(text, this);
+                    return;
+                }
+                sending.set(false);
+            }
+        }
+
+        @Override
+        public void onResult(SendResult result) {
+            if (!result.isOK()) {
+                log.debug("Stream write failed: session={}", session.getId(), result.getException());
+                outbox.clear(); // The session is broken; its pending answers are dropped as they arrive
+            }
+            sending.set(false);
+            if (session.isOpen()) {
+                drain();
+            }
+        }
+
+        void close(CloseReason reason) {
+            log.warn("Closing stream: session={}, reason={}", session.getId(), reason.getReasonPhrase());
+            try {
+                session.close(reason);
+            } catch (IOException e) {
+                log.debug("Failed to close stream: session={}", session.getId(), e);
+            }
+        }
+    }
+}
@@ -1,15 +1,31 @@
 package com.wit.rest.controllers;
 
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.cache.CalculationKey;
+import com.wit.rest.cache.ResultCache;
 import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.pending.RequestTimeoutException;
+import com.wit.rest.response.OperationResponse;
+import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
-import java.util.UUID;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * REST controller that exposes endpoints for basic arithmetic operations.
@@ -22,67 +38,153 @@ public class CalculatorController {
     private static final Logger log = LoggerFactory.getLogger(CalculatorController.class);
 
     private final KafkaService kafkaService;
+    private final ResultCache resultCache;
+    private final RequestMetrics metrics;
+    private final RequestIdGenerator requestIds;
 
-    public CalculatorController(KafkaService kafkaService) {
+    // Identifies clients for the fair sharing of the concurrency limit
+    private final ConcurrencyLimiter limiter;
+
+    // Sampled one-line summary of each completed request
+    private final RequestLog requestLog;
+
+    // Maximum time a synchronous request waits for its result
+    private final Duration syncTimeout;
+
+    public CalculatorController(KafkaService kafkaService, ResultCache resultCache, RequestMetrics metrics,
+                                RequestIdGenerator requestIds, ConcurrencyLimiter limiter, RequestLog requestLog,
+                                @Value("${calculator.sync.timeout:5s}") Duration syncTimeout) {
         this.kafkaService = kafkaService;
+        this.resultCache = resultCache;
+        this.metrics = metrics;
+        this.requestIds = requestIds;
+        this.limiter = limiter;
+        this.requestLog = requestLog;
+        this.syncTimeout = syncTimeout;
+    }
+
+    @GetMapping(value = "/sum", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> sum(@RequestParam BigDecimal a, @RequestParam BigDecimal b,
+                                                      HttpServletRequest request) {
+        return handleOperation("sum", a, b, request);
+    }
+
+    @GetMapping(value = "/subtraction", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> subtraction(@RequestParam BigDecimal a, @RequestParam BigDecimal b,
+                                                      HttpServletRequest request) {
+        return handleOperation("subtraction", a, b, request);
     }
 
-    @GetMapping(value = "/sum", produces = MediaType.APPLICATION_JSON_VALUE)
-    public CompletableFuture<ResponseEntity<?>> sum(@RequestParam BigDecimal a, @RequestParam BigDecimal b) {
-        return handleOperation("sum", a, b);
+    @GetMapping(value = "/multiplication", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> multiplication(@RequestParam BigDecimal a, @RequestParam BigDecimal b,
+                                                      HttpServletRequest request) {
+        return handleOperation("multiplication", a, b, request);
     }
 
-    @GetMapping(value = "/subtraction", produces = MediaType.APPLICATION_JSON_VALUE)
-    public CompletableFuture<ResponseEntity<?>> subtraction(@RequestParam BigDecimal a, @RequestParam BigDecimal b) {
-        return handleOperation("subtraction", a, b);
+    @GetMapping(value = "/division", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> division(@RequestParam BigDecimal a, @RequestParam BigDecimal b,
+                                                      HttpServletRequest request) {
+        return handleOperation("division", a, b, request);
     }
 
-    @GetMapping(value = "/multiplication", produces = MediaType.APPLICATION_JSON_VALUE)
-    public CompletableFuture<ResponseEntity<?>> multiplication(@RequestParam BigDecimal a, @RequestParam BigDecimal b) {
-        return handleOperation("multiplication", a, b);
+    /**
+     * Synchronous variant of the operation endpoints: the request thread waits for the result, for at most
+     * {@code calculator.sync.timeout}. Intended for virtual threads ({@code spring.threads.virtual.enabled}),
+     * where a blocked request thread is cheap; on platform threads every waiting request holds a Tomcat worker.
+     */
+    @GetMapping(value = "/sync/{operation:sum|subtraction|multiplication|division}",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<?> syncOperation(@PathVariable String operation, @RequestParam BigDecimal a, @RequestParam BigDecimal b,
+                                           HttpServletRequest request) {
+        String requestId = requestIds.next();
+        try {
+            return handleOperation(requestId, operation, a, b, limiter.clientOf(request))
+                    .get(syncTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return errorResponse(requestId, new RequestTimeoutException(requestId, syncTimeout.toMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return errorResponse(requestId, e);
+        } catch (ExecutionException e) {
+            return errorResponse(requestId, e.getCause()); // Not reached: failures are turned into responses
+        }
     }
 
-    @GetMapping(value = "/division", produces = MediaType.APPLICATION_JSON_VALUE)
-    public CompletableFuture<ResponseEntity<?>> division(@RequestParam BigDecimal a, @RequestParam BigDecimal b) {
-        return handleOperation("division", a, b);
+    private CompletableFuture<ResponseEntity<?>> handleOperation(String operation, BigDecimal a, BigDecimal b,
+                                                                 HttpServletRequest request) {
+        // Unique requestId for logging and tracking
+        return handleOperation(requestIds.next(), operation, a, b, limiter.clientOf(request));
     }
 
     /**
-     * Handles an arithmetic operation by generating a requestId and sending the request via Kafka.
+     * Handles an arithmetic operation by sending the request via Kafka under the given requestId.
+     * Operands are sent as received, and results of identical calculations are served from the
+     * {@link ResultCache} or shared with an identical request already in flight; the others pass the
+     * {@link ConcurrencyLimiter} before being sent, and are shed with 503 or 429 and a {@code Retry-After} header
+     * when it refuses them.
      * Returns the result asynchronously once the response is received.
+     * The requestId is in the logging context only while this method runs on the request thread;
+     * the response is built on whichever thread completes the future, which has its own context.
+     * The time until the response is built is recorded per operation and outcome, and the request is summarized
+     * in one line of the {@link RequestLog}, sampled for successes.
      *
+     * @param requestId the unique request identifier
      * @param operation the operation to perform ("sum", "subtraction", "multiplication", "division")
      * @param a the first operand
      * @param b the second operand
+     * @param client the client of the request for the limiter's fair sharing, or null
      * @return a CompletableFuture containing the HTTP response with the result or error
      */
-    private CompletableFuture<ResponseEntity<?>> handleOperation(String operation, BigDecimal a, BigDecimal b) {
-        String requestId = UUID.randomUUID().toString(); // Generate a unique requestId for logging and tracking
-        MDC.put("requestId", requestId); // Add the requestId to the logging context (for tracing logs)
-        log.info("Received operation: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
-        return kafkaService.sendMessage(requestId, operation, a, b)
-                .handle((result, ex) -> {
-                    MDC.clear(); // To prevent leakage between threads
-                    if (ex != null) {
-                        return buildResponse(requestId, "{\"error\": \"" + ex.getMessage() + "\"}", true);
-                    }
-                    return buildResponse(requestId, "{\"result\": " + result + "}", false);
-                });
+    private CompletableFuture<ResponseEntity<?>> handleOperation(String requestId, String operation, BigDecimal a, BigDecimal b,
+                                                                 String client) {
+        long start = System.nanoTime();
+        Operation op = Operation.fromName(operation);
+        CompletableFuture<String> result;
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) { // Tag this thread's logs
+            log.debug("Received operation: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
+            result = resultCache.get(CalculationKey.of(op, a, b), () -> kafkaService.sendMessage(requestId, operation, a, b, client));
+        }
+        return result.<ResponseEntity<?>>handle((value, ex) -> {
+            Throwable cause = ex == null ? null : ErrorResponses.unwrap(ex);
+            ResponseEntity<OperationResponse> response = cause != null
+                    ? errorResponse(requestId, cause)
+                    : buildResponse(requestId, OperationResponse.ofResult(value), HttpStatus.OK);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordRequest(op, response.getStatusCode(), elapsed);
+            if (requestLog.isSampled(cause == null)) {
+                requestLog.log(cause == null, "requestId={} operation={} a={} b={} status={} result={} micros={}",
+                        requestId, operation, a, b, response.getStatusCode().value(),
+                        cause == null ? value : cause.getMessage(), elapsed / 1000);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Builds the error response of a failure, telling shed clients when to retry.
+     */
+    private ResponseEntity<OperationResponse> errorResponse(String requestId, Throwable cause) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(ErrorResponses.statusOf(cause))
+                .header("X-Request-ID", requestId);
+        String retryAfter = ErrorResponses.retryAfterOf(cause);
+        if (retryAfter != null) {
+            response.header(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return response.body(OperationResponse.ofError(cause.getMessage()));
     }
 
     /**
-     * Helper method to build a consistent JSON response with appropriate headers and status.
+     * Helper method to build a consistent response with appropriate headers and status.
+     * The body is written as JSON or CBOR, as negotiated with the client's Accept header.
      *
      * @param requestId the unique request identifier
-     * @param body the JSON-formatted response body
-     * @param isError true if response is an error, false if success
-     * @return ResponseEntity with headers and JSON body
+     * @param body the response body
+     * @param status the HTTP status of the response
+     * @return ResponseEntity with headers and body
      */
-    private ResponseEntity<String> buildResponse(String requestId, String body, boolean isError) {
-        var builder = isError ? ResponseEntity.internalServerError() : ResponseEntity.ok();
-        return builder
+    private ResponseEntity<OperationResponse> buildResponse(String requestId, OperationResponse body, HttpStatus status) {
+        return ResponseEntity.status(status)
                 .header("X-Request-ID", requestId)
-                .contentType(MediaType.APPLICATION_JSON)
                 .body(body);
     }
 
@@ -0,0 +1,69 @@
+package com.wit.rest.controllers;
+
+import com.wit.common.protocol.InvalidRequestException;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.batch.BatchTooLargeException;
+import com.wit.rest.kafka.CalculationFailedException;
+import com.wit.rest.limit.ConcurrencyLimitExceededException;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import com.wit.rest.pending.RequestTimeoutException;
+import com.wit.rest.precise.OperandTooLargeException;
+import org.springframework.http.HttpStatus;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shared mapping of asynchronous failures to HTTP statuses for the calculator controllers.
+ */
+final class ErrorResponses {
+
+    private ErrorResponses() {
+    }
+
+    /**
+     * Unwraps the CompletionException added when a failure travels through dependent futures.
+     */
+    static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * Maps a failure to its HTTP status: 504 when the calculator did not answer in time,
+     * 503 when the request was rejected because too many are in flight or shed by the concurrency limiter,
+     * 429 when it was shed because its client exceeded its fair share,
+     * 413 when a batch or a high-precision operand is too large, 400 when the operands were rejected locally or by the calculator, 500 otherwise.
+     */
+    static HttpStatus statusOf(Throwable cause) {
+        if (cause instanceof CalculationFailedException failed) {
+            return failed.getStatus() == ReplyStatus.INTERNAL_ERROR ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.BAD_REQUEST;
+        }
+        if (cause instanceof InvalidRequestException) {
+            return HttpStatus.BAD_REQUEST;
+        }
+        if (cause instanceof RequestTimeoutException) {
+            return HttpStatus.GATEWAY_TIMEOUT;
+        }
+        if (cause instanceof ConcurrencyLimitExceededException shed) {
+            return shed.isClientShare() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (cause instanceof InFlightLimitExceededException) {
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        if (cause instanceof BatchTooLargeException || cause instanceof OperandTooLargeException) {
+            return HttpStatus.PAYLOAD_TOO_LARGE;
+        }
+        return HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Value of the {@code Retry-After} header for a failure, in whole seconds (at least one).
+     *
+     * @return the header value, or null if clients should not be told when to retry
+     */
+    static String retryAfterOf(Throwable cause) {
+        if (cause instanceof ConcurrencyLimitExceededException shed) {
+            return Long.toString(Math.max(1, (shed.getRetryAfter().toMillis() + 999) / 1000));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,119 @@
+package com.wit.rest.controllers;
+
+import com.wit.common.engine.CompiledExpression;
+import com.wit.common.logging.RequestLog;
+import com.wit.rest.expression.ExpressionRequest;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.response.OperationResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST controller that evaluates a whole arithmetic expression with named variables in a single Kafka round trip,
+ * e.g. {@code (a + b) * c / d}, instead of one call per operation.
+ * The calculator compiles each distinct expression once and evaluates every step with the rounding rules of the
+ * single operation endpoints.
+ */
+@RestController
+@RequestMapping("/api")
+public class ExpressionController {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpressionController.class);
+
+    private final KafkaService kafkaService;
+    private final RequestMetrics metrics;
+    private final RequestLog requestLog;
+    private final RequestIdGenerator requestIds;
+
+    // Identifies clients for the fair sharing of the concurrency limit
+    private final ConcurrencyLimiter limiter;
+
+    public ExpressionController(KafkaService kafkaService, RequestMetrics metrics, RequestLog requestLog,
+                                RequestIdGenerator requestIds, ConcurrencyLimiter limiter) {
+        this.kafkaService = kafkaService;
+        this.metrics = metrics;
+        this.requestLog = requestLog;
+        this.requestIds = requestIds;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Evaluates the expression of the request body. Requests without an expression, with one longer than
+     * {@value CompiledExpression#MAX_LENGTH} characters or with a variable without value are rejected with
+     * 400 Bad Request without reaching the calculator; syntax errors and unbound variables are reported by it.
+     *
+     * @param request the expression and its variables
+     * @return a CompletableFuture containing the HTTP response with the result or error
+     */
+    @PostMapping(value = "/evaluate", consumes = MediaType.APPLICATION_JSON_VALUE, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> evaluate(@RequestBody ExpressionRequest request,
+                                                         HttpServletRequest servletRequest) {
+        String requestId = requestIds.next(); // Unique requestId for logging and tracking
+        String expression = request.expression();
+        Map<String, BigDecimal> variables = request.variables() == null ? Map.of() : request.variables();
+        String invalid = validate(expression, variables);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(buildResponse(requestId, OperationResponse.ofError(invalid), HttpStatus.BAD_REQUEST));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<String> result;
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) { // Tag this thread's logs
+            log.debug("Received expression: requestId={}, expression='{}', variables={}", requestId, expression, variables.size());
+            result = kafkaService.sendExpression(requestId, expression, variables, limiter.clientOf(servletRequest));
+        }
+        return result.<ResponseEntity<?>>handle((value, ex) -> {
+            Throwable cause = ex == null ? null : ErrorResponses.unwrap(ex);
+            ResponseEntity<OperationResponse> response = cause != null
+                    ? buildResponse(requestId, OperationResponse.ofError(cause.getMessage()), ErrorResponses.statusOf(cause))
+                    : buildResponse(requestId, OperationResponse.ofResult(value), HttpStatus.OK);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordExpression(response.getStatusCode(), elapsed);
+            if (requestLog.isSampled(cause == null)) {
+                requestLog.log(cause == null, "requestId={} expression='{}' variables={} status={} result={} micros={}",
+                        requestId, expression, variables.size(), response.getStatusCode().value(),
+                        cause == null ? value : cause.getMessage(), elapsed / 1000);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Checks what can be checked without parsing the expression.
+     *
+     * @return the error message, or null if the request can be sent
+     */
+    private static String validate(String expression, Map<String, BigDecimal> variables) {
+        if (expression == null || expression.isBlank()) {
+            return "Missing expression";
+        }
+        if (expression.length() > CompiledExpression.MAX_LENGTH) {
+            return "Expression longer than " + CompiledExpression.MAX_LENGTH + " characters";
+        }
+        for (Map.Entry<String, BigDecimal> variable : variables.entrySet()) {
+            if (variable.getValue() == null) {
+                return "Missing value of variable '" + variable.getKey() + "'";
+            }
+        }
+        return null;
+    }
+
+    private ResponseEntity<OperationResponse> buildResponse(String requestId, OperationResponse body, HttpStatus status) {
+        return ResponseEntity.status(status)
+                .header("X-Request-ID", requestId)
+                .body(body);
+    }
+}
@@ -0,0 +1,146 @@
+package com.wit.rest.controllers;
+
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.MathContexts;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.precise.OperandTooLargeException;
+import com.wit.rest.precise.PreciseOperands;
+import com.wit.rest.response.OperationResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST controller for high-precision operations on very large operands, up to {@code calculator.precise.max-digits}
+ * digits each, with a precision and rounding mode chosen per request instead of the 10 digits of the operation
+ * endpoints. Operands are streamed in the request body rather than passed as query parameters, and the calculator
+ * evaluates them with {@link com.wit.common.engine.PreciseArithmetic}.
+ */
+@RestController
+@RequestMapping("/api")
+public class PreciseController {
+
+    private static final Logger log = LoggerFactory.getLogger(PreciseController.class);
+
+    private final KafkaService kafkaService;
+    private final RequestMetrics metrics;
+    private final RequestLog requestLog;
+    private final RequestIdGenerator requestIds;
+
+    // Maximum digits (and absolute scale) of each operand
+    private final int maxDigits;
+
+    // Maximum precision of a request
+    private final int maxPrecision;
+
+    // Identifies clients for the fair sharing of the concurrency limit
+    private final ConcurrencyLimiter limiter;
+
+    public PreciseController(KafkaService kafkaService, RequestMetrics metrics, RequestLog requestLog,
+                             RequestIdGenerator requestIds, ConcurrencyLimiter limiter,
+                             @Value("${calculator.precise.max-digits:1000000}") int maxDigits,
+                             @Value("${calculator.precise.max-precision:100000}") int maxPrecision) {
+        this.kafkaService = kafkaService;
+        this.metrics = metrics;
+        this.requestLog = requestLog;
+        this.requestIds = requestIds;
+        this.maxDigits = maxDigits;
+        this.maxPrecision = maxPrecision;
+        this.limiter = limiter;
+    }
+
+    /**
+     * Performs a high-precision operation on the two operands of the request body, plain text numbers separated by
+     * whitespace. The result has the requested number of significant digits, rounded with the requested mode, or is
+     * exact with precision 0 (the default); an exact division whose quotient has no finite decimal expansion, or a
+     * result needing rounding with {@code UNNECESSARY}, is rejected with 400 Bad Request.
+     * An operand with more than {@code calculator.precise.max-digits} digits is rejected with 413 Payload Too Large
+     * as soon as it is read; invalid operands, precisions and rounding modes with 400 Bad Request.
+     *
+     * @param operation the operation to perform
+     * @param precision significant digits of the result, 0 for exact
+     * @param rounding  the rounding mode, a {@link RoundingMode} name in any case
+     * @param body      the streamed request body
+     * @return a CompletableFuture containing the HTTP response with the result or error
+     */
+    @PostMapping(value = "/precise/{operation:sum|subtraction|multiplication|division}",
+            consumes = MediaType.TEXT_PLAIN_VALUE, produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public CompletableFuture<ResponseEntity<?>> calculate(@PathVariable String operation,
+                                                          @RequestParam(defaultValue = "0") int precision,
+                                                          @RequestParam(defaultValue = "half_up") String rounding,
+                                                          InputStream body, HttpServletRequest request) {
+        String requestId = requestIds.next(); // Unique requestId for logging and tracking
+        Operation op = Operation.fromName(operation);
+        long start = System.nanoTime();
+        CompletableFuture<BigDecimal> result;
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) { // Tag this thread's logs
+            MathContext mathContext = mathContext(precision, rounding);
+            PreciseOperands operands = PreciseOperands.read(body, maxDigits);
+            log.debug("Received precise operation: requestId={}, operation='{}', precision={}, rounding={}",
+                    requestId, operation, precision, mathContext.getRoundingMode());
+            result = kafkaService.sendPrecise(requestId, op, operands.a(), operands.b(), mathContext,
+                    limiter.clientOf(request));
+        } catch (IllegalArgumentException | OperandTooLargeException e) {
+            result = CompletableFuture.failedFuture(e);
+        } catch (IOException e) {
+            result = CompletableFuture.failedFuture(new IllegalArgumentException("Could not read the request body"));
+        }
+        return result.<ResponseEntity<?>>handle((value, ex) -> {
+            Throwable cause = ex == null ? null : ErrorResponses.unwrap(ex);
+            ResponseEntity<OperationResponse> response = cause != null
+                    ? buildResponse(requestId, OperationResponse.ofError(cause.getMessage()), statusOf(cause))
+                    : buildResponse(requestId, OperationResponse.ofValue(value), HttpStatus.OK);
+            long elapsed = System.nanoTime() - start;
+            metrics.recordPrecise(response.getStatusCode(), elapsed);
+            if (requestLog.isSampled(cause == null)) { // Never the operands or the result: they may be a megabyte each
+                requestLog.log(cause == null, "requestId={} precise={} precision={} rounding={} status={} micros={}",
+                        requestId, operation, precision, rounding, response.getStatusCode().value(), elapsed / 1000);
+            }
+            return response;
+        });
+    }
+
+    /**
+     * Validates the precision and resolves the rounding mode into a shared MathContext.
+     *
+     * @throws IllegalArgumentException if the precision is out of range or the rounding mode unknown
+     */
+    private MathContext mathContext(int precision, String rounding) {
+        if (precision < 0 || precision > maxPrecision) {
+            throw new IllegalArgumentException("Precision must be between 0 and " + maxPrecision);
+        }
+        try {
+            return MathContexts.of(precision, RoundingMode.valueOf(rounding.strip().toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown rounding mode: " + rounding);
+        }
+    }
+
+    private static HttpStatus statusOf(Throwable cause) {
+        return cause instanceof IllegalArgumentException ? HttpStatus.BAD_REQUEST : ErrorResponses.statusOf(cause);
+    }
+
+    private ResponseEntity<OperationResponse> buildResponse(String requestId, OperationResponse body, HttpStatus status) {
+        return ResponseEntity.status(status)
+                .header("X-Request-ID", requestId)
+                .body(body);
+    }
+}
@@ -0,0 +1,13 @@
+package com.wit.rest.expression;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Body of an expression evaluation, e.g. {@code {"expression": "(a + b) * c / d", "variables": {"a": 1, "b": 2, "c": 3, "d": 4}}}.
+ *
+ * @param expression the arithmetic expression: decimal literals, variable names, {@code + - * /} and parentheses
+ * @param variables  the value of every variable of the expression (may be omitted when there are none)
+ */
+public record ExpressionRequest(String expression, Map<String, BigDecimal> variables) {
+}
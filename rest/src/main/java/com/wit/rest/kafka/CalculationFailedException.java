@@ -0,0 +1,20 @@
+package com.wit.rest.kafka;
+
+import com.wit.common.protocol.ReplyStatus;
+
+/**
+ * Thrown when the calculator answers a request with an error status (e.g. division by zero).
+ */
+public class CalculationFailedException extends RuntimeException {
+
+    private final ReplyStatus status;
+
+    public CalculationFailedException(ReplyStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public ReplyStatus getStatus() {
+        return status;
+    }
+}
@@ -1,78 +1,230 @@
 package com.wit.rest.kafka;
 
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.limit.ConcurrencyLimitExceededException;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import com.wit.rest.transport.CalculationTransport;
+import com.wit.rest.transport.CalculationTransport.Lane;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
 /**
- * Service responsible for asynchronously communicating with the calculator module via Kafka.
- * It sends arithmetic requests and listens for corresponding responses using request correlation.
+ * Service responsible for asynchronously communicating with the calculator module.
+ * It sends arithmetic requests through the configured {@link CalculationTransport} (Kafka by default,
+ * see {@link KafkaTransport}) and turns the correlated replies into results.
+ * Single operations may be gathered into multi-item requests by the {@link RequestCoalescer} when it is enabled.
+ * <p>
+ * Every request passes the {@link ConcurrencyLimiter} before it is sent, whichever endpoint it comes from: requests it
+ * refuses fail right away with a {@link ConcurrencyLimitExceededException} and nothing is sent. Each request takes
+ * one permit, a single operation as well as a batch or aggregate chunk, released with the outcome of its round trip.
  */
 @Service
 public class KafkaService {
 
     private static final Logger log = LoggerFactory.getLogger(KafkaService.class);
 
-    // Kafka topic names for sending requests and receiving responses
-    private static final String REQUEST_TOPIC = "calculator-requests";
-    private static final String RESPONSE_TOPIC = "calculator-responses";
+    // Delivers requests to the calculator and their replies back
+    private final CalculationTransport transport;
 
-    // In-memory store for mapping requestId to their corresponding CompletableFuture awaiting response
-    private final ConcurrentHashMap<String, CompletableFuture<String>> responseFutures = new ConcurrentHashMap<>();
+    // Groups concurrent single operations into one request; null when coalescing is disabled
+    private final RequestCoalescer coalescer;
+
+    // Sheds requests once the calculator falls behind
+    private final ConcurrencyLimiter limiter;
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
     /**
-     * Constructor-based dependency injection for KafkaTemplate.
-     * Promotes immutability and simplifies testing.
+     * Constructor-based dependency injection for the transport. Promotes immutability and simplifies testing.
      *
-     * @param kafkaTemplate Kafka template used to publish messages to Kafka topics
+     * @param transport transport delivering requests to the calculator
+     * @param coalescer coalescer of single operations, used only when enabled
+     * @param limiter   adaptive limit on the requests awaiting the calculator
      */
-    public KafkaService(KafkaTemplate<String, String> kafkaTemplate) {
-        this.kafkaTemplate = kafkaTemplate;
+    public KafkaService(CalculationTransport transport, RequestCoalescer coalescer, ConcurrencyLimiter limiter) {
+        this.transport = transport;
+        this.coalescer = coalescer.isEnabled() ? coalescer : null;
+        this.limiter = limiter;
     }
 
     /**
-     * Sends a message to the calculator request topic.
-     * Constructs a message in the format: requestId,a,b,operation
-     * Stores a CompletableFuture to be completed when a response is received.
+     * Sends a single calculation to the calculator.
+     * The returned future is completed when a response is received or the deadline expires.
+     * If too many requests are already in flight, the returned future fails immediately
+     * with an {@link InFlightLimitExceededException} and nothing is sent.
+     * With coalescing enabled the operation may be sent with others in one request; the in-flight limit then applies
+     * to that request, while the concurrency limiter still counts the operation.
      *
      * @param requestId Unique identifier for the request
      * @param operation The operation to be performed (sum, subtraction, etc.)
      * @param a         First operand
      * @param b         Second operand
-     * @return CompletableFuture that will be completed with the result
+     * @param client    The client of the request for the limiter's fair sharing, or null
+     * @return CompletableFuture that will be completed with the result, or fail with a
+     * {@link CalculationFailedException} if the calculator reports an error
+     */
+    public CompletableFuture<String> sendMessage(String requestId, String operation, BigDecimal a, BigDecimal b,
+                                                 String client) {
+        Operation op = Operation.fromName(operation);
+        return limited(requestId, client, () -> {
+            if (coalescer != null) {
+                CompletableFuture<CalculationResult> future = coalescer.submit(requestId, new Calculation(op, a, b));
+                log.debug("Queued message: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
+                return future.thenApply(result -> value(result).toString());
+            }
+            CalculationRequest request = CalculationRequest.single(requestId, op, a, b);
+            CompletableFuture<CalculationReply> future = transport.send(request, Lane.INTERACTIVE);
+            log.debug("Sent message: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
+            return future.thenApply(KafkaService::singleResult);
+        });
+    }
+
+    /**
+     * Sends an expression to the calculator, evaluated as a whole in a single round trip.
+     * Over Kafka, expressions are always encoded in the binary wire format.
+     *
+     * @param requestId  Unique identifier for the request
+     * @param expression The expression, e.g. {@code (a + b) * c / d}
+     * @param variables  The value of every variable of the expression
+     * @param client     The client of the request for the limiter's fair sharing, or null
+     * @return CompletableFuture that will be completed with the result, or fail with a
+     * {@link CalculationFailedException} if the expression is invalid or cannot be evaluated
+     */
+    public CompletableFuture<String> sendExpression(String requestId, String expression, Map<String, BigDecimal> variables,
+                                                    String client) {
+        return limited(requestId, client, () -> {
+            CompletableFuture<CalculationReply> future = transport.send(
+                    CalculationRequest.expression(requestId, expression, variables), Lane.INTERACTIVE);
+            log.debug("Sent expression: requestId={}, expression='{}', variables={}", requestId, expression, variables.size());
+            return future.thenApply(KafkaService::singleResult);
+        });
+    }
+
+    /**
+     * Sends a chunk of values to aggregate to the calculator as a single bulk request.
+     * Over Kafka, aggregates are always encoded in the binary wire format.
+     *
+     * @param requestId Unique identifier for the chunk
+     * @param operation The aggregate to compute
+     * @param values    The values of the chunk
+     * @param client    The client of the request for the limiter's fair sharing, or null
+     * @return CompletableFuture that will be completed with the partial result of the chunk
+     * (see {@link com.wit.common.engine.Aggregator#reduce}), or fail with a {@link CalculationFailedException}
+     */
+    public CompletableFuture<BigDecimal> sendAggregate(String requestId, AggregateOperation operation, List<BigDecimal> values,
+                                                       String client) {
+        return limited(requestId, client, () -> {
+            CompletableFuture<CalculationReply> future = transport.send(
+                    CalculationRequest.aggregation(requestId, operation, values), Lane.BULK);
+            log.debug("Sent aggregate: requestId={}, operation={}, values={}", requestId, operation.operationName(), values.size());
+            return future.thenApply(KafkaService::singleValue);
+        });
+    }
+
+    /**
+     * Sends a high-precision calculation to the calculator as a bulk request, evaluated under its own precision
+     * and rounding. Over Kafka, high-precision requests are always encoded in the binary wire format.
+     *
+     * @param requestId   Unique identifier for the request
+     * @param operation   The operation to be performed
+     * @param a           First operand
+     * @param b           Second operand
+     * @param mathContext The precision (0 for exact) and rounding of the result
+     * @param client      The client of the request for the limiter's fair sharing, or null
+     * @return CompletableFuture that will be completed with the result, or fail with a
+     * {@link CalculationFailedException} if the calculator reports an error
+     */
+    public CompletableFuture<BigDecimal> sendPrecise(String requestId, Operation operation, BigDecimal a, BigDecimal b,
+                                                     MathContext mathContext, String client) {
+        return limited(requestId, client, () -> {
+            CompletableFuture<CalculationReply> future = transport.send(
+                    CalculationRequest.precise(requestId, operation, a, b, mathContext), Lane.BULK);
+            log.debug("Sent precise calculation: requestId={}, operation='{}', precision={}, rounding={}",
+                    requestId, operation.operationName(), mathContext.getPrecision(), mathContext.getRoundingMode());
+            return future.thenApply(KafkaService::singleValue);
+        });
+    }
+
+    /**
+     * Extracts the value of a single-result reply as a string.
      */
-    public CompletableFuture<String> sendMessage(String requestId, String operation, BigDecimal a, BigDecimal b) {
-        String message = String.format("%s,%s,%s,%s", requestId, a, b, operation);
-        CompletableFuture<String> future = new CompletableFuture<>();
-        responseFutures.put(requestId, future);
-        kafkaTemplate.send(REQUEST_TOPIC, requestId, message);
-        log.info("Sent message: requestId={}, operation='{}', a={}, b={}", requestId, operation, a, b);
-        return future;
+    private static String singleResult(CalculationReply reply) {
+        return singleValue(reply).toString();
     }
 
     /**
-     * Kafka listener that handles responses coming from the calculator service.
-     * Completes the matching CompletableFuture to unblock the controller waiting for the result.
+     * Extracts the value of a single-result reply, turning an error result into a {@link CalculationFailedException}.
+     */
+    private static BigDecimal singleValue(CalculationReply reply) {
+        return value(reply.results().get(0));
+    }
+
+    /**
+     * Extracts the value of a result, turning an error result into a {@link CalculationFailedException}.
+     */
+    private static BigDecimal value(CalculationResult result) {
+        if (!result.isOk()) {
+            throw new CalculationFailedException(result.status(), result.message());
+        }
+        return result.value();
+    }
+
+    /**
+     * Sends a chunk of calculations to the calculator as a single bulk request.
      *
-     * @param result     The result received from the calculator service
-     * @param requestId  The requestId associated with the response (from Kafka message key)
+     * @param requestId    Unique identifier for the chunk
+     * @param calculations Calculations to perform
+     * @param client       The client of the request for the limiter's fair sharing, or null
+     * @return CompletableFuture that will be completed with one result per calculation, in the same order
+     */
+    public CompletableFuture<List<CalculationResult>> sendBatch(String requestId, List<Calculation> calculations,
+                                                                String client) {
+        return limited(requestId, client, () -> {
+            CompletableFuture<CalculationReply> future = transport.send(new CalculationRequest(requestId, calculations), Lane.BULK);
+            log.debug("Sent batch: requestId={}, items={}", requestId, calculations.size());
+            return future.thenApply(reply -> {
+                if (reply.results().size() != calculations.size()) {
+                    throw new IllegalStateException("Batch reply does not match the request: expected "
+                            + calculations.size() + " items but got " + reply.results().size());
+                }
+                return reply.results();
+            });
+        });
+    }
+
+    /**
+     * Sends a request if the limiter admits it, releasing the permit with the outcome of the round trip.
      */
-    @KafkaListener(topics = RESPONSE_TOPIC)
-    public void handleResponse(String result, @Header("kafka_receivedMessageKey") String requestId) {
-        CompletableFuture<String> future = responseFutures.remove(requestId); // Retrieve and remove the future
-        if (future != null) {
-            future.complete(result);
-            log.info("Received response: requestId={}, result={}", requestId, result);
-        } else {
-            log.warn("No future associated with requestId {}", requestId);
+    private <T> CompletableFuture<T> limited(String requestId, String client, Supplier<CompletableFuture<T>> send) {
+        ConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire(client);
+        } catch (ConcurrencyLimitExceededException e) {
+            log.debug("Rejected request: requestId={}, reason={}", requestId, e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<T> result;
+        try {
+            result = send.get();
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
         }
+        result.whenComplete((value, ex) -> permit.release(
+                ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex));
+        return result;
     }
 }
@@ -0,0 +1,149 @@
+package com.wit.rest.kafka;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.rest.metrics.RequestMetrics;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import com.wit.rest.pending.PendingRequestRegistry;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.transport.CalculationTransport;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport through Kafka (the default): requests are published to the calculator request topics and replies are
+ * consumed from this instance's reply topic, correlated by requestId in the {@link PendingRequestRegistry}.
+ * RequestIds are the hex renderings of {@link RequestIdGenerator} ids; the registry is keyed by the parsed number.
+ * Messages are encoded by the configured Kafka serializers (binary or legacy CSV wire format).
+ */
+@Component
+@ConditionalOnProperty(name = "calculator.transport", havingValue = "kafka", matchIfMissing = true)
+public class KafkaTransport implements CalculationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(KafkaTransport.class);
+
+    // Kafka topic names for sending requests: interactive and bulk traffic are consumed separately
+    static final String REQUEST_TOPIC = "calculator-requests";
+    static final String BATCH_REQUEST_TOPIC = "calculator-batch-requests";
+
+    private final KafkaTemplate<String, CalculationRequest> kafkaTemplate;
+
+    // Bounded store mapping requestId to the CompletableFuture awaiting its response, with per-request deadlines
+    private final PendingRequestRegistry pendingRequests;
+
+    // Reply address of this instance, sent with every request
+    private final ReplyTopic replyTopic;
+
+    // Runs send callbacks: on virtual threads when enabled, keeping the producer I/O thread free of the
+    // HTTP completion work a failed send triggers; otherwise directly on the producer I/O thread
+    private final Executor callbackExecutor;
+
+    // Send latency meters
+    private final RequestMetrics metrics;
+
+    /**
+     * @param kafkaTemplate   Kafka template used to publish messages to Kafka topics
+     * @param pendingRequests registry tracking requests awaiting a response
+     * @param replyTopic      reply topic of this instance
+     * @param metrics         meters recording the send latency
+     * @param virtualThreads  whether virtual threads are enabled (only honored on Java 21+)
+     */
+    public KafkaTransport(KafkaTemplate<String, CalculationRequest> kafkaTemplate, PendingRequestRegistry pendingRequests,
+                          ReplyTopic replyTopic, RequestMetrics metrics,
+                          @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.pendingRequests = pendingRequests;
+        this.replyTopic = replyTopic;
+        this.metrics = metrics;
+        this.callbackExecutor = virtualThreads && JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)
+                ? new VirtualThreadTaskExecutor("kafka-callback-")
+                : Runnable::run;
+    }
+
+    /**
+     * Registers the request and publishes it with this instance's reply topic in the {@code kafka_replyTopic} header.
+     * A failed send releases the pending slot right away. The time until the broker acknowledges the record is recorded.
+     *
+     * @return the pending future, or an already failed future if the in-flight limit was reached
+     * @throws IllegalArgumentException if the requestId was not generated by {@link RequestIdGenerator}
+     */
+    @Override
+    public CompletableFuture<CalculationReply> send(CalculationRequest request, Lane lane) {
+        String requestId = request.requestId();
+        long id = RequestIdGenerator.parse(requestId);
+        if (id < 0) {
+            throw new IllegalArgumentException("Not a generated requestId: " + requestId);
+        }
+        CompletableFuture<CalculationReply> future;
+        try {
+            future = pendingRequests.register(id);
+        } catch (InFlightLimitExceededException e) {
+            log.warn("Rejected request: requestId={}, reason={}", requestId, e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        String topic = lane == Lane.BULK ? BATCH_REQUEST_TOPIC : REQUEST_TOPIC;
+        ProducerRecord<String, CalculationRequest> record = new ProducerRecord<>(topic, requestId, request);
+        record.headers().add(new RecordHeader(KafkaHeaders.REPLY_TOPIC, replyTopic.nameBytes()));
+        long sent = System.nanoTime();
+        kafkaTemplate.send(record)
+                .whenCompleteAsync((sendResult, ex) -> {
+                    metrics.recordSend(System.nanoTime() - sent, ex == null);
+                    if (ex != null) {
+                        pendingRequests.fail(id, ex); // Release the slot instead of waiting for the deadline
+                    }
+                }, callbackExecutor);
+        return future;
+    }
+
+    /**
+     * Kafka listener that handles responses coming from the calculator service on this instance's reply topic.
+     * Uses a consumer group of its own so that no other instance competes for these replies.
+     * Completes the matching CompletableFuture to unblock the controller waiting for the result.
+     *
+     * @param reply      The reply received from the calculator service
+     * @param requestId  The requestId associated with the response (from Kafka message key)
+     */
+    @KafkaListener(topics = "#{@replyTopic.name}", groupId = "#{@replyTopic.name}")
+    public void handleResponse(CalculationReply reply, @Header("kafka_receivedMessageKey") String requestId) {
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", requestId)) {
+            long id = RequestIdGenerator.parse(requestId);
+            if (id >= 0 && pendingRequests.complete(id, reply)) {
+                log.debug("Received response: requestId={}, results={}", requestId, reply.results().size());
+            } else {
+                log.warn("No pending request associated with requestId {} (already expired or unknown)", requestId);
+            }
+        }
+    }
+
+    /**
+     * Fails the pending request of a reply that could not be decoded, invoked by the container error handler,
+     * so the client gets an error right away instead of waiting for the deadline.
+     *
+     * @param record    the failed record
+     * @param exception the failure reported by the listener container
+     */
+    public void handleInvalidResponse(ConsumerRecord<?, ?> record, Exception exception) {
+        String requestId = record.key() == null ? null : record.key().toString();
+        log.error("Invalid response: requestId={}", requestId, exception);
+        long id = RequestIdGenerator.parse(requestId);
+        if (id >= 0) {
+            pendingRequests.fail(id, exception);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.wit.rest.kafka;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Reply address of this REST instance. Every instance consumes its own reply topic with its own consumer group,
+ * so replies always reach the instance holding the pending request, whatever the number of replicas.
+ * The topic name is sent to the calculator in the {@code kafka_replyTopic} header of every request.
+ * <p>
+ * The instance id must stay the same across restarts of an instance: a new id is a new reply topic and consumer group,
+ * and the old ones are left behind on the broker. A blank id falls back to the local host name, which is the pod name
+ * in Kubernetes (stable for a StatefulSet) but the container id, new on every container, with docker-compose.
+ */
+@Component
+public class ReplyTopic {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplyTopic.class);
+
+    private final String name;
+    private final byte[] nameBytes;
+
+    /**
+     * @param prefix     prefix of the reply topic name
+     * @param instanceId stable identifier of this instance; the local host name is used if blank. Characters not
+     *                   allowed in topic names are replaced with {@code -}
+     */
+    public ReplyTopic(@Value("${calculator.reply.topic-prefix:calculator-responses}") String prefix,
+                      @Value("${calculator.reply.instance-id:}") String instanceId) {
+        String id = instanceId.isBlank() ? localHostName() : instanceId.strip();
+        this.name = prefix + "-" + id.replaceAll("[^a-zA-Z0-9._-]", "-");
+        this.nameBytes = name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            String id = UUID.randomUUID().toString();
+            log.warn("No host name to derive the reply topic from, using a random instance id that changes on every start: "
+                    + "set calculator.reply.instance-id. id={}, reason={}", id, e.getMessage());
+            return id;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Encoded topic name, computed once and shared by the headers of every request.
+     */
+    byte[] nameBytes() {
+        return nameBytes;
+    }
+}
@@ -0,0 +1,236 @@
+package com.wit.rest.kafka;
+
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.transport.CalculationTransport;
+import com.wit.rest.transport.CalculationTransport.Lane;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers single operations sent concurrently by different callers into multi-item requests, so that under load the
+ * calculator receives one record per group instead of one per operation (opt-in with {@code calculator.coalesce.enabled}).
+ * <p>
+ * Callers hand their operation to a single dispatcher thread. It takes every operation already waiting, up to
+ * {@code calculator.coalesce.max-items}, and may wait for more: the window adapts to the arrival rate, measured over
+ * the previous groups. It is zero when fewer than one more operation is expected within
+ * {@code calculator.coalesce.max-delay}, so light traffic is sent right away. Otherwise it lasts until the group is
+ * expected to be full, at most max-delay. A group is published to {@code calculator-requests} as one request with one
+ * calculation per operation under a requestId of its own, and its reply, one result per calculation in the same order,
+ * is fanned back out to the callers. Once answered, the group's requestId is written to the {@link RequestLog} with the
+ * requestIds of its operations, which the calculator logs and journal never see: sampled like the requests, and always
+ * when the group failed. A group of one is sent as a plain single request under the caller's requestId.
+ * <p>
+ * A group counts as one request against the pending in-flight cap and shares one deadline. If the group cannot be
+ * answered (timeout, overload, send failure) every operation in it fails.
+ */
+@Component
+public class RequestCoalescer implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestCoalescer.class);
+
+    // Weight of the last group in the arrival rate estimate
+    private static final double RATE_WEIGHT = 0.2;
+
+    // Operations waiting per group size before callers bypass the dispatcher and send on their own
+    private static final int QUEUE_GROUPS = 64;
+
+    private final CalculationTransport transport;
+    private final RequestIdGenerator requestIds;
+    private final RequestLog requestLog;
+    private final int maxItems;
+    private final long maxDelayNanos;
+
+    // Null when coalescing is disabled
+    private final BlockingQueue<Item> queue;
+    private final Thread dispatcher;
+
+    private final DistributionSummary groupSize;
+
+    // Estimated arrivals per nanosecond; only used by the dispatcher thread
+    private double arrivalRate;
+    private long lastDispatch = System.nanoTime();
+
+    private volatile boolean closed;
+
+    public RequestCoalescer(CalculationTransport transport, RequestIdGenerator requestIds, RequestLog requestLog,
+                            @Value("${calculator.coalesce.enabled:false}") boolean enabled,
+                            @Value("${calculator.coalesce.max-items:64}") int maxItems,
+                            @Value("${calculator.coalesce.max-delay:1ms}") Duration maxDelay,
+                            MeterRegistry meterRegistry) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("calculator.coalesce.max-items must be at least 1");
+        }
+        this.transport = transport;
+        this.requestIds = requestIds;
+        this.requestLog = requestLog;
+        this.maxItems = maxItems;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.groupSize = DistributionSummary.builder("calculator.coalesce.items")
+                .description("Single operations sent per coalesced request")
+                .register(meterRegistry);
+        if (enabled) {
+            this.queue = new ArrayBlockingQueue<>(maxItems * QUEUE_GROUPS);
+            this.dispatcher = new Thread(this::dispatch, "request-coalescer");
+            dispatcher.setDaemon(true);
+            dispatcher.start();
+            log.info("Request coalescing enabled: maxItems={}, maxDelay={}", maxItems, maxDelay);
+        } else {
+            this.queue = null;
+            this.dispatcher = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return queue != null;
+    }
+
+    /**
+     * Queues a single operation for the next group. When coalescing is disabled, closed or the queue is full,
+     * the operation is sent on its own right away.
+     *
+     * @param requestId unique identifier of the operation, used when it is sent on its own
+     * @param calculation the operation
+     * @return a future completed with the result of the operation, or failed with the error that prevented its
+     * group from being answered
+     */
+    public CompletableFuture<CalculationResult> submit(String requestId, Calculation calculation) {
+        Item item = new Item(requestId, calculation, new CompletableFuture<>());
+        if (queue == null || closed || !queue.offer(item)) {
+            send(List.of(item));
+        } else if (closed && queue.remove(item)) {
+            send(List.of(item)); // Queued while the dispatcher was sending what was left
+        }
+        return item.future;
+    }
+
+    /**
+     * Dispatcher loop: forms and sends groups until interrupted, then sends what is left.
+     */
+    private void dispatch() {
+        List<Item> group = new ArrayList<>(maxItems);
+        try {
+            while (true) {
+                group.add(queue.take());
+                queue.drainTo(group, maxItems - group.size());
+                fill(group);
+                updateArrivalRate(group.size());
+                send(group);
+                group = new ArrayList<>(maxItems);
+            }
+        } catch (InterruptedException e) {
+            queue.drainTo(group);
+            for (int i = 0; i < group.size(); i += maxItems) {
+                send(group.subList(i, Math.min(group.size(), i + maxItems)));
+            }
+        }
+    }
+
+    /**
+     * Waits for more operations while the group is not full and more are expected within the window.
+     */
+    private void fill(List<Item> group) throws InterruptedException {
+        int missing = maxItems - group.size();
+        if (missing == 0 || arrivalRate * maxDelayNanos < 1) {
+            return; // Light traffic: send right away
+        }
+        long deadline = System.nanoTime() + Math.min(maxDelayNanos, (long) (missing / arrivalRate));
+        while (group.size() < maxItems) {
+            Item next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            group.add(next);
+            queue.drainTo(group, maxItems - group.size());
+        }
+    }
+
+    /**
+     * Folds the operations of this group, over the time since the previous one was sent, into the arrival rate.
+     */
+    private void updateArrivalRate(int items) {
+        long now = System.nanoTime();
+        double rate = (double) items / Math.max(1, now - lastDispatch);
+        arrivalRate = arrivalRate == 0 ? rate : RATE_WEIGHT * rate + (1 - RATE_WEIGHT) * arrivalRate;
+        lastDispatch = now;
+    }
+
+    /**
+     * Sends a group as one request and fans its reply out to the operations' futures.
+     */
+    private void send(List<Item> group) {
+        groupSize.record(group.size());
+        // Null for a group of one, sent under the caller's requestId
+        String groupRequestId = group.size() == 1 ? null : requestIds.next();
+        CompletableFuture<CalculationReply> reply;
+        try {
+            if (groupRequestId == null) {
+                Item item = group.get(0);
+                reply = transport.send(new CalculationRequest(item.requestId, List.of(item.calculation)), Lane.INTERACTIVE);
+            } else {
+                List<Calculation> calculations = new ArrayList<>(group.size());
+                for (Item item : group) {
+                    calculations.add(item.calculation);
+                }
+                reply = transport.send(new CalculationRequest(groupRequestId, calculations), Lane.INTERACTIVE);
+            }
+        } catch (RuntimeException e) {
+            reply = CompletableFuture.failedFuture(e);
+        }
+        reply.whenComplete((response, ex) -> {
+            if (ex == null && response.results().size() != group.size()) {
+                ex = new IllegalStateException("Coalesced reply does not match the request: expected "
+                        + group.size() + " items but got " + response.results().size());
+            }
+            // The calculator logs and journals the group's requestId only: this line maps it to the callers'
+            if (groupRequestId != null && requestLog.isSampled(ex == null)) {
+                requestLog.log(ex == null, "requestId={} coalesced={} result={} requestIds={}", groupRequestId,
+                        group.size(), ex == null ? "ok" : ex.getMessage(), requestIdsOf(group));
+            }
+            for (int i = 0; i < group.size(); i++) {
+                if (ex != null) {
+                    group.get(i).future.completeExceptionally(ex);
+                } else {
+                    group.get(i).future.complete(response.results().get(i));
+                }
+            }
+        });
+    }
+
+    private static List<String> requestIdsOf(List<Item> group) {
+        List<String> ids = new ArrayList<>(group.size());
+        for (Item item : group) {
+            ids.add(item.requestId);
+        }
+        return ids;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        closed = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+            dispatcher.join(TimeUnit.SECONDS.toMillis(1));
+        }
+    }
+
+    private record Item(String requestId, Calculation calculation, CompletableFuture<CalculationResult> future) {
+    }
+}
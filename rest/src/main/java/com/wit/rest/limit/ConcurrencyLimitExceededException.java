@@ -0,0 +1,33 @@
+package com.wit.rest.limit;
+
+import java.time.Duration;
+
+/**
+ * Thrown when the {@link ConcurrencyLimiter} sheds a request. The request is rejected before anything is sent to the
+ * calculator and mapped to HTTP 503 Service Unavailable, or to 429 Too Many Requests when the client exceeded its
+ * fair share of the limit, with a {@code Retry-After} header in both cases.
+ */
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    private final boolean clientShare;
+    private final Duration retryAfter;
+
+    public ConcurrencyLimitExceededException(boolean clientShare, int limit, Duration retryAfter) {
+        super(clientShare
+                ? "Too many requests in flight for this client (fair share of limit " + limit + ")"
+                : "Too many requests in flight (adaptive limit " + limit + ")");
+        this.clientShare = clientShare;
+        this.retryAfter = retryAfter;
+    }
+
+    /**
+     * Whether the request was shed because its client exceeded its fair share, rather than the overall limit.
+     */
+    public boolean isClientShare() {
+        return clientShare;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,251 @@
+package com.wit.rest.limit;
+
+import com.wit.rest.kafka.CalculationFailedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit on the number of operations awaiting the calculator, so that an overloaded calculator sheds excess
+ * requests right away instead of letting every request queue up until it times out.
+ * <p>
+ * The limit follows AIMD on the observed round-trip time: every answer within {@code calculator.limit.latency-threshold}
+ * raises it by {@code 1/limit} (about one per round trip) while at least half of it is in use; a slower answer, a
+ * timeout or a failed send multiplies it by {@code calculator.limit.backoff-ratio}, at most once per round trip,
+ * so a burst of slow answers to requests sent before the last decrease does not collapse it.
+ * <p>
+ * With fair sharing ({@code calculator.limit.fairness} set to {@code ip} or {@code api-key}), once more than half of
+ * the limit is in use a client may only hold its share of the limit, split evenly between the clients with requests
+ * in flight; requests above it are shed for that client only.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyLimiter.class);
+
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    /**
+     * How requests are attributed to clients for fair sharing.
+     */
+    public enum Fairness {
+        NONE, IP, API_KEY;
+
+        static Fairness fromName(String name) {
+            return switch (name.strip().toLowerCase()) {
+                case "none", "" -> NONE;
+                case "ip" -> IP;
+                case "api-key" -> API_KEY;
+                default -> throw new IllegalArgumentException("Unknown calculator.limit.fairness: " + name);
+            };
+        }
+    }
+
+    /**
+     * An admitted request, released once with its outcome.
+     */
+    public final class Permit {
+
+        private final String client;
+        private final long start = System.nanoTime();
+
+        private Permit(String client) {
+            this.client = client;
+        }
+
+        /**
+         * Releases the permit and adapts the limit to the round-trip time and outcome of the request.
+         *
+         * @param failure the failure of the request, or null if the calculator answered it
+         */
+        public void release(Throwable failure) {
+            if (enabled) {
+                ConcurrencyLimiter.this.release(this, failure);
+            }
+        }
+    }
+
+    private final boolean enabled;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+    private final Fairness fairness;
+    private final Duration retryAfter;
+
+    // Current limit, as the bits of a double so that additive increases below one accumulate
+    private final AtomicLong limit;
+
+    // Start time of the requests the last decrease reacted to; older requests do not decrease again
+    private final AtomicLong lastDecrease = new AtomicLong(System.nanoTime());
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    // Requests in flight per client, only when fair sharing is enabled; entries are removed when they reach zero
+    private final ConcurrentHashMap<String, AtomicInteger> clients = new ConcurrentHashMap<>();
+
+    private final Counter shedLimit;
+    private final Counter shedClientShare;
+
+    public ConcurrencyLimiter(@Value("${calculator.limit.enabled:true}") boolean enabled,
+                              @Value("${calculator.limit.initial:100}") int initialLimit,
+                              @Value("${calculator.limit.min:10}") int minLimit,
+                              @Value("${calculator.limit.max:10000}") int maxLimit,
+                              @Value("${calculator.limit.latency-threshold:200ms}") Duration latencyThreshold,
+                              @Value("${calculator.limit.backoff-ratio:0.9}") double backoffRatio,
+                              @Value("${calculator.limit.fairness:none}") String fairness,
+                              @Value("${calculator.limit.retry-after:1s}") Duration retryAfter,
+                              MeterRegistry meterRegistry) {
+        if (minLimit < 1 || minLimit > initialLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("calculator.limit requires 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("calculator.limit.backoff-ratio must be between 0 and 1");
+        }
+        this.enabled = enabled;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.fairness = Fairness.fromName(fairness);
+        this.retryAfter = retryAfter;
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+
+        Gauge.builder("calculator.limit.current", this, ConcurrencyLimiter::limit)
+                .description("Current adaptive limit of operations awaiting the calculator")
+                .register(meterRegistry);
+        Gauge.builder("calculator.limit.in-flight", inFlight, AtomicInteger::get)
+                .description("Operations admitted by the limiter and awaiting the calculator")
+                .register(meterRegistry);
+        this.shedLimit = shedCounter(meterRegistry, "limit");
+        this.shedClientShare = shedCounter(meterRegistry, "client-share");
+    }
+
+    private static Counter shedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("calculator.limit.shed")
+                .description("Requests rejected by the concurrency limiter")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Identifies the client of a request for fair sharing: its {@value #API_KEY_HEADER} header, or its address.
+     *
+     * @return the client key, or null when fair sharing is disabled
+     */
+    public String clientOf(HttpServletRequest request) {
+        return switch (fairness) {
+            case NONE -> null;
+            case IP -> request.getRemoteAddr();
+            case API_KEY -> {
+                String apiKey = request.getHeader(API_KEY_HEADER);
+                yield apiKey == null || apiKey.isBlank() ? request.getRemoteAddr() : apiKey;
+            }
+        };
+    }
+
+    /**
+     * Admits a request if the limit, and the client's share of it, allow.
+     *
+     * @param client the client key from {@link #clientOf}, or null
+     * @return the permit to release when the request completes
+     * @throws ConcurrencyLimitExceededException if the request is shed
+     */
+    public Permit acquire(String client) {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        int current = limit();
+        int admitted;
+        do {
+            admitted = inFlight.get();
+            if (admitted >= current) {
+                shedLimit.increment();
+                log.debug("Shed request: limit={}", current);
+                throw new ConcurrencyLimitExceededException(false, current, retryAfter);
+            }
+        } while (!inFlight.compareAndSet(admitted, admitted + 1));
+
+        if (client == null || fairness == Fairness.NONE) {
+            return new Permit(null);
+        }
+        AtomicInteger count = clients.compute(client, (key, c) -> {
+            AtomicInteger counter = c == null ? new AtomicInteger() : c;
+            counter.incrementAndGet();
+            return counter;
+        });
+        if (admitted + 1 > current / 2 && count.get() > Math.max(1, current / clients.size())) {
+            releaseClient(client);
+            inFlight.decrementAndGet();
+            shedClientShare.increment();
+            log.debug("Shed request: client={}, limit={}", client, current);
+            throw new ConcurrencyLimitExceededException(true, current, retryAfter);
+        }
+        return new Permit(client);
+    }
+
+    private void release(Permit permit, Throwable failure) {
+        inFlight.decrementAndGet();
+        if (permit.client != null) {
+            releaseClient(permit.client);
+        }
+        boolean answered = failure == null || failure instanceof CalculationFailedException;
+        if (answered && System.nanoTime() - permit.start <= latencyThresholdNanos) {
+            increase();
+        } else {
+            decrease(permit.start);
+        }
+    }
+
+    private void releaseClient(String client) {
+        clients.computeIfPresent(client, (key, count) -> count.decrementAndGet() == 0 ? null : count);
+    }
+
+    private void increase() {
+        if (inFlight.get() * 2 < limit()) {
+            return; // The limit is not what holds requests back; growing it would not be backed by evidence
+        }
+        long bits;
+        double next;
+        do {
+            bits = limit.get();
+            double value = Double.longBitsToDouble(bits);
+            next = Math.min(maxLimit, value + 1 / value);
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(next)));
+    }
+
+    private void decrease(long requestStart) {
+        long last = lastDecrease.get();
+        if (requestStart - last < 0 || !lastDecrease.compareAndSet(last, System.nanoTime())) {
+            return; // Sent before the last decrease, or another thread is decreasing for the same round trip
+        }
+        long bits;
+        double next;
+        do {
+            bits = limit.get();
+            next = Math.max(minLimit, Double.longBitsToDouble(bits) * backoffRatio);
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(next)));
+        log.debug("Decreased concurrency limit to {}", (int) next);
+    }
+
+    /**
+     * Current limit, rounded down.
+     */
+    public int limit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,139 @@
+package com.wit.rest.metrics;
+
+import com.wit.common.protocol.Operation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency meters of the REST hot path: end-to-end time of the operation, expression and aggregate endpoints, by operation and outcome,
+ * and the time Kafka takes to acknowledge a request. Every timer is registered up front and looked up by ordinal,
+ * so recording allocates nothing and can stay enabled in production. The number of requests awaiting a reply is
+ * published by the pending request registry ({@code calculator.pending.in-flight}).
+ */
+@Component
+public class RequestMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99};
+
+    /**
+     * Outcome of a request, from its HTTP status.
+     */
+    public enum Outcome {
+        SUCCESS, CLIENT_ERROR, SERVER_ERROR;
+
+        static Outcome of(HttpStatusCode status) {
+            return status.is2xxSuccessful() ? SUCCESS : status.is4xxClientError() ? CLIENT_ERROR : SERVER_ERROR;
+        }
+    }
+
+    // Indexed by Operation ordinal, then Outcome ordinal
+    private final Timer[][] requests;
+
+    // Expression evaluations, indexed by Outcome ordinal
+    private final Timer[] expressions;
+
+    // Aggregates, indexed by Outcome ordinal
+    private final Timer[] aggregates;
+
+    // High-precision operations, indexed by Outcome ordinal
+    private final Timer[] precise;
+
+    private final Timer sendSuccess;
+    private final Timer sendFailure;
+
+    public RequestMetrics(MeterRegistry meterRegistry) {
+        Operation[] operations = Operation.values();
+        Outcome[] outcomes = Outcome.values();
+        this.requests = new Timer[operations.length][outcomes.length];
+        this.expressions = new Timer[outcomes.length];
+        this.aggregates = new Timer[outcomes.length];
+        this.precise = new Timer[outcomes.length];
+        for (Outcome outcome : outcomes) {
+            for (Operation operation : operations) {
+                requests[operation.ordinal()][outcome.ordinal()] = requestTimer(meterRegistry, operation.operationName(), outcome);
+            }
+            expressions[outcome.ordinal()] = requestTimer(meterRegistry, "expression", outcome);
+            aggregates[outcome.ordinal()] = requestTimer(meterRegistry, "aggregate", outcome);
+            precise[outcome.ordinal()] = requestTimer(meterRegistry, "precise", outcome);
+        }
+        this.sendSuccess = sendTimer(meterRegistry, "success");
+        this.sendFailure = sendTimer(meterRegistry, "failure");
+    }
+
+    private static Timer requestTimer(MeterRegistry meterRegistry, String operation, Outcome outcome) {
+        return Timer.builder("calculator.requests")
+                .description("End-to-end latency of the operation endpoints, from request to response")
+                .tag("operation", operation)
+                .tag("outcome", outcome.name())
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    private static Timer sendTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("calculator.kafka.send")
+                .description("Time until the broker acknowledges a request record")
+                .tag("result", result)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the end-to-end latency of an operation request.
+     *
+     * @param operation the requested operation
+     * @param status    the HTTP status of the response
+     * @param nanos     time from receiving the request to building the response
+     */
+    public void recordRequest(Operation operation, HttpStatusCode status, long nanos) {
+        requests[operation.ordinal()][Outcome.of(status).ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the end-to-end latency of an expression evaluation, under the {@code expression} operation tag.
+     *
+     * @param status the HTTP status of the response
+     * @param nanos  time from receiving the request to building the response
+     */
+    public void recordExpression(HttpStatusCode status, long nanos) {
+        expressions[Outcome.of(status).ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the end-to-end latency of an aggregate, body streaming included, under the {@code aggregate} operation tag.
+     *
+     * @param status the HTTP status of the response
+     * @param nanos  time from receiving the request to building the response
+     */
+    public void recordAggregate(HttpStatusCode status, long nanos) {
+        aggregates[Outcome.of(status).ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the end-to-end latency of a high-precision operation, body streaming included, under the
+     * {@code precise} operation tag.
+     *
+     * @param status the HTTP status of the response
+     * @param nanos  time from receiving the request to building the response
+     */
+    public void recordPrecise(HttpStatusCode status, long nanos) {
+        precise[Outcome.of(status).ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the time Kafka took to acknowledge, or fail, a request record.
+     */
+    public void recordSend(long nanos, boolean success) {
+        (success ? sendSuccess : sendFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
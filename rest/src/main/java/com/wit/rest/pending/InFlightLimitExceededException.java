@@ -0,0 +1,12 @@
+package com.wit.rest.pending;
+
+/**
+ * Thrown when the number of requests awaiting a response reaches the configured cap.
+ * The request is rejected before anything is published to Kafka and mapped to HTTP 503 Service Unavailable.
+ */
+public class InFlightLimitExceededException extends RuntimeException {
+
+    public InFlightLimitExceededException(int maxInFlight) {
+        super("Too many requests in flight (limit " + maxInFlight + ")");
+    }
+}
@@ -0,0 +1,174 @@
+package com.wit.rest.pending;
+
+/**
+ * Concurrent map from primitive {@code long} keys to non-null values, without boxing the keys or allocating an
+ * entry per mapping. The keys are spread over a fixed number of segments, each an open-addressing table with
+ * linear probing guarded by its own lock, so threads working on different segments do not contend.
+ * Removal shifts the following entries back instead of leaving tombstones, so probe sequences stay short however
+ * many keys come and go. Segments grow when half full and never shrink.
+ */
+public final class LongKeyTable<V> {
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 16;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+
+    /**
+     * @param concurrency number of segments, rounded up to a power of two
+     */
+    public LongKeyTable(int concurrency) {
+        int size = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment();
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(size);
+    }
+
+    /**
+     * @return the value already mapped to the key, or null if the given one was added
+     */
+    public V putIfAbsent(long key, V value) {
+        long hash = hash(key);
+        return cast(segmentFor(hash).putIfAbsent(key, hash, value));
+    }
+
+    /**
+     * @return the value that was mapped to the key, or null if there was none
+     */
+    public V remove(long key) {
+        long hash = hash(key);
+        return cast(segmentFor(hash).remove(key, hash, null));
+    }
+
+    /**
+     * Removes the key only if it is mapped to the given value (compared by identity).
+     */
+    public boolean remove(long key, V value) {
+        long hash = hash(key);
+        return segmentFor(hash).remove(key, hash, value) != null;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long hash) {
+        // Segments take the high bits of the hash, slots within a segment the low ones
+        return segments.length == 1 ? segments[0] : segments[(int) (hash >>> segmentShift)];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V cast(Object value) {
+        return (V) value;
+    }
+
+    /**
+     * Finalizer of MurmurHash3: request ids are sequential, so their low bits alone would cluster.
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * One open-addressing table; a slot is free when its value is null.
+     */
+    private static final class Segment {
+
+        private long[] keys = new long[INITIAL_SEGMENT_CAPACITY];
+        private Object[] values = new Object[INITIAL_SEGMENT_CAPACITY];
+        private int size;
+
+        synchronized Object putIfAbsent(long key, long hash, Object value) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return null;
+        }
+
+        /**
+         * Removes the key, if {@code expected} is null or the mapped value.
+         *
+         * @return the removed value, or null if nothing was removed
+         */
+        synchronized Object remove(long key, long hash, Object expected) {
+            int mask = keys.length - 1;
+            int slot = (int) hash & mask;
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    Object value = values[slot];
+                    if (expected != null && expected != value) {
+                        return null;
+                    }
+                    shiftBack(slot, mask);
+                    size--;
+                    return value;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        /**
+         * Empties a slot, moving back the following entries of the run that would no longer be found past the gap.
+         */
+        private void shiftBack(int gap, int mask) {
+            int slot = gap;
+            while (true) {
+                slot = (slot + 1) & mask;
+                if (values[slot] == null) {
+                    break;
+                }
+                int home = (int) hash(keys[slot]) & mask;
+                // Move the entry unless its home slot lies cyclically in (gap, slot]
+                boolean reachable = gap <= slot ? gap < home && home <= slot : gap < home || home <= slot;
+                if (!reachable) {
+                    keys[gap] = keys[slot];
+                    values[gap] = values[slot];
+                    gap = slot;
+                }
+            }
+            values[gap] = null;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = (int) hash(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+}
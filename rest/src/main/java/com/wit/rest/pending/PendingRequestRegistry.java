@@ -0,0 +1,162 @@
+package com.wit.rest.pending;
+
+import com.wit.common.protocol.CalculationReply;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of requests sent to the calculator that are still waiting for a response.
+ * Every entry carries a deadline enforced by a {@link TimerWheel}, so lost replies complete
+ * with a {@link RequestTimeoutException} instead of leaking. The number of entries is capped;
+ * once the cap is reached new requests are rejected with an {@link InFlightLimitExceededException}.
+ * Entries are keyed by the numeric request id (see {@link RequestIdGenerator}) in a {@link LongKeyTable}.
+ * <p>
+ * Registering touches no state shared by every request thread: the table is segmented, the cap is held by
+ * {@link StripedPermits} and the timer wheel buckets are striped the same way. Answered requests are cancelled on
+ * the wheel, so they are not kept until their deadline.
+ */
+@Component
+public class PendingRequestRegistry implements DisposableBean {
+
+    // Segments of the pending table: enough that the request threads and the reply listener rarely meet on one lock
+    private static final int TABLE_CONCURRENCY = 64;
+
+    private final LongKeyTable<PendingRequest> pending = new LongKeyTable<>(TABLE_CONCURRENCY);
+
+    // Reserved before insertion so the cap holds under concurrent registration
+    private final StripedPermits inFlight;
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final TimerWheel timerWheel;
+
+    public PendingRequestRegistry(@Value("${calculator.pending.max-in-flight:10000}") int maxInFlight,
+                                  @Value("${calculator.pending.timeout:5s}") Duration timeout,
+                                  @Value("${calculator.pending.tick:10ms}") Duration tick,
+                                  MeterRegistry meterRegistry) {
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        this.inFlight = new StripedPermits(maxInFlight, StripedPermits.defaultStripes());
+        // Size the wheel so that one revolution covers the default deadline
+        this.timerWheel = new TimerWheel(tick, (int) Math.max(1, timeout.toNanos() / tick.toNanos()),
+                StripedPermits.defaultStripes());
+
+        Gauge.builder("calculator.pending.in-flight", inFlight, StripedPermits::acquired)
+                .description("Requests waiting for a calculator response")
+                .register(meterRegistry);
+        Gauge.builder("calculator.pending.expirations", expirations, LongAdder::sum)
+                .description("Requests completed with a timeout because no response arrived")
+                .register(meterRegistry);
+        Gauge.builder("calculator.pending.rejections", rejections, LongAdder::sum)
+                .description("Requests rejected because the in-flight limit was reached")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers a new pending request and starts its deadline.
+     *
+     * @param requestId the request identifier used to correlate the response
+     * @return a future completed by {@link #complete}, {@link #fail} or by the deadline expiring
+     * @throws InFlightLimitExceededException if the in-flight cap has been reached
+     */
+    public CompletableFuture<CalculationReply> register(long requestId) {
+        int stripe = inFlight.acquire();
+        if (stripe < 0) {
+            rejections.increment();
+            throw new InFlightLimitExceededException(maxInFlight);
+        }
+        PendingRequest request = new PendingRequest(requestId, stripe);
+        if (pending.putIfAbsent(requestId, request) != null) {
+            inFlight.release(stripe);
+            throw new IllegalStateException("Duplicate requestId " + RequestIdGenerator.format(requestId));
+        }
+        timerWheel.schedule(request, timeout);
+        return request.future;
+    }
+
+    /**
+     * Completes the pending request with the given reply.
+     *
+     * @return false if no request is pending under this id (already answered, expired or unknown)
+     */
+    public boolean complete(long requestId, CalculationReply reply) {
+        PendingRequest request = remove(requestId);
+        return request != null && request.future.complete(reply);
+    }
+
+    /**
+     * Completes the pending request exceptionally, e.g. when publishing to Kafka failed.
+     *
+     * @return false if no request is pending under this id
+     */
+    public boolean fail(long requestId, Throwable cause) {
+        PendingRequest request = remove(requestId);
+        return request != null && request.future.completeExceptionally(cause);
+    }
+
+    public int inFlight() {
+        return inFlight.acquired();
+    }
+
+    public long expirations() {
+        return expirations.sum();
+    }
+
+    public long rejections() {
+        return rejections.sum();
+    }
+
+    private PendingRequest remove(long requestId) {
+        PendingRequest request = pending.remove(requestId);
+        if (request != null) {
+            inFlight.release(request.stripe);
+            timerWheel.cancel(request);
+        }
+        return request;
+    }
+
+    @Override
+    public void destroy() {
+        timerWheel.close();
+    }
+
+    /**
+     * A request awaiting its response, scheduled on the timer wheel.
+     */
+    private final class PendingRequest extends TimerWheel.Timeout {
+
+        private final long requestId;
+        // Stripe of the in-flight permit
+        private final int stripe;
+        private final CompletableFuture<CalculationReply> future = new CompletableFuture<>();
+
+        private PendingRequest(long requestId, int stripe) {
+            this.requestId = requestId;
+            this.stripe = stripe;
+        }
+
+        @Override
+        boolean isDone() {
+            return future.isDone();
+        }
+
+        @Override
+        void expire() {
+            // Only expire if the entry is still the one registered under this id
+            if (pending.remove(requestId, this)) {
+                inFlight.release(stripe);
+                expirations.increment();
+                future.completeExceptionally(new RequestTimeoutException(RequestIdGenerator.format(requestId), timeout.toMillis()));
+            }
+        }
+    }
+}
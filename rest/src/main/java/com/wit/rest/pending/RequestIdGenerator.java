@@ -0,0 +1,130 @@
+package com.wit.rest.pending;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the 64-bit identifiers that correlate calculator requests with their replies: positive, unique per node
+ * and increasing. Replaces random UUIDs, which draw from a shared {@code SecureRandom} on every request.
+ * <p>
+ * Layout, from the most significant bit: 1 unused sign bit, 41 bits of milliseconds since 2025-01-01 UTC (about
+ * 69 years), 10 bits of node and 12 bits of sequence within the millisecond. When more than 4096 ids are drawn in
+ * the same millisecond the generator borrows the next one, and it never goes back when the clock does, so ids stay
+ * increasing and unique.
+ * <p>
+ * Replies are routed to the reply topic of the instance that sent the request, so ids only have to be unique per
+ * instance; the node ({@code calculator.request-id.node}, random by default) tells instances apart in logs. Set it
+ * explicitly for ids unique across the whole deployment.
+ * <p>
+ * Ids are rendered as 16 lowercase hex digits ({@link #format}), used as Kafka key, wire requestId, log and
+ * {@code X-Request-ID} value; since the width is fixed, the renderings sort like the ids, by creation time.
+ */
+@Component
+public class RequestIdGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestIdGenerator.class);
+
+    // 2025-01-01T00:00:00Z
+    static final long EPOCH_MILLIS = 1_735_689_600_000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final int RENDERED_LENGTH = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // Last issued (millis << SEQUENCE_BITS | sequence); one CAS per id
+    private final AtomicLong last = new AtomicLong();
+    private final long node;
+
+    /**
+     * @param node node number in [0, {@value #MAX_NODE}], or a negative value for a random one
+     */
+    public RequestIdGenerator(@Value("${calculator.request-id.node:-1}") int node) {
+        if (node > MAX_NODE) {
+            throw new IllegalArgumentException("calculator.request-id.node must be at most " + MAX_NODE);
+        }
+        this.node = node < 0 ? ThreadLocalRandom.current().nextInt(MAX_NODE + 1) : node;
+        log.info("Request ids: node={}", this.node);
+    }
+
+    /**
+     * @return a new id, greater than every id previously returned by this generator
+     */
+    public long nextId() {
+        long floor = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(previous + 1, floor);
+        } while (!last.compareAndSet(previous, next));
+        return (next >>> SEQUENCE_BITS) << (NODE_BITS + SEQUENCE_BITS)
+                | node << SEQUENCE_BITS
+                | next & ((1 << SEQUENCE_BITS) - 1);
+    }
+
+    /**
+     * @return a new id, rendered by {@link #format}
+     */
+    public String next() {
+        return format(nextId());
+    }
+
+    /**
+     * Renders an id as 16 lowercase hex digits.
+     */
+    public static String format(long id) {
+        char[] chars = new char[RENDERED_LENGTH];
+        for (int i = RENDERED_LENGTH - 1; i >= 0; i--) {
+            chars[i] = HEX[(int) id & 0xF];
+            id >>>= 4;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parses an id rendered by {@link #format}, without allocating.
+     *
+     * @return the id, or -1 if the text is not a rendered id (e.g. the UUID of a request sent before an upgrade)
+     */
+    public static long parse(CharSequence text) {
+        if (text == null || text.length() != RENDERED_LENGTH) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < RENDERED_LENGTH; i++) {
+            char c = text.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return -1;
+            }
+            id = id << 4 | digit;
+        }
+        return id < 0 ? -1 : id;
+    }
+
+    /**
+     * @return the creation time of an id, in milliseconds since the Unix epoch
+     */
+    public static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    /**
+     * @return the node that generated an id
+     */
+    public static int node(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE;
+    }
+}
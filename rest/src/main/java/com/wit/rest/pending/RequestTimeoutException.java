@@ -0,0 +1,12 @@
+package com.wit.rest.pending;
+
+/**
+ * Thrown when no response arrives from the calculator before the request deadline.
+ * Mapped to HTTP 504 Gateway Timeout by the controller.
+ */
+public class RequestTimeoutException extends RuntimeException {
+
+    public RequestTimeoutException(String requestId, long timeoutMillis) {
+        super("No response received within " + timeoutMillis + " ms for request " + requestId);
+    }
+}
@@ -0,0 +1,84 @@
+package com.wit.rest.pending;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Fixed number of permits split over stripes, so that threads acquiring and releasing at the same time update
+ * different cache lines instead of one shared counter. A thread takes a permit from its own stripe and only looks at
+ * the others once it is empty, so the total never exceeds the number of permits. Releases go back to the stripe the
+ * permit was taken from, which the caller keeps.
+ */
+final class StripedPermits {
+
+    // Ints per stripe: one stripe per 64-byte cache line
+    private static final int PADDING = 16;
+
+    private final AtomicIntegerArray available;
+    private final int mask;
+    private final int permits;
+
+    /**
+     * @param permits total number of permits
+     * @param stripes number of stripes, rounded up to a power of two
+     */
+    StripedPermits(int permits, int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.available = new AtomicIntegerArray(size * PADDING);
+        this.mask = size - 1;
+        this.permits = permits;
+        for (int i = 0; i < size; i++) {
+            available.set(i * PADDING, permits / size + (i < permits % size ? 1 : 0));
+        }
+    }
+
+    /**
+     * Stripe count for the number of processors: contention needs threads running at the same time.
+     */
+    static int defaultStripes() {
+        return Math.min(64, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Stripe of the current thread, also used to spread other per-thread structures.
+     */
+    static int probe() {
+        // Thread ids are sequential for platform threads and unique for virtual ones: the low bits spread them
+        return (int) Thread.currentThread().getId();
+    }
+
+    /**
+     * Takes a permit, from the current thread's stripe when it has one.
+     *
+     * @return the stripe to release the permit to, or -1 if none is left
+     */
+    int acquire() {
+        int start = probe() & mask;
+        for (int i = 0; i <= mask; i++) {
+            int stripe = (start + i) & mask;
+            int index = stripe * PADDING;
+            int count = available.get(index);
+            while (count > 0) {
+                if (available.compareAndSet(index, count, count - 1)) {
+                    return stripe;
+                }
+                count = available.get(index);
+            }
+        }
+        return -1;
+    }
+
+    void release(int stripe) {
+        available.incrementAndGet(stripe * PADDING);
+    }
+
+    /**
+     * Permits taken; a snapshot that may be off by the acquisitions and releases in progress.
+     */
+    int acquired() {
+        int free = 0;
+        for (int i = 0; i <= mask; i++) {
+            free += available.get(i * PADDING);
+        }
+        return permits - free;
+    }
+}
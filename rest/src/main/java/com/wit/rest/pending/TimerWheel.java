@@ -0,0 +1,180 @@
+package com.wit.rest.pending;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel used to expire pending requests without one scheduled task per request.
+ * Timeouts are dropped into a bucket chosen by their deadline tick and a single daemon thread
+ * sweeps one bucket per tick. Timeouts that complete early are {@link #cancel cancelled}, so completed requests do
+ * not stay reachable until their deadline.
+ * <p>
+ * Requests scheduled at the same time share a deadline tick, so each bucket is striped by thread
+ * ({@link StripedPermits#probe}): every stripe is a doubly-linked list of timeouts with its own lock, and concurrent
+ * callers append to different lists.
+ */
+final class TimerWheel implements AutoCloseable {
+
+    /**
+     * Entry scheduled on the wheel. Implementations report whether they are already done
+     * (so the sweep can discard them) and what to do once their deadline passes.
+     */
+    abstract static class Timeout {
+
+        private long deadlineTick;
+        // List holding the timeout, null once cancelled or expired
+        private volatile Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        abstract boolean isDone();
+
+        abstract void expire();
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final int stripeMask;
+    // Bucket b, stripe s at index b * stripes + s
+    private final Bucket[] buckets;
+    private final long startNanos = System.nanoTime();
+    private final ScheduledExecutorService ticker;
+
+    // Timeouts due in the tick being swept; only used by the ticker thread
+    private final List<Timeout> due = new ArrayList<>();
+
+    // Last tick whose bucket has been fully swept; only written by the ticker thread
+    private volatile long processedTick;
+
+    /**
+     * @param tick      resolution of the wheel
+     * @param wheelSize number of buckets, rounded up to a power of two
+     * @param stripes   lists per bucket, rounded up to a power of two
+     */
+    TimerWheel(Duration tick, int wheelSize, int stripes) {
+        this.tickNanos = tick.toNanos();
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        int stripeCount = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.mask = size - 1;
+        this.stripeMask = stripeCount - 1;
+        this.buckets = new Bucket[size * stripeCount];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pending-request-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Schedules a timeout to expire after the given delay. The deadline is rounded up to the next tick.
+     * In the narrow race where the target bucket is swept while the timeout is being added,
+     * it fires one wheel revolution later instead of being lost.
+     */
+    void schedule(Timeout timeout, Duration delay) {
+        long elapsed = System.nanoTime() - startNanos + delay.toNanos();
+        long deadlineTick = (elapsed + tickNanos - 1) / tickNanos;
+        timeout.deadlineTick = Math.max(deadlineTick, processedTick + 1);
+        int bucket = (int) (timeout.deadlineTick & mask);
+        buckets[bucket * (stripeMask + 1) + (StripedPermits.probe() & stripeMask)].add(timeout);
+    }
+
+    /**
+     * Removes a timeout that completed before its deadline. Does nothing if it already expired or is not scheduled
+     * yet; the sweep then discards it once due, as it is done.
+     */
+    void cancel(Timeout timeout) {
+        Bucket bucket = timeout.bucket;
+        if (bucket != null) {
+            bucket.remove(timeout);
+        }
+    }
+
+    /**
+     * Sweeps every bucket between the last processed tick and the current one,
+     * so a delayed ticker catches up instead of skipping deadlines.
+     */
+    private void advance() {
+        long currentTick = (System.nanoTime() - startNanos) / tickNanos;
+        for (long tick = processedTick + 1; tick <= currentTick; tick++) {
+            int first = (int) (tick & mask) * (stripeMask + 1);
+            for (int stripe = 0; stripe <= stripeMask; stripe++) {
+                buckets[first + stripe].removeDue(tick, due);
+            }
+            // Expired outside the bucket locks: completing a future runs its callbacks
+            for (Timeout timeout : due) {
+                if (!timeout.isDone()) {
+                    timeout.expire();
+                }
+            }
+            due.clear();
+            processedTick = tick;
+        }
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * Timeouts of one bucket and stripe, in a list linked through the timeouts themselves.
+     */
+    private static final class Bucket {
+
+        private Timeout head;
+
+        synchronized void add(Timeout timeout) {
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+            timeout.bucket = this;
+        }
+
+        synchronized void remove(Timeout timeout) {
+            // The timeout may have been swept since its bucket was read
+            if (timeout.bucket == this) {
+                unlink(timeout);
+            }
+        }
+
+        /**
+         * Moves the timeouts due at the tick, or done, to the given list; later revolutions stay.
+         */
+        synchronized void removeDue(long tick, List<Timeout> due) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= tick || timeout.isDone()) {
+                    unlink(timeout);
+                    due.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.wit.rest.precise;
+
+/**
+ * Thrown when an operand of a high-precision operation has more digits than the configured maximum.
+ * Mapped to HTTP 413 Payload Too Large by the controller.
+ */
+public class OperandTooLargeException extends RuntimeException {
+
+    public OperandTooLargeException(int maxDigits) {
+        super("Operand exceeds the maximum of " + maxDigits + " digits");
+    }
+}
@@ -0,0 +1,92 @@
+package com.wit.rest.precise;
+
+import com.wit.common.engine.PreciseArithmetic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The two operands of a high-precision operation, read from a plain text body: two numbers separated by whitespace.
+ * The body is split into operands while it is received, so an operand over the limit fails the request as soon as
+ * it is detected, without reading the rest of the body; operands are then converted with
+ * {@link PreciseArithmetic#parse}.
+ *
+ * @param a the first operand
+ * @param b the second operand
+ */
+public record PreciseOperands(BigDecimal a, BigDecimal b) {
+
+    // Characters an operand may have beyond its digits: sign, decimal point and exponent
+    private static final int NOTATION_CHARACTERS = 16;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Reads the operands of a request body.
+     *
+     * @param body      the streamed request body
+     * @param maxDigits maximum number of digits of each operand, also the maximum absolute scale
+     * @throws OperandTooLargeException if an operand has more than {@code maxDigits} digits
+     * @throws IllegalArgumentException if the body does not hold exactly two valid numbers
+     * @throws IOException              if the body cannot be read
+     */
+    public static PreciseOperands read(InputStream body, int maxDigits) throws IOException {
+        List<String> operands = new ArrayList<>(2);
+        StringBuilder operand = new StringBuilder();
+        int maxLength = maxDigits + NOTATION_CHARACTERS;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int read = body.read(buffer); read != -1; read = body.read(buffer)) {
+            for (int i = 0; i < read; i++) {
+                char c = (char) (buffer[i] & 0xFF); // Non-ASCII bytes are invalid in a number anyway
+                if (!Character.isWhitespace(c)) {
+                    if (operand.length() == maxLength) {
+                        throw new OperandTooLargeException(maxDigits);
+                    }
+                    operand.append(c);
+                } else if (!operand.isEmpty()) {
+                    add(operands, operand);
+                }
+            }
+        }
+        if (!operand.isEmpty()) {
+            add(operands, operand);
+        }
+        if (operands.size() != 2) {
+            throw new IllegalArgumentException("Expected two operands separated by whitespace");
+        }
+        return new PreciseOperands(parse(operands.get(0), maxDigits), parse(operands.get(1), maxDigits));
+    }
+
+    private static void add(List<String> operands, StringBuilder operand) {
+        if (operands.size() == 2) {
+            throw new IllegalArgumentException("Expected two operands separated by whitespace");
+        }
+        operands.add(operand.toString());
+        operand.setLength(0);
+    }
+
+    private static BigDecimal parse(String text, int maxDigits) {
+        int digits = 0;
+        for (int i = 0; i < text.length() && text.charAt(i) != 'e' && text.charAt(i) != 'E'; i++) {
+            if (text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                digits++;
+            }
+        }
+        if (digits > maxDigits) {
+            throw new OperandTooLargeException(maxDigits);
+        }
+        BigDecimal value;
+        try {
+            value = PreciseArithmetic.parse(text);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number format");
+        }
+        if (Math.abs((long) value.scale()) > maxDigits) {
+            throw new IllegalArgumentException("Invalid number format: scale out of range");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,38 @@
+package com.wit.rest.response;
+
+import com.wit.common.protocol.ReplyStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * Body of the single-result endpoints: {@code {"result": number}} or {@code {"error": "message"}}, written by the
+ * {@link OperationResponseConverter} in JSON or CBOR. Results are held as the decimal text received from the
+ * calculator or the result cache, which JSON responses copy as is. Results computed in this service also keep their
+ * value, so CBOR responses never parse back the text: parsing a high-precision result of a million digits takes
+ * seconds.
+ *
+ * @param result the result in {@link BigDecimal#toString()} notation, or null on error
+ * @param value  the result as a number when it was built from one, otherwise null
+ * @param error  the error message, or null on success
+ */
+public record OperationResponse(String result, BigDecimal value, String error) {
+
+    public static OperationResponse ofResult(String result) {
+        return new OperationResponse(result, null, null);
+    }
+
+    public static OperationResponse ofValue(BigDecimal value) {
+        return new OperationResponse(value.toString(), value, null);
+    }
+
+    /**
+     * Error response; failures without a message get the generic one of {@link ReplyStatus#INTERNAL_ERROR}.
+     */
+    public static OperationResponse ofError(String error) {
+        return new OperationResponse(null, null, error != null ? error : ReplyStatus.INTERNAL_ERROR.defaultMessage());
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+}
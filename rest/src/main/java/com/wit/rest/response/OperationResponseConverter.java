@@ -0,0 +1,428 @@
+package com.wit.rest.response;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Writes {@link OperationResponse} bodies straight to the response stream, without building the body as a String
+ * and encoding it again: as JSON by default, or as CBOR (RFC 8949) for clients sending
+ * {@code Accept: application/cbor}. Error messages are escaped, so quotes, backslashes or control characters in an
+ * exception message can no longer break the JSON.
+ * <p>
+ * In CBOR the body is a map with a single {@code "result"} or {@code "error"} key. The result is a decimal fraction
+ * (tag 4) holding the exponent and the unscaled value, so no precision is lost to a float; unscaled values beyond
+ * 64 bits are bignums (tags 2 and 3).
+ * <p>
+ * The exact length of both encodings is computed up front, so responses keep their Content-Length instead of
+ * falling back to chunked transfer encoding.
+ */
+@Component
+public class OperationResponseConverter extends AbstractHttpMessageConverter<OperationResponse> {
+
+    private static final byte[] JSON_RESULT = "{\"result\": ".getBytes(US_ASCII);
+    private static final byte[] JSON_ERROR = "{\"error\": \"".getBytes(US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
+
+    // Header names in lower case, which lookups in the case-insensitive headers do not have to copy
+    private static final String CONTENT_TYPE = "content-type";
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final String TRANSFER_ENCODING = "transfer-encoding";
+
+    // CBOR major types, in the top three bits of each data item's initial byte
+    private static final int UNSIGNED = 0;
+    private static final int NEGATIVE = 1;
+    private static final int BYTES = 2;
+    private static final int TEXT = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG = 6;
+
+    // CBOR tags for bignums and decimal fractions
+    private static final int POSITIVE_BIGNUM = 2;
+    private static final int NEGATIVE_BIGNUM = 3;
+    private static final int DECIMAL_FRACTION = 4;
+
+    // Keys of the CBOR map, as encoded text strings
+    private static final byte[] CBOR_RESULT = {0x66, 'r', 'e', 's', 'u', 'l', 't'};
+    private static final byte[] CBOR_ERROR = {0x65, 'e', 'r', 'r', 'o', 'r'};
+
+    // Unscaled values with up to 18 digits are parsed into a long; longer ones go through BigDecimal, unless the
+    // response already holds the value
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final long NOT_A_LONG = Long.MIN_VALUE;
+
+    public OperationResponseConverter() {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return OperationResponse.class == clazz;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected OperationResponse readInternal(Class<? extends OperationResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Operation responses are write-only", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(OperationResponse response, MediaType contentType) {
+        return isCbor(contentType) ? cborLength(response) : jsonLength(response);
+    }
+
+    /**
+     * Sets the Content-Type and Content-Length headers like the default implementation, without parsing back the
+     * headers it has just set, which allocates more than writing the body.
+     */
+    @Override
+    protected void addDefaultHeaders(HttpHeaders headers, OperationResponse response, MediaType contentType)
+            throws IOException {
+        if (headers.containsKey(CONTENT_TYPE) || headers.containsKey(CONTENT_LENGTH) || headers.containsKey(TRANSFER_ENCODING)) {
+            super.addDefaultHeaders(headers, response, contentType);
+            return;
+        }
+        boolean cbor = isCbor(contentType);
+        headers.setContentType(cbor ? MediaType.APPLICATION_CBOR : MediaType.APPLICATION_JSON);
+        headers.setContentLength(cbor ? cborLength(response) : jsonLength(response));
+    }
+
+    @Override
+    protected void writeInternal(OperationResponse response, HttpOutputMessage outputMessage) throws IOException {
+        OutputStream out = outputMessage.getBody();
+        // Compared as text: HttpHeaders.getContentType() parses the header again
+        String contentType = outputMessage.getHeaders().getFirst(CONTENT_TYPE);
+        if (contentType != null && contentType.regionMatches(true, 0, MediaType.APPLICATION_CBOR_VALUE, 0,
+                MediaType.APPLICATION_CBOR_VALUE.length())) {
+            writeCbor(response, out);
+        } else {
+            writeJson(response, out);
+        }
+    }
+
+    private static boolean isCbor(MediaType contentType) {
+        return contentType != null && MediaType.APPLICATION_CBOR.isCompatibleWith(contentType);
+    }
+
+    // ---- JSON ----
+
+    static long jsonLength(OperationResponse response) {
+        if (response.isError()) {
+            return JSON_ERROR.length + escapedLength(response.error()) + 2;
+        }
+        return JSON_RESULT.length + response.result().length() + 1;
+    }
+
+    static void writeJson(OperationResponse response, OutputStream out) throws IOException {
+        if (response.isError()) {
+            out.write(JSON_ERROR);
+            writeEscaped(response.error(), out);
+            out.write('"');
+        } else {
+            // Results are BigDecimal.toString() text, plain ASCII and valid JSON numbers as they are
+            out.write(JSON_RESULT);
+            String result = response.result();
+            for (int i = 0; i < result.length(); i++) {
+                out.write(result.charAt(i));
+            }
+        }
+        out.write('}');
+    }
+
+    /**
+     * Length in bytes of the UTF-8 encoded JSON string content of the given text, matching {@link #writeEscaped}.
+     */
+    private static long escapedLength(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\' || c == '\b' || c == '\f' || c == '\n' || c == '\r' || c == '\t') {
+                length += 2;
+            } else if (c < 0x20) {
+                length += 6;
+            } else if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 6;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Writes the text as JSON string content in UTF-8: quotes, backslashes and control characters are escaped, as
+     * are lone surrogates, which have no UTF-8 encoding.
+     */
+    private static void writeEscaped(String text, OutputStream out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"', '\\' -> {
+                    out.write('\\');
+                    out.write(c);
+                }
+                case '\b' -> writeEscape('b', out);
+                case '\f' -> writeEscape('f', out);
+                case '\n' -> writeEscape('n', out);
+                case '\r' -> writeEscape('r', out);
+                case '\t' -> writeEscape('t', out);
+                default -> {
+                    if (c < 0x20) {
+                        writeUnicodeEscape(c, out);
+                    } else if (c < 0x80) {
+                        out.write(c);
+                    } else if (c < 0x800) {
+                        out.write(0xC0 | c >> 6);
+                        out.write(0x80 | c & 0x3F);
+                    } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                        out.write(0xF0 | codePoint >> 18);
+                        out.write(0x80 | codePoint >> 12 & 0x3F);
+                        out.write(0x80 | codePoint >> 6 & 0x3F);
+                        out.write(0x80 | codePoint & 0x3F);
+                    } else if (Character.isSurrogate(c)) {
+                        writeUnicodeEscape(c, out);
+                    } else {
+                        out.write(0xE0 | c >> 12);
+                        out.write(0x80 | c >> 6 & 0x3F);
+                        out.write(0x80 | c & 0x3F);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void writeEscape(char escape, OutputStream out) throws IOException {
+        out.write('\\');
+        out.write(escape);
+    }
+
+    private static void writeUnicodeEscape(char c, OutputStream out) throws IOException {
+        out.write('\\');
+        out.write('u');
+        out.write(HEX_DIGITS[c >> 12]);
+        out.write(HEX_DIGITS[c >> 8 & 0xF]);
+        out.write(HEX_DIGITS[c >> 4 & 0xF]);
+        out.write(HEX_DIGITS[c & 0xF]);
+    }
+
+    // ---- CBOR ----
+
+    static long cborLength(OperationResponse response) {
+        if (response.isError()) {
+            long textLength = utf8Length(response.error());
+            return 1 + CBOR_ERROR.length + headLength(textLength) + textLength;
+        }
+        long length = 1 + CBOR_RESULT.length + 2; // Map, key, tag 4 and array of two
+        BigDecimal value = response.value();
+        if (value == null) {
+            String result = response.result();
+            long mantissa = unscaledLong(result);
+            if (mantissa != NOT_A_LONG) {
+                return length + intLength(-scale(result)) + intLength(mantissa);
+            }
+            value = new BigDecimal(result);
+        }
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < Long.SIZE) {
+            return length + intLength(-value.scale()) + intLength(unscaled.longValue());
+        }
+        int bytes = (bignumMagnitude(unscaled).bitLength() + 7) / 8;
+        return length + intLength(-value.scale()) + 1 + headLength(bytes) + bytes;
+    }
+
+    static void writeCbor(OperationResponse response, OutputStream out) throws IOException {
+        writeHead(MAP, 1, out);
+        if (response.isError()) {
+            String error = response.error();
+            out.write(CBOR_ERROR);
+            writeHead(TEXT, utf8Length(error), out);
+            writeUtf8(error, out);
+            return;
+        }
+        out.write(CBOR_RESULT);
+        writeHead(TAG, DECIMAL_FRACTION, out);
+        writeHead(ARRAY, 2, out);
+        BigDecimal value = response.value();
+        if (value == null) {
+            String result = response.result();
+            long mantissa = unscaledLong(result);
+            if (mantissa != NOT_A_LONG) {
+                writeInt(-scale(result), out);
+                writeInt(mantissa, out);
+                return;
+            }
+            value = new BigDecimal(result); // Text from the calculator: no more digits than its MathContext allows
+        }
+        BigInteger unscaled = value.unscaledValue();
+        writeInt(-value.scale(), out);
+        if (unscaled.bitLength() < Long.SIZE) {
+            writeInt(unscaled.longValue(), out);
+            return;
+        }
+        writeHead(TAG, unscaled.signum() < 0 ? NEGATIVE_BIGNUM : POSITIVE_BIGNUM, out);
+        byte[] magnitude = bignumMagnitude(unscaled).toByteArray();
+        int leadingZero = magnitude[0] == 0 && magnitude.length > 1 ? 1 : 0; // Sign byte of toByteArray()
+        writeHead(BYTES, magnitude.length - leadingZero, out);
+        out.write(magnitude, leadingZero, magnitude.length - leadingZero);
+    }
+
+    /**
+     * The unscaled value of a decimal in {@link BigDecimal#toString()} notation, or {@link #NOT_A_LONG} if it has
+     * more than {@link #MAX_LONG_DIGITS} digits.
+     */
+    static long unscaledLong(String decimal) {
+        int i = 0;
+        boolean negative = false;
+        if (decimal.charAt(0) == '-' || decimal.charAt(0) == '+') {
+            negative = decimal.charAt(0) == '-';
+            i++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        for (; i < decimal.length(); i++) {
+            char c = decimal.charAt(i);
+            if (c == 'E' || c == 'e') {
+                break;
+            }
+            if (c != '.') {
+                if (++digits > MAX_LONG_DIGITS) {
+                    return NOT_A_LONG;
+                }
+                unscaled = unscaled * 10 + (c - '0');
+            }
+        }
+        return negative ? -unscaled : unscaled;
+    }
+
+    /**
+     * The scale of a decimal in {@link BigDecimal#toString()} notation: its fraction digits minus its exponent.
+     */
+    static int scale(String decimal) {
+        int fractionDigits = 0;
+        boolean fraction = false;
+        for (int i = 0; i < decimal.length(); i++) {
+            char c = decimal.charAt(i);
+            if (c == 'E' || c == 'e') {
+                return fractionDigits - Integer.parseInt(decimal, i + 1, decimal.length(), 10);
+            }
+            if (fraction) {
+                fractionDigits++;
+            }
+            fraction |= c == '.';
+        }
+        return fractionDigits;
+    }
+
+    // A negative bignum n is encoded as -1 - n, like negative integers
+    private static BigInteger bignumMagnitude(BigInteger unscaled) {
+        return unscaled.signum() < 0 ? unscaled.negate().subtract(BigInteger.ONE) : unscaled;
+    }
+
+    private static int intLength(long value) {
+        return headLength(value < 0 ? -1 - value : value);
+    }
+
+    private static void writeInt(long value, OutputStream out) throws IOException {
+        if (value < 0) {
+            writeHead(NEGATIVE, -1 - value, out);
+        } else {
+            writeHead(UNSIGNED, value, out);
+        }
+    }
+
+    private static int headLength(long argument) {
+        if (argument < 24) {
+            return 1;
+        } else if (argument < 0x100) {
+            return 2;
+        } else if (argument < 0x10000) {
+            return 3;
+        } else if (argument < 0x100000000L) {
+            return 5;
+        }
+        return 9;
+    }
+
+    /**
+     * Writes the initial byte of a data item and its argument: inline below 24, else in the 1, 2, 4 or 8 bytes that
+     * follow.
+     */
+    private static void writeHead(int majorType, long argument, OutputStream out) throws IOException {
+        int type = majorType << 5;
+        int length = headLength(argument);
+        if (length == 1) {
+            out.write(type | (int) argument);
+            return;
+        }
+        int bytes = length - 1;
+        out.write(type | 24 + Integer.numberOfTrailingZeros(bytes));
+        for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+            out.write((int) (argument >>> shift));
+        }
+    }
+
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3; // Lone surrogates are replaced with U+FFFD
+            }
+        }
+        return length;
+    }
+
+    private static void writeUtf8(String text, OutputStream out) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                out.write(c);
+            } else if (c < 0x800) {
+                out.write(0xC0 | c >> 6);
+                out.write(0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                out.write(0xF0 | codePoint >> 18);
+                out.write(0x80 | codePoint >> 12 & 0x3F);
+                out.write(0x80 | codePoint >> 6 & 0x3F);
+                out.write(0x80 | codePoint & 0x3F);
+            } else {
+                char encoded = Character.isSurrogate(c) ? '\uFFFD' : c;
+                out.write(0xE0 | encoded >> 12);
+                out.write(0x80 | encoded >> 6 & 0x3F);
+                out.write(0x80 | encoded & 0x3F);
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.wit.rest.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+
+/**
+ * Operation sent by a client over the calculation stream.
+ *
+ * @param id identifier chosen by the client, echoed in the answer (any JSON value)
+ * @param op the operation name ("sum", "subtraction", "multiplication", "division")
+ * @param a  the first operand
+ * @param b  the second operand
+ */
+public record StreamMessage(JsonNode id, String op, BigDecimal a, BigDecimal b) {
+}
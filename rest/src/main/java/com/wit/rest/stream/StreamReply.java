@@ -0,0 +1,24 @@
+package com.wit.rest.stream;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Answer to one {@link StreamMessage}: either a result or an error message, never both.
+ *
+ * @param id     the identifier of the message, as sent by the client
+ * @param result the computed value, already formatted as a JSON number, or null if the operation failed
+ * @param error  the error message, or null if the operation succeeded
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record StreamReply(JsonNode id, @JsonRawValue String result, String error) {
+
+    public static StreamReply success(JsonNode id, String result) {
+        return new StreamReply(id, result, null);
+    }
+
+    public static StreamReply failure(JsonNode id, String error) {
+        return new StreamReply(id, null, error);
+    }
+}
@@ -0,0 +1,35 @@
+package com.wit.rest.transport;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Delivers calculation requests to the calculator and their replies back to the caller.
+ * The implementation is chosen with {@code calculator.transport}: {@code kafka} (default) sends requests through
+ * the broker to the calculator service, {@code in-process} evaluates them on a worker pool inside this service.
+ */
+public interface CalculationTransport {
+
+    /**
+     * Kind of traffic a request belongs to, so that bulk work does not delay interactive requests.
+     */
+    enum Lane {
+        // Single operations and expressions
+        INTERACTIVE,
+        // Batch and aggregate chunks
+        BULK
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param request the request; its id correlates the reply and must be unique among requests in flight
+     * @param lane    the kind of traffic of the request
+     * @return a future completed with the reply, or failed with an
+     * {@link com.wit.rest.pending.InFlightLimitExceededException} if too many requests are in flight
+     * or with the error that prevented the request from being answered
+     */
+    CompletableFuture<CalculationReply> send(CalculationRequest request, Lane lane);
+}
@@ -0,0 +1,188 @@
+package com.wit.rest.transport;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.wit.common.engine.CompiledExpression;
+import com.wit.common.engine.RequestEvaluator;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Transport evaluating requests inside this service, for single-node deployments where the broker round trip
+ * dominates latency. Requests are handed to a pool of worker threads through lock-free {@link RingBuffer}s, one per
+ * {@link Lane}, and evaluated with the calculator's own logic ({@link RequestEvaluator}, 10-digit precision);
+ * the worker completes the future with the reply. Interactive requests are taken before bulk ones.
+ * <p>
+ * Idle workers spin briefly before parking, so back-to-back requests are picked up without a wake-up.
+ * A request arriving while its ring is full is rejected with an {@link InFlightLimitExceededException}.
+ */
+@Component
+@ConditionalOnProperty(name = "calculator.transport", havingValue = "in-process")
+public class InProcessTransport implements CalculationTransport, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(InProcessTransport.class);
+
+    // Empty polls before an idle worker parks
+    private static final int SPIN_TRIES = 200;
+
+    private static final MathContext mc = new MathContext(10);
+
+    private final RequestEvaluator evaluator;
+    private final RingBuffer<Task> interactive;
+    private final RingBuffer<Task> bulk;
+    private final List<Worker> workers;
+
+    // Parked workers, woken one per request
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param workers             number of worker threads, 0 for one per available processor
+     * @param queueSize           requests each ring holds before new ones are rejected
+     * @param expressionCacheSize maximum number of compiled expressions kept
+     */
+    public InProcessTransport(@Value("${calculator.in-process.workers:0}") int workers,
+                              @Value("${calculator.in-process.queue-size:1024}") int queueSize,
+                              @Value("${calculator.expression.cache-size:10000}") long expressionCacheSize,
+                              MeterRegistry meterRegistry) {
+        LoadingCache<String, CompiledExpression> expressions =
+                Caffeine.newBuilder().maximumSize(expressionCacheSize).build(CompiledExpression::compile);
+        this.evaluator = new RequestEvaluator(mc, expressions::get, RequestEvaluator.Observer.NONE);
+        this.interactive = new RingBuffer<>(queueSize);
+        this.bulk = new RingBuffer<>(queueSize);
+
+        int count = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.workers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Worker worker = new Worker("in-process-calculator-" + i);
+            this.workers.add(worker);
+            worker.thread.start();
+        }
+
+        Gauge.builder("calculator.in-process.queued", this, transport -> transport.interactive.size() + transport.bulk.size())
+                .description("Requests waiting for an in-process worker")
+                .register(meterRegistry);
+        log.info("In-process transport started: workers={}, queueSize={}", count, interactive.capacity());
+    }
+
+    @Override
+    public CompletableFuture<CalculationReply> send(CalculationRequest request, Lane lane) {
+        if (!running) {
+            return CompletableFuture.failedFuture(new IllegalStateException("In-process transport is stopped"));
+        }
+        RingBuffer<Task> ring = lane == Lane.BULK ? bulk : interactive;
+        Task task = new Task(request, new CompletableFuture<>());
+        if (!ring.offer(task)) {
+            log.warn("Rejected request: requestId={}, reason=in-process queue full", request.requestId());
+            return CompletableFuture.failedFuture(new InFlightLimitExceededException(ring.capacity()));
+        }
+        Worker worker = idle.poll();
+        if (worker != null) {
+            worker.wake();
+        }
+        return task.future;
+    }
+
+    private Task next() {
+        Task task = interactive.poll();
+        return task != null ? task : bulk.poll();
+    }
+
+    private void evaluate(Task task) {
+        try (MDC.MDCCloseable ignored = MDC.putCloseable("requestId", task.request.requestId())) {
+            task.future.complete(evaluator.evaluate(task.request));
+        } catch (Exception e) {
+            log.error("Unexpected error: requestId={}", task.request.requestId(), e);
+            task.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Stops the workers once they finish their current request; requests still queued are failed.
+     */
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            worker.thread.join(5_000);
+        }
+        IllegalStateException stopped = new IllegalStateException("In-process transport is stopped");
+        for (Task task = next(); task != null; task = next()) {
+            task.future.completeExceptionally(stopped);
+        }
+    }
+
+    private record Task(CalculationRequest request, CompletableFuture<CalculationReply> future) {
+    }
+
+    /**
+     * Worker thread. Before parking, a worker registers in the idle queue and then polls the rings once more,
+     * so a request offered concurrently is either seen by that poll or wakes the worker.
+     */
+    private final class Worker implements Runnable {
+
+        private final Thread thread;
+
+        // Whether the worker is in the idle queue; it registers at most once
+        private final AtomicBoolean registered = new AtomicBoolean();
+
+        Worker(String name) {
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void wake() {
+            registered.set(false);
+            LockSupport.unpark(thread);
+        }
+
+        @Override
+        public void run() {
+            int spins = 0;
+            while (running) {
+                Task task = next();
+                if (task != null) {
+                    evaluate(task);
+                    spins = 0;
+                } else if (spins < SPIN_TRIES) {
+                    spins++;
+                    Thread.onSpinWait();
+                } else {
+                    if (registered.compareAndSet(false, true)) {
+                        idle.add(this);
+                    }
+                    task = next();
+                    if (task != null) {
+                        evaluate(task);
+                        spins = 0;
+                    } else {
+                        LockSupport.park(this);
+                    }
+                }
+            }
+        }
+    }
+}
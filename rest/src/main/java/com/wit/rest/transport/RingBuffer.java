@@ -0,0 +1,102 @@
+package com.wit.rest.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and many consumers, backed by a ring of slots.
+ * Every slot carries a sequence number telling whether it is free for the producer of a given position or holds the
+ * element for the consumer of that position, so producers and consumers only contend on their own cursor
+ * (one compare-and-set each) and never block one another.
+ *
+ * @param <E> element type
+ */
+final class RingBuffer<E> {
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+
+    // Next position to write and to read; positions only grow, the slot of a position is position & mask
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity minimum number of elements held, rounded up to a power of two
+     */
+    RingBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Ring buffer capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.elements = new AtomicReferenceArray<>(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i); // Slot i is free for position i
+        }
+    }
+
+    /**
+     * Adds an element unless the ring is full.
+     *
+     * @return false if the ring is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long available = sequences.get(slot) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.set(slot, element);
+                    sequences.set(slot, position + 1); // Publishes the element to the consumer of this position
+                    return true;
+                }
+                position = tail.get();
+            } else if (available < 0) {
+                return false; // The slot still holds the element of the previous lap
+            } else {
+                position = tail.get(); // Another producer took this position
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest element.
+     *
+     * @return the element, or null if the ring is empty
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int slot = (int) position & mask;
+            long available = sequences.get(slot) - (position + 1);
+            if (available == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = elements.get(slot);
+                    elements.set(slot, null);
+                    sequences.set(slot, position + mask + 1); // Frees the slot for the producer of the next lap
+                    return element;
+                }
+                position = head.get();
+            } else if (available < 0) {
+                return null; // Nothing written at this position yet
+            } else {
+                position = head.get(); // Another consumer took this position
+            }
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Approximate number of elements, exact when no producer or consumer is active.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+}
@@ -0,0 +1,38 @@
+package com.wit.rest.cache;
+
+import com.wit.common.protocol.Operation;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CalculationKeyTest {
+
+    @Test
+    @DisplayName("Should keep apart representations of a value, whose results differ in scale")
+    void shouldKeepRepresentations() {
+        BigDecimal three = new BigDecimal("3");
+
+        assertNotEquals(CalculationKey.of(Operation.SUM, new BigDecimal("2.0"), three),
+                CalculationKey.of(Operation.SUM, new BigDecimal("2"), three));
+        assertEquals(new BigDecimal("1E+10000000"),
+                CalculationKey.of(Operation.SUM, new BigDecimal("1E+10000000"), three).b()); // Not expanded
+    }
+
+    @Test
+    @DisplayName("Should share keys between equivalent calculations and order operands of commutative operations")
+    void shouldNormalizeKeys() {
+        BigDecimal two = new BigDecimal("2.0");
+        BigDecimal three = new BigDecimal("3");
+
+        assertEquals(CalculationKey.of(Operation.SUM, two, three), CalculationKey.of(Operation.SUM, three, two));
+        assertEquals(CalculationKey.of(Operation.MULTIPLICATION, two, three), CalculationKey.of(Operation.MULTIPLICATION, three, two));
+        assertEquals(CalculationKey.of(Operation.SUM, two, new BigDecimal("2")),
+                CalculationKey.of(Operation.SUM, new BigDecimal("2"), two));
+        assertNotEquals(CalculationKey.of(Operation.SUBTRACTION, two, three), CalculationKey.of(Operation.SUBTRACTION, three, two));
+        assertNotEquals(CalculationKey.of(Operation.DIVISION, two, three), CalculationKey.of(Operation.DIVISION, three, two));
+        assertNotEquals(CalculationKey.of(Operation.SUM, two, three), CalculationKey.of(Operation.MULTIPLICATION, two, three));
+    }
+}
@@ -0,0 +1,104 @@
+package com.wit.rest.cache;
+
+import com.wit.common.protocol.Operation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResultCacheTest {
+
+    private static final CalculationKey KEY = CalculationKey.of(Operation.SUM, new BigDecimal("2"), new BigDecimal("3"));
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final ResultCache cache = new ResultCache(true, 2, Duration.ofMinutes(1), nanos::get, meterRegistry);
+
+    private final AtomicInteger sent = new AtomicInteger();
+
+    /**
+     * Loader standing in for a Kafka round trip: counts the messages sent and returns the given future.
+     */
+    private Supplier<CompletableFuture<String>> send(CompletableFuture<String> reply) {
+        return () -> {
+            sent.incrementAndGet();
+            return reply;
+        };
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    @Test
+    @DisplayName("Should serve a repeated calculation from the cache")
+    void shouldReturnCachedResult() {
+        cache.get(KEY, send(CompletableFuture.completedFuture("5")));
+
+        CompletableFuture<String> result = cache.get(KEY, send(CompletableFuture.completedFuture("other")));
+
+        assertEquals("5", result.join());
+        assertEquals(1, sent.get());
+        assertEquals(1, count("calculator.cache.misses"));
+        assertEquals(1, count("calculator.cache.hits"));
+    }
+
+    @Test
+    @DisplayName("Should share one message between identical requests in flight")
+    void shouldCoalesceInFlightRequests() {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        CompletableFuture<String> first = cache.get(KEY, send(reply));
+        CompletableFuture<String> second = cache.get(KEY, send(new CompletableFuture<>()));
+
+        reply.complete("5");
+
+        assertEquals("5", first.join());
+        assertEquals("5", second.join());
+        assertEquals(1, sent.get());
+        assertEquals(1, count("calculator.cache.coalesced"));
+    }
+
+    @Test
+    @DisplayName("Should not cache failed calculations")
+    void shouldNotCacheFailures() {
+        CompletableFuture<String> failed = cache.get(KEY, send(CompletableFuture.failedFuture(new IllegalStateException("boom"))));
+
+        CompletableFuture<String> retried = cache.get(KEY, send(CompletableFuture.completedFuture("5")));
+
+        assertTrue(failed.isCompletedExceptionally());
+        assertEquals("5", retried.join());
+        assertEquals(2, sent.get());
+    }
+
+    @Test
+    @DisplayName("Should send the calculation again once the cached result has expired")
+    void shouldExpireEntries() {
+        cache.get(KEY, send(CompletableFuture.completedFuture("5")));
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        cache.get(KEY, send(CompletableFuture.completedFuture("5")));
+
+        assertEquals(2, sent.get());
+        assertEquals(2, count("calculator.cache.misses"));
+    }
+
+    @Test
+    @DisplayName("Should call the loader every time when the cache is disabled")
+    void shouldBypassWhenDisabled() {
+        ResultCache disabled = new ResultCache(false, 2, Duration.ofMinutes(1), nanos::get, meterRegistry);
+
+        disabled.get(KEY, send(CompletableFuture.completedFuture("5")));
+        disabled.get(KEY, send(CompletableFuture.completedFuture("5")));
+
+        assertEquals(2, sent.get());
+    }
+}
@@ -0,0 +1,119 @@
+package com.wit.rest.controllers;
+
+import com.wit.RestApp;
+import com.wit.common.engine.Aggregator;
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = RestApp.class, properties = {"calculator.aggregate.chunk-size=3", "calculator.aggregate.max-chunk-size=1KB",
+        "calculator.aggregate.max-in-flight-chunks=2"})
+@AutoConfigureMockMvc
+class AggregateControllerTest {
+
+    private final Aggregator aggregator = new Aggregator(new MathContext(10));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private KafkaService kafkaService;
+
+    // Replaces the Kafka transport, so no reply listener is started
+    @MockBean
+    private KafkaTransport kafkaTransport;
+
+    @BeforeEach
+    void setUp() {
+        // Stand-in calculator: answers every chunk with its partial result
+        when(kafkaService.sendAggregate(anyString(), any(), anyList(), any())).thenAnswer(invocation -> {
+            AggregateOperation operation = invocation.getArgument(1);
+            List<BigDecimal> values = invocation.getArgument(2);
+            return CompletableFuture.completedFuture(aggregator.reduce(operation, values));
+        });
+    }
+
+    private MvcResult aggregate(String operation, MediaType contentType, String body) throws Exception {
+        return mockMvc.perform(post("/api/aggregate/" + operation)
+                        .contentType(contentType)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    @Test
+    @DisplayName("Should aggregate newline-separated values in chunks and round the exact sum once")
+    void shouldAggregatePlainText() throws Exception {
+        MvcResult mvcResult = aggregate("sum", MediaType.TEXT_PLAIN, "12345678901\n0.4\n0.4\n\n0.4\n-1\n2E-1\n1\n");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().string("{\"result\": 1.234567890E+10}")); // 12345678901.4 rounded to 10 digits
+        // 7 values in chunks of 3: 3 records, each with a requestId of its own
+        verify(kafkaService, times(3)).sendAggregate(anyString(),
+                eq(AggregateOperation.SUM), anyList(), any());
+    }
+
+    @Test
+    @DisplayName("Should send chunks of large values before they exceed the maximum chunk size")
+    void shouldBoundChunksBySize() throws Exception {
+        String large = "1" + "0".repeat(999); // Up to 437 encoded bytes: two per 1KB chunk
+        MvcResult mvcResult = aggregate("sum", MediaType.TEXT_PLAIN, large + "\n" + large + "\n" + large + "\n1\n");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"result\": 3.000000000E+999}"));
+        // Four values in chunks of 3, but only two large values fit in 1KB: two records of two values
+        verify(kafkaService, times(2)).sendAggregate(anyString(), eq(AggregateOperation.SUM),
+                argThat(values -> values.size() == 2), any());
+    }
+
+    @Test
+    @DisplayName("Should aggregate NDJSON numbers and strings")
+    void shouldAggregateNdjson() throws Exception {
+        MvcResult mean = aggregate("mean", MediaType.parseMediaType("application/x-ndjson"), "1\n\"2\"\n3\n4\n");
+        MvcResult max = aggregate("max", MediaType.parseMediaType("application/x-ndjson"), "1\n-7\n3.5\n");
+
+        mockMvc.perform(asyncDispatch(mean))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\": 2.5}"));
+        mockMvc.perform(asyncDispatch(max))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"result\": 3.5}"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request for empty bodies and invalid or out-of-range values")
+    void shouldRejectInvalidInput() throws Exception {
+        mockMvc.perform(asyncDispatch(aggregate("sum", MediaType.TEXT_PLAIN, "\n")))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"No values to aggregate\"}"));
+        mockMvc.perform(asyncDispatch(aggregate("sum", MediaType.TEXT_PLAIN, "1\n2\nabc\n")))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Invalid value at line 3\"}"));
+        mockMvc.perform(asyncDispatch(aggregate("product", MediaType.TEXT_PLAIN, "1\n1E+5000\n")))
+                .andExpect(status().isBadRequest());
+    }
+}
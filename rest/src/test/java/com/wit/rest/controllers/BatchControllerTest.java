@@ -0,0 +1,152 @@
+package com.wit.rest.controllers;
+
+import com.wit.RestApp;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import com.wit.rest.pending.RequestTimeoutException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = RestApp.class, properties = {"calculator.batch.chunk-size=2", "calculator.batch.max-size=4"})
+@AutoConfigureMockMvc
+class BatchControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private KafkaService kafkaService;
+
+    // Replaces the Kafka transport, so no reply listener is started
+    @MockBean
+    private KafkaTransport kafkaTransport;
+
+    /**
+     * Answers every chunk by summing its operands, so results can be checked against their positions.
+     */
+    private void answerChunksWithSums() {
+        when(kafkaService.sendBatch(anyString(), anyList(), any())).thenAnswer(invocation -> {
+            List<Calculation> chunk = invocation.getArgument(1);
+            return CompletableFuture.completedFuture(chunk.stream()
+                    .map(calculation -> CalculationResult.ok(calculation.a().add(calculation.b())))
+                    .toList());
+        });
+    }
+
+    @Test
+    @DisplayName("Should split a JSON batch into chunks and return results in submission order")
+    void shouldReturnResultsForJsonBatch() throws Exception {
+        answerChunksWithSums();
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\":\"sum\",\"a\":1,\"b\":2},{\"op\":\"sum\",\"a\":3,\"b\":4},{\"op\":\"s-um\",\"a\":1,\"b\":1},{\"op\":\"sum\",\"a\":5,\"b\":6}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().json("{\"results\": [{\"result\": 3}, {\"result\": 7}, {\"error\": \"Operation not supported: s-um\"}, {\"result\": 11}]}"));
+
+        verify(kafkaService, times(2)).sendBatch(anyString(), anyList(), any());
+    }
+
+    @Test
+    @DisplayName("Should accept an NDJSON stream of items")
+    void shouldReturnResultsForNdjsonBatch() throws Exception {
+        answerChunksWithSums();
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"op\":\"sum\",\"a\":1.5,\"b\":2}\n{\"op\":\"sum\",\"a\":10,\"b\":-4}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"results\": [{\"result\": 3.5}, {\"result\": 6}]}"));
+    }
+
+    @Test
+    @DisplayName("Should return 413 Payload Too Large when the batch exceeds the maximum size")
+    void shouldRejectBatchAboveMaximumSize() throws Exception {
+        MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                        .contentType("application/x-ndjson")
+                        .content("{\"op\":\"sum\",\"a\":1,\"b\":1}\n".repeat(5)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isPayloadTooLarge());
+
+        verifyNoInteractions(kafkaService);
+    }
+
+    @Test
+    @DisplayName("Should stop reading a JSON array with 413 Payload Too Large at the first item above the maximum size")
+    void shouldRejectJsonArrayAboveMaximumSize() throws Exception {
+        // The array is never closed: reading must stop at the fifth item, before the malformed end
+        MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + "{\"op\":\"sum\",\"a\":1,\"b\":1},".repeat(5) + "{"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isPayloadTooLarge());
+
+        verifyNoInteractions(kafkaService);
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request for a JSON batch that is not an array of items")
+    void shouldRejectInvalidJsonBatch() throws Exception {
+        for (String body : List.of("{\"op\":\"sum\",\"a\":1,\"b\":1}", "[{\"op\":\"sum\",\"a\":1", "[1]")) {
+            MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(body))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+
+            mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isBadRequest());
+        }
+
+        verifyNoInteractions(kafkaService);
+    }
+
+    @Test
+    @DisplayName("Should return 504 Gateway Timeout when a chunk is not answered in time")
+    void shouldReturnGatewayTimeoutWhenChunkExpires() throws Exception {
+        when(kafkaService.sendBatch(anyString(), anyList(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RequestTimeoutException("chunk", 5000)));
+
+        MvcResult mvcResult = mockMvc.perform(post("/api/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"op\":\"sum\",\"a\":1,\"b\":2}]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isGatewayTimeout());
+    }
+}
@@ -0,0 +1,218 @@
+package com.wit.rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wit.RestApp;
+import com.wit.common.engine.ArithmeticEngine;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.kafka.CalculationReplySerializer;
+import com.wit.common.protocol.kafka.CalculationRequestDeserializer;
+import com.wit.rest.pending.PendingRequestRegistry;
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.MessageHandler;
+import jakarta.websocket.Session;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a REST instance with its WebSocket endpoint against an embedded broker. A stand-in calculator collects
+ * {@value #CREDITS} requests before answering them in reverse order, so answers arrive out of order, and never
+ * answers requests whose first operand is {@value #UNANSWERED}, so credits can be exhausted.
+ */
+class CalculationStreamIntegrationTest {
+
+    private static final int CREDITS = 4;
+    private static final int UNANSWERED = -1;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static EmbeddedKafkaBroker broker;
+    private static Thread calculator;
+    private static volatile boolean running = true;
+    private static ConfigurableApplicationContext rest;
+    private static URI streamUri;
+
+    @BeforeAll
+    static void start() {
+        broker = new EmbeddedKafkaKraftBroker(1, 1, "calculator-requests");
+        broker.afterPropertiesSet();
+        calculator = new Thread(CalculationStreamIntegrationTest::respond, "test-calculator");
+        calculator.start();
+        rest = new SpringApplicationBuilder(RestApp.class)
+                .run("--server.port=0",
+                        "--spring.kafka.producer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--spring.kafka.consumer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--calculator.reply.instance-id=stream-test",
+                        "--calculator.pending.timeout=30s",
+                        "--calculator.cache.enabled=false",
+                        "--calculator.stream.credits=" + CREDITS,
+                        "--logging.file.name=target/stream-integration-test.log");
+        streamUri = URI.create("ws://localhost:" + rest.getEnvironment().getProperty("local.server.port")
+                + CalculationStreamEndpoint.PATH);
+    }
+
+    @AfterAll
+    static void stop() throws InterruptedException {
+        rest.close();
+        running = false;
+        calculator.join(10_000);
+        broker.destroy();
+    }
+
+    /**
+     * Minimal calculator: answers requests in groups of {@value #CREDITS}, last one first.
+     */
+    private static void respond() {
+        ArithmeticEngine engine = new ArithmeticEngine(new MathContext(10));
+        Map<String, Object> consumerProps = Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "test-calculator",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        Map<String, Object> producerProps = Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        List<ConsumerRecord<String, CalculationRequest>> group = new ArrayList<>();
+        try (KafkaConsumer<String, CalculationRequest> consumer =
+                     new KafkaConsumer<>(consumerProps, new StringDeserializer(), new CalculationRequestDeserializer());
+             KafkaProducer<String, CalculationReply> producer =
+                     new KafkaProducer<>(producerProps, new StringSerializer(), new CalculationReplySerializer())) {
+            consumer.subscribe(List.of("calculator-requests"));
+            while (running) {
+                for (ConsumerRecord<String, CalculationRequest> record : consumer.poll(Duration.ofMillis(100))) {
+                    if (record.value().calculations().get(0).a().intValue() != UNANSWERED) {
+                        group.add(record);
+                    }
+                }
+                if (group.size() >= CREDITS) {
+                    Collections.reverse(group);
+                    for (ConsumerRecord<String, CalculationRequest> record : group) {
+                        Header replyTopic = record.headers().lastHeader(KafkaHeaders.REPLY_TOPIC);
+                        Calculation calculation = record.value().calculations().get(0);
+                        BigDecimal value = engine.evaluate(calculation.operation(), calculation.a(), calculation.b());
+                        producer.send(new ProducerRecord<>(new String(replyTopic.value(), StandardCharsets.UTF_8),
+                                record.key(), CalculationReply.single(CalculationResult.ok(value))));
+                    }
+                    group.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * Test client collecting the messages and the close reason of its session.
+     */
+    private static final class StreamClient extends Endpoint {
+
+        private final BlockingQueue<JsonNode> messages = new LinkedBlockingQueue<>();
+        private final CompletableFuture<CloseReason> closed = new CompletableFuture<>();
+
+        static StreamClient connect() throws Exception {
+            StreamClient client = new StreamClient();
+            ContainerProvider.getWebSocketContainer().connectToServer(client, ClientEndpointConfig.Builder.create().build(), streamUri);
+            return client;
+        }
+
+        private Session session;
+
+        @Override
+        public void onOpen(Session session, EndpointConfig config) {
+            this.session = session;
+            session.addMessageHandler(String.class, (MessageHandler.Whole<String>) text -> {
+                try {
+                    messages.add(objectMapper.readTree(text));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        @Override
+        public void onClose(Session session, CloseReason closeReason) {
+            closed.complete(closeReason);
+        }
+
+        void send(String id, int a, int b) throws Exception {
+            session.getBasicRemote().sendText("{\"id\": \"" + id + "\", \"op\": \"sum\", \"a\": " + a + ", \"b\": " + b + "}");
+        }
+
+        JsonNode next() throws InterruptedException {
+            JsonNode message = messages.poll(30, TimeUnit.SECONDS);
+            assertNotNull(message, "No message received");
+            return message;
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer pipelined operations out of order, correlated by the client id, and give credits back")
+    void shouldAnswerOutOfOrderAndReturnCredits() throws Exception {
+        StreamClient client = StreamClient.connect();
+        assertEquals(CREDITS, client.next().get("credits").asInt());
+
+        for (int round = 0; round < 2; round++) { // The second round only fits if the first one gave its credits back
+            for (int i = 0; i < CREDITS; i++) {
+                client.send("op-" + round + "-" + i, i, 100 * round);
+            }
+            for (int i = CREDITS - 1; i >= 0; i--) {
+                JsonNode answer = client.next();
+                assertEquals("op-" + round + "-" + i, answer.get("id").asText(), "Answers arrive in completion order");
+                assertEquals(i + 100 * round, answer.get("result").asInt());
+            }
+        }
+        assertFalse(client.closed.isDone());
+        client.session.close();
+    }
+
+    @Test
+    @DisplayName("Should disconnect a client exceeding its credits without sending the extra request to Kafka")
+    void shouldDisconnectClientExceedingCredits() throws Exception {
+        PendingRequestRegistry pendingRequests = rest.getBean(PendingRequestRegistry.class);
+        int inFlightBefore = pendingRequests.inFlight();
+        StreamClient client = StreamClient.connect();
+        client.next(); // Credits
+
+        for (int i = 0; i <= CREDITS; i++) {
+            client.send("stuck-" + i, UNANSWERED, i);
+        }
+
+        CloseReason reason = client.closed.get(30, TimeUnit.SECONDS);
+        assertEquals(CloseReason.CloseCodes.VIOLATED_POLICY.getCode(), reason.getCloseCode().getCode());
+        assertEquals(inFlightBefore + CREDITS, pendingRequests.inFlight());
+    }
+}
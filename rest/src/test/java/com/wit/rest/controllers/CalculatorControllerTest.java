@@ -1,8 +1,17 @@
 package com.wit.rest.controllers;
 
+import com.wit.RestApp;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.kafka.CalculationFailedException;
 import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import com.wit.rest.limit.ConcurrencyLimitExceededException;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import com.wit.rest.pending.RequestTimeoutException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -12,30 +21,43 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+// Result cache disabled so that every test sees the outcome mocked for it
+@SpringBootTest(classes = RestApp.class, properties = {"calculator.cache.enabled=false", "calculator.sync.timeout=200ms"})
 @AutoConfigureMockMvc
 class CalculatorControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     // Replaces the real KafkaService bean with a mock for controlled testing
     @MockBean
     private KafkaService kafkaService;
 
+    // Replaces the Kafka transport, so no reply listener is started
+    @MockBean
+    private KafkaTransport kafkaTransport;
+
     /**
      * Executes a GET request asynchronously to the given URI and asserts that:
      * - the request was dispatched asynchronously;
      * - the response has status 200 OK;
-     * - the response contains the X-Request-ID header;
+     * - the response contains the X-Request-ID header, a 16-digit hex requestId;
      * - the response body matches the expected JSON.
      *
      * @param uri          the URI to perform the GET request on
@@ -50,14 +72,14 @@ class CalculatorControllerTest {
 
         mockMvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isOk())
-                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(header().string("X-Request-ID", matchesPattern("[0-9a-f]{16}")))
                 .andExpect(content().json(expectedJson));
     }
 
     @Test
     @DisplayName("Should return result for valid sum operation")
     void shouldReturnResultForSum() throws Exception {
-        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3"))))
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3")), any()))
                 .thenReturn(CompletableFuture.completedFuture("5"));
 
         assertAsyncOperation("/api/sum?a=2&b=3", "{\"result\": 5}");
@@ -66,7 +88,7 @@ class CalculatorControllerTest {
     @Test
     @DisplayName("Should return result for valid subtraction operation")
     void shouldReturnResultForSubtraction() throws Exception {
-        when(kafkaService.sendMessage(anyString(), eq("subtraction"), eq(new BigDecimal("5")), eq(new BigDecimal("3"))))
+        when(kafkaService.sendMessage(anyString(), eq("subtraction"), eq(new BigDecimal("5")), eq(new BigDecimal("3")), any()))
                 .thenReturn(CompletableFuture.completedFuture("2"));
 
         assertAsyncOperation("/api/subtraction?a=5&b=3", "{\"result\": 2}");
@@ -75,7 +97,7 @@ class CalculatorControllerTest {
     @Test
     @DisplayName("Should return result for valid multiplication operation")
     void shouldReturnResultForMultiplication() throws Exception {
-        when(kafkaService.sendMessage(anyString(), eq("multiplication"), eq(new BigDecimal("4")), eq(new BigDecimal("3"))))
+        when(kafkaService.sendMessage(anyString(), eq("multiplication"), eq(new BigDecimal("4")), eq(new BigDecimal("3")), any()))
                 .thenReturn(CompletableFuture.completedFuture("12"));
 
         assertAsyncOperation("/api/multiplication?a=4&b=3", "{\"result\": 12}");
@@ -84,7 +106,7 @@ class CalculatorControllerTest {
     @Test
     @DisplayName("Should return result for valid division operation")
     void shouldReturnResultForDivision() throws Exception {
-        when(kafkaService.sendMessage(anyString(), eq("division"), eq(new BigDecimal("10")), eq(new BigDecimal("2"))))
+        when(kafkaService.sendMessage(anyString(), eq("division"), eq(new BigDecimal("10")), eq(new BigDecimal("2")), any()))
                 .thenReturn(CompletableFuture.completedFuture("5"));
 
         assertAsyncOperation("/api/division?a=10&b=2", "{\"result\": 5}");
@@ -109,10 +131,37 @@ class CalculatorControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @DisplayName("Should send operands as received, keeping the scale of the result")
+    void shouldSendOperandsAsReceived() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2.0")), eq(new BigDecimal("3")), any()))
+                .thenReturn(CompletableFuture.completedFuture("5.0"));
+
+        assertAsyncOperation("/api/sum?a=2.0&b=3", "{\"result\": 5.0}");
+    }
+
+    @Test
+    @DisplayName("Should send operands with a large exponent as received")
+    void shouldSendOperandsWithLargeExponent() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("1E+1001")), eq(new BigDecimal("1")), any()))
+                .thenReturn(CompletableFuture.completedFuture("1E+1001"));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/sum")
+                        .param("a", "1E+1001")
+                        .param("b", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk());
+        verify(kafkaService).sendMessage(anyString(), eq("sum"), eq(new BigDecimal("1E+1001")), eq(new BigDecimal("1")), any());
+    }
+
     @Test
     @DisplayName("Should return 500 Internal Server Error when Kafka fails")
     void shouldReturnErrorWhenKafkaFails() throws Exception {
-        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3"))))
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3")), any()))
                 .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Kafka error")));
 
         MvcResult mvcResult = mockMvc.perform(get("/api/sum")
@@ -127,4 +176,164 @@ class CalculatorControllerTest {
                 .andExpect(header().exists("X-Request-ID"))
                 .andExpect(content().json("{\"error\": \"Kafka error\"}"));
     }
+
+    @Test
+    @DisplayName("Should escape quotes and control characters of error messages")
+    void shouldEscapeErrorMessages() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3")), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Broker \"kafka-1\" unreachable\n\tat port 9092")));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/sum?a=2&b=3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isInternalServerError())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.error").value("Broker \"kafka-1\" unreachable\n\tat port 9092"));
+    }
+
+    @Test
+    @DisplayName("Should return the result as a CBOR decimal fraction when CBOR is accepted")
+    void shouldReturnCborResult() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("division"), eq(new BigDecimal("25")), eq(new BigDecimal("2")), any()))
+                .thenReturn(CompletableFuture.completedFuture("12.5"));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/division?a=25&b=2")
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // {"result": 4([-1, 125])}
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(content().bytes(new byte[]{(byte) 0xA1, 0x66, 'r', 'e', 's', 'u', 'l', 't',
+                        (byte) 0xC4, (byte) 0x82, 0x20, 0x18, 0x7D}));
+    }
+
+    @Test
+    @DisplayName("Should return 504 Gateway Timeout when the calculator does not answer in time")
+    void shouldReturnGatewayTimeoutWhenResponseExpires() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3")), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RequestTimeoutException("abc", 5000)));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/sum?a=2&b=3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(header().exists("X-Request-ID"));
+    }
+
+    @Test
+    @DisplayName("Should return 503 Service Unavailable when too many requests are in flight")
+    void shouldReturnServiceUnavailableWhenInFlightLimitReached() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("2")), eq(new BigDecimal("3")), any()))
+                .thenReturn(CompletableFuture.failedFuture(new InFlightLimitExceededException(10)));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/sum?a=2&b=3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(content().json("{\"error\": \"Too many requests in flight (limit 10)\"}"));
+    }
+
+    @Test
+    @DisplayName("Should answer requests shed by the concurrency limiter with 503 or 429 and Retry-After")
+    void shouldShedRequestsRefusedByLimiter() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("7")), eq(new BigDecimal("8")), any()))
+                .thenReturn(CompletableFuture.failedFuture(new ConcurrencyLimitExceededException(false, 10, Duration.ofMillis(1500))))
+                .thenReturn(CompletableFuture.failedFuture(new ConcurrencyLimitExceededException(true, 10, Duration.ofMillis(1500))));
+
+        MvcResult overloaded = mockMvc.perform(get("/api/sum?a=7&b=8").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(overloaded))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "2"))
+                .andExpect(content().json("{\"error\": \"Too many requests in flight (adaptive limit 10)\"}"));
+
+        MvcResult unfair = mockMvc.perform(get("/api/sum?a=7&b=8").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(unfair))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "2"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request when the calculator rejects a division by zero")
+    void shouldReturnBadRequestForDivisionByZero() throws Exception {
+        double recorded = meterRegistry.get("calculator.requests")
+                .tags("operation", "division", "outcome", "CLIENT_ERROR").timer().count();
+        when(kafkaService.sendMessage(anyString(), eq("division"), eq(new BigDecimal("5")), eq(new BigDecimal("0")), any()))
+                .thenReturn(CompletableFuture.failedFuture(
+                        new CalculationFailedException(ReplyStatus.DIVISION_BY_ZERO, "Division by zero is not allowed")));
+
+        MvcResult mvcResult = mockMvc.perform(get("/api/division?a=5&b=0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Division by zero is not allowed\"}"));
+        assertEquals(recorded + 1, meterRegistry.get("calculator.requests")
+                .tags("operation", "division", "outcome", "CLIENT_ERROR").timer().count());
+    }
+
+    @Test
+    @DisplayName("Should answer the synchronous variant without async dispatch")
+    void shouldReturnResultSynchronously() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("multiplication"), eq(new BigDecimal("4")), eq(new BigDecimal("3")), any()))
+                .thenReturn(CompletableFuture.completedFuture("12"));
+
+        mockMvc.perform(get("/api/sync/multiplication?a=4&b=3")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().json("{\"result\": 12}"));
+    }
+
+    @Test
+    @DisplayName("Should return 504 Gateway Timeout when the synchronous wait times out")
+    void shouldReturnGatewayTimeoutForSyncTimeout() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("7")), eq(new BigDecimal("1")), any()))
+                .thenReturn(new CompletableFuture<>());
+
+        mockMvc.perform(get("/api/sync/sum?a=7&b=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGatewayTimeout())
+                .andExpect(header().exists("X-Request-ID"));
+    }
+
+    @Test
+    @DisplayName("Should return 404 Not Found for an unknown synchronous operation")
+    void shouldReturnNotFoundForUnknownSyncOperation() throws Exception {
+        mockMvc.perform(get("/api/sync/mod?a=7&b=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("Should not leave the requestId in the request thread's logging context")
+    void shouldClearLoggingContext() throws Exception {
+        when(kafkaService.sendMessage(anyString(), eq("sum"), eq(new BigDecimal("9")), eq(new BigDecimal("1")), any()))
+                .thenReturn(new CompletableFuture<>());
+
+        mockMvc.perform(get("/api/sum?a=9&b=1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted());
+
+        assertNull(MDC.get("requestId"));
+    }
 }
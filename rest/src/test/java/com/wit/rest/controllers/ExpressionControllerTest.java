@@ -0,0 +1,93 @@
+package com.wit.rest.controllers;
+
+import com.wit.RestApp;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.kafka.CalculationFailedException;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = RestApp.class)
+@AutoConfigureMockMvc
+class ExpressionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private KafkaService kafkaService;
+
+    // Replaces the Kafka transport, so no reply listener is started
+    @MockBean
+    private KafkaTransport kafkaTransport;
+
+    private MvcResult evaluate(String body) throws Exception {
+        return mockMvc.perform(post("/api/evaluate")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    @Test
+    @DisplayName("Should send the expression and its variables in one request and return the result")
+    void shouldEvaluateExpression() throws Exception {
+        Map<String, BigDecimal> variables = Map.of("a", new BigDecimal("1"), "b", new BigDecimal("2.50"),
+                "c", new BigDecimal("3"), "d", new BigDecimal("4"));
+        when(kafkaService.sendExpression(anyString(), eq("(a + b) * c / d"), eq(variables), any()))
+                .thenReturn(CompletableFuture.completedFuture("2.625"));
+
+        MvcResult mvcResult = evaluate("{\"expression\": \"(a + b) * c / d\", \"variables\": {\"a\": 1, \"b\": 2.50, \"c\": 3, \"d\": 4}}");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().json("{\"result\": 2.625}"));
+        verify(kafkaService, times(1)).sendExpression(anyString(), anyString(), anyMap(), any());
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request when the calculator rejects the expression")
+    void shouldReturnBadRequestForInvalidExpression() throws Exception {
+        when(kafkaService.sendExpression(anyString(), eq("a +"), eq(Map.of()), any()))
+                .thenReturn(CompletableFuture.failedFuture(new CalculationFailedException(ReplyStatus.INVALID_EXPRESSION,
+                        "Invalid expression: unexpected end of expression")));
+
+        MvcResult mvcResult = evaluate("{\"expression\": \"a +\"}");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Invalid expression: unexpected end of expression\"}"));
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request without calling the calculator for a missing expression or variable value")
+    void shouldRejectIncompleteRequests() throws Exception {
+        mockMvc.perform(asyncDispatch(evaluate("{\"variables\": {\"a\": 1}}")))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Missing expression\"}"));
+        mockMvc.perform(asyncDispatch(evaluate("{\"expression\": \"a * 2\", \"variables\": {\"a\": null}}")))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Missing value of variable 'a'\"}"));
+
+        verifyNoInteractions(kafkaService);
+    }
+}
@@ -0,0 +1,115 @@
+package com.wit.rest.controllers;
+
+import com.wit.RestApp;
+import com.wit.common.protocol.MathContexts;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.kafka.CalculationFailedException;
+import com.wit.rest.kafka.KafkaService;
+import com.wit.rest.kafka.KafkaTransport;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(classes = RestApp.class, properties = "calculator.precise.max-digits=5000")
+@AutoConfigureMockMvc
+class PreciseControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private KafkaService kafkaService;
+
+    // Replaces the Kafka transport, so no reply listener is started
+    @MockBean
+    private KafkaTransport kafkaTransport;
+
+    private MvcResult calculate(String uri, String body) throws Exception {
+        return mockMvc.perform(post(uri)
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    @Test
+    @DisplayName("Should send both operands with the requested precision and rounding and return the result")
+    void shouldSendPreciseOperation() throws Exception {
+        BigDecimal a = new BigDecimal("1" + "0".repeat(4_000) + ".5");
+        when(kafkaService.sendPrecise(anyString(), eq(Operation.DIVISION), eq(a), eq(new BigDecimal("-3E-2")),
+                eq(MathContexts.of(50, RoundingMode.HALF_EVEN)), any()))
+                .thenReturn(CompletableFuture.completedFuture(new BigDecimal("-3.3333333333333333333333333333333333333333333333333E+4001")));
+
+        MvcResult mvcResult = calculate("/api/precise/division?precision=50&rounding=half_even", a.toPlainString() + "\n -3E-2\n");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("X-Request-ID"))
+                .andExpect(content().string("{\"result\": -3.3333333333333333333333333333333333333333333333333E+4001}"));
+    }
+
+    @Test
+    @DisplayName("Should compute exactly by default and report calculator errors as 400 Bad Request")
+    void shouldDefaultToExactResults() throws Exception {
+        when(kafkaService.sendPrecise(anyString(), eq(Operation.DIVISION), any(), any(), eq(MathContext.UNLIMITED), any()))
+                .thenReturn(CompletableFuture.failedFuture(new CalculationFailedException(ReplyStatus.INVALID_NUMBER,
+                        "Non-terminating decimal expansion; no exact representable decimal result.")));
+
+        MvcResult mvcResult = calculate("/api/precise/division", "1 3");
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"error\": \"Non-terminating decimal expansion; no exact representable decimal result.\"}"));
+        verify(kafkaService).sendPrecise(anyString(), eq(Operation.DIVISION), eq(BigDecimal.ONE), eq(new BigDecimal("3")),
+                argThat(mc -> mc.getPrecision() == 0 && mc.getRoundingMode() == RoundingMode.HALF_UP), any());
+    }
+
+    @Test
+    @DisplayName("Should return 413 Payload Too Large for an operand over the digit limit without calling Kafka")
+    void shouldRejectTooLargeOperand() throws Exception {
+        MvcResult mvcResult = calculate("/api/precise/multiplication", "2 " + "9".repeat(5_001));
+
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().json("{\"error\": \"Operand exceeds the maximum of 5000 digits\"}"));
+        verifyNoInteractions(kafkaService);
+    }
+
+    @Test
+    @DisplayName("Should return 400 Bad Request for invalid operands, precisions and rounding modes without calling Kafka")
+    void shouldRejectInvalidRequests() throws Exception {
+        String[][] cases = {
+                {"/api/precise/sum", "1 2 3", "Expected two operands separated by whitespace"},
+                {"/api/precise/sum", "1", "Expected two operands separated by whitespace"},
+                {"/api/precise/sum", "1 abc", "Invalid number format"},
+                {"/api/precise/sum", "1 1E-9000", "Invalid number format: scale out of range"},
+                {"/api/precise/sum?precision=-1", "1 2", "Precision must be between 0 and 100000"},
+                {"/api/precise/sum?precision=5&rounding=nearest", "1 2", "Unknown rounding mode: nearest"}};
+        for (String[] invalid : cases) {
+            MvcResult mvcResult = calculate(invalid[0], invalid[1]);
+
+            mockMvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(content().json("{\"error\": \"" + invalid[2] + "\"}"));
+        }
+        verifyNoInteractions(kafkaService);
+    }
+}
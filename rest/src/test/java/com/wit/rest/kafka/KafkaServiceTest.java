@@ -0,0 +1,74 @@
+package com.wit.rest.kafka;
+
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.rest.limit.ConcurrencyLimitExceededException;
+import com.wit.rest.limit.ConcurrencyLimiter;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.transport.CalculationTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KafkaServiceTest {
+
+    private final List<CompletableFuture<CalculationReply>> sent = new ArrayList<>();
+    private final CalculationTransport transport = (request, lane) -> {
+        CompletableFuture<CalculationReply> reply = new CompletableFuture<>();
+        sent.add(reply);
+        return reply;
+    };
+
+    // A fixed limit of one request awaiting the calculator
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter(true, 1, 1, 1, Duration.ofSeconds(10), 0.5,
+            "none", Duration.ofSeconds(1), new SimpleMeterRegistry());
+    private final KafkaService kafkaService = new KafkaService(transport,
+            new RequestCoalescer(transport, new RequestIdGenerator(0), new RequestLog(1), false, 64, Duration.ZERO, new SimpleMeterRegistry()),
+            limiter);
+
+    private static void assertShed(CompletableFuture<?> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, future::get);
+        assertInstanceOf(ConcurrencyLimitExceededException.class, e.getCause());
+    }
+
+    @Test
+    @DisplayName("Should pass every kind of request through the concurrency limiter, sending none it refuses")
+    void shouldLimitEveryKindOfRequest() throws Exception {
+        CompletableFuture<String> first = kafkaService.sendMessage("1", "sum", BigDecimal.ONE, BigDecimal.ONE, null);
+        assertEquals(1, limiter.inFlight());
+
+        assertShed(kafkaService.sendMessage("2", "sum", BigDecimal.ONE, BigDecimal.ONE, null));
+        assertShed(kafkaService.sendExpression("3", "a + 1", Map.of("a", BigDecimal.ONE), null));
+        assertShed(kafkaService.sendBatch("4", List.of(new Calculation(Operation.SUM, BigDecimal.ONE, BigDecimal.ONE)), null));
+        assertShed(kafkaService.sendAggregate("5", AggregateOperation.SUM, List.of(BigDecimal.ONE), null));
+        assertShed(kafkaService.sendPrecise("6", Operation.SUM, BigDecimal.ONE, BigDecimal.ONE, MathContext.UNLIMITED, null));
+        assertEquals(1, sent.size());
+
+        sent.get(0).complete(CalculationReply.single(CalculationResult.ok(new BigDecimal("2"))));
+        assertEquals("2", first.get());
+        assertEquals(0, limiter.inFlight());
+
+        CompletableFuture<BigDecimal> precise = kafkaService.sendPrecise("7", Operation.SUM, BigDecimal.ONE, BigDecimal.ONE,
+                MathContext.UNLIMITED, null);
+        assertEquals(2, sent.size());
+        sent.get(1).completeExceptionally(new IllegalStateException("Kafka is down"));
+        assertThrows(ExecutionException.class, precise::get);
+        assertEquals(0, limiter.inFlight()); // Released on failure too
+    }
+}
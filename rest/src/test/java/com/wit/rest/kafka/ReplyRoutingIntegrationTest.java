@@ -0,0 +1,156 @@
+package com.wit.rest.kafka;
+
+import com.wit.RestApp;
+import com.wit.calculator.journal.CalculationJournal;
+import com.wit.calculator.services.CalculatorMetrics;
+import com.wit.calculator.services.CalculatorService;
+import com.wit.calculator.services.ExpressionCache;
+import com.wit.calculator.services.KeyOrderedExecutor;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.common.protocol.kafka.CalculationReplySerializer;
+import com.wit.common.protocol.kafka.CalculationRequestDeserializer;
+import com.wit.rest.pending.RequestIdGenerator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchMessageListener;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs several REST instances and the calculator's {@link CalculatorService} listener against an embedded broker, and
+ * checks that every instance receives the replies to its own requests: the calculator answers on the topic named in the
+ * {@code kafka_replyTopic} header. The calculator is wired by hand, as in the benchmarks' RequestReplyBenchmark,
+ * since both applications scan the same root package.
+ */
+class ReplyRoutingIntegrationTest {
+
+    private static final int INSTANCES = 3;
+    private static final int REQUESTS_PER_INSTANCE = 50;
+
+    private static EmbeddedKafkaBroker broker;
+    private static KeyOrderedExecutor executor;
+    private static KafkaMessageListenerContainer<String, CalculationRequest> calculator;
+    private static final List<ConfigurableApplicationContext> instances = new ArrayList<>();
+
+    @BeforeAll
+    static void start() {
+        broker = new EmbeddedKafkaKraftBroker(1, 1, "calculator-requests", "calculator-batch-requests");
+        broker.afterPropertiesSet();
+        executor = new KeyOrderedExecutor(1);
+        calculator = calculatorContainer(broker, executor);
+        calculator.start();
+        ContainerTestUtils.waitForAssignment(calculator, 2);
+        for (int i = 0; i < INSTANCES; i++) {
+            instances.add(new SpringApplicationBuilder(RestApp.class)
+                    .web(WebApplicationType.NONE)
+                    .run("--spring.kafka.producer.bootstrap-servers=" + broker.getBrokersAsString(),
+                            "--spring.kafka.consumer.bootstrap-servers=" + broker.getBrokersAsString(),
+                            "--calculator.reply.instance-id=node-" + i,
+                            "--calculator.pending.timeout=30s",
+                            "--logging.file.name=target/reply-routing-test.log"));
+        }
+    }
+
+    @AfterAll
+    static void stop() {
+        instances.forEach(ConfigurableApplicationContext::close);
+        calculator.stop();
+        executor.destroy();
+        broker.destroy();
+    }
+
+    /**
+     * The calculator's batch listener on the request topics, replying through a template of its own.
+     */
+    static KafkaMessageListenerContainer<String, CalculationRequest> calculatorContainer(EmbeddedKafkaBroker broker,
+                                                                                        KeyOrderedExecutor executor) {
+        Map<String, Object> producerProps = Map.of(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        KafkaTemplate<String, CalculationReply> replyTemplate = new KafkaTemplate<>(
+                new DefaultKafkaProducerFactory<>(producerProps, new StringSerializer(), new CalculationReplySerializer()));
+        CalculatorService calculatorService = new CalculatorService(replyTemplate, executor,
+                new CalculatorMetrics(new SimpleMeterRegistry()), new RequestLog(1),
+                new CalculationJournal(false, "journal", DataSize.ofMegabytes(64), 1, 1, Duration.ZERO,
+                        new SimpleMeterRegistry()),
+                new ExpressionCache(1000, new SimpleMeterRegistry()));
+        ContainerProperties containerProps = new ContainerProperties("calculator-requests", "calculator-batch-requests");
+        containerProps.setMessageListener(
+                (BatchMessageListener<String, CalculationRequest>) calculatorService::processCalculationRequests);
+        Map<String, Object> consumerProps = Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString(),
+                ConsumerConfig.GROUP_ID_CONFIG, "test-calculator",
+                ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return new KafkaMessageListenerContainer<>(new DefaultKafkaConsumerFactory<>(
+                consumerProps, new StringDeserializer(), new CalculationRequestDeserializer()), containerProps);
+    }
+
+    @Test
+    @DisplayName("Should deliver every reply to the instance that sent the request")
+    void shouldRouteRepliesToTheRequestingInstance() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int n = 0; n < REQUESTS_PER_INSTANCE; n++) {
+            for (int i = 0; i < INSTANCES; i++) {
+                KafkaService kafkaService = instances.get(i).getBean(KafkaService.class);
+                String requestId = instances.get(i).getBean(RequestIdGenerator.class).next();
+                futures.add(kafkaService.sendMessage(requestId, "sum",
+                        BigDecimal.valueOf(i), BigDecimal.valueOf(n), null));
+                expected.add(String.valueOf(i + n));
+            }
+        }
+
+        for (int k = 0; k < futures.size(); k++) {
+            assertEquals(expected.get(k), futures.get(k).get(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    @DisplayName("Should deliver batch replies, sent on the bulk topic, to the instance that sent the batch")
+    void shouldRouteBatchRepliesToTheRequestingInstance() throws Exception {
+        List<CompletableFuture<List<CalculationResult>>> futures = new ArrayList<>();
+        for (int i = 0; i < INSTANCES; i++) {
+            String requestId = instances.get(i).getBean(RequestIdGenerator.class).next();
+            futures.add(instances.get(i).getBean(KafkaService.class).sendBatch(requestId, List.of(
+                    new Calculation(Operation.MULTIPLICATION, BigDecimal.valueOf(i), BigDecimal.TEN),
+                    new Calculation(Operation.DIVISION, BigDecimal.ONE, BigDecimal.ZERO)), null));
+        }
+
+        for (int i = 0; i < INSTANCES; i++) {
+            List<CalculationResult> results = futures.get(i).get(30, TimeUnit.SECONDS);
+            assertEquals(BigDecimal.valueOf(i * 10L), results.get(0).value());
+            assertEquals(ReplyStatus.DIVISION_BY_ZERO, results.get(1).status());
+        }
+    }
+}
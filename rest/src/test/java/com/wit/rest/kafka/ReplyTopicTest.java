@@ -0,0 +1,27 @@
+package com.wit.rest.kafka;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplyTopicTest {
+
+    @Test
+    @DisplayName("Should name the reply topic after the instance id, replacing characters not allowed in topic names")
+    void shouldNameTopicAfterInstanceId() {
+        assertEquals("calculator-responses-rest-0", new ReplyTopic("calculator-responses", " rest-0 ").getName());
+        assertEquals("replies-node-1.example_a-b", new ReplyTopic("replies", "node:1.example_a/b").getName());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the local host name, the same on every start, when the instance id is blank")
+    void shouldDefaultToHostName() throws Exception {
+        String hostName = InetAddress.getLocalHost().getHostName().replaceAll("[^a-zA-Z0-9._-]", "-");
+
+        assertEquals("calculator-responses-" + hostName, new ReplyTopic("calculator-responses", "").getName());
+        assertEquals(new ReplyTopic("calculator-responses", " ").getName(), new ReplyTopic("calculator-responses", "").getName());
+    }
+}
@@ -0,0 +1,174 @@
+package com.wit.rest.kafka;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.wit.common.logging.RequestLog;
+import com.wit.common.protocol.Calculation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.CalculationResult;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.pending.InFlightLimitExceededException;
+import com.wit.rest.pending.RequestIdGenerator;
+import com.wit.rest.transport.CalculationTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    private final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+    // Holds the dispatcher in the send of the request "first" until released
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CalculationTransport transport = (request, lane) -> {
+        CompletableFuture<CalculationReply> reply = new CompletableFuture<>();
+        sent.add(new Sent(request, reply));
+        if (request.requestId().equals("first")) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return reply;
+    };
+    private final Logger logger = (Logger) LoggerFactory.getLogger("requests-coalescer-test");
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void attach() {
+        appender.start();
+        logger.addAppender(appender);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        coalescer.destroy();
+        logger.detachAppender(appender);
+    }
+
+    private RequestCoalescer coalescer(int sampleRate, int maxItems, Duration maxDelay) {
+        return new RequestCoalescer(transport, new RequestIdGenerator(0), new RequestLog(logger, sampleRate), true,
+                maxItems, maxDelay, new SimpleMeterRegistry());
+    }
+
+    private record Sent(CalculationRequest request, CompletableFuture<CalculationReply> reply) {
+
+        // Answers every calculation with its sum, or division by zero when b is 0
+        void answer() {
+            List<CalculationResult> results = new ArrayList<>();
+            for (Calculation calculation : request.calculations()) {
+                results.add(calculation.b().signum() == 0
+                        ? CalculationResult.error(ReplyStatus.DIVISION_BY_ZERO, "Division by zero")
+                        : CalculationResult.ok(calculation.a().add(calculation.b())));
+            }
+            reply.complete(new CalculationReply(results));
+        }
+    }
+
+    private static Calculation sum(long a, long b) {
+        return new Calculation(Operation.SUM, BigDecimal.valueOf(a), BigDecimal.valueOf(b));
+    }
+
+    @Test
+    @DisplayName("Should send a lone operation right away under its own requestId")
+    void shouldSendLoneOperationRightAway() throws Exception {
+        coalescer = coalescer(1, 64, Duration.ofSeconds(10));
+
+        CompletableFuture<CalculationResult> result = coalescer.submit("lone", sum(2, 3));
+
+        Sent request = sent.poll(1, TimeUnit.SECONDS); // Well before the 10 s window
+        assertNotNull(request);
+        assertEquals("lone", request.request().requestId());
+        request.answer();
+        assertEquals(BigDecimal.valueOf(5), result.get(1, TimeUnit.SECONDS).value());
+        assertTrue(appender.list.isEmpty()); // Nothing to map
+    }
+
+    @Test
+    @DisplayName("Should send operations queued together as one request and fan the reply out in order")
+    void shouldCoalesceQueuedOperations() throws Exception {
+        coalescer = coalescer(1, 4, Duration.ZERO);
+        // Hold the dispatcher in the first send while the next operations queue up
+        CompletableFuture<CalculationResult> first = coalescer.submit("first", sum(0, 1));
+        Sent firstRequest = sent.poll(1, TimeUnit.SECONDS);
+
+        List<CompletableFuture<CalculationResult>> results = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            results.add(coalescer.submit("op-" + i, sum(i, i == 3 ? 0 : 10)));
+        }
+        release.countDown();
+        firstRequest.answer();
+        Sent group = sent.poll(1, TimeUnit.SECONDS);
+        Sent rest = sent.poll(1, TimeUnit.SECONDS);
+
+        assertNotNull(group);
+        assertNotNull(rest);
+        assertEquals(4, group.request().calculations().size()); // Capped at max-items
+        assertEquals(2, rest.request().calculations().size());
+        assertTrue(RequestIdGenerator.parse(group.request().requestId()) >= 0);
+        group.answer();
+        rest.answer();
+        assertEquals(BigDecimal.ONE, first.get(1, TimeUnit.SECONDS).value());
+        for (int i = 1; i <= 6; i++) {
+            CalculationResult result = results.get(i - 1).get(1, TimeUnit.SECONDS);
+            if (i == 3) {
+                assertEquals(ReplyStatus.DIVISION_BY_ZERO, result.status());
+            } else {
+                assertEquals(BigDecimal.valueOf(i + 10), result.value());
+            }
+        }
+        // One line per group maps its requestId to the callers'
+        List<String> lines = appender.list.stream().map(ILoggingEvent::getFormattedMessage).toList();
+        assertTrue(lines.contains("requestId=" + group.request().requestId()
+                + " coalesced=4 result=ok requestIds=[op-1, op-2, op-3, op-4]"), lines::toString);
+        assertTrue(lines.contains("requestId=" + rest.request().requestId()
+                + " coalesced=2 result=ok requestIds=[op-5, op-6]"), lines::toString);
+    }
+
+    @Test
+    @DisplayName("Should fail every operation of a request that cannot be answered")
+    void shouldFailWholeGroup() throws Exception {
+        coalescer = coalescer(0, 8, Duration.ZERO); // Successes unlogged
+        coalescer.submit("first", sum(0, 1));
+        Sent firstRequest = sent.poll(1, TimeUnit.SECONDS);
+        CompletableFuture<CalculationResult> a = coalescer.submit("a", sum(1, 1));
+        CompletableFuture<CalculationResult> b = coalescer.submit("b", sum(2, 2));
+        release.countDown();
+        firstRequest.answer();
+
+        Sent group = sent.poll(1, TimeUnit.SECONDS);
+        group.reply().completeExceptionally(new InFlightLimitExceededException(1));
+
+        for (CompletableFuture<CalculationResult> result : List.of(a, b)) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+            assertInstanceOf(InFlightLimitExceededException.class, ex.getCause());
+        }
+        // Failed groups are logged whatever the sample rate
+        ILoggingEvent line = appender.list.get(0);
+        assertEquals(Level.WARN, line.getLevel());
+        assertTrue(line.getFormattedMessage().endsWith("requestIds=[a, b]"), line.getFormattedMessage());
+    }
+}
@@ -0,0 +1,141 @@
+package com.wit.rest.kafka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.wit.RestApp;
+import com.wit.calculator.services.KeyOrderedExecutor;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.rest.pending.PendingRequestRegistry;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.kafka.listener.KafkaMessageListenerContainer;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.springframework.kafka.test.utils.ContainerTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a REST instance with {@code spring.threads.virtual.enabled=true} against an embedded broker and the calculator's
+ * {@code CalculatorService} listener (wired as in {@link ReplyRoutingIntegrationTest}). Only runs on Java 21 and later,
+ * e.g. {@code mvn test -Pjava21} on a JDK 21: the property has no effect on older runtimes.
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadsIntegrationTest {
+
+    // Synchronous requests waiting at once: five times Tomcat's default of 200 platform worker threads
+    private static final int WAITING = 1000;
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static EmbeddedKafkaBroker broker;
+    private static KeyOrderedExecutor executor;
+    private static KafkaMessageListenerContainer<String, CalculationRequest> calculator;
+    private static ConfigurableApplicationContext rest;
+    private static String baseUrl;
+
+    @BeforeAll
+    static void start() {
+        broker = new EmbeddedKafkaKraftBroker(1, 1, "calculator-requests", "calculator-batch-requests");
+        broker.afterPropertiesSet();
+        executor = new KeyOrderedExecutor(1);
+        calculator = ReplyRoutingIntegrationTest.calculatorContainer(broker, executor);
+        calculator.start();
+        ContainerTestUtils.waitForAssignment(calculator, 2);
+        rest = new SpringApplicationBuilder(RestApp.class)
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=true",
+                        "--spring.kafka.producer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--spring.kafka.consumer.bootstrap-servers=" + broker.getBrokersAsString(),
+                        "--calculator.reply.instance-id=virtual-threads-test",
+                        "--calculator.pending.timeout=60s",
+                        "--calculator.limit.enabled=false",
+                        "--calculator.cache.enabled=false",
+                        "--logging.file.name=target/virtual-threads-test.log");
+        baseUrl = "http://localhost:" + rest.getEnvironment().getProperty("local.server.port");
+    }
+
+    @AfterAll
+    static void stop() {
+        rest.close();
+        calculator.stop();
+        executor.destroy();
+        broker.destroy();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+    }
+
+    @Test
+    @DisplayName("Should handle requests and run send callbacks on virtual threads")
+    void shouldUseVirtualThreads() {
+        TomcatWebServer webServer = (TomcatWebServer) ((ServletWebServerApplicationContext) rest).getWebServer();
+        assertInstanceOf(VirtualThreadExecutor.class, webServer.getTomcat().getConnector().getProtocolHandler().getExecutor());
+        assertInstanceOf(VirtualThreadTaskExecutor.class,
+                ReflectionTestUtils.getField(rest.getBean(KafkaTransport.class), "callbackExecutor"));
+    }
+
+    @Test
+    @DisplayName("Should keep more synchronous requests waiting for the calculator than there are platform threads")
+    void shouldWaitOnVirtualThreads() throws Exception {
+        PendingRequestRegistry pendingRequests = rest.getBean(PendingRequestRegistry.class);
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(4);
+        HttpClient client = HttpClient.newBuilder().executor(clientExecutor).build();
+        try {
+            // Hold the replies back until every request is waiting on its request thread
+            calculator.pause();
+            await(calculator::isContainerPaused);
+            assertTrue(calculator.isContainerPaused());
+
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < WAITING; i++) {
+                responses.add(client.sendAsync(HttpRequest.newBuilder(URI.create(baseUrl + "/api/sync/sum?a=" + i + "&b=1"))
+                        .timeout(Duration.ofSeconds(60))
+                        .build(), HttpResponse.BodyHandlers.ofString()));
+            }
+            await(() -> pendingRequests.inFlight() == WAITING);
+            assertEquals(WAITING, pendingRequests.inFlight());
+            // Platform threads of the whole JVM: broker, calculator, REST service and client
+            int platformThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+            assertTrue(platformThreads < WAITING / 2, "Platform threads: " + platformThreads);
+
+            calculator.resume();
+            for (int i = 0; i < WAITING; i++) {
+                HttpResponse<String> response = responses.get(i).get(60, TimeUnit.SECONDS);
+                assertEquals(200, response.statusCode(), response.body());
+                assertEquals(i + 1, objectMapper.readTree(response.body()).get("result").asInt());
+            }
+        } finally {
+            calculator.resume();
+            clientExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.wit.rest.limit;
+
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.kafka.CalculationFailedException;
+import com.wit.rest.pending.RequestTimeoutException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ConcurrencyLimiter newLimiter(int initial, Duration latencyThreshold, double backoffRatio, String fairness) {
+        return new ConcurrencyLimiter(true, initial, 2, 1000, latencyThreshold, backoffRatio, fairness,
+                Duration.ofSeconds(1), meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should shed requests above the limit and count them")
+    void shouldShedAboveLimit() {
+        ConcurrencyLimiter limiter = newLimiter(3, Duration.ofHours(1), 0.5, "none");
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            permits.add(limiter.acquire(null));
+        }
+
+        ConcurrencyLimitExceededException ex = assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire(null));
+        assertFalse(ex.isClientShare());
+        assertEquals(Duration.ofSeconds(1), ex.getRetryAfter());
+        assertEquals(1.0, meterRegistry.get("calculator.limit.shed").tag("reason", "limit").counter().count());
+
+        permits.remove(0).release(null);
+        assertNotNull(limiter.acquire(null));
+        assertEquals(3, limiter.inFlight());
+    }
+
+    @Test
+    @DisplayName("Should decrease the limit on slow answers and timeouts, once per round trip")
+    void shouldDecreaseOncePerRoundTrip() {
+        ConcurrencyLimiter limiter = newLimiter(100, Duration.ZERO, 0.5, "none"); // Every answer is slow
+        List<ConcurrencyLimiter.Permit> burst = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            burst.add(limiter.acquire(null));
+        }
+
+        burst.forEach(permit -> permit.release(null));
+        assertEquals(50, limiter.limit(), "Requests of the same round trip decrease the limit once");
+
+        limiter.acquire(null).release(new RequestTimeoutException("1", 5000));
+        assertEquals(25, limiter.limit());
+        for (int i = 0; i < 10; i++) {
+            limiter.acquire(null).release(null);
+        }
+        assertEquals(2, limiter.limit(), "The limit never drops below its minimum");
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    @DisplayName("Should increase the limit on fast answers only while it is in use")
+    void shouldIncreaseWhileInUse() {
+        ConcurrencyLimiter limiter = newLimiter(10, Duration.ofHours(1), 0.5, "none");
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(null).release(null); // One request at a time: the limit is not the bottleneck
+        }
+        assertEquals(10, limiter.limit());
+
+        for (int round = 0; round < 10; round++) {
+            List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+            for (int i = 0; i < limiter.limit(); i++) {
+                permits.add(limiter.acquire(null));
+            }
+            // Errors reported by the calculator are answers too
+            permits.forEach(permit -> permit.release(new CalculationFailedException(ReplyStatus.DIVISION_BY_ZERO, null)));
+        }
+        assertTrue(limiter.limit() > 10, "Limit grew to " + limiter.limit());
+    }
+
+    @Test
+    @DisplayName("Should hold a client to its fair share once the limit is under pressure")
+    void shouldShareLimitFairly() {
+        ConcurrencyLimiter limiter = newLimiter(10, Duration.ofHours(1), 0.5, "api-key");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        assertEquals("10.0.0.1", limiter.clientOf(request));
+        request.addHeader("X-API-Key", "greedy");
+        assertEquals("greedy", limiter.clientOf(request));
+
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire("greedy"); // Alone, a client may use the whole limit
+        }
+        limiter.acquire("polite");
+        ConcurrencyLimitExceededException ex = assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.acquire("greedy"));
+        assertTrue(ex.isClientShare());
+        limiter.acquire("polite");
+        assertEquals(8, limiter.inFlight());
+        assertEquals(1.0, meterRegistry.get("calculator.limit.shed").tag("reason", "client-share").counter().count());
+    }
+
+    /**
+     * Open-loop overload: requests arrive four times faster than a deliberately slowed calculator (one worker,
+     * 2 ms per request) can answer them. Without a limit the queue, and every request's latency, would grow for as long
+     * as the overload lasts (by about 6 ms per millisecond); with it, the excess is shed and the latency of admitted
+     * requests stays around the threshold.
+     */
+    @Test
+    @DisplayName("Should keep the p99 latency of admitted requests bounded while the calculator is overloaded")
+    void shouldBoundLatencyUnderOverload() throws Exception {
+        ConcurrencyLimiter limiter = newLimiter(20, Duration.ofMillis(50), 0.5, "none");
+        ExecutorService calculator = Executors.newSingleThreadExecutor();
+        ScheduledExecutorService clients = Executors.newSingleThreadScheduledExecutor();
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger shed = new AtomicInteger();
+
+        clients.scheduleAtFixedRate(() -> {
+            for (int i = 0; i < 10; i++) { // 2000 requests per second
+                ConcurrencyLimiter.Permit permit;
+                try {
+                    permit = limiter.acquire(null);
+                } catch (ConcurrencyLimitExceededException e) {
+                    shed.incrementAndGet();
+                    continue;
+                }
+                long start = System.nanoTime();
+                calculator.execute(() -> {
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    latencies.add(System.nanoTime() - start);
+                    permit.release(null);
+                });
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+        Thread.sleep(2000);
+        clients.shutdown();
+        assertTrue(clients.awaitTermination(5, TimeUnit.SECONDS));
+        calculator.shutdown();
+        assertTrue(calculator.awaitTermination(5, TimeUnit.SECONDS));
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        long p99Millis = TimeUnit.NANOSECONDS.toMillis(sorted[(int) (sorted.length * 0.99)]);
+        assertTrue(shed.get() > sorted.length, "Most of the excess was shed: shed=" + shed + ", admitted=" + sorted.length);
+        assertTrue(p99Millis < 250, "p99=" + p99Millis + " ms");
+    }
+}
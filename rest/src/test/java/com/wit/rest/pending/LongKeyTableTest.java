@@ -0,0 +1,49 @@
+package com.wit.rest.pending;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongKeyTableTest {
+
+    @Test
+    @DisplayName("Should behave like a map through growth and removals")
+    void shouldMatchReferenceMap() {
+        LongKeyTable<String> table = new LongKeyTable<>(4);
+        Map<Long, String> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200_000; i++) {
+            long key = random.nextInt(5_000); // Dense keys: long probe runs and many shifts on removal
+            if (random.nextBoolean()) {
+                String value = "v" + i;
+                assertEquals(reference.putIfAbsent(key, value), table.putIfAbsent(key, value));
+            } else {
+                assertEquals(reference.remove(key), table.remove(key));
+            }
+        }
+        assertEquals(reference.size(), table.size());
+        for (Map.Entry<Long, String> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), table.remove(entry.getKey()));
+        }
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    @DisplayName("Should only remove a key still mapped to the expected value")
+    void shouldRemoveConditionally() {
+        LongKeyTable<String> table = new LongKeyTable<>(1);
+        String first = "first";
+        table.putIfAbsent(7, first);
+
+        assertFalse(table.remove(7, "other"));
+        assertTrue(table.remove(7, first));
+        assertFalse(table.remove(7, first));
+        assertNull(table.putIfAbsent(7, "again"));
+    }
+}
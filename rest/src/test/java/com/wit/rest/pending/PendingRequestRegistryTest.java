@@ -0,0 +1,94 @@
+package com.wit.rest.pending;
+
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestRegistryTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PendingRequestRegistry registry;
+
+    @AfterEach
+    void tearDown() {
+        registry.destroy();
+    }
+
+    private static final CalculationReply FIVE = CalculationReply.single(CalculationResult.ok(new BigDecimal("5")));
+
+    private PendingRequestRegistry newRegistry(int maxInFlight, Duration timeout) {
+        registry = new PendingRequestRegistry(maxInFlight, timeout, Duration.ofMillis(5), meterRegistry);
+        return registry;
+    }
+
+    @Test
+    @DisplayName("Should complete the registered future and release its slot")
+    void shouldCompleteRegisteredRequest() throws Exception {
+        newRegistry(10, Duration.ofSeconds(5));
+
+        CompletableFuture<CalculationReply> future = registry.register(1L);
+        assertEquals(1, registry.inFlight());
+
+        assertTrue(registry.complete(1L, FIVE));
+        assertEquals(FIVE, future.get());
+        assertEquals(0, registry.inFlight());
+        assertFalse(registry.complete(1L, FIVE));
+    }
+
+    @Test
+    @DisplayName("Should expire requests whose response never arrives")
+    void shouldExpireRequestAfterDeadline() {
+        newRegistry(10, Duration.ofMillis(50));
+
+        CompletableFuture<CalculationReply> future = registry.register(2L);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(RequestTimeoutException.class, ex.getCause());
+        assertEquals(0, registry.inFlight());
+        assertEquals(1, registry.expirations());
+        assertEquals(1.0, meterRegistry.get("calculator.pending.expirations").gauge().value());
+        assertFalse(registry.complete(2L, FIVE));
+    }
+
+    @Test
+    @DisplayName("Should not expire requests answered before their deadline")
+    void shouldCancelDeadlineOfCompletedRequest() throws Exception {
+        newRegistry(10, Duration.ofMillis(20));
+
+        CompletableFuture<CalculationReply> future = registry.register(3L);
+        assertTrue(registry.complete(3L, FIVE));
+        Thread.sleep(100);
+
+        assertEquals(FIVE, future.get());
+        assertEquals(0, registry.expirations());
+        assertEquals(0, registry.inFlight());
+    }
+
+    @Test
+    @DisplayName("Should reject requests once the in-flight limit is reached")
+    void shouldRejectWhenLimitReached() {
+        newRegistry(2, Duration.ofSeconds(5));
+
+        registry.register(11L);
+        registry.register(12L);
+
+        assertThrows(InFlightLimitExceededException.class, () -> registry.register(13L));
+        assertEquals(2, registry.inFlight());
+        assertEquals(1, registry.rejections());
+        assertEquals(2.0, meterRegistry.get("calculator.pending.in-flight").gauge().value());
+
+        registry.complete(11L, FIVE);
+        assertDoesNotThrow(() -> registry.register(13L));
+    }
+}
@@ -0,0 +1,75 @@
+package com.wit.rest.pending;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestIdGeneratorTest {
+
+    @Test
+    @DisplayName("Should issue increasing ids carrying the node and creation time")
+    void shouldIssueIncreasingIds() {
+        RequestIdGenerator generator = new RequestIdGenerator(42);
+        long before = System.currentTimeMillis();
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 10_000; i++) { // More than one millisecond's worth of sequence numbers
+            long id = generator.nextId();
+            assertTrue(id > previous);
+            assertEquals(42, RequestIdGenerator.node(id));
+            previous = id;
+        }
+        assertTrue(RequestIdGenerator.timestampMillis(previous) >= before);
+    }
+
+    @Test
+    @DisplayName("Should issue unique ids from concurrent threads")
+    void shouldIssueUniqueIdsConcurrently() throws Exception {
+        RequestIdGenerator generator = new RequestIdGenerator(-1);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<long[]>> batches = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                batches.add(threads.submit(() -> {
+                    long[] ids = new long[20_000];
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = generator.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> unique = new HashSet<>();
+            for (Future<long[]> batch : batches) {
+                for (long id : batch.get()) {
+                    assertTrue(unique.add(id), "duplicate id");
+                }
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should render ids as 16 hex digits and parse them back")
+    void shouldRenderAndParseIds() {
+        assertEquals("0000000000000001", RequestIdGenerator.format(1));
+        assertEquals("7fffffffffffffff", RequestIdGenerator.format(Long.MAX_VALUE));
+
+        long id = new RequestIdGenerator(7).nextId();
+        assertEquals(id, RequestIdGenerator.parse(RequestIdGenerator.format(id)));
+
+        assertEquals(-1, RequestIdGenerator.parse("0123456789ABCDEF"));
+        assertEquals(-1, RequestIdGenerator.parse("8000000000000000"));
+        assertEquals(-1, RequestIdGenerator.parse("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        assertEquals(-1, RequestIdGenerator.parse(null));
+    }
+}
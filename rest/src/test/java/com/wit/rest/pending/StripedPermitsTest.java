@@ -0,0 +1,60 @@
+package com.wit.rest.pending;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedPermitsTest {
+
+    @Test
+    @DisplayName("Should hand out every permit, from other stripes once the caller's is empty, and no more")
+    void shouldHoldTheTotal() {
+        StripedPermits permits = new StripedPermits(3, 8); // Five stripes start empty
+
+        List<Integer> stripes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int stripe = permits.acquire();
+            assertTrue(stripe >= 0);
+            stripes.add(stripe);
+        }
+        assertEquals(-1, permits.acquire());
+        assertEquals(3, permits.acquired());
+
+        permits.release(stripes.get(1));
+        assertEquals(stripes.get(1), permits.acquire());
+        assertEquals(-1, permits.acquire());
+    }
+
+    @Test
+    @DisplayName("Should never exceed the total under concurrent acquisitions and releases")
+    void shouldHoldTheTotalConcurrently() throws InterruptedException {
+        StripedPermits permits = new StripedPermits(5, 4);
+        AtomicInteger held = new AtomicInteger();
+        AtomicInteger maxHeld = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(8);
+
+        for (int t = 0; t < 8; t++) {
+            new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int stripe = permits.acquire();
+                    if (stripe >= 0) {
+                        maxHeld.accumulateAndGet(held.incrementAndGet(), Math::max);
+                        held.decrementAndGet();
+                        permits.release(stripe);
+                    }
+                }
+                done.countDown();
+            }).start();
+        }
+        done.await();
+
+        assertTrue(maxHeld.get() <= 5);
+        assertEquals(0, permits.acquired());
+    }
+}
@@ -0,0 +1,120 @@
+package com.wit.rest.response;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OperationResponseConverterTest {
+
+    private static final byte[] RESULT_KEY = {(byte) 0xA1, 0x66, 'r', 'e', 's', 'u', 'l', 't'};
+    private static final byte[] ERROR_KEY = {(byte) 0xA1, 0x65, 'e', 'r', 'r', 'o', 'r'};
+
+    private static byte[] json(OperationResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OperationResponseConverter.writeJson(response, out);
+        assertEquals(OperationResponseConverter.jsonLength(response), out.size(), "Content-Length");
+        return out.toByteArray();
+    }
+
+    private static byte[] cbor(OperationResponse response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        OperationResponseConverter.writeCbor(response, out);
+        assertEquals(OperationResponseConverter.cborLength(response), out.size(), "Content-Length");
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[] prefix, int... bytes) {
+        byte[] all = Arrays.copyOf(prefix, prefix.length + bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            all[prefix.length + i] = (byte) bytes[i];
+        }
+        return all;
+    }
+
+    @Test
+    @DisplayName("Should write results as JSON numbers")
+    void shouldWriteJsonResults() throws IOException {
+        assertEquals("{\"result\": -1.5E+3}", new String(json(OperationResponse.ofResult("-1.5E+3")), "UTF-8"));
+    }
+
+    @Test
+    @DisplayName("Should write error messages as valid JSON strings whatever characters they contain")
+    void shouldEscapeJsonErrors() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        String[] messages = {"plain", "quote \" and backslash \\", "line\nbreak\ttab\r\b\f", "bell \u0007 nul \0",
+                "accents éà, euro €, emoji 😀", "lone \uD83D surrogate \uDE00", ""};
+        for (String message : messages) {
+            byte[] body = json(OperationResponse.ofError(message));
+
+            assertEquals(message, mapper.readTree(body).get("error").asText());
+        }
+        assertEquals("{\"error\": \"a\\\"b\\\\c\\n\\u0007\\ud83d\"}",
+                new String(json(OperationResponse.ofError("a\"b\\c\n\u0007\uD83D")), "UTF-8"));
+    }
+
+    @Test
+    @DisplayName("Should use the generic message for errors without one")
+    void shouldDefaultMissingErrorMessage() throws IOException {
+        assertEquals("{\"error\": \"Error in processing request\"}", new String(json(OperationResponse.ofError(null)), "UTF-8"));
+    }
+
+    @Test
+    @DisplayName("Should write results as CBOR decimal fractions")
+    void shouldWriteCborDecimalFractions() throws IOException {
+        // 4([0, 5])
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x00, 0x05), cbor(OperationResponse.ofResult("5")));
+        // 4([2, -15])
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x02, 0x2E), cbor(OperationResponse.ofResult("-1.5E+3")));
+        // 4([-10, 3333333333])
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x29, 0x1A, 0xC6, 0xAE, 0xA1, 0x55),
+                cbor(OperationResponse.ofResult("0.3333333333")));
+        // 4([-2, -999999999999999999]), the largest unscaled value kept in a long
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x21, 0x3B, 0x0D, 0xE0, 0xB6, 0xB3, 0xA7, 0x63, 0xFF, 0xFE),
+                cbor(OperationResponse.ofResult("-9999999999999999.99")));
+    }
+
+    @Test
+    @DisplayName("Should write unscaled values beyond 64 bits as CBOR bignums")
+    void shouldWriteCborBignums() throws IOException {
+        // 4([0, 2(h'010000000000000000')]), 2^64
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x00, 0xC2, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0),
+                cbor(OperationResponse.ofResult("18446744073709551616")));
+        // 4([-1, 3(h'010000000000000000')]), -1 - 2^64 scaled by 10
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x20, 0xC3, 0x49, 0x01, 0, 0, 0, 0, 0, 0, 0, 0),
+                cbor(OperationResponse.ofResult("-1844674407370955161.7")));
+        // 4([-1, 2(h'ffffffffffffffff')]), 2^64 - 1 without a sign byte
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x20, 0xC2, 0x48, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF),
+                cbor(OperationResponse.ofResult("1844674407370955161.5")));
+    }
+
+    @Test
+    @DisplayName("Should write large computed results as CBOR bignums from their value, without parsing their text")
+    void shouldWriteLargeCborResultsFromValue() throws IOException {
+        // 2^200000 scaled by 10^3: about 60,000 digits, a magnitude of one byte 0x01 and 25,000 zero bytes
+        BigDecimal value = new BigDecimal(BigInteger.ONE.shiftLeft(200_000), 3);
+        byte[] body = cbor(new OperationResponse("not parsed", value, null));
+
+        // 4([-3, 2(h'01 00...')]), with a two-byte length of 25,001
+        assertArrayEquals(concat(RESULT_KEY, 0xC4, 0x82, 0x22, 0xC2, 0x59, 0x61, 0xA9, 0x01),
+                Arrays.copyOf(body, RESULT_KEY.length + 8));
+        assertEquals(RESULT_KEY.length + 7 + 25_001, body.length);
+        assertArrayEquals(cbor(OperationResponse.ofResult(value.toString())), body);
+    }
+
+    @Test
+    @DisplayName("Should write error messages as CBOR text strings in UTF-8")
+    void shouldWriteCborErrors() throws IOException {
+        assertArrayEquals(concat(ERROR_KEY, 0x63, 'a', 0xC3, 0xA9), cbor(OperationResponse.ofError("aé")));
+        byte[] body = cbor(OperationResponse.ofError("x".repeat(300)));
+        assertArrayEquals(new byte[]{0x79, 0x01, 0x2C}, Arrays.copyOfRange(body, ERROR_KEY.length, ERROR_KEY.length + 3));
+    }
+}
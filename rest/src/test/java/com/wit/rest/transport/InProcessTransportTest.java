@@ -0,0 +1,96 @@
+package com.wit.rest.transport;
+
+import com.wit.common.protocol.AggregateOperation;
+import com.wit.common.protocol.CalculationReply;
+import com.wit.common.protocol.CalculationRequest;
+import com.wit.common.protocol.Operation;
+import com.wit.common.protocol.ReplyStatus;
+import com.wit.rest.transport.CalculationTransport.Lane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InProcessTransportTest {
+
+    private InProcessTransport transport;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transport.destroy();
+    }
+
+    @Test
+    @DisplayName("Should evaluate calculations, expressions and aggregates with the calculator's rules")
+    void shouldEvaluateRequests() throws Exception {
+        transport = new InProcessTransport(2, 16, 100, new SimpleMeterRegistry());
+
+        CalculationReply sum = transport.send(CalculationRequest.single("1", Operation.SUM, BigDecimal.ONE, BigDecimal.TEN),
+                Lane.INTERACTIVE).get(5, TimeUnit.SECONDS);
+        CalculationReply division = transport.send(CalculationRequest.single("2", Operation.DIVISION, BigDecimal.ONE, BigDecimal.ZERO),
+                Lane.INTERACTIVE).get(5, TimeUnit.SECONDS);
+        CalculationReply expression = transport.send(CalculationRequest.expression("3", "(a + b) * c",
+                Map.of("a", BigDecimal.ONE, "b", BigDecimal.valueOf(2), "c", BigDecimal.TEN)), Lane.INTERACTIVE).get(5, TimeUnit.SECONDS);
+        CalculationReply aggregate = transport.send(CalculationRequest.aggregation("4", AggregateOperation.SUM,
+                List.of(BigDecimal.ONE, BigDecimal.valueOf(2), BigDecimal.TEN)), Lane.BULK).get(5, TimeUnit.SECONDS);
+
+        assertEquals(0, new BigDecimal("11").compareTo(sum.results().get(0).value()));
+        assertEquals(ReplyStatus.DIVISION_BY_ZERO, division.results().get(0).status());
+        assertEquals(0, new BigDecimal("30").compareTo(expression.results().get(0).value()));
+        assertEquals(0, new BigDecimal("13").compareTo(aggregate.results().get(0).value()));
+    }
+
+    @Test
+    @DisplayName("Should answer every request sent concurrently by many producers exactly once")
+    void shouldAnswerConcurrentRequests() throws Exception {
+        transport = new InProcessTransport(2, 4096, 100, new SimpleMeterRegistry());
+        Set<String> answered = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<?>> futures = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            producers.add(new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    String requestId = producer + "-" + i;
+                    BigDecimal a = BigDecimal.valueOf(i);
+                    futures.add(transport.send(CalculationRequest.single(requestId, Operation.SUM, a, BigDecimal.ONE), Lane.INTERACTIVE)
+                            .thenAccept(reply -> {
+                                assertEquals(0, a.add(BigDecimal.ONE).compareTo(reply.results().get(0).value()));
+                                assertTrue(answered.add(requestId));
+                            }));
+                }
+            }));
+        }
+        producers.forEach(Thread::start);
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+        assertEquals(2000, answered.size());
+    }
+
+    @Test
+    @DisplayName("Should fail requests sent after the transport is stopped")
+    void shouldFailRequestsAfterStop() throws Exception {
+        transport = new InProcessTransport(1, 16, 100, new SimpleMeterRegistry());
+        transport.destroy();
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> transport.send(
+                CalculationRequest.single("1", Operation.SUM, BigDecimal.ONE, BigDecimal.ONE), Lane.INTERACTIVE).get());
+        assertInstanceOf(IllegalStateException.class, ex.getCause());
+    }
+}
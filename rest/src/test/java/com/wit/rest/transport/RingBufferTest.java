@@ -0,0 +1,80 @@
+package com.wit.rest.transport;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    @Test
+    @DisplayName("Should keep FIFO order across laps and refuse elements while full")
+    void shouldRejectWhenFull() {
+        RingBuffer<Integer> ring = new RingBuffer<>(3);
+        assertEquals(4, ring.capacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse(ring.offer(4));
+        assertEquals(4, ring.size());
+
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(4)); // Reuses the freed slot
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll());
+        }
+        assertNull(ring.poll());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    @DisplayName("Should hand every element to exactly one consumer under concurrent producers and consumers")
+    void shouldDeliverEachElementOnce() throws InterruptedException {
+        int producers = 3;
+        int perProducer = 20_000;
+        int total = producers * perProducer;
+        RingBuffer<Integer> ring = new RingBuffer<>(64);
+        AtomicIntegerArray seen = new AtomicIntegerArray(total);
+        AtomicInteger consumed = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int first = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = first; i < first + perProducer; i++) {
+                    while (!ring.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (int c = 0; c < 3; c++) {
+            threads.add(new Thread(() -> {
+                while (consumed.get() < total) {
+                    Integer element = ring.poll();
+                    if (element == null) {
+                        Thread.yield();
+                    } else {
+                        seen.incrementAndGet(element);
+                        consumed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(30_000);
+        }
+
+        assertEquals(total, consumed.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, seen.get(i), "Element " + i);
+        }
+    }
+}